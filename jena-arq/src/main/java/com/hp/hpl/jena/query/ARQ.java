@@ -242,7 +242,7 @@ public class ARQ
      * choosing the value.
      * <p/>
      * Operations currently affected by this symbol: <br>
-     * ORDER BY, SPARQL Update, CONSTRUCT (optionally)
+     * ORDER BY, SPARQL Update, CONSTRUCT (optionally), hash joins, GROUP BY
      * <p/>
      * TODO: Give a reasonable suggested value here.  10,000?
      * <p/>
@@ -250,7 +250,7 @@ public class ARQ
      */
     // Some possible additions to the list:
     // Sort: DISTINCT, merge joins<br>
-    // Hash table: GROUP BY, MINUS, SERVICE, VALUES, and hash joins <br>
+    // Hash table: MINUS, SERVICE, VALUES <br>
     public static final Symbol spillToDiskThreshold = ARQConstants.allocSymbol("spillToDiskThreshold") ;
     
     // Optimizer controls.
@@ -416,6 +416,41 @@ public class ARQ
      */
     public static final Symbol optMergeExtends = ARQConstants.allocSymbol("optMergeExtends");
 
+    /**
+     * Context key controlling whether the main query engine executes a join, or left join,
+     * of two sides that share variables with a hash join.
+     * By default, hash joins are used, except when the right hand side is a table of
+     * a few rows (see {@link com.hp.hpl.jena.sparql.engine.main.iterator.QueryIterHashJoinBase#HashJoinMinRows}),
+     * which is joined as cheaply by looping over its rows.
+     */
+    public static final Symbol hashJoin = ARQConstants.allocSymbol("hashJoin");
+
+    /**
+     * Context key for the number of threads used to aggregate a GROUP BY.
+     * If more than one, or if {@link #spillToDiskThreshold} is set, groups are
+     * calculated in partitions that may be spilled to disk.
+     * Default is 1.
+     */
+    public static final Symbol groupByThreads = ARQConstants.allocSymbol("groupByThreads");
+
+    /**
+     * Context key for the number of threads used to sort for ORDER BY.
+     * If more than one, sorting, and writing the sorted runs spilled to disk
+     * (see {@link #spillToDiskThreshold}), is done in a pool, shared by all queries,
+     * with a thread for each processor.
+     * Default is 1.
+     */
+    public static final Symbol sortThreads = ARQConstants.allocSymbol("sortThreads");
+
+    /**
+     * Context key controlling whether the main query engine passes solutions between
+     * operators in column-oriented batches, where it can. A triple pattern at the start
+     * of execution is then matched into batches, which filter, project, extend (BIND) and
+     * slice (LIMIT/OFFSET) work on directly.
+     * By default, solutions are passed one at a time.
+     */
+    public static final Symbol batchExecution = ARQConstants.allocSymbol("batchExecution");
+
     /** 
      *  Context key controlling whether the main query engine processes property functions.
      *  
@@ -0,0 +1,304 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hp.hpl.jena.sparql.engine.binding;
+
+import java.util.ArrayList ;
+import java.util.Arrays ;
+import java.util.Collections ;
+import java.util.Iterator ;
+import java.util.List ;
+
+import com.hp.hpl.jena.graph.Node ;
+import com.hp.hpl.jena.sparql.core.Var ;
+
+/** A block of solutions, stored column-wise : one array of RDF terms for each variable.
+ *  <p>
+ *  The solutions of the batch are a selection of the rows of the columns, in order.
+ *  A batch is not changed after it is created : filtering, projecting, extending and
+ *  slicing give a new batch that shares the columns with the old one, unless it selects
+ *  only a few of the rows, when the rows are copied so the old columns are not kept alive.
+ *  An unbound variable is a null in its column.
+ */
+public class BindingBatch
+{
+    /** The usual number of rows in a batch */
+    public static int BatchSize = 1024 ;
+    // A selection of less than 1/CompactRatio of the rows has its own columns.
+    private static final int CompactRatio = 2 ;
+
+    private final Var[] vars ;
+    private final Node[][] columns ;
+    private final int capacity ;
+    // Selected rows; null for rows 0 to size-1.
+    private final int[] rows ;
+    private final int size ;
+
+    /** A batch of rows 0 to size-1 of the columns, which are in the same order as the variables. */
+    public BindingBatch(Var[] vars, Node[][] columns, int size)
+    {
+        this(vars, columns, columns.length == 0 ? size : columns[0].length, null, size) ;
+    }
+
+    private BindingBatch(Var[] vars, Node[][] columns, int capacity, int[] rows, int size)
+    {
+        this.vars = vars ;
+        this.columns = columns ;
+        this.capacity = capacity ;
+        this.rows = rows ;
+        this.size = size ;
+    }
+
+    /** Turn a list of bindings into a batch. */
+    public static BindingBatch create(List<Binding> bindings)
+    {
+        List<Var> vars = new ArrayList<>() ;
+        for ( Binding b : bindings )
+        {
+            for ( Iterator<Var> iter = b.vars() ; iter.hasNext() ; )
+            {
+                Var v = iter.next() ;
+                if ( ! vars.contains(v) )
+                    vars.add(v) ;
+            }
+        }
+        int n = bindings.size() ;
+        Node[][] columns = new Node[vars.size()][n] ;
+        for ( int i = 0 ; i < n ; i++ )
+        {
+            Binding b = bindings.get(i) ;
+            for ( int j = 0 ; j < columns.length ; j++ )
+                columns[j][i] = b.get(vars.get(j)) ;
+        }
+        return new BindingBatch(vars.toArray(new Var[vars.size()]), columns, n) ;
+    }
+
+    /** Number of solutions */
+    public int size()                   { return size ; }
+
+    public boolean isEmpty()            { return size == 0 ; }
+
+    /** Number of rows in each column : row numbers are from 0 to this, less one. */
+    public int capacity()               { return capacity ; }
+
+    /** Variables that have a column; some rows may not have a value. */
+    public List<Var> getVars()          { return Collections.unmodifiableList(Arrays.asList(vars)) ; }
+
+    /** The row of the i'th solution */
+    public int row(int i)               { return rows == null ? i : rows[i] ; }
+
+    /** The column for a variable, indexed by row (not by solution), or null */
+    public Node[] column(Var var)
+    {
+        int j = index(var) ;
+        return j < 0 ? null : columns[j] ;
+    }
+
+    /** The value of a variable in the i'th solution */
+    public Node get(int i, Var var)
+    {
+        return node(row(i), var) ;
+    }
+
+    /** The i'th solution as a binding, which is a view of the batch */
+    public Binding binding(int i)
+    {
+        return new Row(this, row(i)) ;
+    }
+
+    /** The i'th solution, copied out of the batch : the binding does not keep the batch alive. */
+    public Binding copyBinding(int i)
+    {
+        int r = row(i) ;
+        BindingMap b = BindingFactory.create() ;
+        for ( int j = 0 ; j < vars.length ; j++ )
+        {
+            if ( columns[j][r] != null )
+                b.add(vars[j], columns[j][r]) ;
+        }
+        return b ;
+    }
+
+    /** A binding that can be moved over the solutions of this batch, without creating an object each time.
+     *  It can only be used while it is at the solution - do not keep it. */
+    public Cursor cursor()
+    {
+        return new Cursor(this) ;
+    }
+
+    /** The batch of solutions numbered selected[0] to selected[n-1], which must be in increasing order. */ 
+    public BindingBatch select(int[] selected, int n)
+    {
+        if ( n == size )
+            return this ;
+        int[] x = new int[n] ;
+        for ( int i = 0 ; i < n ; i++ )
+            x[i] = row(selected[i]) ;
+        return selection(vars, columns, capacity, x, n) ;
+    }
+
+    /** The batch of length solutions from start. */
+    public BindingBatch slice(int start, int length)
+    {
+        if ( start == 0 && length == size )
+            return this ;
+        int[] x = new int[length] ;
+        for ( int i = 0 ; i < length ; i++ )
+            x[i] = row(start+i) ;
+        return selection(vars, columns, capacity, x, length) ;
+    }
+
+    /** The batch with only the given variables. */
+    public BindingBatch project(List<Var> projectVars)
+    {
+        List<Var> vars2 = new ArrayList<>(projectVars.size()) ;
+        List<Node[]> columns2 = new ArrayList<>(projectVars.size()) ;
+        for ( Var v : projectVars )
+        {
+            int j = index(v) ;
+            if ( j < 0 || vars2.contains(v) )
+                continue ;
+            vars2.add(v) ;
+            columns2.add(columns[j]) ;
+        }
+        return selection(vars2.toArray(new Var[vars2.size()]), columns2.toArray(new Node[columns2.size()][]), capacity, rows, size) ;
+    }
+
+    /** The batch with a column, indexed by row, for a variable. Any existing column for the variable is replaced. */
+    public BindingBatch extend(Var var, Node[] column)
+    {
+        int j = index(var) ;
+        if ( j >= 0 )
+        {
+            Node[][] columns2 = columns.clone() ;
+            columns2[j] = column ;
+            return new BindingBatch(vars, columns2, capacity, rows, size) ;
+        }
+        Var[] vars2 = Arrays.copyOf(vars, vars.length+1) ;
+        vars2[vars.length] = var ;
+        Node[][] columns2 = Arrays.copyOf(columns, columns.length+1) ;
+        columns2[columns.length] = column ;
+        return new BindingBatch(vars2, columns2, capacity, rows, size) ;
+    }
+
+    /** A batch of some rows of the columns. If it is only a few of them, copy those rows. */
+    private static BindingBatch selection(Var[] vars, Node[][] columns, int capacity, int[] rows, int size)
+    {
+        if ( rows == null || size*CompactRatio >= capacity )
+            return new BindingBatch(vars, columns, capacity, rows, size) ;
+        Node[][] columns2 = new Node[columns.length][size] ;
+        for ( int j = 0 ; j < columns.length ; j++ )
+        {
+            for ( int i = 0 ; i < size ; i++ )
+                columns2[j][i] = columns[j][rows[i]] ;
+        }
+        return new BindingBatch(vars, columns2, size, null, size) ;
+    }
+
+    private int index(Var var)
+    {
+        // Few variables : search.
+        for ( int j = 0 ; j < vars.length ; j++ )
+            if ( vars[j].equals(var) )
+                return j ;
+        return -1 ;
+    }
+
+    private Node node(int row, Var var)
+    {
+        int j = index(var) ;
+        return j < 0 ? null : columns[j][row] ;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder() ;
+        for ( int i = 0 ; i < size ; i++ )
+            sb.append(binding(i)).append("\n") ;
+        return sb.toString() ;
+    }
+
+    /** One row of a batch */
+    static class Row extends BindingBase
+    {
+        protected final BindingBatch batch ;
+        protected int row ;
+
+        Row(BindingBatch batch, int row)
+        {
+            super(null) ;
+            this.batch = batch ;
+            this.row = row ;
+        }
+
+        @Override
+        protected Iterator<Var> vars1()
+        {
+            List<Var> x = new ArrayList<>(batch.vars.length) ;
+            for ( int j = 0 ; j < batch.vars.length ; j++ )
+                if ( batch.columns[j][row] != null )
+                    x.add(batch.vars[j]) ;
+            return x.iterator() ;
+        }
+
+        @Override
+        protected int size1()
+        {
+            int x = 0 ;
+            for ( int j = 0 ; j < batch.vars.length ; j++ )
+                if ( batch.columns[j][row] != null )
+                    x++ ;
+            return x ;
+        }
+
+        @Override
+        protected boolean isEmpty1()
+        {
+            return size1() == 0 ;
+        }
+
+        @Override
+        protected boolean contains1(Var var)
+        {
+            return batch.node(row, var) != null ;
+        }
+
+        @Override
+        protected Node get1(Var var)
+        {
+            return batch.node(row, var) ;
+        }
+    }
+
+    /** A row that can be moved : see {@link BindingBatch#cursor()}. */
+    public static class Cursor extends Row
+    {
+        private Cursor(BindingBatch batch)
+        {
+            super(batch, 0) ;
+        }
+
+        /** Move to the i'th solution of the batch. */
+        public void moveTo(int i)
+        {
+            row = batch.row(i) ;
+        }
+    }
+}
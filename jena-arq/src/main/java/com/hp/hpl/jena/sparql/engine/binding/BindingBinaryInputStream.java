@@ -0,0 +1,236 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hp.hpl.jena.sparql.engine.binding;
+
+import static com.hp.hpl.jena.sparql.engine.binding.BindingBinaryOutputStream.* ;
+
+import java.io.IOException ;
+import java.io.InputStream ;
+import java.util.ArrayList ;
+import java.util.List ;
+
+import org.apache.jena.atlas.io.IO ;
+import org.apache.jena.atlas.iterator.IteratorSlotted ;
+import org.apache.jena.atlas.lib.Closeable ;
+import org.apache.jena.riot.RiotException ;
+
+import com.hp.hpl.jena.datatypes.RDFDatatype ;
+import com.hp.hpl.jena.datatypes.TypeMapper ;
+import com.hp.hpl.jena.graph.Node ;
+import com.hp.hpl.jena.graph.NodeFactory ;
+import com.hp.hpl.jena.rdf.model.AnonId ;
+import com.hp.hpl.jena.sparql.core.Var ;
+
+/** Read bindings written by {@link BindingBinaryOutputStream}.
+ *  <p>
+ *  The input is read in large blocks and each record is decoded
+ *  directly from the block.
+ */
+public class BindingBinaryInputStream extends IteratorSlotted<Binding> implements Closeable
+{
+    private static final int BufferSize = 64*1024 ;
+
+    private final InputStream in ;
+    private byte[] buffer = new byte[BufferSize] ;
+    private int pos = 0 ;
+    private int limit = 0 ;
+    private boolean eof = false ;
+
+    private boolean needHeader = true ;
+    private int dictionarySize ;
+    private final List<Node> terms = new ArrayList<>() ;
+    private final List<Var> vars = new ArrayList<>() ;
+    private Var[] lastVars = null ;
+
+    public BindingBinaryInputStream(InputStream in)
+    {
+        this.in = in ;
+    }
+
+    @Override
+    protected boolean hasMore()
+    {
+        return true ;
+    }
+
+    @Override
+    protected Binding moveToNext()
+    {
+        if ( needHeader )
+        {
+            if ( ! fill(4) )
+                return null ;
+            int magic = ((buffer[pos] & 0xFF) << 24) | ((buffer[pos+1] & 0xFF) << 16) | ((buffer[pos+2] & 0xFF) << 8) | (buffer[pos+3] & 0xFF) ;
+            pos += 4 ;
+            if ( magic != Magic )
+                throw new RiotException("Not a binary binding stream") ;
+            fill(5) ;
+            dictionarySize = readVarint() ;
+            needHeader = false ;
+        }
+
+        // Record length : at most 5 bytes.
+        if ( ! fill(1) )
+            return null ;
+        fill(5) ;
+        int len = readVarint() ;
+        if ( ! fill(len) )
+            throw new RiotException("Truncated binary binding stream") ;
+        int end = pos+len ;
+
+        int n = readVarint() ;
+        if ( n != VarsSame )
+        {
+            Var[] bVars = new Var[n-1] ;
+            for ( int i = 0 ; i < bVars.length ; i++ )
+                bVars[i] = readVar() ;
+            lastVars = bVars ;
+        }
+        if ( lastVars == null )
+            throw new RiotException("Binary binding stream: no variables") ;
+
+        BindingMap binding = BindingFactory.create() ;
+        for ( Var v : lastVars )
+        {
+            Node node = readTerm() ;
+            if ( node != null )
+                binding.add(v, node) ;
+        }
+        if ( pos != end )
+            throw new RiotException("Binary binding stream: bad record length") ;
+        return binding ;
+    }
+
+    private Var readVar()
+    {
+        int x = readVarint() ;
+        if ( x != VarNew )
+            return vars.get(x-1) ;
+        Var v = Var.alloc(readString()) ;
+        vars.add(v) ;
+        return v ;
+    }
+
+    private Node readTerm()
+    {
+        int x = readVarint() ;
+        if ( x == TermUndef )
+            return null ;
+        if ( x != TermNew )
+            return terms.get(x-TermRef) ;
+
+        Node n ;
+        byte kind = buffer[pos++] ;
+        switch (kind)
+        {
+            case KindURI :
+                n = NodeFactory.createURI(readString()) ;
+                break ;
+            case KindBlank :
+                n = NodeFactory.createAnon(new AnonId(readString())) ;
+                break ;
+            case KindLiteral :
+                n = NodeFactory.createLiteral(readString()) ;
+                break ;
+            case KindLiteralLang :
+            {
+                String lex = readString() ;
+                n = NodeFactory.createLiteral(lex, readString(), false) ;
+                break ;
+            }
+            case KindLiteralDT :
+            {
+                String lex = readString() ;
+                RDFDatatype dt = TypeMapper.getInstance().getSafeTypeByName(readString()) ;
+                n = NodeFactory.createLiteral(lex, dt) ;
+                break ;
+            }
+            case KindVariable :
+                n = NodeFactory.createVariable(readString()) ;
+                break ;
+            default :
+                throw new RiotException("Binary binding stream: unknown term kind: "+kind) ;
+        }
+        if ( terms.size() < dictionarySize )
+            terms.add(n) ;
+        return n ;
+    }
+
+    private int readVarint()
+    {
+        int value = 0 ;
+        int shift = 0 ;
+        for ( ;; )
+        {
+            byte b = buffer[pos++] ;
+            value |= (b & 0x7F) << shift ;
+            if ( (b & 0x80) == 0 )
+                return value ;
+            shift += 7 ;
+        }
+    }
+
+    private String readString()
+    {
+        int len = readVarint() ;
+        String s = new String(buffer, pos, len, UTF8) ;
+        pos += len ;
+        return s ;
+    }
+
+    /** Make at least n bytes available in the buffer, if the input has them. Return false if it does not. */
+    private boolean fill(int n)
+    {
+        if ( limit-pos >= n )
+            return true ;
+        if ( pos > 0 )
+        {
+            System.arraycopy(buffer, pos, buffer, 0, limit-pos) ;
+            limit -= pos ;
+            pos = 0 ;
+        }
+        if ( n > buffer.length )
+        {
+            byte[] b = new byte[Math.max(n, buffer.length*2)] ;
+            System.arraycopy(buffer, 0, b, 0, limit) ;
+            buffer = b ;
+        }
+        try {
+            while ( ! eof && limit < n )
+            {
+                int x = in.read(buffer, limit, buffer.length-limit) ;
+                if ( x < 0 )
+                    eof = true ;
+                else
+                    limit += x ;
+            }
+        } catch (IOException ex)
+        {
+            throw new RiotException(ex) ;
+        }
+        return limit >= n ;
+    }
+
+    @Override
+    protected void closeIterator()
+    {
+        IO.close(in) ;
+    }
+}
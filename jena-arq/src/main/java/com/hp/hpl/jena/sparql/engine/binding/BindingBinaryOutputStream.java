@@ -0,0 +1,278 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hp.hpl.jena.sparql.engine.binding;
+
+import java.io.IOException ;
+import java.io.OutputStream ;
+import java.nio.charset.Charset ;
+import java.util.ArrayList ;
+import java.util.HashMap ;
+import java.util.Iterator ;
+import java.util.List ;
+import java.util.Map ;
+
+import org.apache.jena.atlas.io.IO ;
+import org.apache.jena.atlas.lib.Sink ;
+import org.apache.jena.riot.RiotException ;
+
+import com.hp.hpl.jena.graph.Node ;
+import com.hp.hpl.jena.sparql.core.Var ;
+
+/** Write bindings in a compact binary form, for reading back by {@link BindingBinaryInputStream}.
+ *  <p>
+ *  Used for spilling bindings to disk : the format is only intended to be read back
+ *  by the same version of the code.
+ *  <p>
+ *  The stream starts with a header (magic number and dictionary size).
+ *  Each binding is then a record : the varint length of the record, then
+ *  the record. A record starts with the variables (or "same variables as the last record"),
+ *  then one entry for each variable : unbound, a new RDF term written in full,
+ *  or a reference to an earlier term.  The first {@link #DictionarySize} different
+ *  terms and all variables are numbered as they are first written,
+ *  so repeated terms, such as IRIs, are written only once per stream.
+ */
+public class BindingBinaryOutputStream implements Sink<Binding>
+{
+    /** Number of terms remembered for each stream */
+    public static int DictionarySize = 100*1000 ;
+
+    static final int Magic              = 0x4A424231 ;    // "JBB1"
+    static final Charset UTF8           = Charset.forName("UTF-8") ;
+
+    // Record: variables.
+    static final int VarsSame           = 0 ;
+    // Variable : 0 is a new variable, n is the variable numbered n-1.
+    static final int VarNew             = 0 ;
+    // Term : 0 is unbound, 1 is a new term, n is the term numbered n-2. 
+    static final int TermUndef          = 0 ;
+    static final int TermNew            = 1 ;
+    static final int TermRef            = 2 ;
+
+    // Kinds of new terms.
+    static final byte KindURI           = 1 ;
+    static final byte KindBlank         = 2 ;
+    static final byte KindLiteral       = 3 ;
+    static final byte KindLiteralLang   = 4 ;
+    static final byte KindLiteralDT     = 5 ;
+    static final byte KindVariable      = 6 ;
+
+    private final OutputStream out ;
+    private final int dictionarySize ;
+    private final Map<Node, Integer> terms = new HashMap<>() ;
+    private final Map<Var, Integer> vars = new HashMap<>() ;
+    private List<Var> lastVars = null ;
+    private boolean needHeader = true ;
+
+    // The record being built.
+    private byte[] buffer = new byte[1024] ;
+    private int len = 0 ;
+    private final byte[] lenBytes = new byte[5] ;
+
+    public BindingBinaryOutputStream(OutputStream out)
+    {
+        this(out, DictionarySize) ;
+    }
+
+    public BindingBinaryOutputStream(OutputStream out, int dictionarySize)
+    {
+        this.out = out ;
+        this.dictionarySize = dictionarySize ;
+    }
+
+    @Override
+    public void send(Binding binding)
+    {
+        len = 0 ;
+        if ( needHeader )
+        {
+            writeInt(Magic) ;
+            writeVarint(dictionarySize) ;
+            needHeader = false ;
+            flushRecord(false) ;
+        }
+
+        List<Var> bVars = new ArrayList<>(binding.size()) ;
+        for ( Iterator<Var> iter = binding.vars() ; iter.hasNext() ; )
+            bVars.add(iter.next()) ;
+
+        if ( bVars.equals(lastVars) )
+            writeVarint(VarsSame) ;
+        else
+        {
+            writeVarint(bVars.size()+1) ;
+            for ( Var v : bVars )
+                writeVar(v) ;
+            lastVars = bVars ;
+        }
+
+        for ( Var v : bVars )
+            writeTerm(binding.get(v)) ;
+        flushRecord(true) ;
+    }
+
+    private void writeVar(Var v)
+    {
+        Integer x = vars.get(v) ;
+        if ( x != null )
+        {
+            writeVarint(x+1) ;
+            return ;
+        }
+        vars.put(v, vars.size()) ;
+        writeVarint(VarNew) ;
+        writeString(v.getVarName()) ;
+    }
+
+    private void writeTerm(Node n)
+    {
+        if ( n == null )
+        {
+            writeVarint(TermUndef) ;
+            return ;
+        }
+        Integer x = terms.get(n) ;
+        if ( x != null )
+        {
+            writeVarint(x+TermRef) ;
+            return ;
+        }
+        if ( terms.size() < dictionarySize )
+            terms.put(n, terms.size()) ;
+        writeVarint(TermNew) ;
+
+        if ( n.isURI() )
+        {
+            writeByte(KindURI) ;
+            writeString(n.getURI()) ;
+        }
+        else if ( n.isBlank() )
+        {
+            writeByte(KindBlank) ;
+            writeString(n.getBlankNodeLabel()) ;
+        }
+        else if ( n.isLiteral() )
+        {
+            String lang = n.getLiteralLanguage() ;
+            String dt = n.getLiteralDatatypeURI() ;
+            if ( lang != null && ! lang.isEmpty() )
+            {
+                writeByte(KindLiteralLang) ;
+                writeString(n.getLiteralLexicalForm()) ;
+                writeString(lang) ;
+            }
+            else if ( dt != null )
+            {
+                writeByte(KindLiteralDT) ;
+                writeString(n.getLiteralLexicalForm()) ;
+                writeString(dt) ;
+            }
+            else
+            {
+                writeByte(KindLiteral) ;
+                writeString(n.getLiteralLexicalForm()) ;
+            }
+        }
+        else if ( n.isVariable() )
+        {
+            writeByte(KindVariable) ;
+            writeString(n.getName()) ;
+        }
+        else
+            throw new RiotException("Can not write node: "+n) ;
+    }
+
+    private void flushRecord(boolean withLength)
+    {
+        try {
+            if ( withLength )
+                out.write(lenBytes, 0, varint(lenBytes, 0, len)) ;
+            out.write(buffer, 0, len) ;
+        } catch (IOException ex)
+        {
+            throw new RiotException(ex) ;
+        }
+        len = 0 ;
+    }
+
+    /** Write a non-negative int as 7 bits per byte, low bits first, returning the number of bytes. */
+    static int varint(byte[] bytes, int idx, int value)
+    {
+        int i = idx ;
+        while ( (value & ~0x7F) != 0 )
+        {
+            bytes[i++] = (byte)((value & 0x7F) | 0x80) ;
+            value = value >>> 7 ;
+        }
+        bytes[i++] = (byte)value ;
+        return i-idx ;
+    }
+
+    private void ensure(int n)
+    {
+        if ( len+n > buffer.length )
+        {
+            byte[] b = new byte[Math.max(buffer.length*2, len+n)] ;
+            System.arraycopy(buffer, 0, b, 0, len) ;
+            buffer = b ;
+        }
+    }
+
+    private void writeVarint(int value)
+    {
+        ensure(5) ;
+        len += varint(buffer, len, value) ;
+    }
+
+    private void writeByte(byte b)
+    {
+        ensure(1) ;
+        buffer[len++] = b ;
+    }
+
+    private void writeInt(int value)
+    {
+        ensure(4) ;
+        buffer[len++] = (byte)(value >>> 24) ;
+        buffer[len++] = (byte)(value >>> 16) ;
+        buffer[len++] = (byte)(value >>> 8) ;
+        buffer[len++] = (byte)value ;
+    }
+
+    private void writeString(String s)
+    {
+        byte[] b = s.getBytes(UTF8) ;
+        writeVarint(b.length) ;
+        ensure(b.length) ;
+        System.arraycopy(b, 0, buffer, len, b.length) ;
+        len += b.length ;
+    }
+
+    @Override
+    public void flush()
+    {
+        IO.flush(out) ;
+    }
+
+    @Override
+    public void close()
+    {
+        IO.close(out) ;
+    }
+}
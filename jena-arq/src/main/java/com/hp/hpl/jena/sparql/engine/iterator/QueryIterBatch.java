@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hp.hpl.jena.sparql.engine.iterator;
+
+import java.util.ArrayList ;
+import java.util.List ;
+
+import org.apache.jena.atlas.io.IndentedWriter ;
+
+import com.hp.hpl.jena.query.QueryCancelledException ;
+import com.hp.hpl.jena.sparql.engine.ExecutionContext ;
+import com.hp.hpl.jena.sparql.engine.QueryIterator ;
+import com.hp.hpl.jena.sparql.engine.binding.Binding ;
+import com.hp.hpl.jena.sparql.engine.binding.BindingBatch ;
+import com.hp.hpl.jena.sparql.serializer.SerializationContext ;
+import com.hp.hpl.jena.sparql.util.Utils ;
+
+/** A QueryIterator that produces solutions a {@link BindingBatch} at a time.
+ *  <p>
+ *  Operators that understand batches call {@link #nextBatch()};
+ *  anything else uses the iterator as usual, one binding at a time.
+ *  Use {@link #batches(QueryIterator, ExecutionContext)} to get batches from any QueryIterator.
+ */
+public abstract class QueryIterBatch extends QueryIter
+{
+    private BindingBatch current = null ;
+    private int idx = 0 ;
+    private volatile boolean cancelled = false ;
+
+    protected QueryIterBatch(ExecutionContext execCxt)
+    {
+        super(execCxt) ;
+    }
+
+    /** A batch iterator over the solutions of any QueryIterator. */
+    public static QueryIterBatch batches(QueryIterator qIter, ExecutionContext execCxt)
+    {
+        if ( qIter instanceof QueryIterBatch )
+            return (QueryIterBatch)qIter ;
+        return new RowsToBatches(qIter, execCxt) ;
+    }
+
+    /** Implement this : the next batch, or null at the end. Batches may be empty. */ 
+    protected abstract BindingBatch moveToNextBatch() ;
+
+    /** Cancellation of the query execution is happening */
+    protected abstract void requestSubCancel() ;
+
+    /** The next batch of solutions, or null if there are no more.
+     *  After a call of {@link #next()}, this is the rest of the current batch. */  
+    public final BindingBatch nextBatch()
+    {
+        if ( isFinished() )
+            return null ;
+        if ( cancelled )
+        {
+            close() ;
+            throw new QueryCancelledException() ;
+        }
+        if ( current != null && idx < current.size() )
+        {
+            BindingBatch b = current.slice(idx, current.size()-idx) ;
+            current = null ;
+            return b ;
+        }
+        current = null ;
+        for ( ;; )
+        {
+            BindingBatch b = moveToNextBatch() ;
+            if ( b == null )
+            {
+                close() ;
+                return null ;
+            }
+            if ( ! b.isEmpty() )
+                return b ;
+        }
+    }
+
+    @Override
+    protected final boolean hasNextBinding()
+    {
+        while ( current == null || idx >= current.size() )
+        {
+            current = moveToNextBatch() ;
+            idx = 0 ;
+            if ( current == null )
+                return false ;
+        }
+        return true ;
+    }
+
+    @Override
+    protected final Binding moveToNextBinding()
+    {
+        // Copied : a binding that escapes the batch must not keep it alive.
+        return current.copyBinding(idx++) ;
+    }
+
+    @Override
+    protected final void requestCancel()
+    {
+        cancelled = true ;
+        requestSubCancel() ;
+    }
+
+    @Override
+    public void output(IndentedWriter out, SerializationContext sCxt)
+    {
+        out.print(Utils.className(this)) ;
+    }
+
+    /** Group the solutions of a row-at-a-time QueryIterator into batches. */ 
+    private static class RowsToBatches extends QueryIterBatch
+    {
+        private QueryIterator input ;
+
+        RowsToBatches(QueryIterator input, ExecutionContext execCxt)
+        {
+            super(execCxt) ;
+            this.input = input ;
+        }
+
+        @Override
+        protected BindingBatch moveToNextBatch()
+        {
+            List<Binding> rows = new ArrayList<>() ;
+            while ( rows.size() < BindingBatch.BatchSize && input.hasNext() )
+                rows.add(input.nextBinding()) ;
+            if ( rows.isEmpty() )
+                return null ;
+            return BindingBatch.create(rows) ;
+        }
+
+        @Override
+        protected void requestSubCancel()
+        {
+            performRequestCancel(input) ;
+        }
+
+        @Override
+        protected void closeIterator()
+        {
+            performClose(input) ;
+        }
+
+        @Override
+        public void output(IndentedWriter out, SerializationContext sCxt)
+        {
+            input.output(out, sCxt) ;
+            out.ensureStartOfLine() ;
+            super.output(out, sCxt) ;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hp.hpl.jena.sparql.engine.iterator;
+
+import org.apache.jena.atlas.io.IndentedWriter ;
+
+import com.hp.hpl.jena.sparql.engine.ExecutionContext ;
+import com.hp.hpl.jena.sparql.serializer.SerializationContext ;
+import com.hp.hpl.jena.sparql.util.Utils ;
+
+/** A batch iterator that takes one batch iterator as input. */
+public abstract class QueryIterBatch1 extends QueryIterBatch
+{
+    private QueryIterBatch input ;
+
+    protected QueryIterBatch1(QueryIterBatch input, ExecutionContext execCxt)
+    {
+        super(execCxt) ;
+        this.input = input ;
+    }
+
+    protected QueryIterBatch getInput() { return input ; }
+
+    @Override
+    protected final void closeIterator()
+    {
+        performClose(input) ;
+        input = null ;
+    }
+
+    @Override
+    protected final void requestSubCancel()
+    {
+        performRequestCancel(input) ;
+    }
+
+    @Override
+    public void output(IndentedWriter out, SerializationContext sCxt)
+    {
+        getInput().output(out, sCxt) ;
+        out.ensureStartOfLine() ;
+        details(out, sCxt) ;
+        out.ensureStartOfLine() ;
+    }
+
+    protected void details(IndentedWriter out, SerializationContext sCxt)
+    {
+        out.print(Utils.className(this)) ;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hp.hpl.jena.sparql.engine.iterator;
+
+import org.apache.jena.atlas.io.IndentedWriter ;
+
+import com.hp.hpl.jena.graph.Node ;
+import com.hp.hpl.jena.sparql.core.Var ;
+import com.hp.hpl.jena.sparql.core.VarExprList ;
+import com.hp.hpl.jena.sparql.engine.ExecutionContext ;
+import com.hp.hpl.jena.sparql.engine.binding.BindingBatch ;
+import com.hp.hpl.jena.sparql.serializer.SerializationContext ;
+import com.hp.hpl.jena.sparql.util.Utils ;
+
+/** Extend batches of solutions by (var, expression) : as {@link QueryIterAssign}.
+ *  Each expression adds a column to the batch. */
+public class QueryIterBatchExtend extends QueryIterBatch1
+{
+    private final VarExprList exprs ;
+
+    public QueryIterBatchExtend(QueryIterBatch input, VarExprList exprs, ExecutionContext execCxt)
+    {
+        super(input, execCxt) ;
+        this.exprs = exprs ;
+    }
+
+    @Override
+    protected BindingBatch moveToNextBatch()
+    {
+        BindingBatch batch = getInput().nextBatch() ;
+        if ( batch == null )
+            return null ;
+        // Each expression sees the variables assigned before it ("let*").
+        for ( Var v : exprs.getVars() )
+            batch = extend(batch, v) ;
+        return batch ;
+    }
+
+    private BindingBatch extend(BindingBatch batch, Var v)
+    {
+        Node[] existing = batch.column(v) ;
+        Node[] column = ( existing == null ) ? new Node[batch.capacity()] : existing.clone() ;
+        int[] selected = new int[batch.size()] ;
+        int n = 0 ;
+        BindingBatch.Cursor cursor = batch.cursor() ;
+        for ( int i = 0 ; i < batch.size() ; i++ )
+        {
+            cursor.moveTo(i) ;
+            Node x = exprs.get(v, cursor, getExecContext()) ;
+            int row = batch.row(i) ;
+            if ( x != null )
+            {
+                Node x2 = column[row] ;
+                if ( x2 == null )
+                    column[row] = x ;
+                else if ( ! x2.sameValueAs(x) )
+                    // Error in single assignment.
+                    continue ;
+            }
+            // Expression failed to evaluate - no assignment
+            selected[n++] = i ;
+        }
+        return batch.extend(v, column).select(selected, n) ;
+    }
+
+    @Override
+    protected void details(IndentedWriter out, SerializationContext cxt)
+    {
+        out.print(Utils.className(this)) ;
+        out.print(" ") ;
+        out.print(exprs.toString()) ;
+    }
+}
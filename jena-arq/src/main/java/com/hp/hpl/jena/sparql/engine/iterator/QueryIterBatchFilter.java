@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hp.hpl.jena.sparql.engine.iterator;
+
+import org.apache.jena.atlas.io.IndentedWriter ;
+import org.apache.jena.atlas.logging.Log ;
+
+import com.hp.hpl.jena.sparql.engine.ExecutionContext ;
+import com.hp.hpl.jena.sparql.engine.binding.BindingBatch ;
+import com.hp.hpl.jena.sparql.expr.Expr ;
+import com.hp.hpl.jena.sparql.expr.ExprException ;
+import com.hp.hpl.jena.sparql.serializer.SerializationContext ;
+import com.hp.hpl.jena.sparql.util.ExprUtils ;
+import com.hp.hpl.jena.sparql.util.Utils ;
+
+/** Filter batches of solutions by a constraint : as {@link QueryIterFilterExpr}. */
+public class QueryIterBatchFilter extends QueryIterBatch1
+{
+    private final Expr expr ;
+
+    public QueryIterBatchFilter(QueryIterBatch input, Expr expr, ExecutionContext execCxt)
+    {
+        super(input, execCxt) ;
+        this.expr = expr ;
+    }
+
+    @Override
+    protected BindingBatch moveToNextBatch()
+    {
+        BindingBatch batch = getInput().nextBatch() ;
+        if ( batch == null )
+            return null ;
+        int[] selected = new int[batch.size()] ;
+        int n = 0 ;
+        BindingBatch.Cursor cursor = batch.cursor() ;
+        for ( int i = 0 ; i < batch.size() ; i++ )
+        {
+            cursor.moveTo(i) ;
+            if ( accept(cursor) )
+                selected[n++] = i ;
+        }
+        return batch.select(selected, n) ;
+    }
+
+    private boolean accept(BindingBatch.Cursor cursor)
+    {
+        try {
+            return expr.isSatisfied(cursor, getExecContext()) ;
+        } catch (ExprException ex)
+        { // Some evaluation exception
+            Log.warn(this, "Expression Exception in "+expr, ex) ;
+            return false ;
+        }
+        catch (Exception ex)
+        {
+            Log.warn(this, "General exception in "+expr, ex) ;
+            return false ;
+        }
+    }
+
+    @Override
+    protected void details(IndentedWriter out, SerializationContext cxt)
+    {
+        out.print(Utils.className(this)) ;
+        out.print(" ") ;
+        ExprUtils.fmtSPARQL(out, expr, cxt) ;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hp.hpl.jena.sparql.engine.iterator;
+
+import java.util.List ;
+
+import org.apache.jena.atlas.io.IndentedWriter ;
+import org.apache.jena.atlas.lib.ListUtils ;
+
+import com.hp.hpl.jena.sparql.core.Var ;
+import com.hp.hpl.jena.sparql.engine.ExecutionContext ;
+import com.hp.hpl.jena.sparql.engine.binding.BindingBatch ;
+import com.hp.hpl.jena.sparql.serializer.SerializationContext ;
+import com.hp.hpl.jena.sparql.util.Utils ;
+
+/** Project batches of solutions : as {@link QueryIterProject}. */
+public class QueryIterBatchProject extends QueryIterBatch1
+{
+    private final List<Var> projectionVars ;
+
+    public QueryIterBatchProject(QueryIterBatch input, List<Var> vars, ExecutionContext execCxt)
+    {
+        super(input, execCxt) ;
+        this.projectionVars = vars ;
+    }
+
+    @Override
+    protected BindingBatch moveToNextBatch()
+    {
+        BindingBatch batch = getInput().nextBatch() ;
+        if ( batch == null )
+            return null ;
+        return batch.project(projectionVars) ;
+    }
+
+    @Override
+    protected void details(IndentedWriter out, SerializationContext cxt)
+    {
+        out.print(Utils.className(this)) ;
+        out.print(" ") ;
+        ListUtils.print(out, projectionVars) ;
+    }
+}
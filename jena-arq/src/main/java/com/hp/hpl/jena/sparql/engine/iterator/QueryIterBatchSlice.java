@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hp.hpl.jena.sparql.engine.iterator;
+
+import com.hp.hpl.jena.query.Query ;
+import com.hp.hpl.jena.query.QueryExecException ;
+import com.hp.hpl.jena.sparql.engine.ExecutionContext ;
+import com.hp.hpl.jena.sparql.engine.binding.BindingBatch ;
+
+/** Offset and limit over batches of solutions : as {@link QueryIterSlice}. */
+public class QueryIterBatchSlice extends QueryIterBatch1
+{
+    private long offset ;
+    private long limit ;
+
+    public QueryIterBatchSlice(QueryIterBatch input, long startPosition, long numItems, ExecutionContext execCxt)
+    {
+        super(input, execCxt) ;
+        offset = startPosition ;
+        if ( offset == Query.NOLIMIT )
+            offset = 0 ;
+        limit = numItems ;
+        if ( limit == Query.NOLIMIT )
+            limit = Long.MAX_VALUE ;
+        if ( limit < 0 )
+            throw new QueryExecException("Negative LIMIT: "+limit) ;
+        if ( offset < 0 )
+            throw new QueryExecException("Negative OFFSET: "+offset) ;
+    }
+
+    @Override
+    protected BindingBatch moveToNextBatch()
+    {
+        while ( limit > 0 )
+        {
+            BindingBatch batch = getInput().nextBatch() ;
+            if ( batch == null )
+                return null ;
+            int size = batch.size() ;
+            if ( offset >= size )
+            {
+                offset -= size ;
+                continue ;
+            }
+            int start = (int)offset ;
+            int length = (int)Math.min(size-start, limit) ;
+            offset = 0 ;
+            limit -= length ;
+            return batch.slice(start, length) ;
+        }
+        return null ;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hp.hpl.jena.sparql.engine.iterator;
+
+import java.util.ArrayList ;
+import java.util.List ;
+
+import org.apache.jena.atlas.io.IndentedWriter ;
+
+import com.hp.hpl.jena.graph.Graph ;
+import com.hp.hpl.jena.graph.Node ;
+import com.hp.hpl.jena.graph.Triple ;
+import com.hp.hpl.jena.sparql.core.Var ;
+import com.hp.hpl.jena.sparql.engine.ExecutionContext ;
+import com.hp.hpl.jena.sparql.engine.binding.BindingBatch ;
+import com.hp.hpl.jena.sparql.serializer.SerializationContext ;
+import com.hp.hpl.jena.sparql.util.FmtUtils ;
+import com.hp.hpl.jena.sparql.util.Utils ;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator ;
+import com.hp.hpl.jena.util.iterator.NiceIterator ;
+
+/** Match one triple pattern against the active graph, with no incoming bindings,
+ *  putting the matches straight into the columns of batches.
+ *  <p>
+ *  This is the batch form of {@link QueryIterTriplePattern} applied to the root. 
+ */
+public class QueryIterBatchTriplePattern extends QueryIterBatch
+{
+    private final Triple pattern ;
+    private final Var[] vars ;
+    // For each of S, P and O : the variable number, or -1.
+    private final int[] slotVar = new int[3] ;
+    private ExtendedIterator<Triple> graphIter ;
+
+    public QueryIterBatchTriplePattern(Triple pattern, ExecutionContext execCxt)
+    {
+        super(execCxt) ;
+        this.pattern = pattern ;
+        Node[] nodes = { pattern.getSubject(), pattern.getPredicate(), pattern.getObject() } ;
+        Node[] find = new Node[3] ;
+        List<Var> x = new ArrayList<>(3) ;
+        for ( int i = 0 ; i < 3 ; i++ )
+        {
+            if ( Var.isVar(nodes[i]) )
+            {
+                Var v = Var.alloc(nodes[i]) ;
+                if ( ! x.contains(v) )
+                    x.add(v) ;
+                slotVar[i] = x.indexOf(v) ;
+                find[i] = Node.ANY ;
+            }
+            else
+            {
+                slotVar[i] = -1 ;
+                find[i] = nodes[i] ;
+            }
+        }
+        this.vars = x.toArray(new Var[x.size()]) ;
+        Graph graph = execCxt.getActiveGraph() ;
+        this.graphIter = graph.find(find[0], find[1], find[2]) ;
+    }
+
+    @Override
+    protected BindingBatch moveToNextBatch()
+    {
+        if ( graphIter == null || ! graphIter.hasNext() )
+            return null ;
+        int size = BindingBatch.BatchSize ;
+        Node[][] columns = new Node[vars.length][size] ;
+        int n = 0 ;
+        while ( n < size && graphIter.hasNext() )
+        {
+            Triple t = graphIter.next() ;
+            if ( ! insert(0, t.getSubject(), columns, n) )
+                continue ;
+            if ( ! insert(1, t.getPredicate(), columns, n) )
+                continue ;
+            if ( ! insert(2, t.getObject(), columns, n) )
+                continue ;
+            n++ ;
+        }
+        return new BindingBatch(vars, columns, n) ;
+    }
+
+    private boolean insert(int slot, Node node, Node[][] columns, int row)
+    {
+        int j = slotVar[slot] ;
+        if ( j < 0 )
+            return true ;
+        // Repeated variable : set by an earlier slot of this triple.
+        for ( int k = 0 ; k < slot ; k++ )
+        {
+            if ( slotVar[k] == j )
+                return node.equals(columns[j][row]) ;
+        }
+        columns[j][row] = node ;
+        return true ;
+    }
+
+    @Override
+    protected void requestSubCancel()
+    {}
+
+    @Override
+    protected void closeIterator()
+    {
+        if ( graphIter != null )
+            NiceIterator.close(graphIter) ;
+        graphIter = null ;
+    }
+
+    @Override
+    public void output(IndentedWriter out, SerializationContext sCxt)
+    {
+        out.print(Utils.className(this)) ;
+        out.print(" ") ;
+        out.print(FmtUtils.stringForTriple(pattern, sCxt)) ;
+    }
+}
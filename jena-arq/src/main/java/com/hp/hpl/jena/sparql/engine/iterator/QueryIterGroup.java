@@ -180,7 +180,7 @@ public class QueryIterGroup extends QueryIterPlainWrapper
         };
     }
     
-    static private Binding genKey(VarExprList vars, Binding binding, ExecutionContext execCxt) 
+    /*package*/ static Binding genKey(VarExprList vars, Binding binding, ExecutionContext execCxt) 
     {
         return copyProject(vars, binding, execCxt) ;
     }
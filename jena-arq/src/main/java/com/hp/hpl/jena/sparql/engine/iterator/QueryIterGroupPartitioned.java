@@ -0,0 +1,440 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hp.hpl.jena.sparql.engine.iterator;
+
+import java.util.* ;
+import java.util.concurrent.* ;
+
+import org.apache.jena.atlas.data.BagFactory ;
+import org.apache.jena.atlas.data.DataBag ;
+import org.apache.jena.atlas.data.ThresholdPolicy ;
+import org.apache.jena.atlas.data.ThresholdPolicyFactory ;
+import org.apache.jena.atlas.iterator.Iter ;
+import org.apache.jena.atlas.iterator.IteratorConcat ;
+import org.apache.jena.atlas.iterator.IteratorDelayedInitialization ;
+import org.apache.jena.atlas.iterator.IteratorSlotted ;
+import org.apache.jena.riot.system.SerializationFactoryFinder ;
+
+import com.hp.hpl.jena.graph.Node ;
+import com.hp.hpl.jena.query.ARQ ;
+import com.hp.hpl.jena.query.QueryCancelledException ;
+import com.hp.hpl.jena.query.QueryExecException ;
+import com.hp.hpl.jena.sparql.core.Var ;
+import com.hp.hpl.jena.sparql.core.VarExprList ;
+import com.hp.hpl.jena.sparql.engine.ExecutionContext ;
+import com.hp.hpl.jena.sparql.engine.QueryIterator ;
+import com.hp.hpl.jena.sparql.engine.binding.Binding ;
+import com.hp.hpl.jena.sparql.engine.binding.BindingFactory ;
+import com.hp.hpl.jena.sparql.engine.binding.BindingMap ;
+import com.hp.hpl.jena.sparql.expr.Expr ;
+import com.hp.hpl.jena.sparql.expr.ExprAggregator ;
+import com.hp.hpl.jena.sparql.expr.ExprTransformCopy ;
+import com.hp.hpl.jena.sparql.expr.ExprTransformer ;
+import com.hp.hpl.jena.sparql.expr.NodeValue ;
+import com.hp.hpl.jena.sparql.expr.aggregate.Accumulator ;
+import com.hp.hpl.jena.sparql.expr.aggregate.Aggregator ;
+import com.hp.hpl.jena.sparql.util.Context ;
+
+/** GROUP BY and aggregation, as {@link QueryIterGroup}, that can spill to disk and 
+ *  aggregate in parallel.
+ *  <p>
+ *  The input rows are split into partitions by the hash of the group key. All the
+ *  rows of a group are in the same partition, in the order they arrived, so each
+ *  partition is aggregated on its own, with the usual accumulators, and the results 
+ *  of the partitions are simply concatenated. The group key of each row is calculated
+ *  once, when splitting, and kept alongside the row.
+ *  <p>
+ *  A partition aggregated by another thread has its own copy of the aggregators and
+ *  of the execution context, and only sees rows that have been materialized.
+ *  <p>
+ *  Partitions are {@link DataBag}s and are written to disk if bigger than the 
+ *  {@link ARQ#spillToDiskThreshold}. Up to {@link ARQ#groupByThreads} partitions 
+ *  are aggregated at the same time; only those partitions have groups in memory.
+ *  A partition found to have more groups than the threshold is split again, with
+ *  a different hash, and its parts aggregated one after the other.
+ */
+public class QueryIterGroupPartitioned extends QueryIterPlainWrapper
+{
+    // Number of partitions the input, or a partition with too many groups, is split into.
+    private static final int Fanout = 32 ;
+    // How many times a partition with too many groups is split again.
+    private static final int MaxDepth = 3 ;
+
+    private final QueryIterator embeddedIterator ;
+    private final List<DataBag<Binding>> bags = Collections.synchronizedList(new ArrayList<DataBag<Binding>>()) ;
+    private volatile boolean cancelled = false ;
+
+    /** Whether the context asks for this operator : a spill threshold or more than one thread. */ 
+    public static boolean applies(ExecutionContext execCxt)
+    {
+        return execCxt.getContext().isDefined(ARQ.spillToDiskThreshold) || threads(execCxt) > 1 ;
+    }
+
+    private static int threads(ExecutionContext execCxt)
+    {
+        Object x = execCxt.getContext().get(ARQ.groupByThreads) ;
+        if ( x instanceof Number )
+            return ((Number)x).intValue() ;
+        if ( x instanceof String )
+            return Integer.parseInt((String)x) ;
+        return 1 ;
+    }
+
+    public QueryIterGroupPartitioned(QueryIterator qIter, VarExprList groupVars, List<ExprAggregator> aggregators,
+                                     ExecutionContext execCxt)
+    {
+        super(null, execCxt) ;
+        this.embeddedIterator = qIter ;
+        setIterator(new Groups(qIter, groupVars, aggregators, Math.max(1, threads(execCxt)), execCxt)) ;
+    }
+
+    @Override
+    public void requestCancel()
+    {
+        cancelled = true ;
+        embeddedIterator.cancel() ;
+        super.requestCancel() ;
+    }
+
+    @Override
+    protected void closeIterator()
+    {
+        // Stop any aggregation still running.
+        cancelled = true ;
+        super.closeIterator() ;
+        synchronized(bags)
+        {
+            for ( DataBag<Binding> bag : bags )
+                bag.close() ;
+            bags.clear() ;
+        }
+    }
+
+    private static ExecutorService executor = null ;
+
+    private static synchronized ExecutorService executor()
+    {
+        if ( executor == null )
+        {
+            executor = Executors.newCachedThreadPool(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r)
+                {
+                    Thread t = new Thread(r, "ARQ-GroupBy") ;
+                    t.setDaemon(true) ;
+                    return t ;
+                }
+            }) ;
+        }
+        return executor ;
+    }
+
+    private class Groups extends IteratorSlotted<Binding>
+    {
+        private final QueryIterator input ;
+        private final VarExprList groupVars ;
+        private final List<ExprAggregator> aggregators ;
+        private final int threads ;
+        private final ExecutionContext execCxt ;
+        // Most groups held in memory for one partition.
+        private final long threshold ;
+        private List<DataBag<Binding>> partitions = null ;
+        // The group key of each row of a partition, in the same order.
+        private List<DataBag<Binding>> keys = null ;
+        // Partitions being aggregated, in order.
+        private final LinkedList<Future<Iterator<Binding>>> running = new LinkedList<>() ;
+        private int nextPartition = 0 ;
+        private Iterator<Binding> current = Iter.nullIterator() ;
+
+        Groups(QueryIterator input, VarExprList groupVars, List<ExprAggregator> aggregators, int threads, ExecutionContext execCxt)
+        {
+            this.input = input ;
+            this.groupVars = groupVars ;
+            this.aggregators = aggregators ;
+            this.threads = threads ;
+            this.execCxt = execCxt ;
+            long x = (Long)execCxt.getContext().get(ARQ.spillToDiskThreshold, -1L) ;
+            this.threshold = ( x < 0 ) ? Long.MAX_VALUE : Math.max(1L, x) ;
+        }
+
+        @Override
+        protected boolean hasMore()
+        {
+            return true ;
+        }
+
+        @Override
+        protected Binding moveToNext()
+        {
+            if ( partitions == null )
+            {
+                if ( ! split() )
+                {
+                    // No input.
+                    current = empty() ;
+                    partitions = Collections.emptyList() ;
+                }
+            }
+            while ( ! current.hasNext() )
+            {
+                if ( cancelled )
+                    throw new QueryCancelledException() ;
+                if ( threads == 1 )
+                {
+                    if ( nextPartition >= partitions.size() )
+                        return null ;
+                    current = aggregate(partitions.get(nextPartition), keys.get(nextPartition), aggregators, execCxt, 0) ;
+                    nextPartition++ ;
+                    continue ;
+                }
+                while ( running.size() < threads && nextPartition < partitions.size() )
+                {
+                    running.add(start(partitions.get(nextPartition), keys.get(nextPartition))) ;
+                    nextPartition++ ;
+                }
+                if ( running.isEmpty() )
+                    return null ;
+                current = result(running.removeFirst()) ;
+            }
+            return current.next() ;
+        }
+
+        // Read the input into partitions. Return false for no input.
+        private boolean split()
+        {
+            int N = Fanout ;
+            // One policy for all the bags so no more than the threshold is held in memory,
+            // however many partitions there are.
+            ThresholdPolicy<Binding> policy = ThresholdPolicyFactory.policyFromContext(execCxt.getContext()) ;
+            partitions = newBags(N, policy) ;
+            keys = newBags(N, policy) ;
+            boolean any = false ;
+            while ( input.hasNext() )
+            {
+                Binding b = input.nextBinding() ;
+                // Rows for other threads must not be lazy (e.g. TDB bindings, which use the node table).
+                if ( threads > 1 )
+                    b = BindingFactory.materialize(b) ;
+                Binding key = QueryIterGroup.genKey(groupVars, b, execCxt) ;
+                int idx = partition(key, N, 0) ;
+                partitions.get(idx).add(b) ;
+                keys.get(idx).add(key) ;
+                any = true ;
+            }
+            return any ;
+        }
+
+        private List<DataBag<Binding>> newBags(int N, ThresholdPolicy<Binding> policy)
+        {
+            List<DataBag<Binding>> x = new ArrayList<>(N) ;
+            for ( int i = 0 ; i < N ; i++ )
+            {
+                DataBag<Binding> bag = BagFactory.newDefaultBag(policy, SerializationFactoryFinder.bindingSerializationFactory()) ;
+                x.add(bag) ;
+                bags.add(bag) ;
+            }
+            return x ;
+        }
+
+        private Future<Iterator<Binding>> start(final DataBag<Binding> partition, final DataBag<Binding> partitionKeys)
+        {
+            // Expressions and the execution context are not safe to share between threads :
+            // the task has its own copies.
+            final ExecutionContext cxt = new ExecutionContext(new Context(execCxt.getContext()), execCxt.getActiveGraph(),
+                                                              execCxt.getDataset(), execCxt.getExecutor()) ;
+            final List<ExprAggregator> aggs = copy(aggregators) ;
+            Callable<Iterator<Binding>> task = new Callable<Iterator<Binding>>() {
+                @Override
+                public Iterator<Binding> call()
+                {
+                    return aggregate(partition, partitionKeys, aggs, cxt, 0) ;
+                }
+            } ;
+            return executor().submit(task) ;
+        }
+
+        private List<ExprAggregator> copy(List<ExprAggregator> aggregators)
+        {
+            if ( aggregators == null )
+                return null ;
+            List<ExprAggregator> x = new ArrayList<>(aggregators.size()) ;
+            for ( ExprAggregator agg : aggregators )
+            {
+                Aggregator a = agg.getAggregator() ;
+                Expr expr = a.getExpr() ;
+                if ( expr != null )
+                    a = a.copy(ExprTransformer.transform(new ExprTransformCopy(true), expr)) ;
+                x.add(new ExprAggregator(agg.getVar(), a)) ;
+            }
+            return x ;
+        }
+
+        private Iterator<Binding> result(Future<Iterator<Binding>> future)
+        {
+            try {
+                return future.get() ;
+            } catch (InterruptedException ex) {
+                throw new QueryCancelledException() ;
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause() ;
+                if ( cause instanceof RuntimeException )
+                    throw (RuntimeException)cause ;
+                if ( cause instanceof Error )
+                    throw (Error)cause ;
+                throw new QueryExecException(cause) ;
+            }
+        }
+
+        /** Aggregate one partition, as QueryIterGroup. */
+        private Iterator<Binding> aggregate(DataBag<Binding> partition, DataBag<Binding> partitionKeys,
+                                            List<ExprAggregator> aggregators, ExecutionContext execCxt, int level)
+        {
+            int N = ( aggregators == null ) ? 0 : aggregators.size() ;
+            Map<Binding, Accumulator[]> groups = new LinkedHashMap<>() ;
+            boolean tooMany = false ;
+            Iterator<Binding> iter = partition.iterator() ;
+            Iterator<Binding> iterKeys = partitionKeys.iterator() ;
+            try {
+                while ( iter.hasNext() )
+                {
+                    if ( cancelled )
+                        throw new QueryCancelledException() ;
+                    Binding b = iter.next() ;
+                    Binding key = iterKeys.next() ;
+                    Accumulator[] accs = groups.get(key) ;
+                    if ( accs == null )
+                    {
+                        accs = new Accumulator[N] ;
+                        for ( int i = 0 ; i < N ; i++ )
+                            accs[i] = aggregators.get(i).getAggregator().createAccumulator() ;
+                        groups.put(key, accs) ;
+                        if ( groups.size() > threshold && level < MaxDepth )
+                        {
+                            tooMany = true ;
+                            break ;
+                        }
+                    }
+                    for ( Accumulator acc : accs )
+                        acc.accumulate(b, execCxt) ;
+                }
+            } finally { Iter.close(iter) ; Iter.close(iterKeys) ; }
+
+            if ( tooMany )
+            {
+                groups = null ;
+                return repartition(partition, partitionKeys, aggregators, execCxt, level+1) ;
+            }
+            partition.close() ;
+            partitionKeys.close() ;
+
+            List<Binding> results = new ArrayList<>(groups.size()) ;
+            for ( Map.Entry<Binding, Accumulator[]> e : groups.entrySet() )
+            {
+                if ( N == 0 )
+                {
+                    results.add(e.getKey()) ;
+                    continue ;
+                }
+                BindingMap b = BindingFactory.create(e.getKey()) ;
+                Accumulator[] accs = e.getValue() ;
+                for ( int i = 0 ; i < N ; i++ )
+                {
+                    Var v = aggregators.get(i).getVar() ;
+                    NodeValue value = accs[i].getValue() ;
+                    if ( v != null && value != null )
+                        b.add(v, value.asNode()) ;
+                }
+                results.add(b) ;
+            }
+            return results.iterator() ;
+        }
+
+        /** Split a partition with too many groups, with a different hash, and aggregate
+         *  the parts one at a time, as the results are read. */
+        private Iterator<Binding> repartition(DataBag<Binding> partition, DataBag<Binding> partitionKeys,
+                                              final List<ExprAggregator> aggregators, final ExecutionContext execCxt,
+                                              final int level)
+        {
+            int N = Fanout ;
+            ThresholdPolicy<Binding> policy = ThresholdPolicyFactory.policyFromContext(execCxt.getContext()) ;
+            final List<DataBag<Binding>> parts = newBags(N, policy) ;
+            final List<DataBag<Binding>> partKeys = newBags(N, policy) ;
+            Iterator<Binding> iter = partition.iterator() ;
+            Iterator<Binding> iterKeys = partitionKeys.iterator() ;
+            try {
+                while ( iter.hasNext() )
+                {
+                    if ( cancelled )
+                        throw new QueryCancelledException() ;
+                    Binding b = iter.next() ;
+                    Binding key = iterKeys.next() ;
+                    int idx = partition(key, N, level) ;
+                    parts.get(idx).add(b) ;
+                    partKeys.get(idx).add(key) ;
+                }
+            } finally { Iter.close(iter) ; Iter.close(iterKeys) ; }
+            partition.close() ;
+            partitionKeys.close() ;
+
+            IteratorConcat<Binding> results = new IteratorConcat<>() ;
+            for ( int i = 0 ; i < N ; i++ )
+            {
+                final int idx = i ;
+                results.add(new IteratorDelayedInitialization<Binding>() {
+                    @Override
+                    protected Iterator<Binding> initializeIterator()
+                    {
+                        return aggregate(parts.get(idx), partKeys.get(idx), aggregators, execCxt, level) ;
+                    }
+                }) ;
+            }
+            return results ;
+        }
+
+        // Mix the bits, differently at each level, so partitions are not the same
+        // as hash table buckets or the partitions of the level before.
+        private int partition(Binding key, int N, int level)
+        {
+            int h = key.hashCode() + level * 0x9E3779B9 ;
+            h ^= h >>> 16 ;
+            h *= 0x85EBCA6B ;
+            h ^= h >>> 13 ;
+            h *= 0xC2B2AE35 ;
+            h ^= h >>> 16 ;
+            return ( h & 0x7FFFFFFF ) % N ;
+        }
+
+        // No rows to group : no result rows if there are no aggregators,
+        // else one row with the value of each aggregator for no rows.
+        private Iterator<Binding> empty()
+        {
+            if ( aggregators == null || aggregators.isEmpty() )
+                return Iter.nullIterator() ;
+            BindingMap binding = BindingFactory.create() ;
+            for ( ExprAggregator agg : aggregators )
+            {
+                Node value = agg.getAggregator().getValueEmpty() ;
+                if ( value != null )
+                    binding.add(agg.getVar(), value) ;
+            }
+            return Iter.singletonIter((Binding)binding) ;
+        }
+    }
+}
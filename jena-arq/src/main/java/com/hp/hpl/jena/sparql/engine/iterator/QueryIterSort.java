@@ -18,28 +18,46 @@
 
 package com.hp.hpl.jena.sparql.engine.iterator;
 
+import java.util.ArrayList ;
 import java.util.Comparator ;
 import java.util.Iterator ;
 import java.util.List ;
+import java.util.concurrent.ForkJoinPool ;
+import java.util.concurrent.ForkJoinWorkerThread ;
 
 import org.apache.jena.atlas.data.BagFactory ;
 import org.apache.jena.atlas.data.SortedDataBag ;
 import org.apache.jena.atlas.data.ThresholdPolicy ;
 import org.apache.jena.atlas.data.ThresholdPolicyFactory ;
+import org.apache.jena.atlas.iterator.Iter ;
 import org.apache.jena.atlas.iterator.IteratorDelayedInitialization ;
+import org.apache.jena.atlas.iterator.Transform ;
 import org.apache.jena.atlas.lib.Closeable ;
+import org.apache.jena.atlas.logging.Log ;
 import org.apache.jena.riot.system.SerializationFactoryFinder ;
 
+import com.hp.hpl.jena.query.ARQ ;
 import com.hp.hpl.jena.query.QueryCancelledException ;
 import com.hp.hpl.jena.query.SortCondition ;
+import com.hp.hpl.jena.sparql.ARQConstants ;
+import com.hp.hpl.jena.sparql.core.Var ;
 import com.hp.hpl.jena.sparql.engine.ExecutionContext ;
 import com.hp.hpl.jena.sparql.engine.QueryIterator ;
 import com.hp.hpl.jena.sparql.engine.binding.Binding ;
 import com.hp.hpl.jena.sparql.engine.binding.BindingComparator ;
+import com.hp.hpl.jena.sparql.engine.binding.BindingFactory ;
+import com.hp.hpl.jena.sparql.engine.binding.BindingMap ;
+import com.hp.hpl.jena.sparql.expr.ExprEvalException ;
+import com.hp.hpl.jena.sparql.expr.ExprVar ;
+import com.hp.hpl.jena.sparql.expr.NodeValue ;
+import com.hp.hpl.jena.sparql.expr.VariableNotBoundException ;
 
 /** 
  * Sort a query iterator.  The sort will happen in-memory unless the size of the
  * iterator exceeds a configurable threshold. In that case, a disk sort is used.
+ * If {@link ARQ#sortThreads} is more than one, and the order is given by a {@link BindingComparator},
+ * sorting and spilling are done in parallel in a shared pool. The sort conditions are then
+ * evaluated once for each row, as it is added, so comparisons in the pool do not evaluate expressions.
  * 
  * @see SortedDataBag
  */
@@ -48,6 +66,7 @@ public class QueryIterSort extends QueryIterPlainWrapper
 {
 	private final QueryIterator embeddedIterator;      // Keep a record of the underlying source for .cancel.
 	final SortedDataBag<Binding> db;
+	private final SortKeys sortKeys;
 	
     public QueryIterSort(QueryIterator qIter, List<SortCondition> conditions, ExecutionContext context)
     {
@@ -60,11 +79,53 @@ public class QueryIterSort extends QueryIterPlainWrapper
         this.embeddedIterator = qIter ;
         
         ThresholdPolicy<Binding> policy = ThresholdPolicyFactory.policyFromContext(context.getContext());
-        this.db = BagFactory.newSortedBag(policy, SerializationFactoryFinder.bindingSerializationFactory(), comparator);
+        if ( parallel(context) && comparator instanceof BindingComparator )
+        {
+            this.sortKeys = new SortKeys(((BindingComparator)comparator).getConditions(), context) ;
+            this.db = BagFactory.newSortedBag(policy, SerializationFactoryFinder.bindingSerializationFactory(), sortKeys.comparator, pool());
+        }
+        else
+        {
+            this.sortKeys = null ;
+            this.db = BagFactory.newSortedBag(policy, SerializationFactoryFinder.bindingSerializationFactory(), comparator);
+        }
         
         this.setIterator(new SortedBindingIterator(qIter));
     }
 
+    private static boolean parallel(ExecutionContext context)
+    {
+        Object x = context.getContext().get(ARQ.sortThreads) ;
+        int threads = 1 ;
+        if ( x instanceof Number )
+            threads = ((Number)x).intValue() ;
+        else if ( x instanceof String )
+            threads = Integer.parseInt((String)x) ;
+        return threads > 1 ;
+    }
+
+    private static ForkJoinPool pool = null ;
+
+    /** The pool shared by all parallel sorts : daemon threads, one per processor. */
+    private static synchronized ForkJoinPool pool()
+    {
+        if ( pool == null )
+        {
+            ForkJoinPool.ForkJoinWorkerThreadFactory factory = new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+                @Override
+                public ForkJoinWorkerThread newThread(ForkJoinPool forkJoinPool)
+                {
+                    ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool) ;
+                    t.setName("ARQ-Sort-"+t.getPoolIndex()) ;
+                    t.setDaemon(true) ;
+                    return t ;
+                }
+            } ;
+            pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), factory, null, false) ;
+        }
+        return pool ;
+    }
+
     @Override
     public void requestCancel()
     {
@@ -86,7 +147,7 @@ public class QueryIterSort extends QueryIterPlainWrapper
         {
             try
             {
-                db.addAll(qIter);
+                db.addAll(sortKeys == null ? qIter : sortKeys.addKeys(qIter));
             }
             // Should we catch other exceptions too?  Theoretically the user should be using this
             // iterator in a try/finally block, and thus will call close() themselves. 
@@ -96,7 +157,7 @@ public class QueryIterSort extends QueryIterPlainWrapper
                 throw e;
             }
             
-            return db.iterator();
+            return sortKeys == null ? db.iterator() : sortKeys.removeKeys(db.iterator());
         }
 
         @Override
@@ -105,5 +166,93 @@ public class QueryIterSort extends QueryIterPlainWrapper
             db.close();
         }
     }
-    
+
+    /**
+     * The values of the sort conditions, calculated for each row as it is added, and
+     * kept in the row as generated variables. The rows are then sorted on these variables.
+     */
+    private static class SortKeys
+    {
+        private final List<SortCondition> conditions ;
+        private final Var[] keyVars ;
+        private final ExecutionContext execCxt ;
+        final BindingComparator comparator ;
+
+        SortKeys(List<SortCondition> conditions, ExecutionContext execCxt)
+        {
+            this.conditions = conditions ;
+            this.execCxt = execCxt ;
+            this.keyVars = new Var[conditions.size()] ;
+            List<SortCondition> keyConditions = new ArrayList<>(conditions.size()) ;
+            for ( int i = 0 ; i < keyVars.length ; i++ )
+            {
+                keyVars[i] = Var.alloc(ARQConstants.allocVarMarker+"sort"+i) ;
+                keyConditions.add(new SortCondition(new ExprVar(keyVars[i]), conditions.get(i).getDirection())) ;
+            }
+            this.comparator = new BindingComparator(keyConditions) ;
+        }
+
+        Iterator<Binding> addKeys(Iterator<Binding> iter)
+        {
+            return Iter.map(iter, new Transform<Binding, Binding>() {
+                @Override
+                public Binding convert(Binding binding)
+                {
+                    // A copy : the row may be lazy (e.g. from TDB) and is compared on other threads.
+                    BindingMap b = BindingFactory.create() ;
+                    for ( Iterator<Var> vars = binding.vars() ; vars.hasNext() ; )
+                    {
+                        Var v = vars.next() ;
+                        b.add(v, binding.get(v)) ;
+                    }
+                    for ( int i = 0 ; i < keyVars.length ; i++ )
+                    {
+                        NodeValue nv = eval(conditions.get(i), binding) ;
+                        if ( nv != null )
+                            b.add(keyVars[i], nv.asNode()) ;
+                    }
+                    return b ;
+                }
+            }) ;
+        }
+
+        Iterator<Binding> removeKeys(Iterator<Binding> iter)
+        {
+            return Iter.map(iter, new Transform<Binding, Binding>() {
+                @Override
+                public Binding convert(Binding binding)
+                {
+                    BindingMap b = BindingFactory.create() ;
+                    for ( Iterator<Var> vars = binding.vars() ; vars.hasNext() ; )
+                    {
+                        Var v = vars.next() ;
+                        if ( ! isKey(v) )
+                            b.add(v, binding.get(v)) ;
+                    }
+                    return b ;
+                }
+            }) ;
+        }
+
+        private boolean isKey(Var v)
+        {
+            for ( Var k : keyVars )
+                if ( k.equals(v) )
+                    return true ;
+            return false ;
+        }
+
+        // As BindingComparator : unbound and errors are no value.
+        private NodeValue eval(SortCondition condition, Binding binding)
+        {
+            try {
+                return condition.getExpression().eval(binding, execCxt) ;
+            } catch (VariableNotBoundException ex) {
+                return null ;
+            } catch (ExprEvalException ex) {
+                Log.warn(this, ex.getMessage()) ;
+                return null ;
+            }
+        }
+    }
 }
@@ -27,6 +27,7 @@ import org.apache.jena.atlas.iterator.Iter ;
 import org.apache.jena.atlas.logging.Log ;
 
 import com.hp.hpl.jena.graph.Node ;
+import com.hp.hpl.jena.graph.Triple ;
 import com.hp.hpl.jena.query.ARQ ;
 import com.hp.hpl.jena.query.QueryExecException ;
 import com.hp.hpl.jena.sparql.ARQNotImplemented ;
@@ -41,6 +42,9 @@ import com.hp.hpl.jena.sparql.engine.QueryIterator ;
 import com.hp.hpl.jena.sparql.engine.binding.Binding ;
 import com.hp.hpl.jena.sparql.engine.iterator.* ;
 import com.hp.hpl.jena.sparql.engine.main.iterator.QueryIterGraph ;
+import com.hp.hpl.jena.sparql.engine.main.iterator.QueryIterHashJoin ;
+import com.hp.hpl.jena.sparql.engine.main.iterator.QueryIterHashJoinBase ;
+import com.hp.hpl.jena.sparql.engine.main.iterator.QueryIterHashLeftJoin ;
 import com.hp.hpl.jena.sparql.engine.main.iterator.QueryIterJoin ;
 import com.hp.hpl.jena.sparql.engine.main.iterator.QueryIterLeftJoin ;
 import com.hp.hpl.jena.sparql.engine.main.iterator.QueryIterOptionalIndex ;
@@ -102,6 +106,7 @@ public class OpExecutor
     protected static final int     TOP_LEVEL  = 0 ;
     protected int                  level      = TOP_LEVEL - 1 ;
     private final boolean          hideBNodeVars ;
+    private final boolean          batchExecution ;
     protected final StageGenerator stageGenerator ;
 
     protected OpExecutor(ExecutionContext execCxt)
@@ -109,6 +114,7 @@ public class OpExecutor
         this.execCxt = execCxt ;
         this.dispatcher = new ExecutionDispatch(this) ;
         this.hideBNodeVars = execCxt.getContext().isTrue(ARQ.hideNonDistiguishedVariables) ;
+        this.batchExecution = execCxt.getContext().isTrue(ARQ.batchExecution) ;
         this.stageGenerator = StageBuilder.chooseStageGenerator(execCxt.getContext()) ;
     }
 
@@ -131,12 +137,32 @@ public class OpExecutor
 
     protected QueryIterator execute(OpBGP opBGP, QueryIterator input) {
         BasicPattern pattern = opBGP.getPattern() ;
-        QueryIterator qIter = stageGenerator.execute(pattern, input, execCxt) ;
+        QueryIterator qIter ;
+        if ( batchScan(pattern, input) )
+            qIter = scan(pattern, input) ;
+        else
+            qIter = stageGenerator.execute(pattern, input, execCxt) ;
         if (hideBNodeVars)
             qIter = new QueryIterDistinguishedVars(qIter, execCxt) ;
         return qIter ;
     }
 
+    // One triple pattern, at the start of execution, on a graph without its own stage generator.
+    private boolean batchScan(BasicPattern pattern, QueryIterator input) {
+        return batchExecution && pattern.size() == 1 && input instanceof QueryIterRoot
+               && stageGenerator instanceof StageGeneratorGeneric ;
+    }
+
+    private QueryIterator scan(BasicPattern pattern, QueryIterator input) {
+        Binding root = input.nextBinding() ;
+        input.close() ;
+        if ( ! root.isEmpty() )
+            // Initial bindings.
+            return stageGenerator.execute(pattern, QueryIterRoot.create(root, execCxt), execCxt) ;
+        Triple triple = pattern.get(0) ;
+        return new QueryIterBatchTriplePattern(triple, execCxt) ;
+    }
+
     protected QueryIterator execute(OpTriple opTriple, QueryIterator input) {
         return execute(opTriple.asBGP(), input) ;
     }
@@ -224,6 +250,9 @@ public class OpExecutor
         }
         QueryIterator left = exec(opJoin.getLeft(), input) ;
         QueryIterator right = exec(opJoin.getRight(), root()) ;
+        Set<Var> joinVars = joinVars(opJoin.getLeft(), opJoin.getRight()) ;
+        if ( joinVars != null )
+            return new QueryIterHashJoin(left, right, joinVars, execCxt) ;
         QueryIterator qIter = new QueryIterJoin(left, right, execCxt) ;
         return qIter ;
     }
@@ -242,10 +271,26 @@ public class OpExecutor
     protected QueryIterator execute(OpLeftJoin opLeftJoin, QueryIterator input) {
         QueryIterator left = exec(opLeftJoin.getLeft(), input) ;
         QueryIterator right = exec(opLeftJoin.getRight(), root()) ;
+        Set<Var> joinVars = joinVars(opLeftJoin.getLeft(), opLeftJoin.getRight()) ;
+        if ( joinVars != null )
+            return new QueryIterHashLeftJoin(left, right, joinVars, opLeftJoin.getExprs(), execCxt) ;
         QueryIterator qIter = new QueryIterLeftJoin(left, right, opLeftJoin.getExprs(), execCxt) ;
         return qIter ;
     }
 
+    /** The variables to hash join on, or null if a hash join is not to be used. */
+    protected Set<Var> joinVars(Op left, Op right) {
+        if ( ! execCxt.getContext().isTrueOrUndef(ARQ.hashJoin) )
+            return null ;
+        // A few rows known in advance : looping over them costs less than hashing every row.
+        if ( right instanceof OpTable && ((OpTable)right).getTable().size() <= QueryIterHashJoinBase.HashJoinMinRows )
+            return null ;
+        Set<Var> joinVars = OpVars.visibleVars(left) ;
+        joinVars.retainAll(OpVars.visibleVars(right)) ;
+        // No shared variables : a cross product.
+        return joinVars.isEmpty() ? null : joinVars ;
+    }
+
     protected QueryIterator execute(OpConditional opCondition, QueryIterator input) {
         QueryIterator left = exec(opCondition.getLeft(), input) ;
         QueryIterator qIter = new QueryIterOptionalIndex(left, opCondition.getRight(), execCxt) ;
@@ -307,6 +352,12 @@ public class OpExecutor
         Op base = opFilter.getSubOp() ;
         QueryIterator qIter = exec(base, input) ;
 
+        if ( qIter instanceof QueryIterBatch ) {
+            QueryIterBatch bIter = (QueryIterBatch)qIter ;
+            for (Expr expr : exprs)
+                bIter = new QueryIterBatchFilter(bIter, expr, execCxt) ;
+            return bIter ;
+        }
         for (Expr expr : exprs)
             qIter = new QueryIterFilterExpr(qIter, expr, execCxt) ;
         return qIter ;
@@ -396,6 +447,8 @@ public class OpExecutor
 
         if (input instanceof QueryIterRoot) {
             QueryIterator qIter = exec(opProject.getSubOp(), input) ;
+            if ( qIter instanceof QueryIterBatch )
+                return new QueryIterBatchProject((QueryIterBatch)qIter, opProject.getVars(), execCxt) ;
             qIter = new QueryIterProject(qIter, opProject.getVars(), execCxt) ;
             return qIter ;
         }
@@ -406,12 +459,16 @@ public class OpExecutor
 
     protected QueryIterator execute(OpSlice opSlice, QueryIterator input) {
         QueryIterator qIter = exec(opSlice.getSubOp(), input) ;
+        if ( qIter instanceof QueryIterBatch )
+            return new QueryIterBatchSlice((QueryIterBatch)qIter, opSlice.getStart(), opSlice.getLength(), execCxt) ;
         qIter = new QueryIterSlice(qIter, opSlice.getStart(), opSlice.getLength(), execCxt) ;
         return qIter ;
     }
 
     protected QueryIterator execute(OpGroup opGroup, QueryIterator input) {
         QueryIterator qIter = exec(opGroup.getSubOp(), input) ;
+        if ( QueryIterGroupPartitioned.applies(execCxt) )
+            return new QueryIterGroupPartitioned(qIter, opGroup.getGroupVars(), opGroup.getAggregators(), execCxt) ;
         qIter = new QueryIterGroup(qIter, opGroup.getGroupVars(), opGroup.getAggregators(), execCxt) ;
         return qIter ;
     }
@@ -439,6 +496,8 @@ public class OpExecutor
         // the query so we can use QueryIterAssign knowing that it behaves
         // the same as extend. The boolean should only be a check.
         QueryIterator qIter = exec(opExtend.getSubOp(), input) ;
+        if ( qIter instanceof QueryIterBatch )
+            return new QueryIterBatchExtend((QueryIterBatch)qIter, opExtend.getVarExprList(), execCxt) ;
         qIter = new QueryIterAssign(qIter, opExtend.getVarExprList(), execCxt, true) ;
         return qIter ;
     }
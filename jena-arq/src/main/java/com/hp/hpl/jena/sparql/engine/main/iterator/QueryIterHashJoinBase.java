@@ -0,0 +1,518 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hp.hpl.jena.sparql.engine.main.iterator;
+
+import java.util.* ;
+
+import org.apache.jena.atlas.data.BagFactory ;
+import org.apache.jena.atlas.data.DataBag ;
+import org.apache.jena.atlas.data.ThresholdPolicy ;
+import org.apache.jena.atlas.data.ThresholdPolicyFactory ;
+import org.apache.jena.atlas.iterator.Iter ;
+import org.apache.jena.atlas.iterator.IteratorConcat ;
+import org.apache.jena.atlas.iterator.IteratorDelayedInitialization ;
+import org.apache.jena.atlas.iterator.IteratorSlotted ;
+import org.apache.jena.riot.system.SerializationFactoryFinder ;
+
+import com.hp.hpl.jena.graph.Node ;
+import com.hp.hpl.jena.query.ARQ ;
+import com.hp.hpl.jena.sparql.algebra.Algebra ;
+import com.hp.hpl.jena.sparql.algebra.JoinType ;
+import com.hp.hpl.jena.sparql.core.Var ;
+import com.hp.hpl.jena.sparql.engine.ExecutionContext ;
+import com.hp.hpl.jena.sparql.engine.QueryIterator ;
+import com.hp.hpl.jena.sparql.engine.binding.Binding ;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIter ;
+import com.hp.hpl.jena.sparql.expr.ExprList ;
+
+/** Join or LeftJoin by building a hash table of the right hand side, keyed by
+ *  the values of the join variables, then streaming the left hand side through it.
+ *  <p>
+ *  Rows that do not bind all the join variables (e.g. from OPTIONAL) are compatible
+ *  with rows of any key so they are kept aside and tried with every row of the other side.
+ *  <p>
+ *  If the right hand side is bigger than the {@link ARQ#spillToDiskThreshold},
+ *  both sides are split into partitions by hash of the key, and written to disk
+ *  once, between them, they pass the threshold. The partitions are then joined one at a time;
+ *  a partition still too big is split again, and one that cannot be split is joined a block
+ *  of left rows at a time with one pass over the right rows for each block.
+ */
+public abstract class QueryIterHashJoinBase extends QueryIter
+{
+    /** Number of partitions when the right hand side is too big to hold in memory */
+    public static int SpillPartitions = 16 ;
+
+    /** How many times a partition that is still too big is split again */
+    public static int MaxRepartitionDepth = 3 ;
+
+    /** A right hand side table of no more rows than this is joined by looping over the rows, not hashed */
+    public static int HashJoinMinRows = 8 ;
+
+    private final QueryIterator left ;
+    private final QueryIterator right ;
+    private final Var[] joinVars ;
+    private final JoinType joinType ;
+    private final ExprList exprs ;
+    private final List<DataBag<Binding>> bags = new ArrayList<>() ;
+    private Iterator<Binding> results = null ;
+    private long threshold ;
+
+    protected QueryIterHashJoinBase(QueryIterator left, QueryIterator right, Collection<Var> joinVars,
+                                    JoinType joinType, ExprList exprs, ExecutionContext execCxt)
+    {
+        super(execCxt) ;
+        this.left = left ;
+        this.right = right ;
+        this.joinVars = joinVars.toArray(new Var[joinVars.size()]) ;
+        this.joinType = joinType ;
+        this.exprs = exprs ;
+    }
+
+    @Override
+    protected boolean hasNextBinding()
+    {
+        if ( results == null )
+            results = build() ;
+        return results.hasNext() ;
+    }
+
+    @Override
+    protected Binding moveToNextBinding()
+    {
+        return results.next() ;
+    }
+
+    @Override
+    protected void closeIterator()
+    {
+        left.close() ;
+        right.close() ;
+        Iter.close(results) ;
+        for ( DataBag<Binding> bag : bags )
+            bag.close() ;
+        bags.clear() ;
+    }
+
+    @Override
+    protected void requestCancel()
+    {
+        left.cancel() ;
+        right.cancel() ;
+    }
+
+    // Build phase : the right hand side into a hash table, unless it is too big.
+    private Iterator<Binding> build()
+    {
+        ThresholdPolicy<Binding> policy = ThresholdPolicyFactory.policyFromContext(getExecContext().getContext()) ;
+        HashTable table = new HashTable() ;
+        while ( right.hasNext() )
+        {
+            Binding b = right.nextBinding() ;
+            table.add(b) ;
+            policy.increment(b) ;
+            if ( policy.isThresholdExceeded() )
+                return partitioned(table) ;
+        }
+        return new Probe(left, table) ;
+    }
+
+    private Iterator<Binding> partitioned(HashTable table)
+    {
+        threshold = Math.max(1L, (Long)getExecContext().getContext().get(ARQ.spillToDiskThreshold)) ;
+        int N = SpillPartitions ;
+        // One policy for all the bags so no more than the threshold is held in memory,
+        // however many partitions there are.
+        ThresholdPolicy<Binding> policy = ThresholdPolicyFactory.policyFromContext(getExecContext().getContext()) ;
+        List<DataBag<Binding>> rightParts = newBags(N, policy) ;
+        List<DataBag<Binding>> leftParts = newBags(N, policy) ;
+        // Rows without a complete key.
+        DataBag<Binding> rightAny = newBag(policy) ;
+        DataBag<Binding> leftAny = newBag(policy) ;
+
+        for ( List<Binding> bucket : table.buckets.values() )
+            for ( Binding b : bucket )
+                rightParts.get(partition(key(b), N, 0)).add(b) ;
+        for ( Binding b : table.partial )
+            rightAny.add(b) ;
+        table = null ;
+        split(right, rightParts, rightAny, 0) ;
+        split(left, leftParts, leftAny, 0) ;
+
+        // Join partition by partition.
+        IteratorConcat<Binding> iter = new IteratorConcat<>() ;
+        for ( int i = 0 ; i < N ; i++ )
+            iter.add(joinPartition(leftParts.get(i), rightParts.get(i), rightAny, 1)) ;
+        // Left rows without a key can match any right row :
+        // one pass over each right partition for each block of them.
+        List<DataBag<Binding>> everything = new ArrayList<>(rightParts) ;
+        everything.add(rightAny) ;
+        iter.add(new BlockJoin(leftAny, everything)) ;
+        return iter ;
+    }
+
+    /** Join one partition, when it is reached. */
+    private Iterator<Binding> joinPartition(final DataBag<Binding> leftPart, final DataBag<Binding> rightPart,
+                                            final DataBag<Binding> rightAny, final int level)
+    {
+        return new IteratorDelayedInitialization<Binding>() {
+            @Override
+            protected Iterator<Binding> initializeIterator()
+            {
+                if ( leftPart.size() == 0 )
+                    return Iter.nullIterator() ;
+                if ( rightPart.size() + rightAny.size() <= threshold )
+                {
+                    HashTable t = new HashTable() ;
+                    addAll(t, rightPart) ;
+                    addAll(t, rightAny) ;
+                    return new Probe(leftPart.iterator(), t) ;
+                }
+                if ( leftPart.size() > threshold && rightPart.size() > threshold && level <= MaxRepartitionDepth )
+                    return repartition(leftPart, rightPart, rightAny, level) ;
+                return new BlockJoin(leftPart, Arrays.asList(rightPart, rightAny)) ;
+            }
+        } ;
+    }
+
+    /** Split a partition that is still too big, with a different hash. */
+    private Iterator<Binding> repartition(DataBag<Binding> leftPart, DataBag<Binding> rightPart,
+                                          DataBag<Binding> rightAny, int level)
+    {
+        int N = SpillPartitions ;
+        ThresholdPolicy<Binding> policy = ThresholdPolicyFactory.policyFromContext(getExecContext().getContext()) ;
+        List<DataBag<Binding>> rightParts = newBags(N, policy) ;
+        List<DataBag<Binding>> leftParts = newBags(N, policy) ;
+        long rightSize = rightPart.size() ;
+        split(rightPart.iterator(), rightParts, null, level) ;
+        split(leftPart.iterator(), leftParts, null, level) ;
+        leftPart.close() ;
+        // The first level of the right hand side is still needed for the left rows without a key.
+        if ( level > 1 )
+            rightPart.close() ;
+
+        IteratorConcat<Binding> iter = new IteratorConcat<>() ;
+        for ( int i = 0 ; i < N ; i++ )
+        {
+            // All the rows in one partition again : they have the same key, or nearly so.
+            int next = ( rightParts.get(i).size() == rightSize ) ? MaxRepartitionDepth+1 : level+1 ;
+            iter.add(joinPartition(leftParts.get(i), rightParts.get(i), rightAny, next)) ;
+        }
+        return iter ;
+    }
+
+    private void split(Iterator<Binding> rows, List<DataBag<Binding>> parts, DataBag<Binding> any, int level)
+    {
+        while ( rows.hasNext() )
+        {
+            Binding b = rows.next() ;
+            Object k = key(b) ;
+            if ( k == null )
+                any.add(b) ;
+            else
+                parts.get(partition(k, parts.size(), level)).add(b) ;
+        }
+    }
+
+    private static void addAll(HashTable table, DataBag<Binding> bag)
+    {
+        Iterator<Binding> iter = bag.iterator() ;
+        try {
+            while ( iter.hasNext() )
+                table.add(iter.next()) ;
+        } finally { Iter.close(iter) ; }
+    }
+
+    private List<DataBag<Binding>> newBags(int N, ThresholdPolicy<Binding> policy)
+    {
+        List<DataBag<Binding>> x = new ArrayList<>(N) ;
+        for ( int i = 0 ; i < N ; i++ )
+            x.add(newBag(policy)) ;
+        return x ;
+    }
+
+    private DataBag<Binding> newBag(ThresholdPolicy<Binding> policy)
+    {
+        DataBag<Binding> bag = BagFactory.newDefaultBag(policy, SerializationFactoryFinder.bindingSerializationFactory()) ;
+        bags.add(bag) ;
+        return bag ;
+    }
+
+    private static int partition(Object key, int N, int level)
+    {
+        // Mix the bits, differently at each level, so partitions are not the same
+        // as hash table buckets or the partitions of the level before.
+        int h = key.hashCode() + level * 0x9E3779B9 ;
+        h ^= h >>> 16 ;
+        h *= 0x85EBCA6B ;
+        h ^= h >>> 13 ;
+        h *= 0xC2B2AE35 ;
+        h ^= h >>> 16 ;
+        return ( h & 0x7FFFFFFF ) % N ;
+    }
+
+    /** The variables of the join */
+    protected Var[] getJoinVars()
+    {
+        return joinVars ;
+    }
+
+    /** The values of the join variables, or null if not all are bound.
+     *  Rows with equal keys are the rows that may join. */
+    protected Object key(Binding binding)
+    {
+        if ( joinVars.length == 1 )
+            return binding.get(joinVars[0]) ;
+        Node[] values = new Node[joinVars.length] ;
+        for ( int i = 0 ; i < joinVars.length ; i++ )
+        {
+            values[i] = binding.get(joinVars[i]) ;
+            if ( values[i] == null )
+                return null ;
+        }
+        return Arrays.asList(values) ;
+    }
+
+    /** Join two rows, or return null if they are not compatible. */
+    protected Binding merge(Binding left, Binding right)
+    {
+        return Algebra.merge(left, right) ;
+    }
+
+    private interface Lookup
+    {
+        /** The rows that may join with the binding. */
+        Iterator<Binding> candidates(Binding binding) ;
+    }
+
+    private class HashTable implements Lookup
+    {
+        final Map<Object, List<Binding>> buckets = new HashMap<>() ;
+        final List<Binding> partial = new ArrayList<>() ;
+
+        void add(Binding b)
+        {
+            Object k = key(b) ;
+            if ( k == null )
+            {
+                partial.add(b) ;
+                return ;
+            }
+            List<Binding> bucket = buckets.get(k) ;
+            if ( bucket == null )
+            {
+                bucket = new ArrayList<>(2) ;
+                buckets.put(k, bucket) ;
+            }
+            bucket.add(b) ;
+        }
+
+        @Override
+        public Iterator<Binding> candidates(Binding binding)
+        {
+            Object k = key(binding) ;
+            if ( k == null )
+            {
+                // Everything.
+                IteratorConcat<Binding> x = new IteratorConcat<>() ;
+                for ( List<Binding> bucket : buckets.values() )
+                    x.add(bucket.iterator()) ;
+                x.add(partial.iterator()) ;
+                return x ;
+            }
+            List<Binding> bucket = buckets.get(k) ;
+            if ( bucket == null )
+                return partial.iterator() ;
+            if ( partial.isEmpty() )
+                return bucket.iterator() ;
+            return Iter.concat(bucket.iterator(), partial.iterator()) ;
+        }
+    }
+
+    /** Stream rows of the left hand side through a lookup of the right hand side. */
+    private class Probe extends IteratorSlotted<Binding>
+    {
+        private final Iterator<Binding> leftRows ;
+        private final Lookup lookup ;
+        private final LinkedList<Binding> pending = new LinkedList<>() ;
+
+        Probe(Iterator<Binding> leftRows, Lookup lookup)
+        {
+            this.leftRows = leftRows ;
+            this.lookup = lookup ;
+        }
+
+        @Override
+        protected boolean hasMore()
+        {
+            return true ;
+        }
+
+        @Override
+        protected Binding moveToNext()
+        {
+            while ( pending.isEmpty() )
+            {
+                if ( ! leftRows.hasNext() )
+                    return null ;
+                Binding bindingLeft = leftRows.next() ;
+                int count = 0 ;
+                for ( Iterator<Binding> iter = lookup.candidates(bindingLeft) ; iter.hasNext() ; )
+                {
+                    Binding r = merge(bindingLeft, iter.next()) ;
+                    if ( r == null )
+                        continue ;
+                    // This does the conditional part. Theta-join.
+                    if ( exprs == null || exprs.isSatisfied(r, getExecContext()) )
+                    {
+                        count++ ;
+                        pending.add(r) ;
+                    }
+                }
+                if ( count == 0 && joinType == JoinType.LEFT )
+                    pending.add(bindingLeft) ;
+            }
+            return pending.removeFirst() ;
+        }
+    }
+
+    /** Join left rows a block at a time, with one pass over all the right rows for each block. */
+    private class BlockJoin extends IteratorSlotted<Binding>
+    {
+        private final DataBag<Binding> leftRows ;
+        private final List<DataBag<Binding>> rightRows ;
+        private Iterator<Binding> leftIter = null ;
+        private Iterator<Binding> rightIter = null ;
+        private int rightIdx ;
+        // The block, its rows indexed by key, and whether each has matched (for LEFT).
+        private final List<Binding> block = new ArrayList<>() ;
+        private final Map<Object, List<Integer>> blockKeys = new HashMap<>() ;
+        private final List<Integer> blockPartial = new ArrayList<>() ;
+        private boolean[] matched ;
+        private final LinkedList<Binding> pending = new LinkedList<>() ;
+
+        BlockJoin(DataBag<Binding> leftRows, List<DataBag<Binding>> rightRows)
+        {
+            this.leftRows = leftRows ;
+            this.rightRows = rightRows ;
+        }
+
+        @Override
+        protected boolean hasMore()
+        {
+            return true ;
+        }
+
+        @Override
+        protected Binding moveToNext()
+        {
+            while ( pending.isEmpty() )
+            {
+                if ( rightIter == null )
+                {
+                    if ( ! nextBlock() )
+                        return null ;
+                    rightIdx = 0 ;
+                    rightIter = rightRows.get(0).iterator() ;
+                }
+                if ( rightIter.hasNext() )
+                {
+                    Binding bindingRight = rightIter.next() ;
+                    Object k = key(bindingRight) ;
+                    if ( k == null )
+                    {
+                        for ( int i = 0 ; i < block.size() ; i++ )
+                            join(i, bindingRight) ;
+                        continue ;
+                    }
+                    List<Integer> rows = blockKeys.get(k) ;
+                    if ( rows != null )
+                        for ( int i : rows )
+                            join(i, bindingRight) ;
+                    for ( int i : blockPartial )
+                        join(i, bindingRight) ;
+                    continue ;
+                }
+                Iter.close(rightIter) ;
+                rightIdx++ ;
+                if ( rightIdx < rightRows.size() )
+                {
+                    rightIter = rightRows.get(rightIdx).iterator() ;
+                    continue ;
+                }
+                // End of the block.
+                rightIter = null ;
+                if ( joinType == JoinType.LEFT )
+                    for ( int i = 0 ; i < block.size() ; i++ )
+                        if ( ! matched[i] )
+                            pending.add(block.get(i)) ;
+            }
+            return pending.removeFirst() ;
+        }
+
+        private boolean nextBlock()
+        {
+            block.clear() ;
+            blockKeys.clear() ;
+            blockPartial.clear() ;
+            if ( leftIter == null )
+                leftIter = leftRows.iterator() ;
+            while ( block.size() < threshold && leftIter.hasNext() )
+            {
+                Binding b = leftIter.next() ;
+                int idx = block.size() ;
+                block.add(b) ;
+                Object k = key(b) ;
+                if ( k == null )
+                {
+                    blockPartial.add(idx) ;
+                    continue ;
+                }
+                List<Integer> rows = blockKeys.get(k) ;
+                if ( rows == null )
+                {
+                    rows = new ArrayList<>(2) ;
+                    blockKeys.put(k, rows) ;
+                }
+                rows.add(idx) ;
+            }
+            matched = new boolean[block.size()] ;
+            return ! block.isEmpty() ;
+        }
+
+        private void join(int i, Binding bindingRight)
+        {
+            Binding r = merge(block.get(i), bindingRight) ;
+            if ( r == null )
+                return ;
+            if ( exprs == null || exprs.isSatisfied(r, getExecContext()) )
+            {
+                matched[i] = true ;
+                pending.add(r) ;
+            }
+        }
+
+        @Override
+        protected void closeIterator()
+        {
+            Iter.close(leftIter) ;
+            Iter.close(rightIter) ;
+        }
+    }
+}
@@ -31,10 +31,10 @@ import com.hp.hpl.jena.sparql.expr.ExprList ;
 /** Join or LeftJoin by calculating both sides, then doing the join
  *  It usually better to use substitute algorithm (not this
  *  QueryIterator in other words) as that is effectively indexing
- *  from one side into the other. */ 
+ *  from one side into the other.
+ *  When the sides share variables, {@link QueryIterHashJoinBase} is used instead. */ 
 public class QueryIterJoinBase extends QueryIter
 {
-    // This should be converted to a hash or sort-merge join.
     private final QueryIterator left ;
     private final QueryIterator right ;
     private final QueryIterator result ;
@@ -128,6 +128,9 @@ public final class StatsMatcher
         {
             Item elt = list.car() ;
             list = list.cdr();
+            // Selectivity statistics are for StatsSelectivity.
+            if ( elt.isTagged(StatsSelectivity.SELECTIVITY) )
+                continue ;
             onePattern(elt) ;
         }
     }
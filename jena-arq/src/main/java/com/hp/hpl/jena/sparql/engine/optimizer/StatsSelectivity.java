@@ -0,0 +1,242 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hp.hpl.jena.sparql.engine.optimizer;
+
+import java.util.* ;
+
+import org.slf4j.Logger ;
+import org.slf4j.LoggerFactory ;
+
+import com.hp.hpl.jena.graph.Node ;
+import com.hp.hpl.jena.sparql.ARQException ;
+import com.hp.hpl.jena.sparql.sse.Item ;
+import com.hp.hpl.jena.sparql.sse.ItemList ;
+import com.hp.hpl.jena.sparql.sse.SSE ;
+
+/** Selectivity statistics : the <code>selectivity</code> section of a stats file.<pre>(stats
+ *    (meta ...)
+ *    ...
+ *    (selectivity
+ *      (pred &lt;p&gt; (count N) (subjects N) (objects N) (values (&lt;o&gt; N) ...))
+ *      (charset N &lt;p1&gt; &lt;p2&gt; ...)
+ *    )
+ *  )</pre>
+ * For each predicate : the number of triples, the number of distinct subjects and objects,
+ * and the counts for the most common object values.
+ * A <code>charset</code> is a characteristic set : the number of subjects that have
+ * exactly that set of predicates. Characteristic sets of one predicate are not recorded.
+ * <p>
+ * {@link StatsMatcher} skips this section so a stats file with it can be used
+ * for either.
+ */
+public final class StatsSelectivity
+{
+    private static Logger log = LoggerFactory.getLogger(StatsSelectivity.class) ;
+    public static final String SELECTIVITY  = "selectivity" ;
+    public static final String PRED         = "pred" ;
+    public static final String CHARSET      = "charset" ;
+    public static final String SUBJECTS     = "subjects" ;
+    public static final String OBJECTS      = "objects" ;
+    public static final String VALUES       = "values" ;
+
+    /** Statistics for one predicate */
+    public static final class PredicateStats
+    {
+        private final long count ;
+        private final long subjects ;
+        private final long objects ;
+        private final Map<Node, Long> values ;
+        private final long valuesTotal ;
+
+        public PredicateStats(long count, long subjects, long objects, Map<Node, Long> values)
+        {
+            this.count = count ;
+            this.subjects = Math.max(1, subjects) ;
+            this.objects = Math.max(1, objects) ;
+            this.values = values ;
+            long x = 0 ;
+            for ( Long n : values.values() )
+                x += n ;
+            this.valuesTotal = x ;
+        }
+
+        public long getCount()              { return count ; }
+        public long getSubjects()           { return subjects ; }
+        public long getObjects()            { return objects ; }
+        public Map<Node, Long> getValues()  { return values ; }
+
+        /** Average number of triples for a given subject */
+        public double perSubject()          { return (double)count / subjects ; }
+
+        /** Average number of triples for a given object */
+        public double perObject()           { return (double)count / objects ; }
+
+        /** Estimated number of triples with this object value */
+        public double perObject(Node value)
+        {
+            Long n = values.get(value) ;
+            if ( n != null )
+                return n ;
+            if ( values.isEmpty() )
+                return perObject() ;
+            // Not a common value : average over the rest.
+            long rest = objects - values.size() ;
+            if ( rest <= 0 )
+                return 1 ;
+            return Math.max(1, (double)(count - valuesTotal) / rest) ;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("(count %d) (subjects %d) (objects %d) (values %d)", count, subjects, objects, values.size()) ;
+        }
+    }
+
+    private final Map<Node, PredicateStats> predicates = new HashMap<>() ;
+    private final Map<Set<Node>, Long> charsets = new LinkedHashMap<>() ;
+
+    public StatsSelectivity() {}
+
+    public StatsSelectivity(String filename)
+    {
+        this(SSE.readFile(filename)) ;
+    }
+
+    /** Create from a stats item. There need not be a selectivity section. */
+    public StatsSelectivity(Item stats)
+    {
+        if ( stats.isNil() )
+            return ;
+        if ( !stats.isTagged(StatsMatcher.STATS) )
+            throw new ARQException("Not a tagged '"+StatsMatcher.STATS+"'") ;
+        Item section = Item.find(stats.getList(), SELECTIVITY) ;
+        if ( section == null )
+            return ;
+        for ( Item elt : section.getList().cdr() )
+        {
+            if ( elt.isTagged(PRED) )
+                onePredicate(elt.getList()) ;
+            else if ( elt.isTagged(CHARSET) )
+                oneCharset(elt.getList()) ;
+            else
+                log.warn("Not understood: "+elt) ;
+        }
+    }
+
+    // (pred <p> (count N) (subjects N) (objects N) (values (<o> N) ...))
+    private void onePredicate(ItemList list)
+    {
+        Item p = list.get(1) ;
+        if ( !p.isNodeURI() )
+        {
+            log.warn("Not a predicate URI: "+p) ;
+            return ;
+        }
+        ItemList rest = list.cdr().cdr() ;
+        long count = number(rest, StatsMatcher.COUNT) ;
+        long subjects = number(rest, SUBJECTS) ;
+        long objects = number(rest, OBJECTS) ;
+        if ( count < 0 || subjects < 0 || objects < 0 )
+        {
+            log.warn("Incomplete predicate entry: "+p) ;
+            return ;
+        }
+        Map<Node, Long> values = new HashMap<>() ;
+        Item v = Item.find(rest, VALUES) ;
+        if ( v != null )
+        {
+            for ( Item pair : v.getList().cdr() )
+                values.put(pair.getList().get(0).getNode(), pair.getList().get(1).getInteger()) ;
+        }
+        addPredicate(p.getNode(), new PredicateStats(count, subjects, objects, values)) ;
+    }
+
+    // (charset N <p1> <p2> ...)
+    private void oneCharset(ItemList list)
+    {
+        long n = list.get(1).getInteger() ;
+        Set<Node> preds = new HashSet<>() ;
+        for ( Item p : list.cdr().cdr() )
+            preds.add(p.getNode()) ;
+        addCharset(preds, n) ;
+    }
+
+    private static long number(ItemList list, String key)
+    {
+        Item x = Item.find(list, key) ;
+        if ( x == null )
+            return -1 ;
+        return x.getList().get(1).getInteger() ;
+    }
+
+    public void addPredicate(Node predicate, PredicateStats stats)
+    {
+        predicates.put(predicate, stats) ;
+    }
+
+    public void addCharset(Set<Node> predicates, long count)
+    {
+        charsets.put(predicates, count) ;
+    }
+
+    public boolean isEmpty()
+    {
+        return predicates.isEmpty() && charsets.isEmpty() ;
+    }
+
+    /** Statistics for a predicate, or null if not known */
+    public PredicateStats get(Node predicate)
+    {
+        return predicates.get(predicate) ;
+    }
+
+    public Map<Node, PredicateStats> getPredicates()
+    {
+        return Collections.unmodifiableMap(predicates) ;
+    }
+
+    public Map<Set<Node>, Long> getCharacteristicSets()
+    {
+        return Collections.unmodifiableMap(charsets) ;
+    }
+
+    /** Estimate of the number of subjects with all the given predicates (and maybe others),
+     * from the characteristic sets. Returns -1 if there are no characteristic sets.
+     */
+    public double starSubjects(Collection<Node> predicates)
+    {
+        if ( charsets.isEmpty() )
+            return -1 ;
+        long x = 0 ;
+        for ( Map.Entry<Set<Node>, Long> e : charsets.entrySet() )
+        {
+            if ( e.getKey().containsAll(predicates) )
+                x += e.getValue() ;
+        }
+        return x ;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Selectivity: "+predicates.size()+" predicates, "+charsets.size()+" characteristic sets" ;
+    }
+}
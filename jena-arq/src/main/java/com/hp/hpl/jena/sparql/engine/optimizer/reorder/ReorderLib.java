@@ -20,6 +20,9 @@ package com.hp.hpl.jena.sparql.engine.optimizer.reorder ;
 
 import com.hp.hpl.jena.sparql.core.BasicPattern ;
 import com.hp.hpl.jena.sparql.engine.optimizer.StatsMatcher ;
+import com.hp.hpl.jena.sparql.engine.optimizer.StatsSelectivity ;
+import com.hp.hpl.jena.sparql.sse.Item ;
+import com.hp.hpl.jena.sparql.sse.SSE ;
 
 public class ReorderLib
 {
@@ -76,4 +79,23 @@ public class ReorderLib
         return new ReorderWeighted(stats) ;
     }
 
+    /** Reorder by the selectivity statistics in a stats file, if any,
+     * else by the weights as {@link #weighted(String)}.
+     */
+    public static ReorderTransformation selectivity(String filename) {
+        Item item = SSE.readFile(filename) ;
+        if ( item.isNil() )
+            return weighted(filename) ;
+        return selectivity(item) ;
+    }
+
+    /** Reorder by the selectivity statistics in a stats item, if any, else by the weights. */
+    public static ReorderTransformation selectivity(Item item) {
+        StatsMatcher stats = new StatsMatcher(item) ;
+        StatsSelectivity selectivity = new StatsSelectivity(item) ;
+        if ( selectivity.isEmpty() )
+            return new ReorderWeighted(stats) ;
+        return new ReorderSelectivity(stats, selectivity) ;
+    }
+
 }
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hp.hpl.jena.sparql.engine.optimizer.reorder;
+
+import java.util.HashSet ;
+import java.util.List ;
+import java.util.Set ;
+
+import com.hp.hpl.jena.graph.Node ;
+import com.hp.hpl.jena.sparql.engine.optimizer.StatsMatcher ;
+import com.hp.hpl.jena.sparql.engine.optimizer.StatsSelectivity ;
+import com.hp.hpl.jena.sparql.engine.optimizer.StatsSelectivity.PredicateStats ;
+import com.hp.hpl.jena.sparql.sse.Item ;
+
+/** Reorder by estimated cardinality from selectivity statistics ({@link StatsSelectivity}).
+ * <p>
+ * For a pattern with a fixed predicate, the estimate is the number of triples for the predicate,
+ * divided by the number of distinct subjects if the subject is bound, and by the number of
+ * distinct objects if the object is bound. A common object value uses its own count.
+ * A subject variable used with several fixed predicates (a "star") is limited by the number
+ * of subjects that have all those predicates, from the characteristic sets.
+ * <p>
+ * Patterns not covered by the selectivity statistics are weighted by the {@link StatsMatcher}.
+ */
+public final class ReorderSelectivity extends ReorderTransformationSubstitution
+{
+    private final StatsMatcher stats ;
+    private final StatsSelectivity selectivity ;
+
+    public ReorderSelectivity(StatsMatcher stats, StatsSelectivity selectivity)
+    {
+        this.stats = stats ;
+        this.selectivity = selectivity ;
+    }
+
+    @Override
+    protected double weight(PatternTriple pt)
+    {
+        PredicateStats ps = predicateStats(pt) ;
+        if ( ps == null )
+            return stats.match(pt) ;
+        boolean subjBound = isBound(pt.subject) ;
+        boolean objBound = isBound(pt.object) ;
+        if ( subjBound && objBound )
+            return 1 ;
+        if ( subjBound )
+            return ps.perSubject() ;
+        if ( objBound )
+        {
+            if ( pt.object.isNode() )
+                return ps.perObject(pt.object.getNode()) ;
+            return ps.perObject() ;
+        }
+        return ps.getCount() ;
+    }
+
+    /** As the default choice but with the star estimate from the characteristic sets. */
+    @Override
+    protected int chooseNext(List<PatternTriple> pTriples)
+    {
+        double min = Double.MAX_VALUE ;
+        int idx = -1 ;
+        for ( int i = 0 ; i < pTriples.size() ; i++ )
+        {
+            PatternTriple pt = pTriples.get(i) ;
+            if ( pt == null )
+                continue ;
+            double x = weight(pt) ;
+            if ( x < 0 )
+            {
+                // No knowledge : goes last.
+                if ( idx == -1 )
+                    idx = i ;
+                continue ;
+            }
+            x = Math.min(x, starWeight(pt, pTriples)) ;
+            if ( x < min )
+            {
+                min = x ;
+                idx = i ;
+            }
+        }
+        return idx ;
+    }
+
+    private double starWeight(PatternTriple pt, List<PatternTriple> pTriples)
+    {
+        PredicateStats ps = predicateStats(pt) ;
+        if ( ps == null || isBound(pt.subject) || isBound(pt.object) )
+            return Double.MAX_VALUE ;
+        Set<Node> star = new HashSet<>() ;
+        for ( PatternTriple other : pTriples )
+        {
+            if ( other == null || !other.subject.equals(pt.subject) )
+                continue ;
+            if ( other.predicate.isNodeURI() )
+                star.add(other.predicate.getNode()) ;
+        }
+        if ( star.size() < 2 )
+            return Double.MAX_VALUE ;
+        double n = selectivity.starSubjects(star) ;
+        if ( n < 0 )
+            return Double.MAX_VALUE ;
+        return n * ps.perSubject() ;
+    }
+
+    private PredicateStats predicateStats(PatternTriple pt)
+    {
+        if ( !pt.predicate.isNodeURI() )
+            return null ;
+        return selectivity.get(pt.predicate.getNode()) ;
+    }
+
+    // A constant, or a variable bound by an earlier pattern.
+    private static boolean isBound(Item item)
+    {
+        if ( item.equals(PatternElements.TERM) )
+            return true ;
+        return item.isNode() && item.getNode().isConcrete() ;
+    }
+}
@@ -19,6 +19,7 @@
 package org.apache.jena.atlas.data;
 
 import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
 
 
 /**
@@ -50,6 +51,14 @@ public class BagFactory
         return new SortedDataBag<>(policy, serializerFactory, comparator);
     }
     
+    /**
+     * Get a sorted data bag that sorts and spills using a pool of threads.
+     */
+    public static <T> SortedDataBag<T> newSortedBag(ThresholdPolicy<T> policy, SerializationFactory<T> serializerFactory, Comparator<T> comparator, ForkJoinPool pool)
+    {
+        return new SortedDataBag<>(policy, serializerFactory, comparator, pool);
+    }
+    
     /**
      * Get a distinct data bag.
      */
@@ -159,7 +159,8 @@ public class DefaultDataBag<E> extends AbstractDataBag<E>
         closeWriter();
         
         // Create a new reader
-        if (policy.isThresholdExceeded())
+        // (The threshold may have been reached by the last item added, with nothing spilled yet)
+        if (spilled)
         {
             File spillFile = getSpillFiles().get(0);
             
@@ -30,12 +30,18 @@ import java.util.Iterator ;
 import java.util.List ;
 import java.util.NoSuchElementException ;
 import java.util.PriorityQueue ;
+import java.util.concurrent.ExecutionException ;
+import java.util.concurrent.ForkJoinPool ;
+import java.util.concurrent.ForkJoinTask ;
+import java.util.concurrent.Future ;
+import java.util.concurrent.RecursiveAction ;
 
 import org.apache.jena.atlas.AtlasException ;
 import org.apache.jena.atlas.iterator.Iter ;
 import org.apache.jena.atlas.iterator.IteratorResourceClosing ;
 import org.apache.jena.atlas.lib.Closeable ;
 import org.apache.jena.atlas.lib.Sink ;
+import org.apache.jena.atlas.logging.Log ;
 
 /**
  * <p>
@@ -59,6 +65,14 @@ import org.apache.jena.atlas.lib.Sink ;
  * data is sorted and written to disk.  An iterator will read in each file and perform a merge-sort as
  * the results are returned.
  * </p>
+ * <p>
+ * If the bag is created with a {@link ForkJoinPool}, each spill is sorted by a parallel merge sort
+ * in the pool, and written to disk in the background while items continue to be added.
+ * At most one spill is in progress at a time, so no more than twice the threshold is held in memory.
+ * The final in-memory sort before iteration also uses the pool.
+ * The comparator must then be safe to call from several threads: it should not, for example,
+ * evaluate expressions against a shared execution context.
+ * </p>
  */
 public class SortedDataBag<E> extends AbstractDataBag<E>
 {
@@ -67,19 +81,38 @@ public class SortedDataBag<E> extends AbstractDataBag<E>
      */
     protected static int MAX_SPILL_FILES = 100 ;
     
+    /**
+     * Below this number of items, the parallel sort sorts on a single thread.
+     */
+    protected static int PARALLEL_SORT_THRESHOLD = 8192 ;
+    
     protected final ThresholdPolicy<E> policy;
     protected final SerializationFactory<E> serializationFactory;
     protected final Comparator<? super E> comparator;
+    protected final ForkJoinPool pool;
+    
+    // The spill being written in the background, if any.
+    private Future<?> pendingSpill = null;
     
     protected boolean finishedAdding = false;
     protected boolean spilled = false;
     protected boolean closed = false;
     
     public SortedDataBag(ThresholdPolicy<E> policy, SerializationFactory<E> serializerFactory, Comparator<? super E> comparator)
+    {
+        this(policy, serializerFactory, comparator, null);
+    }
+    
+    /**
+     * Create a sorted data bag that sorts, and writes spill files, using the given pool.
+     * If the pool is null, all the work is done on the calling thread.
+     */
+    public SortedDataBag(ThresholdPolicy<E> policy, SerializationFactory<E> serializerFactory, Comparator<? super E> comparator, ForkJoinPool pool)
     {
         this.policy = policy;
         this.serializationFactory = serializerFactory;
         this.comparator = comparator;
+        this.pool = pool;
     }
     
     protected void checkClosed()
@@ -118,13 +151,12 @@ public class SortedDataBag<E> extends AbstractDataBag<E>
         }
     }
     
-    @SuppressWarnings({ "unchecked", "rawtypes" })
     protected void spill()
     {
         // Make sure we have something to spill.
         if (memory.size() > 0)
         {
-            OutputStream out;
+            final OutputStream out;
             try
             {
                 out = getSpillStream();
@@ -134,25 +166,27 @@ public class SortedDataBag<E> extends AbstractDataBag<E>
                 throw new AtlasException(e);
             }
             
-            // Sort the tuples
             // Collections.sort() will copy to an array, sort, and then copy back.  Avoid that
-            // extra copy by copying to an array and using Arrays.sort().  Also it lets us use
+            // extra copy by copying to an array and sorting that.  Also it lets us use
             // Collection<E> instead of List<E> as the type for the memory object.  Unfortunately
             // because of Java's crazy generics we have to do it as an Object array.
-            Object[] array = memory.toArray();
-            Arrays.sort(array, (Comparator)comparator);
+            final Object[] array = memory.toArray();
             
-            Sink<E> serializer = serializationFactory.createSerializer(out);
-            try
+            if (pool == null)
             {
-                for (Object tuple : array)
-                {
-                    serializer.send((E)tuple);
-                }
+                writeSpill(array, out);
             }
-            finally
+            else
             {
-                serializer.close();
+                // Wait for the previous spill, then write this one while more items are added.
+                waitForSpill();
+                pendingSpill = pool.submit(new Runnable() {
+                    @Override
+                    public void run()
+                    {
+                        writeSpill(array, out);
+                    }
+                });
             }
             
             spilled = true;
@@ -160,11 +194,84 @@ public class SortedDataBag<E> extends AbstractDataBag<E>
             memory.clear();
         }
     }
+    
+    @SuppressWarnings("unchecked")
+    private void writeSpill(Object[] array, OutputStream out)
+    {
+        // Sort the tuples
+        sort(array);
+        
+        Sink<E> serializer = serializationFactory.createSerializer(out);
+        try
+        {
+            for (Object tuple : array)
+            {
+                serializer.send((E)tuple);
+            }
+        }
+        finally
+        {
+            serializer.close();
+        }
+    }
+    
+    /**
+     * Wait for any spill being written in the background to finish. 
+     */
+    protected void waitForSpill()
+    {
+        if (pendingSpill == null)
+        {
+            return;
+        }
+        Future<?> f = pendingSpill;
+        pendingSpill = null;
+        try
+        {
+            f.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new AtlasException("Interrupted while writing a spill file", e);
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException)cause;
+            }
+            throw new AtlasException(cause);
+        }
+    }
+    
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private void sort(Object[] array)
+    {
+        if (pool == null || array.length < PARALLEL_SORT_THRESHOLD)
+        {
+            Arrays.sort(array, (Comparator)comparator);
+            return;
+        }
+        
+        SortTask task = new SortTask(array, new Object[array.length], 0, array.length, (Comparator)comparator);
+        if (ForkJoinTask.getPool() == pool)
+        {
+            // Already running in the pool, as a spill.
+            task.invoke();
+        }
+        else
+        {
+            pool.invoke(task);
+        }
+    }
 
     @Override
     public void flush()
     {
         spill();
+        waitForSpill();
     }
     
     protected Iterator<E> getInputIterator(File spillFile) throws FileNotFoundException
@@ -184,12 +291,13 @@ public class SortedDataBag<E> extends AbstractDataBag<E>
     @Override
 	public Iterator<E> iterator()
     {
+        waitForSpill();
         preMerge();
 
         return iterator(getSpillFiles().size());
     }
 
-    @SuppressWarnings({ "unchecked", "rawtypes" })
+    @SuppressWarnings("unchecked")
     private Iterator<E> iterator(int size)
     {
         checkClosed();
@@ -201,7 +309,7 @@ public class SortedDataBag<E> extends AbstractDataBag<E>
         {
             // Again, some ugliness for speed
             Object[] array = memory.toArray();
-            Arrays.sort(array, (Comparator)comparator);
+            sort(array);
             memory = Arrays.asList((E[])array);
         }
         
@@ -304,6 +412,23 @@ public class SortedDataBag<E> extends AbstractDataBag<E>
     {
         if (!closed)
         {
+            if (pendingSpill != null)
+            {
+                // The spill file is deleted anyway, so only wait for the write to stop.
+                try
+                {
+                    pendingSpill.get();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+                catch (ExecutionException e)
+                {
+                    Log.warn(this, "Failed to write a spill file", e.getCause());
+                }
+                pendingSpill = null;
+            }
             closeIterators();
             deleteSpillFiles();
             
@@ -312,6 +437,79 @@ public class SortedDataBag<E> extends AbstractDataBag<E>
         }
     }
     
+    /**
+     * Merge sort of part of an array, forking for each half.
+     */
+    private static class SortTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+        
+        private final Object[] array;
+        private final Object[] tmp;
+        private final int lo;
+        private final int hi;
+        private final Comparator<Object> comparator;
+        
+        SortTask(Object[] array, Object[] tmp, int lo, int hi, Comparator<Object> comparator)
+        {
+            this.array = array;
+            this.tmp = tmp;
+            this.lo = lo;
+            this.hi = hi;
+            this.comparator = comparator;
+        }
+        
+        @Override
+        protected void compute()
+        {
+            if (hi - lo <= PARALLEL_SORT_THRESHOLD)
+            {
+                Arrays.sort(array, lo, hi, comparator);
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new SortTask(array, tmp, lo, mid, comparator),
+                      new SortTask(array, tmp, mid, hi, comparator));
+            
+            // Already in order?
+            if (compare(array[mid-1], array[mid]) <= 0)
+            {
+                return;
+            }
+            
+            int i = lo;
+            int j = mid;
+            int k = lo;
+            while (i < mid && j < hi)
+            {
+                // Take from the left on equal : stable, as Arrays.sort.
+                if (compare(array[j], array[i]) < 0)
+                {
+                    tmp[k++] = array[j++];
+                }
+                else
+                {
+                    tmp[k++] = array[i++];
+                }
+            }
+            while (i < mid)
+            {
+                tmp[k++] = array[i++];
+            }
+            while (j < hi)
+            {
+                tmp[k++] = array[j++];
+            }
+            System.arraycopy(tmp, lo, array, lo, hi - lo);
+        }
+        
+        @SuppressWarnings("unchecked")
+        private int compare(Object o1, Object o2)
+        {
+            return (comparator != null) ? comparator.compare(o1, o2) : ((Comparable<Object>)o1).compareTo(o2);
+        }
+    }
+    
     /**
      * An iterator that handles getting the next tuple from the bag.
      */
@@ -21,8 +21,8 @@ package org.apache.jena.atlas.data ;
 /**
  * A threshold policy based on the estimated memory size of the tuples added.
  * <p>
- * TODO This policy isn't ready to be used because the SerializationFactorys
- * don't support generating memory estimates yet.
+ * TODO This policy isn't ready to be used for triples and quads because their
+ * SerializationFactorys don't support generating memory estimates yet.
  * <p>
  * TODO It might be too expensive to examine each tuple individually. We could
  * change it to sample the first 100 tuples to calculate an average tuple size.
@@ -49,6 +49,14 @@ public class CacheFactory
         return createCacheWithGetter(cache, getter) ;
     }
 
+    /** Create a thread-safe cache, with lock-free lookup, which has space for up to a certain number of objects.
+     * The cache returns null for a cache miss and keeps statistics.
+     */
+    public static <Key, Value> CacheStats<Key, Value> createCacheConcurrent(int maxSize)
+    {
+        return new CacheConcurrent<>(maxSize) ;
+    }
+
     /** Create a null cache */
     public static <Key, Value> Cache<Key, Value> createNullCache()
     {
@@ -0,0 +1,309 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.atlas.lib.cache;
+
+import java.util.Iterator ;
+import java.util.concurrent.ConcurrentHashMap ;
+import java.util.concurrent.atomic.AtomicLong ;
+
+import org.apache.jena.atlas.iterator.IteratorConcat ;
+import org.apache.jena.atlas.lib.ActionKeyValue ;
+import org.apache.jena.atlas.lib.CacheStats ;
+
+/**
+ * A thread-safe, fixed size cache.
+ * <p>
+ * The cache is split into stripes by key hash. Each stripe has a concurrent map
+ * for lookup and a CLOCK (second chance) ring for replacement.
+ * A {@link #get} does not take a lock - it sets the "referenced" bit on the entry.
+ * Insertion, removal and eviction lock only the stripe of the key.
+ * <p>
+ * Statistics of hits, misses and ejections are kept per stripe.
+ */
+public class CacheConcurrent<K,V> implements CacheStats<K,V>
+{
+    private final Stripe<K,V>[] stripes ;
+    private final int stripeMask ;
+    private volatile ActionKeyValue<K,V> dropHandler = null ;
+
+    /** Create a cache with the default number of stripes */
+    public CacheConcurrent(int maxSize)
+    {
+        this(Math.max(1, Runtime.getRuntime().availableProcessors()*4), maxSize) ;
+    }
+
+    public CacheConcurrent(int numStripes, int maxSize)
+    {
+        if ( maxSize <= 0 )
+            throw new IllegalArgumentException("CacheConcurrent: size must be positive: "+maxSize) ;
+        // Power of two, no more than the size of the cache.
+        int n = 1 ;
+        while ( n < numStripes && n < maxSize )
+            n = n << 1 ;
+        @SuppressWarnings("unchecked")
+        Stripe<K,V>[] x = (Stripe<K,V>[])new Stripe<?,?>[n] ;
+        stripes = x ;
+        stripeMask = n-1 ;
+        int stripeSize = (maxSize+n-1)/n ;
+        for ( int i = 0 ; i < n ; i++ )
+            stripes[i] = new Stripe<>(this, stripeSize) ;
+    }
+
+    private Stripe<K,V> stripe(Object key)
+    {
+        int h = key.hashCode() ;
+        // Spread the bits (as HashMap).
+        h ^= (h >>> 20) ^ (h >>> 12) ;
+        h ^= (h >>> 7) ^ (h >>> 4) ;
+        return stripes[h & stripeMask] ;
+    }
+
+    @Override
+    public boolean containsKey(K key)
+    {
+        return stripe(key).map.containsKey(key) ;
+    }
+
+    @Override
+    public V get(K key)
+    {
+        return stripe(key).get(key, true) ;
+    }
+
+    /**
+     * Look up a key without counting a miss; a hit is counted.
+     * For a first look without a lock that, on a miss, is followed
+     * by a {@link #get} under a lock, so that each miss is counted once.
+     */
+    public V probe(K key)
+    {
+        return stripe(key).get(key, false) ;
+    }
+
+    @Override
+    public V put(K key, V thing)
+    {
+        if ( thing == null )
+        {
+            V old = stripe(key).get(key, false) ;
+            remove(key) ;
+            return old ;
+        }
+        return stripe(key).put(key, thing) ;
+    }
+
+    @Override
+    public boolean remove(K key)
+    {
+        return stripe(key).remove(key) ;
+    }
+
+    /** Iterate over all keys. Iteration is weakly consistent with concurrent updates. */
+    @Override
+    public Iterator<K> keys()
+    {
+        IteratorConcat<K> iter = new IteratorConcat<>() ;
+        for ( Stripe<K,V> s : stripes )
+            iter.add(s.map.keySet().iterator()) ;
+        return iter ;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        for ( Stripe<K,V> s : stripes )
+            if ( ! s.map.isEmpty() )
+                return false ;
+        return true ;
+    }
+
+    @Override
+    public void clear()
+    {
+        for ( Stripe<K,V> s : stripes )
+            s.clear() ;
+    }
+
+    @Override
+    public long size()
+    {
+        long x = 0 ;
+        for ( Stripe<K,V> s : stripes )
+            x += s.map.size() ;
+        return x ;
+    }
+
+    @Override
+    public void setDropHandler(ActionKeyValue<K,V> dropHandler)
+    {
+        this.dropHandler = dropHandler ;
+    }
+
+    @Override
+    public long getCacheEntries()   { return size() ; }
+
+    @Override
+    public long getCacheHits()
+    {
+        long x = 0 ;
+        for ( Stripe<K,V> s : stripes )
+            x += s.hits.get() ;
+        return x ;
+    }
+
+    @Override
+    public long getCacheMisses()
+    {
+        long x = 0 ;
+        for ( Stripe<K,V> s : stripes )
+            x += s.misses.get() ;
+        return x ;
+    }
+
+    @Override
+    public long getCacheEjects()
+    {
+        long x = 0 ;
+        for ( Stripe<K,V> s : stripes )
+            x += s.ejects.get() ;
+        return x ;
+    }
+
+    private static final class Entry<K,V>
+    {
+        final K key ;
+        volatile V value ;
+        volatile boolean referenced = true ;
+        // Position in the ring. Guarded by the stripe lock.
+        int slot ;
+
+        Entry(K key, V value, int slot)
+        {
+            this.key = key ;
+            this.value = value ;
+            this.slot = slot ;
+        }
+    }
+
+    private static final class Stripe<K,V>
+    {
+        private final CacheConcurrent<K,V> cache ;
+        final ConcurrentHashMap<K, Entry<K,V>> map ;
+        final AtomicLong hits = new AtomicLong(0) ;
+        final AtomicLong misses = new AtomicLong(0) ;
+        final AtomicLong ejects = new AtomicLong(0) ;
+
+        // Guarded by "this"
+        private final Entry<K,V>[] ring ;
+        private int hand = 0 ;
+        private int count = 0 ;
+
+        Stripe(CacheConcurrent<K,V> cache, int size)
+        {
+            this.cache = cache ;
+            this.map = new ConcurrentHashMap<>(size*4/3+1) ;
+            @SuppressWarnings("unchecked")
+            Entry<K,V>[] x = (Entry<K,V>[])new Entry<?,?>[size] ;
+            this.ring = x ;
+        }
+
+        V get(K key, boolean countMiss)
+        {
+            Entry<K,V> e = map.get(key) ;
+            if ( e == null )
+            {
+                if ( countMiss )
+                    misses.getAndIncrement() ;
+                return null ;
+            }
+            hits.getAndIncrement() ;
+            e.referenced = true ;
+            return e.value ;
+        }
+
+        synchronized V put(K key, V value)
+        {
+            Entry<K,V> e = map.get(key) ;
+            if ( e != null )
+            {
+                V old = e.value ;
+                e.value = value ;
+                e.referenced = true ;
+                return old ;
+            }
+            int slot ;
+            if ( count < ring.length )
+            {
+                // Free slot.
+                while ( ring[hand] != null )
+                    hand = (hand+1) % ring.length ;
+                slot = hand ;
+                count++ ;
+            }
+            else
+                slot = evict() ;
+            e = new Entry<>(key, value, slot) ;
+            ring[slot] = e ;
+            hand = (slot+1) % ring.length ;
+            map.put(key, e) ;
+            return null ;
+        }
+
+        // Second chance : clear referenced bits until an unreferenced entry is found.
+        private int evict()
+        {
+            for ( ;; )
+            {
+                Entry<K,V> e = ring[hand] ;
+                if ( e.referenced )
+                {
+                    e.referenced = false ;
+                    hand = (hand+1) % ring.length ;
+                    continue ;
+                }
+                map.remove(e.key) ;
+                ring[hand] = null ;
+                ejects.getAndIncrement() ;
+                ActionKeyValue<K,V> handler = cache.dropHandler ;
+                if ( handler != null )
+                    handler.apply(e.key, e.value) ;
+                return hand ;
+            }
+        }
+
+        synchronized boolean remove(K key)
+        {
+            Entry<K,V> e = map.remove(key) ;
+            if ( e == null )
+                return false ;
+            ring[e.slot] = null ;
+            count-- ;
+            return true ;
+        }
+
+        synchronized void clear()
+        {
+            map.clear() ;
+            for ( int i = 0 ; i < ring.length ; i++ )
+                ring[i] = null ;
+            count = 0 ;
+            hand = 0 ;
+        }
+    }
+}
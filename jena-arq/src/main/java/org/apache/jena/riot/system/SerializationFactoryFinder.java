@@ -36,15 +36,45 @@ import org.apache.jena.riot.system.Prologue ;
 import org.apache.jena.riot.tokens.Tokenizer ;
 import org.apache.jena.riot.tokens.TokenizerFactory ;
 
+import com.hp.hpl.jena.graph.Node ;
 import com.hp.hpl.jena.graph.Triple ;
 import com.hp.hpl.jena.sparql.core.Quad ;
+import com.hp.hpl.jena.sparql.core.Var ;
 import com.hp.hpl.jena.sparql.engine.binding.Binding ;
+import com.hp.hpl.jena.sparql.engine.binding.BindingBinaryInputStream ;
+import com.hp.hpl.jena.sparql.engine.binding.BindingBinaryOutputStream ;
 import com.hp.hpl.jena.sparql.engine.binding.BindingInputStream ;
 import com.hp.hpl.jena.sparql.engine.binding.BindingOutputStream ;
 
 public class SerializationFactoryFinder
 {
+    /** Bindings in a compact binary form, with repeated terms written once per stream. */
     public static SerializationFactory<Binding> bindingSerializationFactory()
+    {
+        return new SerializationFactory<Binding>()
+        {
+            @Override
+            public Sink<Binding> createSerializer(OutputStream out)
+            {
+                return new BindingBinaryOutputStream(out);
+            }
+            
+            @Override
+            public Iterator<Binding> createDeserializer(InputStream in)
+            {
+                return new BindingBinaryInputStream(in);
+            }
+
+            @Override
+            public long getEstimatedMemorySize(Binding item)
+            {
+                return estimatedMemorySize(item) ;
+            }
+        };
+    }
+    
+    /** Bindings in the text form of {@link BindingOutputStream}. */
+    public static SerializationFactory<Binding> bindingTextSerializationFactory()
     {
         return new SerializationFactory<Binding>()
         {
@@ -63,12 +93,41 @@ public class SerializationFactoryFinder
             @Override
             public long getEstimatedMemorySize(Binding item)
             {
-                // TODO traverse the binding, and add up the variable + node sizes + object overhead
-                return 0 ;
+                return estimatedMemorySize(item) ;
             }
         };
     }
     
+    // Rough sizes, in bytes, of a binding in memory (a 64 bit JVM).
+    // Vars are shared between rows so only the entry for each is counted;
+    // nodes and their strings are counted for every row.
+    private static long estimatedMemorySize(Binding binding)
+    {
+        long size = 48 ;
+        for ( Iterator<Var> iter = binding.vars() ; iter.hasNext() ; )
+            size += 32 + estimatedMemorySize(binding.get(iter.next())) ;
+        return size ;
+    }
+
+    private static long estimatedMemorySize(Node node)
+    {
+        if ( node == null )
+            return 0 ;
+        if ( node.isURI() )
+            return 16 + estimatedMemorySize(node.getURI()) ;
+        if ( node.isLiteral() )
+            // Node, LiteralLabel and the strings; the datatype is shared.
+            return 64 + estimatedMemorySize(node.getLiteralLexicalForm()) + estimatedMemorySize(node.getLiteralLanguage()) ;
+        if ( node.isBlank() )
+            return 32 + estimatedMemorySize(node.getBlankNodeLabel()) ;
+        return 16 ;
+    }
+
+    private static long estimatedMemorySize(String string)
+    {
+        return 40 + 2L * string.length() ;
+    }
+
     public static SerializationFactory<Triple> tripleSerializationFactory()
     {
         return new SerializationFactory<Triple>()
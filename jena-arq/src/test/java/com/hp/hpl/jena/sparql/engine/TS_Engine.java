@@ -24,6 +24,9 @@ import org.junit.runners.Suite ;
 import com.hp.hpl.jena.sparql.engine.binding.TestBindingStreams ;
 import com.hp.hpl.jena.sparql.engine.http.TestQueryEngineHTTP ;
 import com.hp.hpl.jena.sparql.engine.http.TestService ;
+import com.hp.hpl.jena.sparql.engine.iterator.TestQueryIterBatch ;
+import com.hp.hpl.jena.sparql.engine.iterator.TestQueryIterGroupPartitioned ;
+import com.hp.hpl.jena.sparql.engine.iterator.TestQueryIterHashJoin ;
 import com.hp.hpl.jena.sparql.engine.iterator.TestQueryIterSort ;
 
 @RunWith(Suite.class)
@@ -31,6 +34,9 @@ import com.hp.hpl.jena.sparql.engine.iterator.TestQueryIterSort ;
         TestBindingStreams.class
       , TestTableLib.class
       , TestQueryIterSort.class
+      , TestQueryIterHashJoin.class
+      , TestQueryIterGroupPartitioned.class
+      , TestQueryIterBatch.class
       , TestService.class
       , TestQueryEngineHTTP.class
       , TestQueryEngineMultiThreaded.class
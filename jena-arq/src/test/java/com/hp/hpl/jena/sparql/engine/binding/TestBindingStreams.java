@@ -23,10 +23,12 @@ import java.io.ByteArrayOutputStream ;
 import java.util.ArrayList ;
 import java.util.List ;
 
+import org.apache.jena.atlas.data.SerializationFactory ;
 import org.apache.jena.atlas.junit.BaseTest ;
 import org.apache.jena.riot.RiotException ;
 import org.apache.jena.riot.system.PrefixMap;
 import org.apache.jena.riot.system.PrefixMapFactory;
+import org.apache.jena.riot.system.SerializationFactoryFinder ;
 import org.apache.jena.riot.tokens.Tokenizer ;
 import org.apache.jena.riot.tokens.TokenizerFactory ;
 import org.junit.AfterClass ;
@@ -108,6 +110,71 @@ public class TestBindingStreams extends BaseTest
     @Test public void bindingStream_63()              { testWriteRead(bb3) ; }
 
     
+    @Test public void bindingBinary_01()        { testBinary(b12) ; }
+    @Test public void bindingBinary_02()        { testBinary() ; }
+    @Test public void bindingBinary_03()        { testBinary(b0) ; }
+    @Test public void bindingBinary_04()        { testBinary(b12, b19, b02, b10, b0, b12) ; }
+    @Test public void bindingBinary_05()        { testBinary(bb1, bb2, bb3, x10, bb1, x10) ; }
+    @Test public void bindingBinary_06()
+    {
+        testBinary(build("(?a 'abc'@en) (?b 'abc'@EN) (?c 'abc') (?d 'abc'^^<http://www.w3.org/2001/XMLSchema#string>)"),
+                   build("(?a 'x'^^<http://example/dt>) (?b '1.0e0'^^<http://www.w3.org/2001/XMLSchema#double>)"),
+                   build("(?a '01'^^<http://www.w3.org/2001/XMLSchema#integer>) (?b 'junk'^^<http://www.w3.org/2001/XMLSchema#integer>)")) ;
+    }
+
+    // More terms than the dictionary holds, and records longer than the read buffer.
+    @Test public void bindingBinary_07()
+    {
+        List<Binding> x = new ArrayList<>() ;
+        StringBuilder sb = new StringBuilder() ;
+        for ( int i = 0 ; i < 100*1000 ; i++ )
+            sb.append((char)('a'+i%26)) ;
+        for ( int i = 0 ; i < 50 ; i++ )
+        {
+            BindingMap b = BindingFactory.create() ;
+            b.add(Var.alloc("i"), NodeFactory.createURI("http://example/"+(i%7))) ;
+            b.add(Var.alloc("s"), NodeFactory.createLiteral(sb.substring(i))) ;
+            x.add(b) ;
+        }
+        testBinary(2, x.toArray(new Binding[0])) ;
+    }
+
+    @Test public void bindingMemorySize_01()
+    {
+        SerializationFactory<Binding> factory = SerializationFactoryFinder.bindingSerializationFactory() ;
+        long size0 = factory.getEstimatedMemorySize(b0) ;
+        long size12 = factory.getEstimatedMemorySize(b12) ;
+        assertTrue(size0 > 0) ;
+        assertTrue(size12 > size0) ;
+        // Longer terms, bigger estimate.
+        BindingMap b = BindingFactory.create() ;
+        b.add(Var.alloc("a"), NodeFactory.createLiteral("a much longer string than the number 1")) ;
+        b.add(Var.alloc("b"), NodeFactory.createURI("http://example/a/longer/uri")) ;
+        assertTrue(factory.getEstimatedMemorySize(b) > size12) ;
+        assertEquals(factory.getEstimatedMemorySize(b), 
+                     SerializationFactoryFinder.bindingTextSerializationFactory().getEstimatedMemorySize(b)) ;
+    }
+
+    static void testBinary(Binding ... bindings) { testBinary(BindingBinaryOutputStream.DictionarySize, bindings) ; }
+
+    static void testBinary(int dictionarySize, Binding ... bindings)
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream() ;
+        BindingBinaryOutputStream output = new BindingBinaryOutputStream(out, dictionarySize) ;
+        for ( Binding b : bindings )
+            output.send(b) ;
+        output.close() ;
+
+        BindingBinaryInputStream input = new BindingBinaryInputStream(new ByteArrayInputStream(out.toByteArray())) ;
+        int i ;
+        for ( i = 0 ; input.hasNext() ; i++ )
+        {
+            Binding b = input.next() ;
+            assertTrue("Bindings do not match: expected="+bindings[i]+" got="+b, equalBindings(bindings[i], b)) ;
+        }
+        assertEquals(bindings.length, i) ;
+    }
+
     static void testRead(String x, Binding ... bindings)
     {
         Tokenizer t = TokenizerFactory.makeTokenizerString(x) ;
@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hp.hpl.jena.sparql.engine.iterator;
+
+import java.util.ArrayList ;
+import java.util.Arrays ;
+import java.util.List ;
+
+import org.apache.jena.atlas.junit.BaseTest ;
+import org.junit.AfterClass ;
+import org.junit.BeforeClass ;
+import org.junit.Test ;
+
+import com.hp.hpl.jena.graph.Graph ;
+import com.hp.hpl.jena.graph.Node ;
+import com.hp.hpl.jena.query.* ;
+import com.hp.hpl.jena.sparql.algebra.Algebra ;
+import com.hp.hpl.jena.sparql.algebra.Op ;
+import com.hp.hpl.jena.sparql.core.DatasetGraph ;
+import com.hp.hpl.jena.sparql.core.DatasetGraphFactory ;
+import com.hp.hpl.jena.sparql.core.Var ;
+import com.hp.hpl.jena.sparql.engine.ExecutionContext ;
+import com.hp.hpl.jena.sparql.engine.QueryIterator ;
+import com.hp.hpl.jena.sparql.engine.binding.Binding ;
+import com.hp.hpl.jena.sparql.engine.binding.BindingBatch ;
+import com.hp.hpl.jena.sparql.engine.binding.BindingFactory ;
+import com.hp.hpl.jena.sparql.engine.binding.BindingMap ;
+import com.hp.hpl.jena.sparql.engine.main.OpExecutorFactory ;
+import com.hp.hpl.jena.sparql.engine.main.QC ;
+import com.hp.hpl.jena.sparql.resultset.ResultSetCompare ;
+import com.hp.hpl.jena.sparql.sse.SSE ;
+import com.hp.hpl.jena.sparql.util.Context ;
+import com.hp.hpl.jena.sparql.util.NodeFactoryExtra ;
+
+public class TestQueryIterBatch extends BaseTest
+{
+    static Var x = Var.alloc("x") ;
+    static Var y = Var.alloc("y") ;
+    static Var z = Var.alloc("z") ;
+
+    static DatasetGraph dsg = DatasetGraphFactory.createMem() ;
+    static {
+        Graph g = dsg.getDefaultGraph() ;
+        for ( int i = 0 ; i < 100 ; i++ )
+        {
+            g.add(SSE.parseTriple("(<http://ex/s"+i+"> <http://ex/p> "+i+")")) ;
+            g.add(SSE.parseTriple("(<http://ex/s"+i+"> <http://ex/q> 'v"+(i%5)+"')")) ;
+        }
+        g.add(SSE.parseTriple("(<http://ex/s1> <http://ex/r> <http://ex/s1>)")) ;
+        g.add(SSE.parseTriple("(<http://ex/s1> <http://ex/r> <http://ex/s2>)")) ;
+    }
+
+    private static int origBatchSize ;
+    @BeforeClass public static void beforeClass()
+    {
+        // Several batches, not aligned with LIMIT and OFFSET.
+        origBatchSize = BindingBatch.BatchSize ;
+        BindingBatch.BatchSize = 7 ;
+    }
+
+    @AfterClass public static void afterClass()
+    {
+        BindingBatch.BatchSize = origBatchSize ;
+    }
+
+    @Test public void batch_select_01()
+    {
+        BindingBatch batch = batch(10) ;
+        BindingBatch b2 = batch.select(new int[]{1, 3, 8}, 3) ;
+        assertEquals(3, b2.size()) ;
+        assertEquals(batch.binding(3), b2.binding(1)) ;
+        BindingBatch b3 = b2.slice(1, 2) ;
+        assertEquals(2, b3.size()) ;
+        assertEquals(batch.binding(8), b3.binding(1)) ;
+    }
+
+    @Test public void batch_select_02()
+    {
+        // Few rows : copied into columns of their own.
+        BindingBatch batch = batch(10) ;
+        BindingBatch b2 = batch.select(new int[]{2, 5, 6}, 3) ;
+        assertEquals(3, b2.capacity()) ;
+        assertEquals(1, b2.row(1)) ;
+        assertEquals(batch.binding(5), b2.binding(1)) ;
+        BindingBatch b3 = batch.slice(4, 6) ;
+        assertEquals(10, b3.capacity()) ;
+        BindingBatch b4 = b3.slice(5, 1) ;
+        assertEquals(1, b4.capacity()) ;
+        assertEquals(batch.binding(9), b4.binding(0)) ;
+    }
+
+    @Test public void batch_copy_01()
+    {
+        BindingBatch batch = batch(10).slice(3, 6) ;
+        Binding b = batch.copyBinding(2) ;
+        assertTrue(b instanceof BindingMap) ;
+        assertEquals(batch.binding(2), b) ;
+    }
+
+    @Test public void batch_project_01()
+    {
+        BindingBatch batch = batch(10).project(Arrays.asList(y, Var.alloc("w"))) ;
+        assertEquals(Arrays.asList(y), batch.getVars()) ;
+        assertEquals(1, batch.binding(4).size()) ;
+        assertNull(batch.get(4, x)) ;
+    }
+
+    @Test public void batch_extend_01()
+    {
+        BindingBatch batch = batch(10).slice(1, 5) ;
+        Node[] column = new Node[batch.capacity()] ;
+        column[batch.row(1)] = NodeFactoryExtra.intToNode(99) ;
+        BindingBatch b2 = batch.extend(z, column) ;
+        assertNull(b2.get(0, z)) ;
+        assertEquals(NodeFactoryExtra.intToNode(99), b2.get(1, z)) ;
+        assertFalse(b2.binding(0).contains(z)) ;
+        assertEquals(3, b2.binding(1).size()) ;
+        // Unchanged.
+        assertNull(batch.get(1, z)) ;
+    }
+
+    @Test public void batch_rows_01()
+    {
+        // Rows in, rows out.
+        List<Binding> rows = rows(20) ;
+        ExecutionContext execCxt = execCxt(new Context()) ;
+        QueryIterBatch qIter = QueryIterBatch.batches(new QueryIterPlainWrapper(rows.iterator(), execCxt), execCxt) ;
+        qIter.next() ;
+        BindingBatch b = qIter.nextBatch() ;
+        assertEquals(6, b.size()) ;
+        assertEquals(rows.get(1), b.binding(0)) ;
+        List<Binding> x = new ArrayList<>() ;
+        while ( qIter.hasNext() )
+            x.add(qIter.next()) ;
+        assertEquals(rows.subList(7, 20), x) ;
+    }
+
+    @Test public void batch_query_01()      { test("SELECT * { ?s <http://ex/p> ?o }") ; }
+    @Test public void batch_query_02()      { test("SELECT ?s { ?s <http://ex/p> ?o FILTER(?o > 20 && ?o < 50) }") ; }
+    @Test public void batch_query_03()      { test("SELECT ?o { ?s ?p ?o FILTER(isLiteral(?o)) } LIMIT 11 OFFSET 9") ; }
+    @Test public void batch_query_04()      { test("SELECT ?s ?z { ?s <http://ex/p> ?o BIND(?o*2 AS ?z) FILTER(?z > 150) }") ; }
+    @Test public void batch_query_05()      { test("SELECT * { ?s <http://ex/q> ?o } OFFSET 195") ; }
+    @Test public void batch_query_06()      { test("SELECT * { ?s <http://ex/q> ?o } LIMIT 0") ; }
+    // Repeated variable.
+    @Test public void batch_query_07()      { test("SELECT * { ?s <http://ex/r> ?s }") ; }
+    // Filter error : unbound, bad type.
+    @Test public void batch_query_08()      { test("SELECT * { ?s ?p ?o FILTER(?o > 50 || ?z) }") ; }
+    // Not a batch pipeline
+    @Test public void batch_query_09()      { test("SELECT * { ?s <http://ex/p> ?o . ?s <http://ex/q> 'v1' } LIMIT 5") ; }
+
+    @Test public void batch_query_10()
+    {
+        // The pipeline is in batches.
+        Op op = Algebra.compile(QueryFactory.create("SELECT ?s { ?s <http://ex/p> ?o FILTER(?o > 20) BIND(1 AS ?one) } LIMIT 5")) ;
+        Context context = new Context() ;
+        context.set(ARQ.batchExecution, true) ;
+        ExecutionContext execCxt = execCxt(context) ;
+        QueryIterator qIter = QC.execute(op, QueryIterRoot.create(execCxt), execCxt) ;
+        assertTrue(qIter instanceof QueryIterBatch) ;
+        int n = 0 ;
+        for ( ; qIter.hasNext() ; qIter.next() )
+            n++ ;
+        assertEquals(5, n) ;
+    }
+
+    private static void test(String queryString)
+    {
+        Query query = QueryFactory.create(queryString) ;
+        Dataset ds = DatasetFactory.create(dsg) ;
+        QueryExecution qExec1 = QueryExecutionFactory.create(query, ds) ;
+        ResultSetRewindable rs1 = ResultSetFactory.makeRewindable(qExec1.execSelect()) ;
+        QueryExecution qExec2 = QueryExecutionFactory.create(query, ds) ;
+        qExec2.getContext().set(ARQ.batchExecution, true) ;
+        ResultSetRewindable rs2 = ResultSetFactory.makeRewindable(qExec2.execSelect()) ;
+        assertEquals(rs1.size(), rs2.size()) ;
+        assertTrue(ResultSetCompare.equalsByTermAndOrder(rs1, rs2)) ;
+    }
+
+    private static ExecutionContext execCxt(Context context)
+    {
+        return new ExecutionContext(context, dsg.getDefaultGraph(), dsg, (OpExecutorFactory)null) ;
+    }
+
+    private static List<Binding> rows(int N)
+    {
+        List<Binding> rows = new ArrayList<>() ;
+        for ( int i = 0 ; i < N ; i++ )
+        {
+            BindingMap row = BindingFactory.create() ;
+            row.add(x, NodeFactoryExtra.intToNode(i)) ;
+            if ( i % 3 != 0 )
+                row.add(y, NodeFactoryExtra.intToNode(i%3)) ;
+            rows.add(row) ;
+        }
+        return rows ;
+    }
+
+    private static BindingBatch batch(int N)
+    {
+        return BindingBatch.create(rows(N)) ;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hp.hpl.jena.sparql.engine.iterator;
+
+import java.util.ArrayList ;
+import java.util.List ;
+
+import org.apache.jena.atlas.junit.BaseTest ;
+import org.junit.Test ;
+
+import com.hp.hpl.jena.graph.Graph ;
+import com.hp.hpl.jena.query.* ;
+import com.hp.hpl.jena.sparql.algebra.Algebra ;
+import com.hp.hpl.jena.sparql.algebra.Op ;
+import com.hp.hpl.jena.sparql.algebra.op.OpGroup ;
+import com.hp.hpl.jena.sparql.algebra.table.TableN ;
+import com.hp.hpl.jena.sparql.core.DatasetGraph ;
+import com.hp.hpl.jena.sparql.core.Var ;
+import com.hp.hpl.jena.sparql.core.VarExprList ;
+import com.hp.hpl.jena.sparql.engine.ExecutionContext ;
+import com.hp.hpl.jena.sparql.engine.QueryIterator ;
+import com.hp.hpl.jena.sparql.engine.binding.BindingFactory ;
+import com.hp.hpl.jena.sparql.engine.binding.BindingMap ;
+import com.hp.hpl.jena.sparql.engine.main.OpExecutorFactory ;
+import com.hp.hpl.jena.sparql.resultset.ResultSetCompare ;
+import com.hp.hpl.jena.sparql.sse.SSE ;
+import com.hp.hpl.jena.sparql.util.Context ;
+import com.hp.hpl.jena.sparql.util.NodeFactoryExtra ;
+
+public class TestQueryIterGroupPartitioned extends BaseTest
+{
+    static Var x = Var.alloc("x") ;
+    static Var y = Var.alloc("y") ;
+    static Var z = Var.alloc("z") ;
+
+    private static final String aggs = "((?c (count)) (?s (sum ?z)) (?d (count distinct ?y)) (?m (min ?z)) (?gc (group_concat ?z)))" ; 
+
+    @Test public void group_partitioned_01()    { test("(group (?x) "+aggs+" (table unit))", 1000, 1, -1) ; }
+    @Test public void group_partitioned_02()    { test("(group (?x) "+aggs+" (table unit))", 1000, 4, -1) ; }
+    @Test public void group_partitioned_03()    { test("(group (?x) "+aggs+" (table unit))", 1000, 1, 20) ; }
+    @Test public void group_partitioned_04()    { test("(group (?x) "+aggs+" (table unit))", 1000, 4, 20) ; }
+    @Test public void group_partitioned_05()    { test("(group (?x ?y) ((?c (count))) (table unit))", 1000, 4, 20) ; }
+    // Group by expression.
+    @Test public void group_partitioned_06()    { test("(group ((?k (+ ?x ?y))) ((?c (count))) (table unit))", 1000, 4, 20) ; }
+    // No group variables.
+    @Test public void group_partitioned_07()    { test("(group () "+aggs+" (table unit))", 1000, 4, 20) ; }
+    // No aggregators.
+    @Test public void group_partitioned_08()    { test("(group (?y) () (table unit))", 1000, 4, 20) ; }
+    // No input.
+    @Test public void group_partitioned_09()    { test("(group () "+aggs+" (table unit))", 0, 4, 20) ; }
+    @Test public void group_partitioned_10()    { test("(group (?x) "+aggs+" (table unit))", 0, 4, 20) ; }
+    // Unbound group key.
+    @Test public void group_partitioned_11()    { test("(group (?w) "+aggs+" (table unit))", 100, 4, 20) ; }
+    // Function calls in the aggregators, evaluated by several threads.
+    @Test public void group_partitioned_12()    { test("(group (?x) ((?s (sum (<http://www.w3.org/2001/XMLSchema#integer> (str ?z))))) (table unit))", 1000, 4, -1) ; }
+    // More groups in a partition than the threshold : split again.
+    @Test public void group_partitioned_13()    { test("(group (?z) "+aggs+" (table unit))", 1000, 1, 2) ; }
+    @Test public void group_partitioned_14()    { test("(group (?z) "+aggs+" (table unit))", 1000, 4, 2) ; }
+    @Test public void group_partitioned_15()    { test("(group (?z ?x) ((?c (count))) (table unit))", 2000, 3, 1) ; }
+    @Test public void group_partitioned_16()    { test("(group (?x) "+aggs+" (table unit))", 1000, 4, 1) ; }
+
+    @Test public void group_partitioned_query_01()
+    {
+        String qs = "SELECT ?s (count(*) AS ?c) (sum(?o) AS ?t) { ?s ?p ?o } GROUP BY ?s" ;
+        Dataset ds = DatasetFactory.createMem() ;
+        Graph g = ds.asDatasetGraph().getDefaultGraph() ;
+        for ( int i = 0 ; i < 300 ; i++ )
+            g.add(SSE.parseTriple("(<http://ex/s"+(i%37)+"> <http://ex/p"+(i%3)+"> "+i+")")) ;
+        QueryExecution qExec1 = QueryExecutionFactory.create(qs, ds) ;
+        ResultSetRewindable rs1 = ResultSetFactory.makeRewindable(qExec1.execSelect()) ;
+        QueryExecution qExec2 = QueryExecutionFactory.create(qs, ds) ;
+        qExec2.getContext().set(ARQ.groupByThreads, 3) ;
+        qExec2.getContext().set(ARQ.spillToDiskThreshold, 10L) ;
+        ResultSetRewindable rs2 = ResultSetFactory.makeRewindable(qExec2.execSelect()) ;
+        assertEquals(37, rs1.size()) ;
+        assertTrue(ResultSetCompare.equalsByTerm(rs1, rs2)) ;
+    }
+
+    /** Rows of ?x = i%13, ?y = i%7, ?z = i */ 
+    private static TableN table(int N)
+    {
+        TableN table = new TableN() ;
+        for ( int i = 0 ; i < N ; i++ )
+        {
+            BindingMap row = BindingFactory.create() ;
+            row.add(x, NodeFactoryExtra.intToNode(i % 13)) ;
+            row.add(y, NodeFactoryExtra.intToNode(i % 7)) ;
+            row.add(z, NodeFactoryExtra.intToNode(i)) ;
+            table.addBinding(row) ;
+        }
+        return table ;
+    }
+
+    private static void test(String groupStr, int N, int threads, long threshold)
+    {
+        OpGroup opGroup = (OpGroup)SSE.parseOp(groupStr) ;
+        VarExprList groupVars = opGroup.getGroupVars() ;
+        Context context = new Context() ;
+        context.set(ARQ.groupByThreads, threads) ;
+        if ( threshold >= 0 )
+            context.set(ARQ.spillToDiskThreshold, threshold) ;
+        ExecutionContext execCxt = new ExecutionContext(context, (Graph)null, (DatasetGraph)null, (OpExecutorFactory)null) ;
+
+        TableN table = table(N) ;
+        QueryIterator expected = new QueryIterGroup(table.iterator(execCxt), groupVars, opGroup.getAggregators(), execCxt) ;
+        QueryIterator actual = new QueryIterGroupPartitioned(table.iterator(execCxt), groupVars, opGroup.getAggregators(), execCxt) ;
+
+        List<String> vars = new ArrayList<>() ;
+        for ( Var v : groupVars.getVars() )
+            vars.add(v.getVarName()) ;
+        for ( int i = 0 ; i < opGroup.getAggregators().size() ; i++ )
+            vars.add(opGroup.getAggregators().get(i).getVar().getVarName()) ;
+        ResultSetRewindable rs1 = ResultSetFactory.makeRewindable(ResultSetFactory.create(expected, vars)) ;
+        ResultSetRewindable rs2 = ResultSetFactory.makeRewindable(ResultSetFactory.create(actual, vars)) ;
+        assertEquals(rs1.size(), rs2.size()) ;
+        assertTrue(ResultSetCompare.equalsByTerm(rs1, rs2)) ;
+    }
+}
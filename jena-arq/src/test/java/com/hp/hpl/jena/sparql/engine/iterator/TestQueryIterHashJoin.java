@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hp.hpl.jena.sparql.engine.iterator;
+
+import java.util.ArrayList ;
+import java.util.LinkedHashSet ;
+import java.util.List ;
+import java.util.Set ;
+
+import org.apache.jena.atlas.junit.BaseTest ;
+import org.junit.Test ;
+
+import com.hp.hpl.jena.graph.Graph ;
+import com.hp.hpl.jena.sparql.util.NodeFactoryExtra ;
+import com.hp.hpl.jena.query.* ;
+import com.hp.hpl.jena.sparql.algebra.Table ;
+import com.hp.hpl.jena.sparql.algebra.table.TableN ;
+import com.hp.hpl.jena.sparql.core.DatasetGraph ;
+import com.hp.hpl.jena.sparql.core.Var ;
+import com.hp.hpl.jena.sparql.engine.ExecutionContext ;
+import com.hp.hpl.jena.sparql.engine.QueryIterator ;
+import com.hp.hpl.jena.sparql.engine.TableJoin ;
+import com.hp.hpl.jena.sparql.engine.binding.BindingFactory ;
+import com.hp.hpl.jena.sparql.engine.binding.BindingMap ;
+import com.hp.hpl.jena.sparql.engine.main.OpExecutorFactory ;
+import com.hp.hpl.jena.sparql.engine.main.iterator.QueryIterHashJoin ;
+import com.hp.hpl.jena.sparql.engine.main.iterator.QueryIterHashLeftJoin ;
+import com.hp.hpl.jena.sparql.expr.ExprList ;
+import com.hp.hpl.jena.sparql.resultset.ResultSetCompare ;
+import com.hp.hpl.jena.sparql.sse.SSE ;
+import com.hp.hpl.jena.sparql.util.Context ;
+
+public class TestQueryIterHashJoin extends BaseTest
+{
+    static Var a = Var.alloc("a") ;
+    static Var b = Var.alloc("b") ;
+    static Var c = Var.alloc("c") ;
+
+    @Test public void hashjoin_01()     { test(table(0, 1, 0), table(0, 2, 0), null, -1) ; }
+    @Test public void hashjoin_02()     { test(table(10, 7, 0), table(0, 5, 0), null, -1) ; }
+    @Test public void hashjoin_03()     { test(table(100, 7, 0), table(50, 5, 0), null, -1) ; }
+    // Rows without the join variable.
+    @Test public void hashjoin_04()     { test(table(100, 7, 10), table(50, 5, 13), null, -1) ; }
+    @Test public void hashjoin_05()     { test(table(100, 7, 10), table(50, 5, 1), null, -1) ; }
+    // Two join variables.
+    @Test public void hashjoin_06()     { test(table(100, 7, 10), table2(80, 5), null, -1) ; }
+    // Spill
+    @Test public void hashjoin_10()     { test(table(100, 7, 0), table(60, 5, 0), null, 10) ; }
+    @Test public void hashjoin_11()     { test(table(100, 7, 10), table(60, 5, 13), null, 10) ; }
+    @Test public void hashjoin_12()     { test(table(100, 7, 10), table2(60, 5), null, 10) ; }
+    @Test public void hashjoin_13()     { test(table(300, 7, 10), table(5, 5, 2), null, 2) ; }
+    // Partitions still too big : split again.
+    @Test public void hashjoin_14()     { test(tableLeft(200, 97, 0), table(150, 89, 0), null, 3) ; }
+    @Test public void hashjoin_15()     { test(tableLeft(200, 97, 9), table(150, 89, 11), null, 3) ; }
+    // One key : cannot be split, joined a block at a time.
+    @Test public void hashjoin_16()     { test(tableLeft(40, 1, 0), table(30, 1, 0), null, 4) ; }
+    @Test public void hashjoin_17()     { test(tableLeft(40, 1, 7), table(30, 1, 5), null, 4) ; }
+    // Conditions.
+    @Test public void hashjoin_20()     { test(table(100, 7, 10), table(50, 5, 13), "(< ?b ?c)", -1) ; }
+    @Test public void hashjoin_21()     { test(table(100, 7, 10), table(60, 5, 13), "(< ?b ?c)", 10) ; }
+
+    @Test public void hashjoin_query_01()
+    {
+        testQuery("SELECT * { { SELECT ?s (count(*) AS ?n) { ?s ?p ?o } GROUP BY ?s } { SELECT ?s (max(?o) AS ?m) { ?s ?p ?o } GROUP BY ?s } }") ;
+    }
+
+    @Test public void hashjoin_query_02()
+    {
+        testQuery("SELECT * { ?s <http://ex/p> ?o OPTIONAL { SELECT ?s (count(*) AS ?n) { ?s <http://ex/q> ?z } GROUP BY ?s } }") ;
+    }
+
+    @Test public void hashjoin_query_03()
+    {
+        testQuery("SELECT * { ?s <http://ex/p> ?o OPTIONAL { ?s <http://ex/q> ?z FILTER (?z > 3) } }") ;
+    }
+
+    // A small table on the right : not hashed by default.
+    @Test public void hashjoin_query_04()
+    {
+        testQuery("SELECT * { { SELECT ?s (count(*) AS ?n) { ?s ?p ?o } GROUP BY ?s } VALUES ?s { <http://ex/s1> <http://ex/s2> } }") ;
+    }
+
+    /** Rows with ?a = i % mod (unbound every "gaps" rows, unless 0) and ?b (or ?c) = i */ 
+    private static Table table(int N, int mod, int gaps)
+    {
+        return table(N, mod, gaps, false) ;
+    }
+
+    /** Rows with ?a = i % mod (unbound every "gaps" rows, unless 0) and ?b = i */ 
+    private static Table tableLeft(int N, int mod, int gaps)
+    {
+        return table(N, mod, gaps, false, b) ;
+    }
+
+    /** Rows with ?a and ?b, both shared with the other side of a join. */
+    private static Table table2(int N, int mod)
+    {
+        return table(N, mod, 0, true) ;
+    }
+
+    private static Table table(int N, int mod, int gaps, boolean both)
+    {
+        return table(N, mod, gaps, both, ( mod == 7 ? b : c )) ;
+    }
+
+    private static Table table(int N, int mod, int gaps, boolean both, Var other)
+    {
+        TableN table = new TableN() ;
+        for ( int i = 0 ; i < N ; i++ )
+        {
+            BindingMap row = BindingFactory.create() ;
+            if ( gaps == 0 || i % gaps != 0 )
+                row.add(a, NodeFactoryExtra.intToNode(i % mod)) ;
+            if ( both )
+                row.add(b, NodeFactoryExtra.intToNode(i % 3)) ;
+            row.add(both ? c : other, NodeFactoryExtra.intToNode(i)) ;
+            table.addBinding(row) ;
+        }
+        return table ;
+    }
+
+    private static void test(Table left, Table right, String condition, long threshold)
+    {
+        Context context = new Context() ;
+        if ( threshold >= 0 )
+            context.set(ARQ.spillToDiskThreshold, threshold) ;
+        ExecutionContext execCxt = new ExecutionContext(context, (Graph)null, (DatasetGraph)null, (OpExecutorFactory)null) ;
+        ExprList exprs = ( condition == null ) ? null : new ExprList(SSE.parseExpr(condition)) ;
+        
+        Set<Var> joinVars = new LinkedHashSet<>(left.getVars()) ;
+        joinVars.retainAll(right.getVars()) ;
+        List<String> vars = new ArrayList<>(left.getVarNames()) ;
+        for ( String v : right.getVarNames() )
+            if ( ! vars.contains(v) )
+                vars.add(v) ;
+
+        for ( boolean leftJoin : new boolean[]{false, true} )
+        {
+            QueryIterator expected = leftJoin
+                ? TableJoin.leftJoin(left.iterator(execCxt), right, exprs, execCxt)
+                : TableJoin.join(left.iterator(execCxt), right, exprs, execCxt) ;
+            QueryIterator actual = leftJoin
+                ? new QueryIterHashLeftJoin(left.iterator(execCxt), right.iterator(execCxt), joinVars, exprs, execCxt)
+                : new QueryIterHashJoin(left.iterator(execCxt), right.iterator(execCxt), joinVars, execCxt) ;
+            if ( exprs != null && ! leftJoin )
+                // Conditions are for the left join.
+                continue ;
+            ResultSet rs1 = ResultSetFactory.create(expected, vars) ;
+            ResultSet rs2 = ResultSetFactory.create(actual, vars) ;
+            assertTrue(ResultSetCompare.equalsByTerm(rs1, rs2)) ;
+            actual.close() ;
+        }
+    }
+
+    private static void testQuery(String qs)
+    {
+        Dataset ds = DatasetFactory.createMem() ;
+        Graph g = ds.asDatasetGraph().getDefaultGraph() ;
+        for ( int i = 0 ; i < 50 ; i++ )
+        {
+            g.add(SSE.parseTriple("(<http://ex/s"+(i%17)+"> <http://ex/p> "+i+")")) ;
+            if ( i % 3 == 0 )
+                g.add(SSE.parseTriple("(<http://ex/s"+(i%11)+"> <http://ex/q> "+(i%7)+")")) ;
+        }
+        QueryExecution qExec1 = QueryExecutionFactory.create(qs, ds) ;
+        qExec1.getContext().set(ARQ.hashJoin, false) ;
+        ResultSetRewindable rs1 = ResultSetFactory.makeRewindable(qExec1.execSelect()) ;
+        QueryExecution qExec2 = QueryExecutionFactory.create(qs, ds) ;
+        qExec2.getContext().set(ARQ.hashJoin, true) ;
+        ResultSetRewindable rs2 = ResultSetFactory.makeRewindable(qExec2.execSelect()) ;
+        // Default
+        QueryExecution qExec3 = QueryExecutionFactory.create(qs, ds) ;
+        ResultSetRewindable rs3 = ResultSetFactory.makeRewindable(qExec3.execSelect()) ;
+        assertTrue(rs1.size() > 0) ;
+        assertTrue(ResultSetCompare.equalsByTerm(rs1, rs2)) ;
+        rs1.reset() ;
+        assertTrue(ResultSetCompare.equalsByTerm(rs1, rs3)) ;
+    }
+}
@@ -23,6 +23,7 @@ import static org.junit.Assert.assertNotNull ;
 import static org.junit.Assert.assertTrue ;
 
 import java.util.ArrayList ;
+import java.util.Collections ;
 import java.util.Iterator ;
 import java.util.List ;
 import java.util.Random ;
@@ -52,6 +53,7 @@ import com.hp.hpl.jena.sparql.engine.binding.BindingMap ;
 import com.hp.hpl.jena.sparql.engine.main.OpExecutorFactory ;
 import com.hp.hpl.jena.sparql.expr.ExprVar ;
 import com.hp.hpl.jena.sparql.serializer.SerializationContext ;
+import com.hp.hpl.jena.sparql.sse.SSE ;
 import com.hp.hpl.jena.sparql.util.Context ;
 
 public class TestQueryIterSort {
@@ -249,6 +251,34 @@ public class TestQueryIterSort {
         assertEquals(0, DataBagExaminer.countTemporaryFiles(qIter.db)) ;
     }
 
+    @Test
+    public void testParallelSortWithExpressions()
+    {
+        iterator.setCallback(new Callback() { @Override
+        public void call() { /* do nothing */ } });
+        List<SortCondition> conditions = new ArrayList<>() ;
+        conditions.add(new SortCondition(SSE.parseExpr("(strlen (str ?9))"), Query.ORDER_DESCENDING)) ;
+        conditions.add(new SortCondition(new ExprVar("8"), Query.ORDER_ASCENDING)) ;
+        Context context = new Context() ;
+        context.set(ARQ.spillToDiskThreshold, 10L) ;
+        context.set(ARQ.sortThreads, 4) ;
+        ExecutionContext executionContext = new ExecutionContext(context, (Graph)null, (DatasetGraph)null, (OpExecutorFactory)null) ;
+        List<Binding> expected = new ArrayList<>(unsorted) ;
+        Collections.sort(expected, new BindingComparator(conditions, executionContext)) ;
+        QueryIterSort qIter = new QueryIterSort(iterator, conditions, executionContext) ;
+        try
+        {
+            List<Binding> actual = new ArrayList<>() ;
+            while ( qIter.hasNext() )
+                actual.add(qIter.next()) ;
+            assertEquals(expected, actual) ;
+        }
+        finally
+        {
+            qIter.close() ;
+        }
+    }
+
     private Binding randomBinding(Var[] vars)
     {
         BindingMap binding = BindingFactory.create();
@@ -20,16 +20,24 @@ package com.hp.hpl.jena.sparql.solver;
 
 import static com.hp.hpl.jena.sparql.solver.TestSolverLib.bgp ;
 import static com.hp.hpl.jena.sparql.solver.TestSolverLib.matcher ;
+import static com.hp.hpl.jena.sparql.solver.TestSolverLib.selectivity ;
 import static com.hp.hpl.jena.sparql.solver.TestSolverLib.triple ;
+
+import java.util.ArrayList ;
+import java.util.List ;
+
 import org.apache.jena.atlas.junit.BaseTest ;
 import org.junit.Test ;
 
+import com.hp.hpl.jena.graph.Node ;
 import com.hp.hpl.jena.graph.Triple ;
 import com.hp.hpl.jena.sparql.core.BasicPattern ;
 import com.hp.hpl.jena.sparql.engine.optimizer.StatsMatcher ;
+import com.hp.hpl.jena.sparql.engine.optimizer.StatsSelectivity ;
 import com.hp.hpl.jena.sparql.engine.optimizer.reorder.ReorderLib ;
 import com.hp.hpl.jena.sparql.engine.optimizer.reorder.ReorderProc ;
 import com.hp.hpl.jena.sparql.engine.optimizer.reorder.ReorderProcIndexes ;
+import com.hp.hpl.jena.sparql.engine.optimizer.reorder.ReorderSelectivity ;
 import com.hp.hpl.jena.sparql.engine.optimizer.reorder.ReorderTransformation ;
 import com.hp.hpl.jena.sparql.engine.optimizer.reorder.ReorderWeighted ;
 
@@ -229,5 +237,84 @@ public class TestReorder extends BaseTest
         BasicPattern bgp2 = transform.reorder(bgp) ;
         assertEquals(bgp2, bgp) ;
     }
-  
+
+    // Selectivity statistics section is skipped by StatsMatcher.
+    @Test public void match_30()
+    {
+        StatsMatcher matcher = matcher("(:p 10) (selectivity (pred :p (count 10) (subjects 5) (objects 2)))") ;
+        Triple t = triple("(?x :p ?v)") ;
+        double d = matcher.match(t) ;
+        assertEquals(10, d, 0) ;
+    }
+
+    @Test public void selectivity_01()
+    {
+        StatsSelectivity sel = selectivity("(pred :p (count 100) (subjects 50) (objects 20) (values (:a 60) (:b 20)))") ;
+        StatsSelectivity.PredicateStats ps = sel.get(triple("(:s :p :o)").getPredicate()) ;
+        assertEquals(2, ps.perSubject(), 0) ;
+        assertEquals(5, ps.perObject(), 0) ;
+        assertEquals(60, ps.perObject(triple("(:s :p :a)").getObject()), 0) ;
+        // 20 triples over the remaining 18 objects.
+        assertEquals(20.0/18, ps.perObject(triple("(:s :p :c)").getObject()), 0.001) ;
+        assertNull(sel.get(triple("(:s :q :o)").getPredicate())) ;
+    }
+
+    @Test public void selectivity_02()
+    {
+        StatsSelectivity sel = selectivity("(charset 10 :p :q)", "(charset 5 :p :q :r)", "(charset 7 :q :r)") ;
+        assertEquals(15, sel.starSubjects(bgpPredicates("(bgp (?x :p ?v) (?x :q ?w))")), 0) ;
+        assertEquals(12, sel.starSubjects(bgpPredicates("(bgp (?x :r ?v) (?x :q ?w))")), 0) ;
+        assertEquals(0, sel.starSubjects(bgpPredicates("(bgp (?x :r ?v) (?x :z ?w))")), 0) ;
+        assertEquals(-1, selectivity().starSubjects(bgpPredicates("(bgp (?x :r ?v) (?x :z ?w))")), 0) ;
+    }
+
+    // A common object value goes after a more selective pattern.
+    @Test public void reorder_selectivity_01()
+    {
+        StatsMatcher m = matcher("(:p 100) (:q 1000)") ;
+        StatsSelectivity sel = selectivity("(pred :p (count 100) (subjects 100) (objects 100))",
+                                           "(pred :q (count 1000) (subjects 1000) (objects 10) (values (:a 900)))") ;
+        ReorderTransformation transform = new ReorderSelectivity(m, sel) ;
+        testReorder(transform, "(bgp (?x :q :a) (?x :p ?v))", "(bgp (?x :p ?v) (?x :q :a))") ;
+        testReorder(transform, "(bgp (?x :q :b) (?x :p ?v))", "(bgp (?x :q :b) (?x :p ?v))") ;
+    }
+
+    // Star on ?x : few subjects have both :p and :q.
+    @Test public void reorder_selectivity_02()
+    {
+        StatsMatcher m = matcher("(:p 1000) (:q 1000) (:r 50)") ;
+        String[] predicates = { "(pred :p (count 1000) (subjects 1000) (objects 1000))",
+                                "(pred :q (count 1000) (subjects 1000) (objects 1000))",
+                                "(pred :r (count 50) (subjects 50) (objects 50))" } ;
+        ReorderTransformation transform1 = new ReorderSelectivity(m, selectivity(predicates)) ;
+        testReorder(transform1, "(bgp (?y :r ?z) (?x :p ?v) (?x :q ?w))", "(bgp (?y :r ?z) (?x :p ?v) (?x :q ?w))") ;
+
+        String[] all = { predicates[0], predicates[1], predicates[2], "(charset 10 :p :q)" } ;
+        ReorderTransformation transform2 = new ReorderSelectivity(m, selectivity(all)) ;
+        testReorder(transform2, "(bgp (?y :r ?z) (?x :p ?v) (?x :q ?w))", "(bgp (?x :p ?v) (?x :q ?w) (?y :r ?z))") ;
+    }
+
+    // Predicates not in the selectivity statistics use the matcher.
+    @Test public void reorder_selectivity_03()
+    {
+        StatsMatcher m = matcher("(:p 1000) (:q 5)") ;
+        StatsSelectivity sel1 = selectivity("(pred :p (count 10) (subjects 10) (objects 10))") ;
+        testReorder(new ReorderSelectivity(m, sel1), "(bgp (?y :q ?w) (?x :p ?v))", "(bgp (?y :q ?w) (?x :p ?v))") ;
+        StatsSelectivity sel2 = selectivity("(pred :p (count 2) (subjects 2) (objects 2))") ;
+        testReorder(new ReorderSelectivity(m, sel2), "(bgp (?y :q ?w) (?x :p ?v))", "(bgp (?x :p ?v) (?y :q ?w))") ;
+    }
+
+    private static void testReorder(ReorderTransformation transform, String input, String expected)
+    {
+        BasicPattern bgp = transform.reorder(bgp(input)) ;
+        assertEquals(bgp(expected), bgp) ;
+    }
+
+    private static List<Node> bgpPredicates(String str)
+    {
+        List<Node> x = new ArrayList<>() ;
+        for ( Triple t : bgp(str) )
+            x.add(t.getPredicate()) ;
+        return x ;
+    }
 }
@@ -23,6 +23,7 @@ import org.apache.jena.atlas.lib.StrUtils ;
 import com.hp.hpl.jena.graph.Triple ;
 import com.hp.hpl.jena.sparql.core.BasicPattern ;
 import com.hp.hpl.jena.sparql.engine.optimizer.StatsMatcher ;
+import com.hp.hpl.jena.sparql.engine.optimizer.StatsSelectivity ;
 import com.hp.hpl.jena.sparql.sse.Item ;
 import com.hp.hpl.jena.sparql.sse.SSE ;
 
@@ -54,6 +55,17 @@ public class TestSolverLib
         return new StatsMatcher(item) ; 
     }
 
+    public static StatsSelectivity selectivity(String... str)
+    {
+        String s1 = "(prefix ((: <http://example/>))\n(stats (selectivity " ;
+        String s2 = ")))" ;
+        
+        String x = StrUtils.strjoinNL(str) ;
+        
+        Item item = SSE.parse(s1+x+s2) ;
+        return new StatsSelectivity(item) ; 
+    }
+
     public static Triple triple(String str)
     {
         String s1 = "(prefix ((: <http://example/>)) " ;
@@ -24,6 +24,7 @@ import java.util.Collections ;
 import java.util.Iterator ;
 import java.util.List ;
 import java.util.Random ;
+import java.util.concurrent.ForkJoinPool ;
 
 import junit.framework.TestCase ;
 
@@ -56,7 +57,51 @@ public class TestSortedDataBag extends TestCase
         testSorting(500, 10);
     }
     
+    @Test public void testSortingParallel() 
+    {
+        int origParallelThreshold = SortedDataBag.PARALLEL_SORT_THRESHOLD;
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try
+        {
+            // Small enough that spills, and the final in-memory sort, are split.
+            SortedDataBag.PARALLEL_SORT_THRESHOLD = 8;
+            testSorting(500, 100, pool);
+            testSorting(500, 1000, pool);
+            testSorting(500, 7, pool);
+            testSorting(0, 10, pool);
+        }
+        finally
+        {
+            SortedDataBag.PARALLEL_SORT_THRESHOLD = origParallelThreshold;
+            pool.shutdown();
+        }
+    }
+    
+    @Test public void testSortingParallelWithPreMerge() 
+    {
+        int origMaxSpillFiles = SortedDataBag.MAX_SPILL_FILES;
+        int origParallelThreshold = SortedDataBag.PARALLEL_SORT_THRESHOLD;
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try
+        {
+            SortedDataBag.PARALLEL_SORT_THRESHOLD = 4;
+            SortedDataBag.MAX_SPILL_FILES = 2;    testSorting(5, 1, pool);
+            SortedDataBag.MAX_SPILL_FILES = 3;    testSorting(1000, 20, pool);
+        }
+        finally
+        {
+            SortedDataBag.MAX_SPILL_FILES = origMaxSpillFiles;
+            SortedDataBag.PARALLEL_SORT_THRESHOLD = origParallelThreshold;
+            pool.shutdown();
+        }
+    }
+    
     private void testSorting(int numBindings, int threshold)
+    {
+        testSorting(numBindings, threshold, null);
+    }
+    
+    private void testSorting(int numBindings, int threshold, ForkJoinPool pool)
     {
         List<Binding> unsorted = randomBindings(numBindings);
         
@@ -71,7 +116,7 @@ public class TestSortedDataBag extends TestCase
         SortedDataBag<Binding> db = new SortedDataBag<>(
                 new ThresholdPolicyCount<Binding>(threshold),
                 SerializationFactoryFinder.bindingSerializationFactory(),
-                comparator);
+                comparator, pool);
         try
         {
             db.addAll(unsorted);
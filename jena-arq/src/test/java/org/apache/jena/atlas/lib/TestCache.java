@@ -87,6 +87,16 @@ public class TestCache extends BaseTest
         public String name() { return "StatsAtomic" ; }
         }
     ;
+
+    private static CacheMaker<Integer, Integer> concurrent = 
+        new CacheMaker<Integer, Integer>()
+        {
+        @Override
+        public Cache<Integer, Integer> make(int size) { return CacheFactory.createCacheConcurrent(size) ; }
+        @Override
+        public String name() { return "Concurrent" ; }
+        }
+    ;
            
     @Parameters
     public static Collection<Object[]> cacheMakers()
@@ -104,6 +114,9 @@ public class TestCache extends BaseTest
             , { statsAtomic , 10 }
             , { statsAtomic , 2 }
             , { statsAtomic , 1 }
+            , { concurrent , 10 }
+            , { concurrent , 2 }
+            , { concurrent , 1 }
         } ) ; 
     }
 
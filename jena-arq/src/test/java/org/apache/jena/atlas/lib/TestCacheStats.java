@@ -22,6 +22,7 @@ import org.apache.jena.atlas.junit.BaseTest ;
 import org.apache.jena.atlas.lib.Cache ;
 import org.apache.jena.atlas.lib.CacheFactory ;
 import org.apache.jena.atlas.lib.CacheStats ;
+import org.apache.jena.atlas.lib.cache.CacheConcurrent ;
 import org.apache.jena.atlas.lib.cache.CacheStatsAtomic ;
 import org.junit.Before ;
 import org.junit.Test ;
@@ -81,4 +82,28 @@ public class TestCacheStats extends BaseTest
         cache.get(7) ;
         assertEquals(2,cs.getCacheHits()) ;
     }
+
+    @Test public void stats_05()
+    {
+        CacheStats<Integer, Integer> cs = CacheFactory.createCacheConcurrent(2) ;
+        cs.put(7,77) ;
+        cs.get(7) ;
+        cs.get(8) ;
+        assertEquals(1,cs.getCacheHits()) ;
+        assertEquals(1,cs.getCacheMisses()) ;
+        for ( int i = 10 ; i < 20 ; i++ )
+            cs.put(i, i) ;
+        assertTrue(cs.getCacheEntries() <= 2) ;
+        assertEquals(10+1-cs.getCacheEntries(), cs.getCacheEjects()) ;
+    }
+
+    @Test public void stats_06()
+    {
+        CacheConcurrent<Integer, Integer> cache = new CacheConcurrent<>(2) ;
+        cache.put(7,77) ;
+        assertEquals(77, cache.probe(7).intValue()) ;
+        assertNull(cache.probe(8)) ;
+        assertEquals(1,cache.getCacheHits()) ;
+        assertEquals(0,cache.getCacheMisses()) ;
+    }
 }
@@ -30,6 +30,7 @@ import com.hp.hpl.jena.tdb.base.file.Location ;
 import com.hp.hpl.jena.tdb.base.file.LocationLock ;
 import com.hp.hpl.jena.tdb.setup.DatasetBuilderStd ;
 import com.hp.hpl.jena.tdb.setup.StoreParams ;
+import com.hp.hpl.jena.tdb.solver.stats.ReorderStatsFile ;
 import com.hp.hpl.jena.tdb.store.DatasetGraphTDB ;
 import com.hp.hpl.jena.tdb.sys.SystemTDB ;
 import com.hp.hpl.jena.tdb.transaction.* ;
@@ -44,6 +45,7 @@ public class StoreConnection
     private final DatasetGraphTDB    baseDSG ;
     private boolean                  isValid = true ;
     private volatile boolean         haveUsedInTransaction = false ;
+    private volatile boolean         haveUsedDirectly = false ;
 
     private StoreConnection(DatasetGraphTDB dsg)
     {
@@ -79,6 +81,17 @@ public class StoreConnection
     }
 
     public boolean haveUsedInTransaction() { return haveUsedInTransaction ; }
+
+    /** Note that the base dataset is used directly, not in a transaction.
+     *  Changes are not journaled, so the next block-level backup is a full copy. */
+    public void noteDirectUse()
+    {
+        if ( ! haveUsedDirectly )
+        {
+            haveUsedDirectly = true ;
+            transactionManager.stopBlockTracking() ;
+        }
+    }
     
     public Location getLocation()
     {
@@ -143,6 +156,17 @@ public class StoreConnection
         transactionManager.flush() ;
     }
     
+    /** Block-level backup of the database files to a directory, while the database is in use.
+     *  If the directory has the last backup of this database, only the changes since are copied.
+     *  @see com.hp.hpl.jena.tdb.TDBBackup#backupFiles
+     */
+    public void backup(String directory)
+    {
+        checkValid() ;
+        checkTransactional() ;
+        transactionManager.backup(directory) ;
+    }
+    
     /** Indicate whether there are any active transactions.
      *  @see #getTransMgrState
      */
@@ -155,7 +179,18 @@ public class StoreConnection
     /** Flush the journal regardless - use with great case - do not use when transactions may be active. */ 
     public void forceRecoverFromJournal()
     {
-        JournalControl.recoverFromJournal(getBaseDataset().getConfig(), transactionManager.getJournal()) ;
+        DatasetGraphTDB dsg = getBaseDataset() ;
+        boolean recovered = JournalControl.recoverFromJournal(dsg.getConfig(), transactionManager.getJournal(), transactionManager.getBlockTracker()) ;
+        if ( recovered && dsg.getReorderTransform() instanceof ReorderStatsFile )
+        {
+            // The journal may have rewritten the stats file.
+            DatasetBuilderStd.attachStats(dsg) ;
+            ReorderStatsFile reorder = (ReorderStatsFile)dsg.getReorderTransform() ;
+            if ( dsg.getStatsCounts() != null )
+                reorder.reload(dsg.getStatsCounts().format()) ;
+            else
+                reorder.refresh() ;
+        }
     }
 
     /** Highly risky! */
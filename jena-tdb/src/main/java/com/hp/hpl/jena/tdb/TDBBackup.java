@@ -28,6 +28,7 @@ import org.apache.jena.riot.RDFDataMgr ;
 import com.hp.hpl.jena.query.Dataset ;
 import com.hp.hpl.jena.query.ReadWrite ;
 import com.hp.hpl.jena.tdb.base.file.Location ;
+import com.hp.hpl.jena.tdb.transaction.BackupControl ;
 import com.hp.hpl.jena.tdb.transaction.DatasetGraphTxn ;
 
 /**
@@ -59,5 +60,26 @@ public class TDBBackup
         RDFDataMgr.write(backupfile, dsg, Lang.NQUADS) ;
         dsg.end();
     }
+
+    /** Block-level backup: copy the database files to a directory while the database is in use.
+     *  Writers wait until the copy is complete; readers carry on.
+     *  If the directory has the last backup of this database, only the changes since then are copied.
+     *  The backup directory is restored with {@link #restoreFiles}.
+     */
+    public static void backupFiles(Location location, String directory)
+    {
+        StoreConnection sConn = StoreConnection.make(location) ;
+        sConn.backup(directory) ;
+    }
+
+    /** Restore a database from a block-level backup into an empty location.
+     *  The location must not be in use. 
+     */
+    public static void restoreFiles(String directory, Location location)
+    {
+        if ( StoreConnection.getExisting(location) != null )
+            throw new TDBException("Location is in use: "+location.getDirectoryPath()) ;
+        BackupControl.restore(directory, location) ;
+    }
 }
 
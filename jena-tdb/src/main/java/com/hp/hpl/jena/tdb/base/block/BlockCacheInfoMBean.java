@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hp.hpl.jena.tdb.base.block;
+
+/** Interface to stats for the block cache of a single file */
+public interface BlockCacheInfoMBean
+{
+    /** The file being cached */
+    String getLabel() ;
+
+    /** Number of blocks in the read cache */
+    long getReadCacheEntries() ;
+
+    /** Number of reads found in the read cache */
+    long getReadCacheHits() ;
+
+    /** Number of reads not found in the read cache */
+    long getReadCacheMisses() ;
+
+    /** Number of blocks dropped from the read cache to make space */
+    long getReadCacheEvictions() ;
+
+    /** Number of reads found in the delayed write cache */
+    long getWriteCacheHits() ;
+}
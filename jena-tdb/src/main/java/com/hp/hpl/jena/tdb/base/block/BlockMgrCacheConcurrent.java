@@ -0,0 +1,336 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hp.hpl.jena.tdb.base.block;
+
+import java.util.Iterator ;
+import java.util.concurrent.atomic.AtomicLong ;
+
+import javax.management.ObjectName ;
+
+import org.apache.jena.atlas.lib.ActionKeyValue ;
+import org.apache.jena.atlas.lib.Cache ;
+import org.apache.jena.atlas.lib.CacheFactory ;
+import org.apache.jena.atlas.lib.CacheStats ;
+import org.apache.jena.atlas.lib.cache.CacheConcurrent ;
+import org.slf4j.Logger ;
+import org.slf4j.LoggerFactory ;
+
+import com.hp.hpl.jena.tdb.TDB ;
+import com.hp.hpl.jena.tdb.mgt.TDBMgt ;
+
+/** Caching block manager for many concurrent readers.
+ * <p>
+ * As {@link BlockMgrCache} but a read of a block in the read cache does not take a lock.
+ * A read cache miss locks one of a number of stripes, chosen by block id,
+ * so misses on different blocks go to the underlying BlockMgr in parallel.
+ * Replacement in the read cache is per stripe of the cache, not global LRU.
+ * <p>
+ * Operations that change blocks, and the delayed write cache, are synchronized
+ * on this object. TDB is MRSW: they are not concurrent with reads of the same block.
+ */
+public class BlockMgrCacheConcurrent extends BlockMgrWrapper
+{
+    private static Logger log = LoggerFactory.getLogger(BlockMgrCacheConcurrent.class) ;
+    private static final int NumStripes = 64 ;
+
+    // Read cache : always present. Thread-safe.
+    private final CacheConcurrent<Long, Block> readCache ;
+    // Delayed dirty writes.  May be present, may not. Guarded by "this".
+    private final Cache<Long, Block> writeCache ;
+    // Locks for read cache misses. Always taken before "this".
+    private final Object[] stripes ;
+
+    private final AtomicLong cacheWriteHits = new AtomicLong(0) ;
+    private final String mgtName ;
+    private final BlockCacheInfo mgtInfo ;
+
+    static BlockMgr create(int readSlots, int writeSlots, final BlockMgr blockMgr)
+    {
+        if ( readSlots <= 0 && writeSlots <= 0 )
+            return blockMgr ;
+        return new BlockMgrCacheConcurrent(readSlots, writeSlots, blockMgr) ;
+    }
+
+    private BlockMgrCacheConcurrent(int readSlots, int writeSlots, final BlockMgr blockMgr)
+    {
+        super(blockMgr) ;
+        readCache = new CacheConcurrent<>(Math.max(readSlots, 1)) ;
+        stripes = new Object[NumStripes] ;
+        for ( int i = 0 ; i < stripes.length ; i++ )
+            stripes[i] = new Object() ;
+        if ( writeSlots <= 0 )
+            writeCache = null ;
+        else
+        {
+            writeCache = CacheFactory.createCache(writeSlots) ;
+            writeCache.setDropHandler(new ActionKeyValue<Long, Block>(){
+                @Override
+                public void apply(Long id, Block block)
+                { 
+                    // We're inside a synchronized operation at this point.
+                    if (block == null)
+                    {
+                        log.warn("Write cache: " + id + " dropping an entry that isn't there") ;
+                        return ;
+                    }
+                    // Force the block to be written
+                    // by sending it to the wrapped BlockMgr
+                    BlockMgrCacheConcurrent.super.write(block) ;
+                }
+            }) ;
+        }
+        String label = blockMgr.getLabel() ;
+        if ( label == null )
+        {
+            mgtName = null ;
+            mgtInfo = null ;
+        }
+        else
+        {
+            mgtName = TDB.PATH+".block:type=Cache,file="+ObjectName.quote(label) ;
+            mgtInfo = new BlockCacheInfo(this) ;
+            TDBMgt.register(mgtName, mgtInfo) ;
+        }
+    }
+
+    /** Statistics for the read cache */
+    public CacheStats<Long, Block> getReadCacheStats()  { return readCache ; }
+
+    /** Number of reads satisfied by the delayed write cache */
+    public long getWriteCacheHits()                     { return cacheWriteHits.get() ; }
+
+    private Object lockFor(long id)
+    {
+        return stripes[(int)((id & 0x7FFFFFFFL) % stripes.length)] ;
+    }
+
+    @Override
+    public Block getRead(long id)
+    {
+        // Lock-free hit. A miss is counted by the look under the lock.
+        Block blk = readCache.probe(id) ;
+        if ( blk != null )
+            return blk ;
+        synchronized (lockFor(id))
+        {
+            // Another reader may have just read it.
+            blk = readCache.get(id) ;
+            if ( blk != null )
+                return blk ;
+            if ( writeCache != null )
+            {
+                synchronized (this)
+                {
+                    // Writable blocks are readable. Leave in write cache.
+                    blk = writeCache.get(id) ;
+                }
+                if ( blk != null )
+                {
+                    cacheWriteHits.incrementAndGet() ;
+                    return blk ;
+                }
+            }
+            blk = super.getRead(id) ;
+            readCache.put(id, blk) ;
+            return blk ;
+        }
+    }
+
+    @Override
+    public Block getReadIterator(long id)
+    {
+        // And don't pass down "iterator" calls.
+        return getRead(id) ;
+    }
+
+    @Override
+    public Block getWrite(long _id)
+    {
+        Long id = _id ;
+        synchronized (lockFor(id))
+        {
+            synchronized (this)
+            {
+                Block blk = null ;
+                if ( writeCache != null )
+                    blk = writeCache.get(id) ;
+                if ( blk != null )
+                {
+                    cacheWriteHits.incrementAndGet() ;
+                    return blk ;
+                }
+                // A requested block may be in the other cache. Promote it.
+                blk = readCache.get(id) ;
+                if ( blk != null )
+                    return promote(blk) ;
+                blk = super.getWrite(id) ;
+                if ( writeCache != null )
+                    writeCache.put(id, blk) ;
+                return blk ;
+            }
+        }
+    }
+
+    @Override
+    public Block promote(Block block)
+    {
+        Long id = block.getId() ;
+        synchronized (lockFor(id))
+        {
+            synchronized (this)
+            {
+                readCache.remove(id) ;
+                Block block2 = super.promote(block) ;
+                if ( writeCache != null )
+                    writeCache.put(id, block2) ;
+                return block ;
+            }
+        }
+    }
+
+    @Override
+    public void write(Block block)
+    {
+        Long id = block.getId() ;
+        synchronized (lockFor(id))
+        {
+            synchronized (this)
+            {
+                // Should not be in the read cache due to a getWrite earlier.
+                if ( readCache.containsKey(id) )
+                    log.warn("write: Block in the read cache") ;
+                if ( writeCache != null )
+                    writeCache.put(id, block) ;
+                super.write(block) ;
+            }
+        }
+    }
+
+    @Override
+    public void overwrite(Block block)
+    {
+        Long id = block.getId() ;
+        synchronized (lockFor(id))
+        {
+            synchronized (this)
+            {
+                // It can be a read block (by the transaction), now being written for real (enacting a transaction).
+                super.overwrite(block) ;
+                // Keep read cache up-to-date. 
+                readCache.put(id, block) ;
+            }
+        }
+    }
+
+    @Override
+    public void free(Block block)
+    {
+        Long id = block.getId() ;
+        synchronized (lockFor(id))
+        {
+            synchronized (this)
+            {
+                if ( readCache.remove(id) )
+                    log.warn("Freeing block from read cache") ;
+                if ( writeCache != null )
+                    writeCache.remove(id) ;
+                super.free(block) ;
+            }
+        }
+    }
+
+    @Override
+    synchronized
+    public Block allocate(int blockSize)
+    {
+        return super.allocate(blockSize) ;
+    }
+
+    @Override
+    synchronized
+    public void sync()
+    {
+        _sync(false) ;
+    }
+
+    @Override
+    synchronized
+    public void syncForce()
+    {
+        _sync(true) ;
+    }
+
+    @Override
+    synchronized
+    public void close()
+    {
+        syncFlush() ;
+        if ( mgtName != null )
+            TDBMgt.unregister(mgtName, mgtInfo) ;
+        super.close() ;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "CacheConcurrent:"+super.blockMgr.toString() ; 
+    }
+
+    private void _sync(boolean force)
+    {
+        boolean somethingWritten = syncFlush() ;
+        if ( force )
+            super.syncForce() ;
+        else if ( somethingWritten )
+            super.sync() ;
+    }
+
+    // Caller holds the lock on "this".
+    private boolean syncFlush()
+    {
+        if ( writeCache == null ) return false ;
+
+        // Get all then delete else concurrent modification exception. 
+        long N = writeCache.size() ;
+        Long[] ids = new Long[(int)N] ;
+        Iterator<Long> iter = writeCache.keys() ;
+        boolean didSync = iter.hasNext() ;
+        for ( int i = 0 ; iter.hasNext() ; i++ )
+            ids[i] = iter.next() ;
+
+        for ( int i = 0 ; i < N ; i++ )
+        {
+            Long id = ids[i] ;
+            Block block = writeCache.get(id) ;
+            if ( block == null )
+            {
+                log.warn("Write cache: "+id+" expelling entry that isn't there") ;
+                continue ;
+            }
+            // This pushes the block to the BlockMgr being cached.
+            super.write(block) ;
+            writeCache.remove(id) ;
+            // Move it into the readCache because it's often read after writing.
+            readCache.put(id, block) ;
+        }
+        if ( didSync )
+            super.sync() ;
+        return didSync ;
+    }
+}
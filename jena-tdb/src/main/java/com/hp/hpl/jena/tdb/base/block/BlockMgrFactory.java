@@ -30,6 +30,14 @@ public class BlockMgrFactory {
     // e.g. transactions keep blocks and not release them down the layers.
     public/* final */static boolean AddTracker = false ;
 
+    /** Use the block cache with lock-free reads ({@link BlockMgrCacheConcurrent})
+     *  in place of {@link BlockMgrCache} for direct mode files. */
+    public/* final */static boolean ConcurrentCache = true ;
+
+    /** Put a {@link BlockMgrCacheConcurrent} read cache in front of memory mapped files.
+     *  Off by default: mapped files are cached by the OS and have no block cache. */
+    public/* final */static boolean MappedReadCache = false ;
+
     public static BlockMgr tracker(BlockMgr blockMgr) {
         if ( blockMgr instanceof BlockMgrTracker )
             return blockMgr ;
@@ -86,7 +94,7 @@ public class BlockMgrFactory {
             fileMode = SystemTDB.fileMode() ;
         switch (fileMode) {
             case mapped :
-                return createMMapFile(filename, blockSize) ;
+                return createMMapFile(filename, blockSize, readBlockCacheSize) ;
             case direct :
                 return createStdFile(filename, blockSize, readBlockCacheSize, writeBlockCacheSize) ;
         }
@@ -95,8 +103,16 @@ public class BlockMgrFactory {
 
     /** Create a NIO Block Manager */
     public static BlockMgr createMMapFile(String filename, int blockSize) {
+        return createMMapFile(filename, blockSize, -1) ;
+    }
+
+    /** Create a NIO Block Manager, with a read cache of blocks if {@link #MappedReadCache} is set. */
+    public static BlockMgr createMMapFile(String filename, int blockSize, int readBlockCacheSize) {
         BlockAccess file = new BlockAccessMapped(filename, blockSize) ;
         BlockMgr blockMgr = wrapFileAccess(file, blockSize) ;
+        // The OS caches the file: this saves finding and slicing the mapped segment on each read.
+        if ( MappedReadCache )
+            blockMgr = BlockMgrCacheConcurrent.create(readBlockCacheSize, 0, blockMgr) ;
         return track(blockMgr) ;
     }
 
@@ -124,8 +140,10 @@ public class BlockMgrFactory {
      * @see #addCache(BlockMgr, FileSet, FileMode, int, int)
      */
     public static BlockMgr addCache(BlockMgr blockMgr, int readBlockCacheSize, int writeBlockCacheSize) {
-        if ( blockMgr instanceof BlockMgrCache )
+        if ( blockMgr instanceof BlockMgrCache || blockMgr instanceof BlockMgrCacheConcurrent )
             Log.warn(BlockMgrFactory.class, "BlockMgr already has a cache: " + blockMgr.getLabel()) ;
+        if ( ConcurrentCache )
+            return BlockMgrCacheConcurrent.create(readBlockCacheSize, writeBlockCacheSize, blockMgr) ;
         return BlockMgrCache.create(readBlockCacheSize, writeBlockCacheSize, blockMgr) ;
     }
 
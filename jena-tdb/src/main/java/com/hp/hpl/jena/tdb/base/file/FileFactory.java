@@ -19,6 +19,7 @@
 package com.hp.hpl.jena.tdb.base.file;
 
 import com.hp.hpl.jena.tdb.base.objectfile.ObjectFile ;
+import com.hp.hpl.jena.tdb.base.objectfile.ObjectFileMapped ;
 import com.hp.hpl.jena.tdb.base.objectfile.ObjectFileStorage ;
 import com.hp.hpl.jena.tdb.base.objectfile.StringFile ;
 
@@ -36,6 +37,13 @@ public class FileFactory
         return new ObjectFileStorage(file) ;
     }
 
+    /** An ObjectFile where reads are from a read-only memory mapping of the file */  
+    public static ObjectFile createObjectFileDiskMapped(String filename)
+    {
+        BufferChannel file = BufferChannelFile.create(filename) ; 
+        return new ObjectFileMapped(filename, new ObjectFileStorage(file)) ;
+    }
+
     public static ObjectFile createObjectFileMem(String filename)
     { 
         BufferChannel file = BufferChannelMem.create(filename) ; 
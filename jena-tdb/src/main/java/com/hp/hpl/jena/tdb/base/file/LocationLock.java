@@ -27,6 +27,7 @@ import org.apache.jena.atlas.io.IO;
 
 import com.hp.hpl.jena.tdb.TDBException;
 import com.hp.hpl.jena.tdb.sys.ProcessUtils;
+import com.hp.hpl.jena.tdb.sys.Names;
 import com.hp.hpl.jena.tdb.sys.SystemTDB;
 
 /**
@@ -35,7 +36,7 @@ import com.hp.hpl.jena.tdb.sys.SystemTDB;
  */
 public class LocationLock {
     private static final int NO_OWNER = 0;
-    private static final String LOCK_FILENAME = "tdb.lock";
+    private static final String LOCK_FILENAME = Names.lockFile;
 
     private Location location;
 
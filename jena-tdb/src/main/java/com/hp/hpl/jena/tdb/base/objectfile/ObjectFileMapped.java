@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hp.hpl.jena.tdb.base.objectfile;
+
+import static com.hp.hpl.jena.tdb.sys.SystemTDB.SizeOfInt ;
+
+import java.io.IOException ;
+import java.io.RandomAccessFile ;
+import java.nio.ByteBuffer ;
+import java.nio.MappedByteBuffer ;
+import java.nio.channels.FileChannel ;
+import java.nio.channels.FileChannel.MapMode ;
+import java.util.Arrays ;
+
+import org.apache.jena.atlas.io.IO ;
+
+/** An ObjectFile where reads of the part of the file already on disk are
+ *  slices of a read-only memory mapping of the file, not copies into a new buffer.
+ *  The file format is the same as {@link ObjectFileStorage}, which does
+ *  the writing and any reads of objects still in its write buffer.
+ *  <p>
+ *  The file is mapped in segments; the mapping is extended when a read
+ *  finds the file has grown.
+ *  Objects on disk do not change so {@link #readMapped} needs no lock.
+ */
+public class ObjectFileMapped extends ObjectFileWrapper
+{
+    public static final int DftSegmentSize = 64*1024*1024 ;
+    
+    private final String filename ;
+    private final int segmentSize ;
+    private FileChannel channel = null ;
+    private volatile Mapping mapping = Mapping.empty ;
+    
+    /** Segments of the mapped file; all are full size except perhaps the last one. */ 
+    private static class Mapping
+    {
+        static final Mapping empty = new Mapping(new MappedByteBuffer[0], 0) ;
+        final MappedByteBuffer[] segments ;
+        final long length ;
+        
+        Mapping(MappedByteBuffer[] segments, long length)
+        {
+            this.segments = segments ;
+            this.length = length ;
+        }
+    }
+    
+    public ObjectFileMapped(String filename, ObjectFile other)
+    {
+        this(filename, other, DftSegmentSize) ;
+    }
+    
+    public ObjectFileMapped(String filename, ObjectFile other, int segmentSize)
+    {
+        super(other) ;
+        this.filename = filename ;
+        this.segmentSize = segmentSize ;
+    }
+    
+    @Override
+    public ByteBuffer read(long loc)
+    {
+        ByteBuffer bb = readMapped(loc) ;
+        if ( bb != null )
+            return bb ;
+        // Not mapped yet : the file may have grown.
+        if ( remap() )
+        {
+            bb = readMapped(loc) ;
+            if ( bb != null )
+                return bb ;
+        }
+        // In the write buffer, or a bad location.
+        return other.read(loc) ;
+    }
+
+    /** Read an object from the mapped part of the file, without locking.
+     *  Return null if the object is not all in the mapped part of the file.
+     *  The ByteBuffer returned is a slice of the mapping: position 0, limit the length of the object.
+     */
+    public ByteBuffer readMapped(long loc)
+    {
+        Mapping m = mapping ;
+        if ( loc < 0 || loc+SizeOfInt > m.length )
+            return null ;
+        int seg = (int)(loc/segmentSize) ;
+        int offset = (int)(loc%segmentSize) ;
+        MappedByteBuffer segBuffer = m.segments[seg] ;
+        if ( offset+SizeOfInt > segBuffer.limit() )
+            // Length crosses a segment boundary.
+            return readAcross(m, loc) ;
+        // Absolute get does not change the buffer state.
+        int len = segBuffer.getInt(offset) ;
+        if ( len < 0 || len > m.length-(loc+SizeOfInt) )
+            // Not all mapped : leave it to read(), which checks the length.
+            return null ;
+        int start = offset+SizeOfInt ;
+        if ( start+len > segBuffer.limit() )
+            return readAcross(m, loc) ;
+        ByteBuffer bb = segBuffer.duplicate() ;
+        bb.limit(start+len) ;
+        bb.position(start) ;
+        return bb.slice() ;
+    }
+    
+    /** Object, or its length, spans segments - copy the bytes. Rare. */ 
+    private ByteBuffer readAcross(Mapping m, long loc)
+    {
+        ByteBuffer lenBuffer = ByteBuffer.allocate(SizeOfInt) ;
+        copy(m, loc, lenBuffer) ;
+        int len = lenBuffer.getInt(0) ;
+        if ( len < 0 || len > m.length-(loc+SizeOfInt) )
+            return null ;
+        ByteBuffer bb = ByteBuffer.allocate(len) ;
+        copy(m, loc+SizeOfInt, bb) ;
+        bb.flip() ;
+        return bb ;
+    }
+    
+    private void copy(Mapping m, long loc, ByteBuffer dst)
+    {
+        while ( dst.hasRemaining() )
+        {
+            int seg = (int)(loc/segmentSize) ;
+            int offset = (int)(loc%segmentSize) ;
+            MappedByteBuffer segBuffer = m.segments[seg] ;
+            int n = Math.min(dst.remaining(), segBuffer.limit()-offset) ;
+            for ( int i = 0 ; i < n ; i++ )
+                dst.put(segBuffer.get(offset+i)) ;
+            loc += n ;
+        }
+    }
+    
+    /** Extend the mapping to the current size of the file on disk. Return true if it changed. */
+    private synchronized boolean remap()
+    {
+        try {
+            if ( channel == null )
+            {
+                @SuppressWarnings("resource")
+                RandomAccessFile f = new RandomAccessFile(filename, "r") ;
+                channel = f.getChannel() ;
+            }
+            Mapping m = mapping ;
+            long size = channel.size() ;
+            if ( size <= m.length )
+                return false ;
+            int n = (int)((size+segmentSize-1)/segmentSize) ;
+            MappedByteBuffer[] segments = Arrays.copyOf(m.segments, n) ;
+            // From the segment with the old end of the mapping, which may be partial.
+            for ( int i = (int)(m.length/segmentSize) ; i < n ; i++ )
+            {
+                long start = (long)i*segmentSize ;
+                long len = Math.min(segmentSize, size-start) ;
+                segments[i] = channel.map(MapMode.READ_ONLY, start, len) ;
+            }
+            mapping = new Mapping(segments, size) ;
+            return true ;
+        } catch (IOException ex) { IO.exception(ex) ; return false ; }
+    }
+    
+    /** Drop the mapping, for example, before the file is made shorter */ 
+    private synchronized void unmap()
+    {
+        mapping = Mapping.empty ;
+    }
+    
+    @Override
+    public void reposition(long id)
+    {
+        if ( id < mapping.length )
+            unmap() ;
+        other.reposition(id) ;
+    }
+
+    @Override
+    public void truncate(long size)
+    {
+        if ( size < mapping.length )
+            unmap() ;
+        other.truncate(size) ;
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        unmap() ;
+        if ( channel != null )
+        {
+            try { channel.close() ; } catch (IOException ex) { IO.exception(ex) ; }
+            channel = null ;
+        }
+        other.close() ;
+    }
+    
+    @Override
+    public String toString()            { return "Mapped:"+other.toString() ; }
+}
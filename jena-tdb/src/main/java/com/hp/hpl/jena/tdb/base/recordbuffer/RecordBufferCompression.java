@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hp.hpl.jena.tdb.base.recordbuffer;
+
+import static com.hp.hpl.jena.tdb.base.recordbuffer.RecordBufferPage.LINK ;
+import static com.hp.hpl.jena.tdb.base.recordbuffer.RecordBufferPageBase.COUNT ;
+
+import java.nio.ByteBuffer ;
+import java.util.Arrays ;
+
+import com.hp.hpl.jena.tdb.base.record.Record ;
+import com.hp.hpl.jena.tdb.base.record.RecordException ;
+import com.hp.hpl.jena.tdb.base.record.RecordFactory ;
+
+/** Prefix compression of the records of a RecordBufferPage.
+ * <p>
+ * A compressed block has the same header as an uncompressed one (count, link)
+ * with the top bit of the count set. Each record is then one byte, the number
+ * of leading bytes shared with the record before, followed by the rest of the record.
+ * The first record of a block is stored in full.
+ * <p>
+ * Records in an index are sorted so neighbours share long prefixes : in SPO,
+ * the subject and often the predicate.
+ */
+public final class RecordBufferCompression
+{
+    private static final int CompressedFlag = 0x80000000 ;
+
+    private RecordBufferCompression() {}
+
+    /** Can records from this factory be compressed? (the prefix length must fit in a byte) */
+    public static boolean canCompress(RecordFactory factory)
+    {
+        return factory.recordLength() <= 0xFF ;
+    }
+
+    /** The most bytes one record can take when compressed */
+    public static int maxEncodedLength(RecordFactory factory)
+    {
+        return factory.recordLength()+1 ;
+    }
+
+    /** Is the block in compressed form? */
+    public static boolean isCompressed(ByteBuffer bb)
+    {
+        return ( bb.getInt(COUNT) & CompressedFlag ) != 0 ;
+    }
+
+    /** Number of records in the block, compressed or not */
+    public static int getCount(ByteBuffer bb)
+    {
+        return bb.getInt(COUNT) & ~CompressedFlag ;
+    }
+
+    static void writeHeader(ByteBuffer bb, int count, int link)
+    {
+        bb.putInt(COUNT, count | CompressedFlag) ;
+        bb.putInt(LINK, link) ;
+    }
+
+    /** Length, in bytes, of the first {@code count} records, compressed. */
+    public static int encodedLength(byte[] records, int count, int recLen)
+    {
+        int x = 0 ;
+        for ( int i = 0 ; i < count ; i++ )
+            x += 1 + recLen - prefix(records, i, recLen) ;
+        return x ;
+    }
+
+    /** The index of the record at which the compressed length of records reaches half of the total.
+     * Returns an index in the range 0 to count-2.
+     */
+    public static int halfway(byte[] records, int count, int recLen)
+    {
+        int half = encodedLength(records, count, recLen)/2 ;
+        int x = 0 ;
+        for ( int i = 0 ; i < count-1 ; i++ )
+        {
+            x += 1 + recLen - prefix(records, i, recLen) ;
+            if ( x >= half )
+                return i ;
+        }
+        return Math.max(0, count-2) ;
+    }
+
+    private static int prefix(byte[] records, int i, int recLen)
+    {
+        if ( i == 0 )
+            return 0 ;
+        int x1 = (i-1)*recLen ;
+        int x2 = i*recLen ;
+        int p = 0 ;
+        while ( p < recLen && records[x1+p] == records[x2+p] )
+            p++ ;
+        return p ;
+    }
+
+    /** Compress records into a block, starting at byte offset start.
+     * @throws RecordException if they do not fit.
+     */
+    static void encode(byte[] records, int count, int recLen, ByteBuffer bb, int start)
+    {
+        ByteBuffer dst = bb.duplicate() ;
+        dst.clear() ;
+        dst.position(start) ;
+        for ( int i = 0 ; i < count ; i++ )
+        {
+            int p = prefix(records, i, recLen) ;
+            if ( dst.remaining() < 1+recLen-p )
+                throw new RecordException("Compressed records do not fit in the block: "+count+" records") ;
+            dst.put((byte)p) ;
+            dst.put(records, i*recLen+p, recLen-p) ;
+        }
+    }
+
+    /** Decompress records from a block, starting at byte offset start. */
+    static void decode(ByteBuffer bb, int start, int count, byte[] records, int recLen)
+    {
+        ByteBuffer src = bb.duplicate() ;
+        src.clear() ;
+        src.position(start) ;
+        for ( int i = 0 ; i < count ; i++ )
+        {
+            int p = src.get() & 0xFF ;
+            int x = i*recLen ;
+            if ( p > 0 )
+                System.arraycopy(records, x-recLen, records, x, p) ;
+            src.get(records, x+p, recLen-p) ;
+        }
+    }
+
+    /** Read the records of a compressed block, in order, one at a time,
+     * without decompressing the whole block or creating records
+     * until asked for.
+     */
+    public static final class Cursor
+    {
+        private final ByteBuffer src ;
+        private final RecordFactory factory ;
+        private final int count ;
+        private final int link ;
+        private final byte[] current ;
+        private int idx = -1 ;
+
+        public Cursor(ByteBuffer bb, int start, RecordFactory factory)
+        {
+            this.src = bb.duplicate() ;
+            this.src.clear() ;
+            this.src.position(start) ;
+            this.factory = factory ;
+            this.count = RecordBufferCompression.getCount(bb) ;
+            this.link = bb.getInt(LINK) ;
+            this.current = new byte[factory.recordLength()] ;
+        }
+
+        public int getCount()   { return count ; }
+
+        public int getLink()    { return link ; }
+
+        /** Is there a record after the current one? */
+        public boolean hasNext()
+        {
+            return idx < count-1 ;
+        }
+
+        /** Move to the next record. */
+        public void advance()
+        {
+            int p = src.get() & 0xFF ;
+            src.get(current, p, current.length-p) ;
+            idx++ ;
+        }
+
+        /** Move to the first record with a key not less than the given key.
+         * Returns false if there is no such record in the block.
+         */
+        public boolean seek(Record rec)
+        {
+            while ( hasNext() )
+            {
+                advance() ;
+                if ( compareKey(rec) >= 0 )
+                    return true ;
+            }
+            return false ;
+        }
+
+        /** Compare the key of the current record to the key of a record. */
+        public int compareKey(Record rec)
+        {
+            byte[] key = rec.getKey() ;
+            int n = factory.keyLength() ;
+            for ( int i = 0 ; i < n ; i++ )
+            {
+                byte b1 = current[i] ;
+                byte b2 = key[i] ;
+                if ( b1 != b2 )
+                    return (b1&0xFF) - (b2&0xFF) ;
+            }
+            return 0 ;
+        }
+
+        /** The current record, as a new Record */
+        public Record get()
+        {
+            int n = factory.keyLength() ;
+            byte[] key = Arrays.copyOfRange(current, 0, n) ;
+            byte[] value = factory.hasValue() ? Arrays.copyOfRange(current, n, current.length) : null ;
+            return factory.create(key, value) ;
+        }
+    }
+}
@@ -18,7 +18,10 @@
 
 package com.hp.hpl.jena.tdb.base.recordbuffer;
 
+import java.nio.ByteBuffer ;
+
 import com.hp.hpl.jena.tdb.base.block.Block ;
+import com.hp.hpl.jena.tdb.base.buffer.RecordBuffer ;
 import com.hp.hpl.jena.tdb.base.page.Page ;
 import com.hp.hpl.jena.tdb.base.record.RecordFactory ;
 import com.hp.hpl.jena.tdb.sys.SystemTDB ;
@@ -41,9 +44,18 @@ public final class RecordBufferPage extends RecordBufferPageBase
     // Offsets
 //    final public static int COUNT      = 0 ;
     final public static int LINK            = 4 ;
+    final static int HEADER         = LINK+SystemTDB.SizeOfInt ;
     final private static int FIELD_LENGTH   = SystemTDB.SizeOfInt ; // Length of the space needed here (not count)
 
+    /** For compressed pages, the ratio of the number of records held in
+     * a page to the number that would fit uncompressed.
+     * The bytes used are also checked (see {@link #isFull}).
+     */
+    final public static int CompressedSizeFactor = 4 ;
+
     private int link = Page.NO_ID ;
+    // Compressed pages only : the records, decompressed. 
+    private final byte[] records ;
     
     public final int getLink() { return link ; }
     
@@ -56,10 +68,53 @@ public final class RecordBufferPage extends RecordBufferPageBase
     @Override
     protected void _reset(Block block)
     { 
+        if ( records != null )
+            // The records are not in the block : keep them.
+            return ;
         super.reset(block, this.getCount()) ;
         this.link = block.getByteBuffer().getInt(LINK) ;
     }
 
+    /** Whether the records are written to the block in compressed form */
+    public final boolean isCompressed()     { return records != null ; }
+
+    /** Is there room for another record? For a compressed page, this includes
+     * whether another record of any value would fit in the block when compressed. 
+     */
+    public boolean isFull()
+    {
+        if ( recBuff.isFull() )
+            return true ;
+        if ( records == null )
+            return false ;
+        return getEncodedLength()+RecordBufferCompression.maxEncodedLength(getRecordFactory()) > getCapacity() ;
+    }
+
+    /** Bytes of the block used by the records */
+    public int getEncodedLength()
+    {
+        int recLen = getRecordFactory().recordLength() ;
+        if ( records == null )
+            return getCount()*recLen ;
+        return RecordBufferCompression.encodedLength(records, getCount(), recLen) ;
+    }
+
+    /** Bytes of the block available for records */
+    public int getCapacity()
+    {
+        return getBackingBlock().getByteBuffer().capacity()-headerLength ;
+    }
+
+    /** Index of the last record of the lower half when splitting the page :
+     * half of the records or, for compressed pages, half of the bytes.
+     */
+    public int getSplitIndex()
+    {
+        if ( records == null )
+            return getCount()/2-1 ;
+        return RecordBufferCompression.halfway(records, getCount(), getRecordFactory().recordLength()) ;
+    }
+
     public static int calcRecordSize(RecordFactory factory, int blkSize)
     { return RecordBufferPageBase.calcRecordSize(factory, blkSize, FIELD_LENGTH) ; }
     
@@ -81,15 +136,81 @@ public final class RecordBufferPage extends RecordBufferPageBase
         return new RecordBufferPage(block, factory, count, linkId) ;
     } 
         
-    
+    /** Create an empty page that is written in compressed form */
+    public static RecordBufferPage createBlankCompressed(Block block, RecordFactory factory)
+    {
+        RecordBufferPage rbp = new RecordBufferPage(block, factory, NO_ID, compressedArray(compressedSize(block, factory), factory)) ;
+        return rbp ;
+    }
+
+    /** Make a compressed page from a block, which may be in either form. */
+    public static RecordBufferPage formatCompressed(Block block, RecordFactory factory)
+    {
+        int count = RecordBufferCompression.getCount(block.getByteBuffer()) ;
+        return formatCompressed(block, factory, Math.max(count, compressedSize(block, factory))) ;
+    }
+
+    /** Make a compressed page from a block, for reading only : there is no room to add records. */
+    public static RecordBufferPage formatCompressedRead(Block block, RecordFactory factory)
+    {
+        return formatCompressed(block, factory, RecordBufferCompression.getCount(block.getByteBuffer())) ;
+    }
+
+    private static RecordBufferPage formatCompressed(Block block, RecordFactory factory, int maxRecords)
+    {
+        ByteBuffer bb = block.getByteBuffer() ;
+        int count = RecordBufferCompression.getCount(bb) ;
+        int linkId = bb.getInt(LINK) ;
+        int recLen = factory.recordLength() ;
+        RecordBufferPage rbp = new RecordBufferPage(block, factory, linkId, compressedArray(maxRecords, factory)) ;
+        if ( RecordBufferCompression.isCompressed(bb) )
+            RecordBufferCompression.decode(bb, HEADER, count, rbp.records, recLen) ;
+        else
+        {
+            ByteBuffer src = bb.duplicate() ;
+            src.clear() ;
+            src.position(HEADER) ;
+            src.get(rbp.records, 0, count*recLen) ;
+        }
+        rbp.recBuff.setSize(count) ;
+        return rbp ;
+    }
+
+    /** Write the records, compressed, to the backing block */ 
+    void writeCompressed()
+    {
+        ByteBuffer bb = getBackingBlock().getByteBuffer() ;
+        RecordBufferCompression.writeHeader(bb, getCount(), link) ;
+        RecordBufferCompression.encode(records, getCount(), getRecordFactory().recordLength(), bb, HEADER) ;
+    }
+
+    private static byte[] compressedArray(int maxRecords, RecordFactory factory)
+    {
+        return new byte[maxRecords*factory.recordLength()] ;
+    }
+
+    private static int compressedSize(Block block, RecordFactory factory)
+    {
+        return CompressedSizeFactor*calcRecordSize(factory, block.getByteBuffer().capacity()) ;
+    }
+
     private RecordBufferPage(Block block, RecordFactory factory, int count, int linkId)  
     {
         super(block, FIELD_LENGTH, factory, count) ;
         this.link = linkId ;
+        this.records = null ;
     }
     
+    private RecordBufferPage(Block block, RecordFactory factory, int linkId, byte[] records)  
+    {
+        super(block, FIELD_LENGTH, factory, new RecordBuffer(ByteBuffer.wrap(records), factory, 0)) ;
+        this.link = linkId ;
+        this.records = records ;
+    }
+
+    
     @Override
     public String toString()
-    { return String.format("RecordBufferPage[id=%d,link=%d]: %s", getBackingBlock().getId(), getLink(), recBuff) ; }
+    { return String.format("RecordBufferPage[id=%d,link=%d%s]: %s", getBackingBlock().getId(), getLink(), (isCompressed()?",compressed":""), recBuff) ; }
 
 }
@@ -75,6 +75,16 @@ public abstract class RecordBufferPageBase extends PageBase //implements Page
         this.factory = factory ;
         reset(block, count) ;
     }
+
+    /** A page where the records are held apart from the block (compressed blocks) */
+    protected RecordBufferPageBase(Block block, int offset, 
+                                   RecordFactory factory, RecordBuffer recBuff)
+    {
+        super(block) ;
+        this.headerLength = FIELD_LENGTH+offset ;
+        this.factory = factory ;
+        this.recBuff = recBuff ;
+    }
     
     protected void reset(Block block, int count)
     {
@@ -90,6 +100,11 @@ public abstract class RecordBufferPageBase extends PageBase //implements Page
         return recBuff ;
     }
     
+    protected final RecordFactory getRecordFactory()
+    {
+        return factory ;
+    }
+
     public final int getCount()
     {
         return recBuff.size() ;
@@ -26,7 +26,9 @@ import com.hp.hpl.jena.tdb.base.block.Block ;
 import com.hp.hpl.jena.tdb.base.block.BlockConverter ;
 import com.hp.hpl.jena.tdb.base.block.BlockMgr;
 import com.hp.hpl.jena.tdb.base.block.BlockType;
+import com.hp.hpl.jena.tdb.base.buffer.RecordBuffer ;
 import com.hp.hpl.jena.tdb.base.page.PageBlockMgr ;
+import com.hp.hpl.jena.tdb.base.record.Record ;
 import com.hp.hpl.jena.tdb.base.record.RecordException;
 import com.hp.hpl.jena.tdb.base.record.RecordFactory;
 
@@ -36,10 +38,21 @@ import com.hp.hpl.jena.tdb.base.record.RecordFactory;
 
 public class RecordBufferPageMgr extends PageBlockMgr<RecordBufferPage>
 {
+    private final RecordFactory factory ;
+    
     public RecordBufferPageMgr(RecordFactory factory, BlockMgr blockMgr)
+    {
+        this(factory, blockMgr, false) ;
+    }
+
+    /** Page manager that writes pages in compressed form if {@code compressed} is true.
+     * Compressed pages are read whatever the setting.
+     */
+    public RecordBufferPageMgr(RecordFactory factory, BlockMgr blockMgr, boolean compressed)
     {
         super(null, blockMgr) ;
-        Block2RecordBufferPage conv = new Block2RecordBufferPage(factory) ;
+        this.factory = factory ;
+        Block2RecordBufferPage conv = new Block2RecordBufferPage(factory, compressed) ;
         super.setConverter(conv) ;
     }
 
@@ -51,17 +64,71 @@ public class RecordBufferPageMgr extends PageBlockMgr<RecordBufferPage>
     public RecordBufferPage getReadIterator(int id)
     { 
         Block block = blockMgr.getReadIterator(id) ;
-        RecordBufferPage page = pageFactory.fromBlock(block) ;
-        return page ;
+        // Only read : a compressed block is decoded to an array of just its records.
+        synchronized (block)
+        {
+            if ( RecordBufferCompression.isCompressed(block.getByteBuffer()) )
+                return RecordBufferPage.formatCompressedRead(block, factory) ;
+            return RecordBufferPage.format(block, factory) ;
+        }
+    }
+    
+    /** Find the record with the same key in a block, or return null.
+     * This reads the block directly, without making a page : a compressed block
+     * is decoded one record at a time, only as far as the key.
+     */
+    public Record find(int id, Record rec)
+    {
+        Block block = blockMgr.getRead(id) ;
+        try {
+            synchronized (block)    // As Block2RecordBufferPage.fromBlock
+            {
+                ByteBuffer bb = block.getByteBuffer() ;
+                if ( ! RecordBufferCompression.isCompressed(bb) )
+                {
+                    RecordBuffer rBuff = RecordBufferPage.format(block, factory).getRecordBuffer() ;
+                    int i = rBuff.find(rec) ;
+                    return ( i < 0 ) ? null : rBuff.get(i) ;
+                }
+                RecordBufferCompression.Cursor cursor = new RecordBufferCompression.Cursor(bb, HEADER, factory) ;
+                if ( cursor.seek(rec) && cursor.compareKey(rec) == 0 )
+                    return cursor.get() ;
+                return null ;
+            }
+        } finally { blockMgr.release(block) ; }
+    }
+    
+    /** The block, for iterators that read compressed blocks directly */ 
+    Block getBlockReadIterator(int id)
+    {
+        return blockMgr.getReadIterator(id) ;
+    }
+    
+    /** Page over an uncompressed block fetched by {@link #getBlockReadIterator} */
+    RecordBufferPage format(Block block)
+    {
+        return RecordBufferPage.format(block, factory) ;
+    }
+    
+    public RecordFactory getRecordFactory()
+    {
+        return factory ;
     }
     
     public static class Block2RecordBufferPage implements BlockConverter<RecordBufferPage>
     {
         private RecordFactory factory ;
+        private final boolean compressed ;
 
         public Block2RecordBufferPage(RecordFactory factory)
+        {
+            this(factory, false) ;
+        }
+        
+        public Block2RecordBufferPage(RecordFactory factory, boolean compressed)
         {
             this.factory = factory ;
+            this.compressed = compressed && RecordBufferCompression.canCompress(factory) ;
         }
         
         @Override
@@ -70,6 +137,8 @@ public class RecordBufferPageMgr extends PageBlockMgr<RecordBufferPage>
             if ( blkType != BlockType.RECORD_BLOCK )
                 throw new RecordException("Not RECORD_BLOCK: "+blkType) ;
             // Initially empty
+            if ( compressed )
+                return RecordBufferPage.createBlankCompressed(block, factory) ;
             RecordBufferPage rb = RecordBufferPage.createBlank(block, factory) ;
             return rb ;
         }
@@ -79,6 +148,10 @@ public class RecordBufferPageMgr extends PageBlockMgr<RecordBufferPage>
         {
             synchronized (block)    // [[TxTDB:TODO] needed? Right place?
             {
+                // A compressed block stays compressed. If this converter
+                // compresses, an uncompressed block is compressed when next written.
+                if ( compressed || RecordBufferCompression.isCompressed(block.getByteBuffer()) )
+                    return RecordBufferPage.formatCompressed(block, factory) ;
                 RecordBufferPage rb = RecordBufferPage.format(block, factory) ;
 //                int count = block.getByteBuffer().getInt(COUNT) ;
 //                int linkId = block.getByteBuffer().getInt(LINK) ;
@@ -90,7 +163,11 @@ public class RecordBufferPageMgr extends PageBlockMgr<RecordBufferPage>
         @Override
         public Block toBlock(RecordBufferPage rbp)
         {
-            int count = rbp.getRecordBuffer().size() ;
+            if ( rbp.isCompressed() )
+            {
+                rbp.writeCompressed() ;
+                return rbp.getBackingBlock() ;
+            }
             ByteBuffer bb = rbp.getBackingBlock().getByteBuffer() ;
             bb.putInt(COUNT, rbp.getCount()) ;
             bb.putInt(LINK, rbp.getLink()) ;
@@ -18,6 +18,7 @@
 
 package com.hp.hpl.jena.tdb.base.recordbuffer;
 
+import static com.hp.hpl.jena.tdb.base.recordbuffer.RecordBufferPage.HEADER ;
 import static org.apache.jena.atlas.lib.Alg.decodeIndex ;
 
 import java.util.Iterator;
@@ -26,6 +27,7 @@ import java.util.NoSuchElementException;
 import org.apache.jena.atlas.lib.Closeable ;
 
 import com.hp.hpl.jena.tdb.base.StorageException ;
+import com.hp.hpl.jena.tdb.base.block.Block ;
 import com.hp.hpl.jena.tdb.base.block.BlockException ;
 import com.hp.hpl.jena.tdb.base.record.Record;
 
@@ -44,8 +46,15 @@ class RecordRangeIterator implements Iterator<Record>, Closeable
         return new RecordRangeIterator(pageId, fromRec, toRec, pageMgr) ;
     }
     
-    private RecordBufferPage currentPage ;      // Set null when finished.
+    // Set null when finished.
+    private Block currentBlock ;
+    // One of these is set : uncompressed blocks are read through a page,
+    // compressed blocks are decoded a record at a time. 
+    private RecordBufferPage currentPage ;
+    private RecordBufferCompression.Cursor cursor ;
     private int currentIdx ;
+    // Whether the record at the cursor is the next to be returned.
+    private boolean cursorReady = false ;
     private Record slot = null ;
     
     private final RecordBufferPageMgr pageMgr ;
@@ -64,13 +73,13 @@ class RecordRangeIterator implements Iterator<Record>, Closeable
         
         if ( toRec != null && fromRec != null && Record.keyLE(toRec, fromRec) )
         {
-            currentPage = null ;
+            currentBlock = null ;
             return ;
         }
 
         pageMgr.getBlockMgr().beginIterator(this) ;
-        currentPage = pageMgr.getReadIterator(id) ;
-        if ( currentPage.getCount() == 0 )
+        open(id) ;
+        if ( count() == 0 )
         {
             // Empty page.
             close() ;
@@ -79,10 +88,49 @@ class RecordRangeIterator implements Iterator<Record>, Closeable
             
         if ( fromRec != null )
         {
-            currentIdx = currentPage.getRecordBuffer().find(fromRec) ;
-            if ( currentIdx < 0 )
-                currentIdx = decodeIndex(currentIdx) ;
+            if ( cursor != null )
+                cursorReady = cursor.seek(fromRec) ;
+            else
+            {
+                currentIdx = currentPage.getRecordBuffer().find(fromRec) ;
+                if ( currentIdx < 0 )
+                    currentIdx = decodeIndex(currentIdx) ;
+            }
+        }
+    }
+
+    private void open(int id)
+    {
+        currentBlock = pageMgr.getBlockReadIterator(id) ;
+        currentIdx = 0 ;
+        cursorReady = false ;
+        if ( RecordBufferCompression.isCompressed(currentBlock.getByteBuffer()) )
+        {
+            currentPage = null ;
+            cursor = new RecordBufferCompression.Cursor(currentBlock.getByteBuffer(), HEADER, pageMgr.getRecordFactory()) ;
+        }
+        else
+        {
+            cursor = null ;
+            currentPage = pageMgr.format(currentBlock) ;
+        }
+    }
+
+    private int count()     { return cursor != null ? cursor.getCount() : currentPage.getCount() ; }
+
+    private int link()      { return cursor != null ? cursor.getLink() : currentPage.getLink() ; }
+
+    /** Is there a record in the current block still to be returned? */ 
+    private boolean pending()
+    {
+        if ( cursor == null )
+            return currentIdx < currentPage.getCount() ;
+        if ( ! cursorReady && cursor.hasNext() )
+        {
+            cursor.advance() ;
+            cursorReady = true ;
         }
+        return cursorReady ;
     }
 
     @Override
@@ -90,39 +138,53 @@ class RecordRangeIterator implements Iterator<Record>, Closeable
     {
         if ( slot != null )
             return true ;
-        if ( currentPage == null )
+        if ( currentBlock == null )
             return false ;
         // Set slot.
-        while ( currentIdx >= currentPage.getCount() )
+        while ( ! pending() )
         {
             // Move to next.
-            int link = currentPage.getLink() ;
+            int link = link() ;
             if ( link < 0 )
             {
                 close() ;
                 return false ;
             }
             
-            if ( currentPage != null )
-                pageMgr.release(currentPage) ;
-            
-            RecordBufferPage nextPage = pageMgr.getReadIterator(link) ;
+            // The current block has been read to the end. 
+            Record r1 = ( count() == 0 ) ? null : ( cursor != null ? cursor.get() : currentPage.getRecordBuffer().getHigh() ) ; 
+            pageMgr.getBlockMgr().release(currentBlock) ;
+            open(link) ;
             // Check currentPage -> nextPage is strictly increasing keys. 
-            Record r1 = currentPage.getRecordBuffer().getHigh() ;
-            Record r2 = nextPage.getRecordBuffer().getLow() ;
-            if ( Record.keyGE(r1, r2) )
-                throw new StorageException("RecordRangeIterator: records not strictly increasing: "+r1+" // "+r2) ;
-            currentPage = nextPage ;
+            if ( r1 != null && pending() )
+            {
+                Record r2 = ( cursor != null ? cursor.get() : currentPage.getRecordBuffer().getLow() ) ;
+                if ( Record.keyGE(r1, r2) )
+                    throw new StorageException("RecordRangeIterator: records not strictly increasing: "+r1+" // "+r2) ;
+            }
             countBlocks++ ;
-            currentIdx = 0 ;
         }
-            
-        slot = currentPage.getRecordBuffer().get(currentIdx) ;
-        currentIdx++ ;
-        if ( maxRec != null && Record.keyGE(slot, maxRec) )
+
+        if ( cursor != null )
         {
-            close() ;
-            return false ;
+            // Test the key before creating a record.
+            cursorReady = false ;
+            if ( maxRec != null && cursor.compareKey(maxRec) >= 0 )
+            {
+                close() ;
+                return false ;
+            }
+            slot = cursor.get() ;
+        }
+        else
+        {
+            slot = currentPage.getRecordBuffer().get(currentIdx) ;
+            currentIdx++ ;
+            if ( maxRec != null && Record.keyGE(slot, maxRec) )
+            {
+                close() ;
+                return false ;
+            }
         }
         
         if ( slot == null )
@@ -137,9 +199,11 @@ class RecordRangeIterator implements Iterator<Record>, Closeable
     @Override
     public void close()
     {
-        if (currentPage != null )
-            pageMgr.release(currentPage) ;
+        if ( currentBlock != null )
+            pageMgr.getBlockMgr().release(currentBlock) ;
+        currentBlock = null ;
         currentPage = null ;
+        cursor = null ;
         currentIdx = -99 ;
         slot = null ;
         pageMgr.getBlockMgr().endIterator(this) ;
@@ -87,7 +87,7 @@ public class BuilderStdIndex {
                 }
             }
 
-            BPlusTreeParams params = new BPlusTreeParams(order, factory) ;
+            BPlusTreeParams params = new BPlusTreeParams(order, factory, indexParams.getLeafCompression()) ;
             
             BlockMgr blkMgrNodes = blockMgrBuilderNodes.buildBlockMgr(fileset, Names.bptExtTree, indexParams) ;
             BlockMgr blkMgrRecords = blockMgrBuilderRecords.buildBlockMgr(fileset, Names.bptExtRecords, indexParams) ;
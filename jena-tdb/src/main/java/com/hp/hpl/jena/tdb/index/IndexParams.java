@@ -30,6 +30,11 @@ public interface IndexParams extends BlockParams {
      */
     @Override public Integer getBlockSize() ;
     
+    /** Whether B+Tree leaf blocks are written prefix compressed.
+     * Like the block size, this is set when the on-disk files are created.
+     */
+    public Boolean getLeafCompression() ;
+    
     /** Block read cache size (mmap'ed files do not have a block cache)*/
     @Override public Integer getBlockReadCacheSize() ;
     
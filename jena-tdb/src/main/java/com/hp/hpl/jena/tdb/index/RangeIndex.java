@@ -19,6 +19,7 @@
 package com.hp.hpl.jena.tdb.index;
 
 import java.util.Iterator;
+import java.util.List ;
 
 import com.hp.hpl.jena.tdb.base.record.Record;
 
@@ -28,6 +29,12 @@ public interface RangeIndex extends Index
     /** Return records between min (inclusive) and max (exclusive), based on the record keys */
     public Iterator<Record> iterator(Record recordMin, Record recordMax) ;
     
+    /** Return keys that divide the records between min (inclusive) and max (exclusive) into
+     *  at most n parts of roughly equal size, in order. Min or max may be null, meaning no bound.
+     *  The keys need not be keys of records in the index. 
+     */
+    public List<Record> splitRange(Record recordMin, Record recordMax, int n) ;
+    
     /** Return the record containing the least key - may or may not have the associated value */
     public Record minKey() ;
 
@@ -19,6 +19,7 @@
 package com.hp.hpl.jena.tdb.index;
 
 import java.util.Iterator ;
+import java.util.List ;
 
 import com.hp.hpl.jena.tdb.base.record.Record ;
 import com.hp.hpl.jena.tdb.base.record.RecordFactory ;
@@ -68,6 +69,10 @@ public class RangeIndexWrapper implements RangeIndex
     public Iterator<Record> iterator(Record minRec, Record maxRec)
     { return rIndex.iterator(minRec, maxRec) ; }
     
+    @Override
+    public List<Record> splitRange(Record minRec, Record maxRec, int n)
+    { return rIndex.splitRange(minRec, maxRec, n) ; }
+    
     @Override
     public boolean isEmpty()
     { return rIndex.isEmpty() ; }
@@ -26,6 +26,10 @@ import static com.hp.hpl.jena.tdb.index.bplustree.BPlusTreeParams.CheckingTree ;
 import static com.hp.hpl.jena.tdb.index.bplustree.BPlusTreeParams.DumpTree ;
 import static java.lang.String.format ;
 import static org.apache.jena.atlas.lib.Alg.decodeIndex ;
+
+import java.util.ArrayList ;
+import java.util.List ;
+
 import org.apache.jena.atlas.io.IndentedLineBuffer ;
 import org.apache.jena.atlas.io.IndentedWriter ;
 import org.slf4j.Logger ;
@@ -294,6 +298,59 @@ public final class BPTreeNode extends BPTreePage
         return id ;
     }
 
+    /** Keys of the B+Tree nodes that divide the range fromRec (inclusive) to toRec (exclusive)
+     *  into at most n parts of roughly equal size. fromRec or toRec may be null, for no bound.
+     *  Works down the tree, one level at a time, until there are enough keys in the range
+     *  or the lowest level of nodes has been reached. Records pages are not read.
+     */
+    static List<Record> splitKeys(BPTreeNode root, Record fromRec, Record toRec, int n)
+    {
+        List<BPTreeNode> level = new ArrayList<>() ;
+        level.add(root) ;
+        List<Record> keys ;
+        for ( ;; )
+        {
+            keys = new ArrayList<>() ;
+            List<BPTreeNode> nextLevel = new ArrayList<>() ;
+            // All nodes of a level are leaves, or none are.
+            boolean lowest = level.get(0).isLeaf() ;
+            for ( BPTreeNode node : level )
+            {
+                // Pointer i is to the keys above key i-1 up to, and including, key i.
+                for ( int i = 0 ; i <= node.count ; i++ )
+                {
+                    Record lo = ( i == 0 ) ? null : node.records.get(i-1) ;
+                    Record hi = ( i == node.count ) ? null : node.records.get(i) ;
+                    if ( fromRec != null && hi != null && keyLT(hi, fromRec) )
+                        continue ;
+                    if ( toRec != null && lo != null && ! keyLT(lo, toRec) )
+                        continue ;
+                    if ( hi != null && ( fromRec == null || keyGT(hi, fromRec) ) && ( toRec == null || keyLT(hi, toRec) ) )
+                        keys.add(hi) ;
+                    if ( ! lowest && keys.size() < n-1 )
+                        nextLevel.add((BPTreeNode)node.get(i, READ)) ;
+                }
+                if ( ! node.isRoot() )
+                    node.release() ;
+            }
+            if ( keys.size() >= n-1 || lowest )
+            {
+                for ( BPTreeNode node : nextLevel )
+                    node.release() ;
+                break ;
+            }
+            level = nextLevel ;
+        }
+
+        if ( keys.size() <= n-1 )
+            return keys ;
+        // Choose n-1 keys, evenly spaced.
+        List<Record> x = new ArrayList<>(n-1) ;
+        for ( int i = 1 ; i < n ; i++ )
+            x.add(keys.get((int)((long)i*(keys.size()+1)/n) - 1)) ;
+        return x ;
+    }
+
 
 
     @Override
@@ -404,6 +461,12 @@ public final class BPTreeNode extends BPTreePage
     Record internalSearch(Record rec)
     {
         if ( CheckingNode ) internalCheckNode() ;
+        if ( isLeaf )
+        {
+            // Read the records block directly : a compressed block is not decoded into a page.
+            int idx = convert(findSlot(rec)) ;
+            return bpTree.getRecordsMgr().getRecordBufferPageMgr().find(ptrs.get(idx), rec) ;
+        }
         BPTreePage page = findHere(rec) ;
         Record r = page.internalSearch(rec) ;
         page.release() ;
@@ -925,7 +988,9 @@ public final class BPTreeNode extends BPTreePage
             {
                 // If two data blocks, then the split key is not inlcuded (it's alread ythere, with it value)
                 // Size is N+N and max could be odd so N+N and N+N+1 are possible. 
-                if ( left.getCount()+1 != left.getMaxSize() && left.getCount() != left.getMaxSize() )
+                // Compressed pages are also sized by bytes so have no fixed count.
+                if ( ! ((BPTreeRecords)left).isCompressed()
+                     && left.getCount()+1 != left.getMaxSize() && left.getCount() != left.getMaxSize() )
                     error("Inconsistent data node size: %d/%d", left.getCount(), left.getMaxSize()) ;
             }
             else if ( ! left.isFull() )
@@ -1181,8 +1246,7 @@ public final class BPTreeNode extends BPTreePage
             return false ;
         
         // The root can be zero size and point to a single data block.
-        int id = this.getPtrBuffer().getLow() ;
-        BPTreePage page = get(id, READ) ;
+        BPTreePage page = get(0, READ) ;
         boolean b = page.hasAnyKeys() ;  
         page.release() ;
         return b ;
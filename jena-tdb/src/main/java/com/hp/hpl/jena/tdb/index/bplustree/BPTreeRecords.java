@@ -29,6 +29,7 @@ import com.hp.hpl.jena.tdb.base.StorageException ;
 import com.hp.hpl.jena.tdb.base.block.Block ;
 import com.hp.hpl.jena.tdb.base.buffer.RecordBuffer ;
 import com.hp.hpl.jena.tdb.base.record.Record ;
+import com.hp.hpl.jena.tdb.base.recordbuffer.RecordBufferCompression ;
 import com.hp.hpl.jena.tdb.base.recordbuffer.RecordBufferPage ;
 
 /** B+Tree wrapper over a block of records in a RecordBufferPage.
@@ -71,7 +72,7 @@ public final class BPTreeRecords extends BPTreePage
     @Override
     public boolean isFull()
     {
-        return ( rBuff.size() >= rBuff.maxSize() ) ;
+        return rBuffPage.isFull() ;
     }
     
     @Override
@@ -85,9 +86,19 @@ public final class BPTreeRecords extends BPTreePage
     {
         // 50% packing minimum.
         // If of max length 5 (i.e. odd), min size is 2.  Integer division works.  
-        return ( rBuff.size() <= rBuff.maxSize()/2 ) ;
+        if ( rBuff.size() > rBuff.maxSize()/2 )
+            return false ;
+        if ( ! rBuffPage.isCompressed() )
+            return true ;
+        // Compressed: two pages at minimum size, or one and a shifted record,
+        // must fit in a page.
+        int slack = RecordBufferCompression.maxEncodedLength(bpTree.getRecordFactory()) ;
+        return rBuffPage.getEncodedLength() <= (rBuffPage.getCapacity()-slack)/2 ;
    }
 
+    boolean isCompressed()
+    { return rBuffPage.isCompressed() ; }
+
     @Override
     public Record internalSearch(Record rec)
     {
@@ -134,7 +145,7 @@ public final class BPTreeRecords extends BPTreePage
         if ( i < 0 )
         {
             i = decodeIndex(i) ;
-            if ( rBuff.size() >= rBuff.maxSize())  
+            if ( rBuffPage.isFull() )
                 throw new StorageException("RecordBlock.put overflow") ; 
             rBuff.add(i, record) ;
         }
@@ -165,7 +176,7 @@ public final class BPTreeRecords extends BPTreePage
     @Override final
     public Record getSplitKey()
     {
-        int splitIdx = rBuff.size()/2-1 ;
+        int splitIdx = rBuffPage.getSplitIndex() ;
         Record r = rBuff.get(splitIdx) ;
         return r ;
     }
@@ -182,7 +193,7 @@ public final class BPTreeRecords extends BPTreePage
         BPTreeRecords other = create(rBuffPage.getLink()) ;
         rBuffPage.setLink(other.getId()) ;
         
-        int splitIdx = rBuff.size()/2-1 ;
+        int splitIdx = rBuffPage.getSplitIndex() ;
         Record r = rBuff.get(splitIdx) ;                // Only need key for checking later.
         
         int moveLen =  rBuff.size()-(splitIdx+1) ;      // Number to move.
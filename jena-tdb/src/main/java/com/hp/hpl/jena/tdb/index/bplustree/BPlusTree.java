@@ -21,7 +21,9 @@ package com.hp.hpl.jena.tdb.index.bplustree;
 import static com.hp.hpl.jena.tdb.index.bplustree.BPlusTreeParams.CheckingNode ;
 import static com.hp.hpl.jena.tdb.index.bplustree.BPlusTreeParams.CheckingTree ;
 
+import java.util.ArrayList ;
 import java.util.Iterator ;
+import java.util.List ;
 
 import org.apache.jena.atlas.io.IndentedWriter ;
 import org.apache.jena.atlas.iterator.Iter ;
@@ -195,7 +197,7 @@ public class BPlusTree implements Iterable<Record>, RangeIndex
         // Consistency checks.
         this.bpTreeParams = params ;
         this.nodeManager = new BPTreeNodeMgr(this, blkMgrNodes) ;
-        RecordBufferPageMgr recordPageMgr = new RecordBufferPageMgr(params.getRecordFactory(), blkMgrRecords) ;
+        RecordBufferPageMgr recordPageMgr = new RecordBufferPageMgr(params.getRecordFactory(), blkMgrRecords, params.isCompressLeaves()) ;
         recordsMgr = new BPTreeRecordsMgr(this, recordPageMgr) ;
     }
 
@@ -370,6 +372,22 @@ public class BPlusTree implements Iterable<Record>, RangeIndex
         return iter ;
     }
     
+    @Override
+    public List<Record> splitRange(Record fromRec, Record toRec, int n)
+    {
+        if ( n <= 1 )
+            return new ArrayList<>() ;
+        startReadBlkMgr() ;
+        BPTreeNode root = getRoot() ;
+        List<Record> keys = BPTreeNode.splitKeys(root, fromRec, toRec, n) ;
+        releaseRoot(root) ;
+        finishReadBlkMgr() ;
+        List<Record> x = new ArrayList<>(keys.size()) ;
+        for ( Record r : keys )
+            x.add(getRecordFactory().createKeyOnly(r)) ;
+        return x ;
+    }
+    
     /** Iterate over a range of fromRec (inclusive) to toRec (exclusive) */ 
     private static Iterator<Record> iterator(BPTreeNode node, Record fromRec, Record toRec)
     { 
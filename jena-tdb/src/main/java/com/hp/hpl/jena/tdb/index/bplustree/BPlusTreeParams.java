@@ -81,6 +81,9 @@ public class BPlusTreeParams
     /** Factory for key-only records */ 
     final RecordFactory keyFactory ;
     
+    /** Whether leaf (records) blocks are written prefix compressed */
+    final boolean compressLeaves ;
+    
     // ---- Derived constants.
 
     /** Maximum number of keys per non-leaf block */
@@ -117,13 +120,14 @@ public class BPlusTreeParams
     @Override
     public String toString()
     {
-        return String.format("Order=%d : Records [key=%d, value=%d] : records=[%d,%d] : pointers=[%d,%d] : split=%d",
+        return String.format("Order=%d : Records [key=%d, value=%d] : records=[%d,%d] : pointers=[%d,%d] : split=%d%s",
                              order,
                              keyFactory.keyLength() ,
                              recordFactory.valueLength() ,
                              MinRec, MaxRec, 
                              MinPtr, MaxPtr,
-                             SplitIndex
+                             SplitIndex,
+                             (compressLeaves ? " : compressed" : "")
                              ) ;
     }
 
@@ -155,6 +159,14 @@ public class BPlusTreeParams
     }
     
     public BPlusTreeParams(int order, RecordFactory factory)
+    {
+        this(order, factory, false) ;
+    }
+    
+    /** B+Tree parameters, with leaf blocks written prefix compressed if {@code compressLeaves} is true.
+     *  Compressed leaf blocks are read whatever the setting. 
+     */
+    public BPlusTreeParams(int order, RecordFactory factory, boolean compressLeaves)
     {
         // BTrees of order one aren't strictly BTrees, where the order is >= 2
         // Order 1 => Min size = 0 and max size = 2*N-1 = 1.
@@ -168,6 +180,7 @@ public class BPlusTreeParams
         this.order = order ;
         recordFactory = factory ;
         keyFactory = factory.keyFactory() ;
+        this.compressLeaves = compressLeaves ;
 
         // Derived constants.
         MaxRec  = 2*order-1 + Gap ;
@@ -211,6 +224,11 @@ public class BPlusTreeParams
         return keyFactory ;
     }
     
+    public boolean isCompressLeaves()
+    {
+        return compressLeaves ;
+    }
+    
     
     public int getCalcBlockSize()
     {
@@ -89,6 +89,44 @@ public class BPlusTreeRewriter
             throw new BPTreeException() ;
         }
     
+        if ( ! pack(iterRecords, bpt2, root) )
+            return null ;
+
+        // ****** Finish the tree.
+        blkMgrNodes.sync() ;
+        blkMgrRecords.sync() ;
+        // Force root reset.
+        bpt2 = BPlusTree.create(bptParams, blkMgrNodes, blkMgrRecords) ;
+        return bpt2 ;
+    }
+
+    /** Given a stream of records, build the B+Tree in place in an existing, empty B+Tree.
+     *  The root block is reused; the empty records block of the old root is left unused.
+     */ 
+    public static void packIntoBPlusTree(Iterator<Record> iterRecords, BPlusTree bpt)
+    {
+        if ( ! bpt.isEmpty() )
+            throw new BPTreeException("packIntoBPlusTree: the B+Tree is not empty") ;
+        if ( ! iterRecords.hasNext() )
+            return ;
+        bpt.getNodeManager().startUpdate() ;
+        bpt.getRecordsMgr().startUpdate() ;
+        try {
+            BPTreeNode root = bpt.getNodeManager().getWrite(BPlusTreeParams.RootId, BPlusTreeParams.RootParent) ;
+            if ( ! pack(iterRecords, bpt, root) )
+                throw new BPTreeException("packIntoBPlusTree: failed to build the index layers") ;
+        } finally {
+            bpt.getRecordsMgr().finishUpdate() ;
+            bpt.getNodeManager().finishUpdate() ;
+        }
+        bpt.sync() ;
+    }
+
+    /** Write the records as packed data blocks, build the index layers above them
+     *  and copy the top block into root.
+     */
+    private static boolean pack(Iterator<Record> iterRecords, BPlusTree bpt2, BPTreeNode root)
+    {
         // ******** Pack data blocks.
         Iterator<Pair<Integer, Record>> iter = writePackedDataBlocks(iterRecords, bpt2) ;
     
@@ -116,16 +154,10 @@ public class BPlusTreeRewriter
         if ( iter.hasNext() )
         {
             log.error("**** Building index layers didn't result in a single block") ;
-            return null ;
+            return false ;
         }
         fixupRoot(root, pair, bpt2) ;
-
-        // ****** Finish the tree.
-        blkMgrNodes.sync() ;
-        blkMgrRecords.sync() ;
-        // Force root reset.
-        bpt2 = BPlusTree.create(bptParams, blkMgrNodes, blkMgrRecords) ;
-        return bpt2 ;
+        return true ;
     }
 
     // **** data block phase
@@ -199,7 +231,8 @@ public class BPlusTreeRewriter
             RecordBufferPage page2 = mgr.getWrite(id2) ;
             
             // Wrong calculatation.
-            for ( int i = page2.getCount() ; i <  page1.getMaxSize()/2 ; i++ )
+            // Compressed pages are also limited by bytes : do not empty page1 or overfill page2.
+            for ( int i = page2.getCount() ; i <  page1.getMaxSize()/2 && page1.getCount() > page2.getCount()+1 && ! page2.isFull() ; i++ )
             {
                 //shiftOneup(node1, node2) ;
                 Record r = page1.getRecordBuffer().getHigh() ;
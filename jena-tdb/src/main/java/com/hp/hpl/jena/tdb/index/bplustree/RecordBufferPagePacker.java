@@ -66,7 +66,7 @@ class RecordBufferPagePacker implements Iterator<RecordBufferPage>
             recordBufferPage = rbMgr.create() ;
             
             RecordBuffer rb = recordBufferPage.getRecordBuffer() ;
-            while ( !rb.isFull() && records.hasNext() )
+            while ( !recordBufferPage.isFull() && records.hasNext() )
             {
                 Record r = records.next();
                 rb.add(r) ;
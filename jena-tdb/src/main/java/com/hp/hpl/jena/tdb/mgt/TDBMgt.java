@@ -18,6 +18,16 @@
 
 package com.hp.hpl.jena.tdb.mgt;
 
+import java.lang.management.ManagementFactory ;
+import java.util.HashMap ;
+import java.util.Map ;
+
+import javax.management.MBeanServer ;
+import javax.management.ObjectName ;
+
+import org.slf4j.Logger ;
+import org.slf4j.LoggerFactory ;
+
 import com.hp.hpl.jena.sparql.mgt.SystemInfo ;
 import com.hp.hpl.jena.tdb.TDB ;
 
@@ -30,4 +40,62 @@ public class TDBMgt
 //        ARQMgt.register(NS+".system:type=SystemInfo", sysInfo) ;
 //        ARQMgt.register(NS+".system2:type=SystemInfo", new TDBSystemInfo()) ; 
     }
+
+    // ARQMgt does no JMX (JENA-614). Statistics that are only useful
+    // over JMX register with the platform MBeanServer here.
+    // Registering or unregistering never fails the caller.
+    private static Logger log = LoggerFactory.getLogger(TDBMgt.class) ;
+    private static final Map<String, Object> registered = new HashMap<>() ;
+    private static boolean noJMX = false ;
+    private static MBeanServer mbs = null ;
+
+    private static MBeanServer mbs()
+    {
+        if ( mbs == null && ! noJMX )
+        {
+            try { mbs = ManagementFactory.getPlatformMBeanServer() ; }
+            catch (Throwable ex)
+            {
+                log.debug("No JMX: "+ex.getMessage()) ;
+                noJMX = true ;
+            }
+        }
+        return mbs ;
+    }
+
+    /** Register an MBean under a name; replaces any object registered under the name. */
+    public static synchronized void register(String name, Object bean)
+    {
+        MBeanServer server = mbs() ;
+        if ( server == null )
+            return ;
+        try {
+            ObjectName objName = new ObjectName(name) ;
+            if ( server.isRegistered(objName) )
+                server.unregisterMBean(objName) ;
+            server.registerMBean(bean, objName) ;
+            registered.put(name, bean) ;
+        } catch (Exception ex) {
+            log.warn("Failed to register '"+name+"': "+ex.getMessage()) ;
+        }
+    }
+
+    /** Unregister the MBean under a name, if it is this object.
+     *  (A later registration under the same name is not removed.) */
+    public static synchronized void unregister(String name, Object bean)
+    {
+        if ( registered.get(name) != bean )
+            return ;
+        registered.remove(name) ;
+        MBeanServer server = mbs() ;
+        if ( server == null )
+            return ;
+        try {
+            ObjectName objName = new ObjectName(name) ;
+            if ( server.isRegistered(objName) )
+                server.unregisterMBean(objName) ;
+        } catch (Exception ex) {
+            log.warn("Failed to unregister '"+name+"': "+ex.getMessage()) ;
+        }
+    }
 }
@@ -20,6 +20,7 @@ package com.hp.hpl.jena.tdb.setup;
 
 import org.apache.jena.atlas.lib.ColumnMap ;
 
+import com.hp.hpl.jena.tdb.base.block.FileMode ;
 import com.hp.hpl.jena.tdb.base.file.FileFactory ;
 import com.hp.hpl.jena.tdb.base.file.FileSet ;
 import com.hp.hpl.jena.tdb.base.objectfile.ObjectFile ;
@@ -28,6 +29,7 @@ import com.hp.hpl.jena.tdb.index.Index ;
 import com.hp.hpl.jena.tdb.index.IndexBuilder ;
 import com.hp.hpl.jena.tdb.index.RangeIndex ;
 import com.hp.hpl.jena.tdb.index.RangeIndexBuilder ;
+import com.hp.hpl.jena.tdb.store.nodetable.NodeHashFilter ;
 import com.hp.hpl.jena.tdb.store.nodetable.NodeTable ;
 import com.hp.hpl.jena.tdb.store.nodetable.NodeTableCache ;
 import com.hp.hpl.jena.tdb.store.nodetable.NodeTableInline ;
@@ -71,13 +73,16 @@ public class BuilderStdDB {
         public NodeTable buildNodeTable(FileSet fsIndex, FileSet fsObjectFile, StoreParams params) {
             RecordFactory recordFactory = new RecordFactory(SystemTDB.LenNodeHash, SystemTDB.SizeOfNodeId) ;
             Index idx = indexBuilder.buildIndex(fsIndex, recordFactory, params) ;
-            ObjectFile objectFile = objectFileBuilder.buildObjectFile(fsObjectFile, Names.extNodeData) ;
-            NodeTable nodeTable = new NodeTableNative(idx, objectFile) ;
-            nodeTable = NodeTableCache.create(nodeTable, 
-                                              params.getNode2NodeIdCacheSize(),
-                                              params.getNodeId2NodeCacheSize(),
-                                              params.getNodeMissCacheSize()) ;
-            nodeTable = NodeTableInline.create(nodeTable) ;
+            ObjectFile objectFile = objectFileBuilder.buildObjectFile(fsObjectFile, Names.extNodeData, params) ;
+            NodeHashFilter filter = null ;
+            if ( params.getNodeFilterFPR() > 0 )
+            {
+                String filename = fsIndex.isMem() ? null : fsIndex.filename(Names.extNodeFilter) ;
+                filter = NodeHashFilter.open(filename, params.getNodeFilterFPR(), idx, objectFile.length()) ;
+            }
+            NodeTable nodeTable = new NodeTableNative(idx, objectFile, filter) ;
+            nodeTable = NodeTableCache.create(nodeTable, params) ;
+            nodeTable = NodeTableInline.create(nodeTable, params.getInlineExtended()) ;
             return nodeTable ;
         }
     }
@@ -87,11 +92,13 @@ public class BuilderStdDB {
         public ObjectFileBuilderStd() { }
         
         @Override
-        public ObjectFile buildObjectFile(FileSet fileSet, String ext)
+        public ObjectFile buildObjectFile(FileSet fileSet, String ext, StoreParams params)
         {
             String filename = fileSet.filename(ext) ;
             if ( fileSet.isMem() )
                 return FileFactory.createObjectFileMem(filename) ;
+            if ( params.getNodeFileMode() == FileMode.mapped )
+                return FileFactory.createObjectFileDiskMapped(filename) ;
             return FileFactory.createObjectFileDisk(filename) ;
         }
     }
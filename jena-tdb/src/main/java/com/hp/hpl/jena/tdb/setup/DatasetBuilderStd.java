@@ -44,6 +44,8 @@ import com.hp.hpl.jena.tdb.index.IndexBuilder ;
 import com.hp.hpl.jena.tdb.index.IndexParams ;
 import com.hp.hpl.jena.tdb.index.RangeIndexBuilder ;
 import com.hp.hpl.jena.tdb.solver.OpExecutorTDB1 ;
+import com.hp.hpl.jena.tdb.solver.stats.ReorderStatsFile ;
+import com.hp.hpl.jena.tdb.solver.stats.StatsCounts ;
 import com.hp.hpl.jena.tdb.store.* ;
 import com.hp.hpl.jena.tdb.store.nodetable.NodeTable ;
 import com.hp.hpl.jena.tdb.store.nodetupletable.NodeTupleTable ;
@@ -190,10 +192,28 @@ public class DatasetBuilderStd implements DatasetBuilder {
         synchronized (DatasetBuilderStd.class) {
             log.debug("Build database: "+location.getDirectoryPath()) ;
             checkLocation(location) ;
-            return _build(location, params, true, null) ;
+            DatasetGraphTDB dsg = _build(location, params, true, null) ;
+            attachStats(dsg) ;
+            return dsg ;
         }
     }
 
+    /** Maintain the statistics of the dataset as it is updated,
+     *  if it has a statistics file generated by the statistics gatherer.
+     *  Call again after the statistics file has been rewritten.
+     */
+    public static void attachStats(DatasetGraphTDB dsg) {
+        Location location = dsg.getLocation() ;
+        if ( ! SystemTDB.OnlineStats || location.isMem() || ! ( dsg.getReorderTransform() instanceof ReorderStatsFile ) ) {
+            dsg.setStatsCounts(null) ;
+            return ;
+        }
+        StatsCounts counts = StatsCounts.read(location.getPath(Names.optStats), dsg.getQuadTable().isEmpty()) ;
+        if ( counts == null )
+            log.debug("Statistics file not generated: not maintained") ;
+        dsg.setStatsCounts(counts) ;
+    }
+
     private static String DB_CONFIG_FILE = "tdb.cfg" ; 
     
     // Main engine for building.
@@ -378,7 +398,7 @@ public class DatasetBuilderStd implements DatasetBuilder {
         ReorderTransformation reorder = null ;
         if ( location.exists(Names.optStats) ) {
             try {
-                reorder = ReorderLib.weighted(location.getPath(Names.optStats)) ;
+                reorder = new ReorderStatsFile(location.getPath(Names.optStats)) ;
                 log.debug("Statistics-based BGP optimizer") ;
             }
             catch (SSEParseException ex) {
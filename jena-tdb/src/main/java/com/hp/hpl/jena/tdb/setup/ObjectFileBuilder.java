@@ -22,5 +22,5 @@ import com.hp.hpl.jena.tdb.base.file.FileSet ;
 import com.hp.hpl.jena.tdb.base.objectfile.ObjectFile ;
 
 public interface ObjectFileBuilder {
-    ObjectFile buildObjectFile(FileSet fileSet, String ext) ;
+    ObjectFile buildObjectFile(FileSet fileSet, String ext, StoreParams params) ;
 }
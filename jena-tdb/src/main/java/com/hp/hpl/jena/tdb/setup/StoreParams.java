@@ -52,6 +52,9 @@ public class StoreParams implements IndexParams, StoreParamsDynamic
     /*package*/ final Item<Integer>            Node2NodeIdCacheSize ;
     /*package*/ final Item<Integer>            NodeId2NodeCacheSize ;
     /*package*/ final Item<Integer>            NodeMissCacheSize ;
+    /*package*/ final Item<Boolean>            NodeCacheConcurrent ;
+    /*package*/ final Item<FileMode>           NodeFileMode ;
+    /*package*/ final Item<Double>             NodeFilterFPR ;
 
     /* These are items affect database layout and
      * only can be applied when a database is created.
@@ -61,6 +64,8 @@ public class StoreParams implements IndexParams, StoreParamsDynamic
      */
     
     /*package*/ final Item<Integer>            blockSize ;
+    /*package*/ final Item<Boolean>            leafCompression ;
+    /*package*/ final Item<Boolean>            inlineExtended ;
     /*package*/ final Item<String>             indexNode2Id ;
     /*package*/ final Item<String>             indexId2Node ;
     /*package*/ final Item<String>             primaryIndexTriples ;
@@ -85,10 +90,12 @@ public class StoreParams implements IndexParams, StoreParamsDynamic
      */
     public static StoreParamsBuilder builder(StoreParams params) { return StoreParamsBuilder.create(params) ; }
     
-    /*package*/ StoreParams(Item<FileMode> fileMode, Item<Integer> blockSize,
+    /*package*/ StoreParams(Item<FileMode> fileMode, Item<Integer> blockSize, Item<Boolean> leafCompression,
+                            Item<Boolean> inlineExtended,
                             Item<Integer> blockReadCacheSize, Item<Integer> blockWriteCacheSize,
                             Item<Integer> node2NodeIdCacheSize, Item<Integer> nodeId2NodeCacheSize,
-                            Item<Integer> nodeMissCacheSize,
+                            Item<Integer> nodeMissCacheSize, Item<Boolean> nodeCacheConcurrent,
+                            Item<FileMode> nodeFileMode, Item<Double> nodeFilterFPR,
                             Item<String> indexNode2Id, Item<String> indexId2Node, 
                             Item<String> primaryIndexTriples, Item<String[]> tripleIndexes,
                             Item<String> primaryIndexQuads, Item<String[]> quadIndexes,
@@ -96,11 +103,16 @@ public class StoreParams implements IndexParams, StoreParamsDynamic
                             Item<String> indexPrefix, Item<String> prefixNode2Id, Item<String> prefixId2Node) {
         this.fileMode               = fileMode ;
         this.blockSize              = blockSize ;
+        this.leafCompression        = leafCompression ;
+        this.inlineExtended         = inlineExtended ;
         this.blockReadCacheSize     = blockReadCacheSize ;
         this.blockWriteCacheSize    = blockWriteCacheSize ;
         this.Node2NodeIdCacheSize   = node2NodeIdCacheSize ;
         this.NodeId2NodeCacheSize   = nodeId2NodeCacheSize ;
         this.NodeMissCacheSize      = nodeMissCacheSize ;
+        this.NodeCacheConcurrent    = nodeCacheConcurrent ;
+        this.NodeFileMode           = nodeFileMode ;
+        this.NodeFilterFPR          = nodeFilterFPR ;
 
         this.indexNode2Id           = indexNode2Id ;
         this.indexId2Node           = indexId2Node ;
@@ -151,6 +163,18 @@ public class StoreParams implements IndexParams, StoreParamsDynamic
         return blockSize.value ;
     }
 
+    @Override
+    public Boolean getLeafCompression() {
+        return leafCompression.value ;
+    }
+
+    /** Whether the node table inlines the extended set of literal types into NodeIds.
+     * @see com.hp.hpl.jena.tdb.store.NodeId#inline(com.hp.hpl.jena.graph.Node, boolean)
+     */
+    public Boolean getInlineExtended() {
+        return inlineExtended.value ;
+    }
+
     @Override
     public Integer getBlockReadCacheSize() {
         return blockReadCacheSize.value ;
@@ -201,6 +225,36 @@ public class StoreParams implements IndexParams, StoreParamsDynamic
         return NodeMissCacheSize.isSet ;
     }
 
+    @Override
+    public Boolean getNodeCacheConcurrent() {
+        return NodeCacheConcurrent.value ;
+    }
+
+    @Override
+    public boolean isSetNodeCacheConcurrent() {
+        return NodeCacheConcurrent.isSet ;
+    }
+
+    @Override
+    public FileMode getNodeFileMode() {
+        return NodeFileMode.value ;
+    }
+
+    @Override
+    public boolean isSetNodeFileMode() {
+        return NodeFileMode.isSet ;
+    }
+
+    @Override
+    public Double getNodeFilterFPR() {
+        return NodeFilterFPR.value ;
+    }
+
+    @Override
+    public boolean isSetNodeFilterFPR() {
+        return NodeFilterFPR.isSet ;
+    }
+
     public String getIndexNode2Id() {
         return indexNode2Id.value ;
     }
@@ -250,11 +304,16 @@ public class StoreParams implements IndexParams, StoreParamsDynamic
         StringBuilder buff = new StringBuilder() ;
         fmt(buff, "fileMode", getFileMode().toString(), fileMode.isSet) ;
         fmt(buff, "blockSize", getBlockSize(), blockSize.isSet) ;
+        fmt(buff, "leafCompression", getLeafCompression().toString(), leafCompression.isSet) ;
+        fmt(buff, "inlineExtended", getInlineExtended().toString(), inlineExtended.isSet) ;
         fmt(buff, "readCacheSize", getBlockReadCacheSize(), blockReadCacheSize.isSet) ;
         fmt(buff, "writeCacheSize", getBlockWriteCacheSize(), blockWriteCacheSize.isSet) ;
         fmt(buff, "Node2NodeIdCacheSize", getNode2NodeIdCacheSize(), Node2NodeIdCacheSize.isSet) ;
         fmt(buff, "NodeId2NodeCacheSize", getNodeId2NodeCacheSize(), NodeId2NodeCacheSize.isSet) ;
         fmt(buff, "NodeMissCacheSize", getNodeMissCacheSize(), NodeMissCacheSize.isSet) ;
+        fmt(buff, "NodeCacheConcurrent", getNodeCacheConcurrent().toString(), NodeCacheConcurrent.isSet) ;
+        fmt(buff, "NodeFileMode", getNodeFileMode().toString(), NodeFileMode.isSet) ;
+        fmt(buff, "NodeFilterFPR", getNodeFilterFPR().toString(), NodeFilterFPR.isSet) ;
 
         fmt(buff, "indexNode2Id", getIndexNode2Id(), indexNode2Id.isSet) ;
         fmt(buff, "indexId2Node", getIndexId2Node(), indexId2Node.isSet) ;
@@ -300,8 +359,13 @@ public class StoreParams implements IndexParams, StoreParamsDynamic
         result = prime * result + ((Node2NodeIdCacheSize == null) ? 0 : Node2NodeIdCacheSize.hashCode()) ;
         result = prime * result + ((NodeId2NodeCacheSize == null) ? 0 : NodeId2NodeCacheSize.hashCode()) ;
         result = prime * result + ((NodeMissCacheSize == null) ? 0 : NodeMissCacheSize.hashCode()) ;
+        result = prime * result + ((NodeCacheConcurrent == null) ? 0 : NodeCacheConcurrent.hashCode()) ;
+        result = prime * result + ((NodeFileMode == null) ? 0 : NodeFileMode.hashCode()) ;
+        result = prime * result + ((NodeFilterFPR == null) ? 0 : NodeFilterFPR.hashCode()) ;
         result = prime * result + ((blockReadCacheSize == null) ? 0 : blockReadCacheSize.hashCode()) ;
         result = prime * result + ((blockSize == null) ? 0 : blockSize.hashCode()) ;
+        result = prime * result + ((leafCompression == null) ? 0 : leafCompression.hashCode()) ;
+        result = prime * result + ((inlineExtended == null) ? 0 : inlineExtended.hashCode()) ;
         result = prime * result + ((blockWriteCacheSize == null) ? 0 : blockWriteCacheSize.hashCode()) ;
         result = prime * result + ((fileMode == null) ? 0 : fileMode.hashCode()) ;
         result = prime * result + ((indexId2Node == null) ? 0 : indexId2Node.hashCode()) ;
@@ -338,8 +402,18 @@ public class StoreParams implements IndexParams, StoreParamsDynamic
             return false ;
         if ( !sameValues(params1.NodeMissCacheSize, params2.NodeMissCacheSize) )
             return false ;
+        if ( !sameValues(params1.NodeCacheConcurrent, params2.NodeCacheConcurrent) )
+            return false ;
+        if ( !sameValues(params1.NodeFileMode, params2.NodeFileMode) )
+            return false ;
+        if ( !sameValues(params1.NodeFilterFPR, params2.NodeFilterFPR) )
+            return false ;
         if ( !sameValues(params1.blockSize, params2.blockSize) )
             return false ;
+        if ( !sameValues(params1.leafCompression, params2.leafCompression) )
+            return false ;
+        if ( !sameValues(params1.inlineExtended, params2.inlineExtended) )
+            return false ;
         if ( !sameValues(params1.indexNode2Id, params2.indexNode2Id) )
             return false ;
         if ( !sameValues(params1.indexId2Node, params2.indexId2Node) )
@@ -393,6 +467,21 @@ public class StoreParams implements IndexParams, StoreParamsDynamic
                 return false ;
         } else if ( !NodeMissCacheSize.equals(other.NodeMissCacheSize) )
             return false ;
+        if ( NodeCacheConcurrent == null ) {
+            if ( other.NodeCacheConcurrent != null )
+                return false ;
+        } else if ( !NodeCacheConcurrent.equals(other.NodeCacheConcurrent) )
+            return false ;
+        if ( NodeFileMode == null ) {
+            if ( other.NodeFileMode != null )
+                return false ;
+        } else if ( !NodeFileMode.equals(other.NodeFileMode) )
+            return false ;
+        if ( NodeFilterFPR == null ) {
+            if ( other.NodeFilterFPR != null )
+                return false ;
+        } else if ( !NodeFilterFPR.equals(other.NodeFilterFPR) )
+            return false ;
         if ( blockReadCacheSize == null ) {
             if ( other.blockReadCacheSize != null )
                 return false ;
@@ -403,6 +492,16 @@ public class StoreParams implements IndexParams, StoreParamsDynamic
                 return false ;
         } else if ( !blockSize.equals(other.blockSize) )
             return false ;
+        if ( leafCompression == null ) {
+            if ( other.leafCompression != null )
+                return false ;
+        } else if ( !leafCompression.equals(other.leafCompression) )
+            return false ;
+        if ( inlineExtended == null ) {
+            if ( other.inlineExtended != null )
+                return false ;
+        } else if ( !inlineExtended.equals(other.inlineExtended) )
+            return false ;
         if ( blockWriteCacheSize == null ) {
             if ( other.blockWriteCacheSize != null )
                 return false ;
@@ -74,10 +74,20 @@ public class StoreParamsBuilder {
 
     private Item<Integer>            NodeMissCacheSize     = new Item<>(StoreParamsConst.NodeMissCacheSize, false) ;
 
+    private Item<Boolean>            NodeCacheConcurrent   = new Item<>(StoreParamsConst.NodeCacheConcurrent, false) ;
+
+    private Item<FileMode>           NodeFileMode          = new Item<>(StoreParamsConst.NodeFileMode, false) ;
+
+    private Item<Double>             NodeFilterFPR         = new Item<>(StoreParamsConst.NodeFilterFPR, false) ;
+
     /** Database layout - ignored after a database is created */
 
     private Item<Integer>            blockSize             = new Item<>(StoreParamsConst.blockSize, false) ;
 
+    private Item<Boolean>            leafCompression       = new Item<>(StoreParamsConst.leafCompression, false) ;
+
+    private Item<Boolean>            inlineExtended        = new Item<>(StoreParamsConst.inlineExtended, false) ;
+
     private Item<String>             indexNode2Id          = new Item<>(StoreParamsConst.indexNode2Id, false) ;
 
     private Item<String>             indexId2Node          = new Item<>(StoreParamsConst.indexId2Node, false) ;
@@ -136,6 +146,15 @@ public class StoreParamsBuilder {
         if ( additionalParams.isSetNodeMissCacheSize() )
             b.nodeMissCacheSize(additionalParams.getNodeMissCacheSize()) ;
 
+        if ( additionalParams.isSetNodeCacheConcurrent() )
+            b.nodeCacheConcurrent(additionalParams.getNodeCacheConcurrent()) ;
+
+        if ( additionalParams.isSetNodeFileMode() )
+            b.nodeFileMode(additionalParams.getNodeFileMode()) ;
+
+        if ( additionalParams.isSetNodeFilterFPR() )
+            b.nodeFilterFPR(additionalParams.getNodeFilterFPR()) ;
+
         return b.build();
     }
     
@@ -146,11 +165,16 @@ public class StoreParamsBuilder {
     private StoreParamsBuilder(StoreParams other) {
         this.fileMode               = other.fileMode ;
         this.blockSize              = other.blockSize ;
+        this.leafCompression        = other.leafCompression ;
+        this.inlineExtended         = other.inlineExtended ;
         this.blockReadCacheSize     = other.blockReadCacheSize ; 
         this.blockWriteCacheSize    = other.blockWriteCacheSize ; 
         this.Node2NodeIdCacheSize   = other.Node2NodeIdCacheSize ; 
         this.NodeId2NodeCacheSize   = other.NodeId2NodeCacheSize ; 
         this.NodeMissCacheSize      = other.NodeMissCacheSize ; 
+        this.NodeCacheConcurrent    = other.NodeCacheConcurrent ; 
+        this.NodeFileMode           = other.NodeFileMode ; 
+        this.NodeFilterFPR          = other.NodeFilterFPR ; 
 
         this.indexNode2Id           = other.indexNode2Id ; 
         this.indexId2Node           = other.indexId2Node ; 
@@ -171,8 +195,9 @@ public class StoreParamsBuilder {
     
     public StoreParams build() {
         return new StoreParams(
-                 fileMode, blockSize, blockReadCacheSize, blockWriteCacheSize, 
-                 Node2NodeIdCacheSize, NodeId2NodeCacheSize, NodeMissCacheSize,
+                 fileMode, blockSize, leafCompression, inlineExtended, blockReadCacheSize, blockWriteCacheSize, 
+                 Node2NodeIdCacheSize, NodeId2NodeCacheSize, NodeMissCacheSize, NodeCacheConcurrent,
+                 NodeFileMode, NodeFilterFPR,
                  indexNode2Id, indexId2Node, primaryIndexTriples, tripleIndexes,
                  primaryIndexQuads, quadIndexes, primaryIndexPrefix,
                  prefixIndexes, indexPrefix,
@@ -197,6 +222,24 @@ public class StoreParamsBuilder {
         return this ;
     }
 
+    public boolean getLeafCompression() {
+        return leafCompression.value ;
+    }
+
+    public StoreParamsBuilder leafCompression(boolean leafCompression) {
+        this.leafCompression = new Item<>(leafCompression, true) ;
+        return this ;
+    }
+
+    public boolean getInlineExtended() {
+        return inlineExtended.value ;
+    }
+
+    public StoreParamsBuilder inlineExtended(boolean inlineExtended) {
+        this.inlineExtended = new Item<>(inlineExtended, true) ;
+        return this ;
+    }
+
     public int getBlockReadCacheSize() {
         return blockReadCacheSize.value ;
     }
@@ -242,6 +285,33 @@ public class StoreParamsBuilder {
        return this ;
    }
 
+    public boolean getNodeCacheConcurrent() {
+        return NodeCacheConcurrent.value ;
+    }
+
+   public StoreParamsBuilder nodeCacheConcurrent(boolean nodeCacheConcurrent) {
+       NodeCacheConcurrent = new Item<>(nodeCacheConcurrent, true) ;
+       return this ;
+   }
+
+    public FileMode getNodeFileMode() {
+        return NodeFileMode.value ;
+    }
+
+   public StoreParamsBuilder nodeFileMode(FileMode nodeFileMode) {
+       NodeFileMode = new Item<>(nodeFileMode, true) ;
+       return this ;
+   }
+
+    public double getNodeFilterFPR() {
+        return NodeFilterFPR.value ;
+    }
+
+   public StoreParamsBuilder nodeFilterFPR(double nodeFilterFPR) {
+       NodeFilterFPR = new Item<>(nodeFilterFPR, true) ;
+       return this ;
+   }
+
     public String getIndexNode2Id() {
         return indexNode2Id.value ;
     }
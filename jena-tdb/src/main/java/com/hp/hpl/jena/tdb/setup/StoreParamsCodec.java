@@ -21,12 +21,17 @@ package com.hp.hpl.jena.tdb.setup;
 import static com.hp.hpl.jena.tdb.setup.StoreParamsConst.TDB_CONFIG_FILE ;
 import static com.hp.hpl.jena.tdb.setup.StoreParamsConst.fBlockReadCacheSize ;
 import static com.hp.hpl.jena.tdb.setup.StoreParamsConst.fBlockSize ;
+import static com.hp.hpl.jena.tdb.setup.StoreParamsConst.fLeafCompression ;
 import static com.hp.hpl.jena.tdb.setup.StoreParamsConst.fBlockWriteCacheSize ;
 import static com.hp.hpl.jena.tdb.setup.StoreParamsConst.fFileMode ;
 import static com.hp.hpl.jena.tdb.setup.StoreParamsConst.fIndexId2Node ;
 import static com.hp.hpl.jena.tdb.setup.StoreParamsConst.fIndexNode2Id ;
 import static com.hp.hpl.jena.tdb.setup.StoreParamsConst.fIndexPrefix ;
+import static com.hp.hpl.jena.tdb.setup.StoreParamsConst.fInlineExtended ;
 import static com.hp.hpl.jena.tdb.setup.StoreParamsConst.fNode2NodeIdCacheSize ;
+import static com.hp.hpl.jena.tdb.setup.StoreParamsConst.fNodeCacheConcurrent ;
+import static com.hp.hpl.jena.tdb.setup.StoreParamsConst.fNodeFileMode ;
+import static com.hp.hpl.jena.tdb.setup.StoreParamsConst.fNodeFilterFPR ;
 import static com.hp.hpl.jena.tdb.setup.StoreParamsConst.fNodeId2NodeCacheSize ;
 import static com.hp.hpl.jena.tdb.setup.StoreParamsConst.fNodeMissCacheSize ;
 import static com.hp.hpl.jena.tdb.setup.StoreParamsConst.fPrefixId2Node ;
@@ -96,11 +101,16 @@ public class StoreParamsCodec {
         
         encode(builder, key(fFileMode),                 params.getFileMode().name()) ;
         encode(builder, key(fBlockSize),                params.getBlockSize()) ;
+        encode(builder, key(fLeafCompression),          params.getLeafCompression()) ;
+        encode(builder, key(fInlineExtended),           params.getInlineExtended()) ;
         encode(builder, key(fBlockReadCacheSize),       params.getBlockReadCacheSize()) ;
         encode(builder, key(fBlockWriteCacheSize),      params.getBlockWriteCacheSize()) ;
         encode(builder, key(fNode2NodeIdCacheSize),     params.getNode2NodeIdCacheSize()) ;
         encode(builder, key(fNodeId2NodeCacheSize),     params.getNodeId2NodeCacheSize()) ;
         encode(builder, key(fNodeMissCacheSize),        params.getNodeMissCacheSize()) ;
+        encode(builder, key(fNodeCacheConcurrent),      params.getNodeCacheConcurrent()) ;
+        encode(builder, key(fNodeFileMode),             params.getNodeFileMode().name()) ;
+        encode(builder, key(fNodeFilterFPR),            params.getNodeFilterFPR()) ;
         encode(builder, key(fIndexNode2Id),             params.getIndexNode2Id()) ;
         encode(builder, key(fIndexId2Node),             params.getIndexId2Node()) ;
         encode(builder, key(fPrimaryIndexTriples),      params.getPrimaryIndexTriples()) ;
@@ -139,11 +149,16 @@ public class StoreParamsCodec {
             switch(short_key) {
                 case fFileMode :               builder.fileMode(FileMode.valueOf(getString(json, key))) ;   break ;
                 case fBlockSize:               builder.blockSize(getInt(json, key)) ;                       break ;
+                case fLeafCompression:         builder.leafCompression(getBoolean(json, key)) ;             break ;
+                case fInlineExtended:          builder.inlineExtended(getBoolean(json, key)) ;              break ;
                 case fBlockReadCacheSize:      builder.blockReadCacheSize(getInt(json, key)) ;              break ;
                 case fBlockWriteCacheSize:     builder.blockWriteCacheSize(getInt(json, key)) ;             break ;
                 case fNode2NodeIdCacheSize:    builder.node2NodeIdCacheSize(getInt(json, key)) ;            break ;
                 case fNodeId2NodeCacheSize:    builder.nodeId2NodeCacheSize(getInt(json, key)) ;            break ;
                 case fNodeMissCacheSize:       builder.nodeMissCacheSize(getInt(json, key)) ;               break ;
+                case fNodeCacheConcurrent:     builder.nodeCacheConcurrent(getBoolean(json, key)) ;         break ;
+                case fNodeFileMode:            builder.nodeFileMode(FileMode.valueOf(getString(json, key))) ; break ;
+                case fNodeFilterFPR:           builder.nodeFilterFPR(getDouble(json, key)) ;                break ;
                 case fIndexNode2Id:            builder.indexNode2Id(getString(json, key)) ;                 break ;
                 case fIndexId2Node:            builder.indexId2Node(getString(json, key)) ;                 break ;
                 case fPrimaryIndexTriples:     builder.primaryIndexTriples(getString(json, key)) ;          break ;
@@ -178,6 +193,20 @@ public class StoreParamsCodec {
         return x ;
     }
     
+    private static Double getDouble(JsonObject json, String key) {
+        if ( ! json.hasKey(key) )
+            throw new TDBException("StoreParamsCodec.getDouble: no such key: "+key) ;
+        Double x = json.get(key).getAsNumber().value().doubleValue() ;
+        return x ;
+    }
+    
+    private static Boolean getBoolean(JsonObject json, String key) {
+        if ( ! json.hasKey(key) )
+            throw new TDBException("StoreParamsCodec.getBoolean: no such key: "+key) ;
+        Boolean x = json.get(key).getAsBoolean().value() ;
+        return x ;
+    }
+    
     private static String[] getStringArray(JsonObject json, String key) {
         if ( ! json.hasKey(key) )
             throw new TDBException("StoreParamsCodec.getStringArray: no such key: "+key) ;
@@ -191,6 +220,10 @@ public class StoreParamsCodec {
 
     // Encode helper.
     private static void encode(JsonBuilder builder, String name, Object value) {
+        if ( value instanceof Double ) {
+            builder.key(name).value(((Double)value).doubleValue()) ;
+            return ;
+        }
         if ( value instanceof Number ) {
             long x = ((Number)value).longValue() ;
             builder.key(name).value(x) ;
@@ -200,6 +233,10 @@ public class StoreParamsCodec {
             builder.key(name).value(value.toString()) ;
             return ;
         }
+        if ( value instanceof Boolean ) {
+            builder.key(name).value(((Boolean)value).booleanValue()) ;
+            return ;
+        }
         if ( value instanceof String[] ) {
             String[] x = (String[])value ;
             builder.key(name) ;
@@ -51,10 +51,25 @@ public class StoreParamsConst {
     public static final String   fNodeMissCacheSize    = "node_miss_cache_size" ;
     public static final int      NodeMissCacheSize     = SystemTDB.NodeMissCacheSize ;
     
+    public static final String   fNodeCacheConcurrent  = "node_cache_concurrent" ;
+    public static final boolean  NodeCacheConcurrent   = SystemTDB.NodeCacheConcurrent ;
+    
+    public static final String   fNodeFileMode         = "node_file_mode" ;
+    public static final FileMode NodeFileMode          = SystemTDB.NodeFileMode ;
+    
+    public static final String   fNodeFilterFPR        = "node_filter_fpr" ;
+    public static final double   NodeFilterFPR         = SystemTDB.NodeFilterFPR ;
+    
     /** Database layout - ignored after a database is created */
     public static final String   fBlockSize            = "block_size" ;
     public static final int      blockSize             = SystemTDB.BlockSize ;
     
+    public static final String   fLeafCompression      = "leaf_compression" ;
+    public static final boolean  leafCompression       = SystemTDB.LeafCompression ;
+    
+    public static final String   fInlineExtended       = "inline_extended" ;
+    public static final boolean  inlineExtended        = SystemTDB.InlineExtended ;
+    
     public static final String   fIndexNode2Id         = "index_node2id" ;
     public static final String   indexNode2Id          = Names.indexNode2Id ;
     
@@ -50,5 +50,17 @@ public interface StoreParamsDynamic {
     /** Node cache for recording known misses */
     public Integer getNodeMissCacheSize() ;
     public boolean isSetNodeMissCacheSize() ;
+
+    /** Node caches with lock-free lookup, for many concurrent readers. */
+    public Boolean getNodeCacheConcurrent() ;
+    public boolean isSetNodeCacheConcurrent() ;
+
+    /** Access to the node data file: mapped reads slices of the memory mapped file, direct reads copies. */
+    public FileMode getNodeFileMode() ;
+    public boolean isSetNodeFileMode() ;
+
+    /** False positive rate of the Bloom filter in front of the node table index; 0 for no filter. */
+    public Double getNodeFilterFPR() ;
+    public boolean isSetNodeFilterFPR() ;
 }
 
@@ -36,17 +36,27 @@ public class BindingTDB extends BindingBase
 {
     private final NodeTable nodeTable ;
     private final BindingNodeId idBinding ;
+    // Conversion shared with other bindings, or null.
+    private final IteratorIdToNodeBlocks.Block block ;
+    private final int blockIdx ;
     
     private static final boolean caching = false ;
     // Whether the cache is worthwhile is unclear - the NodeTable keeps a cache. 
     private final Map<Var,Node> cache = ( caching ? new HashMap<Var, Node>() : null ) ;
 
     public BindingTDB(BindingNodeId idBinding, NodeTable nodeTable)
+    {
+        this(idBinding, nodeTable, null, -1) ;
+    }
+
+    /*package*/ BindingTDB(BindingNodeId idBinding, NodeTable nodeTable, IteratorIdToNodeBlocks.Block block, int blockIdx)
     {
         // BindingNodeId contains the bindings actually used  copied down when created. 
         super(idBinding.getParentBinding()) ;
         this.idBinding = idBinding ;
         this.nodeTable = nodeTable ;
+        this.block = block ;
+        this.blockIdx = blockIdx ;
     }
 
     @Override
@@ -94,6 +104,8 @@ public class BindingTDB extends BindingBase
     
     public BindingNodeId getBindingId() { return idBinding ; }
     
+    public NodeTable getNodeTable() { return nodeTable ; }
+    
     public NodeId getNodeId(Var var)
     {
         NodeId id = idBinding.get(var) ;
@@ -120,7 +132,10 @@ public class BindingTDB extends BindingBase
             NodeId id = idBinding.get(var) ;
             if ( id == null )
                 return null ; 
-            n = nodeTable.getNodeForNodeId(id) ;
+            if ( block != null )
+                n = block.get(var, blockIdx) ;
+            else
+                n = nodeTable.getNodeForNodeId(id) ;
             // Update cache.
             cachePut(var, n) ;
             return n ;
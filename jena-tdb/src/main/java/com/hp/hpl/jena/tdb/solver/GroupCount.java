@@ -0,0 +1,361 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hp.hpl.jena.tdb.solver;
+
+import java.util.ArrayList ;
+import java.util.Iterator ;
+import java.util.List ;
+
+import org.apache.jena.atlas.iterator.Filter ;
+import org.apache.jena.atlas.iterator.Iter ;
+import org.apache.jena.atlas.lib.Tuple ;
+
+import com.hp.hpl.jena.graph.Node ;
+import com.hp.hpl.jena.graph.Triple ;
+import com.hp.hpl.jena.sparql.algebra.Op ;
+import com.hp.hpl.jena.sparql.algebra.op.OpBGP ;
+import com.hp.hpl.jena.sparql.algebra.op.OpGroup ;
+import com.hp.hpl.jena.sparql.algebra.op.OpQuadPattern ;
+import com.hp.hpl.jena.sparql.core.Quad ;
+import com.hp.hpl.jena.sparql.core.Var ;
+import com.hp.hpl.jena.sparql.core.VarExprList ;
+import com.hp.hpl.jena.sparql.engine.ExecutionContext ;
+import com.hp.hpl.jena.sparql.engine.QueryIterator ;
+import com.hp.hpl.jena.sparql.engine.binding.Binding ;
+import com.hp.hpl.jena.sparql.engine.binding.BindingFactory ;
+import com.hp.hpl.jena.sparql.engine.binding.BindingMap ;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterPlainWrapper ;
+import com.hp.hpl.jena.sparql.expr.Expr ;
+import com.hp.hpl.jena.sparql.expr.ExprAggregator ;
+import com.hp.hpl.jena.sparql.expr.NodeValue ;
+import com.hp.hpl.jena.sparql.expr.aggregate.* ;
+import com.hp.hpl.jena.tdb.store.DatasetGraphTDB ;
+import com.hp.hpl.jena.tdb.store.GraphTDB ;
+import com.hp.hpl.jena.tdb.store.NodeId ;
+import com.hp.hpl.jena.tdb.store.nodetable.NodeTable ;
+import com.hp.hpl.jena.tdb.store.nodetupletable.NodeTupleTable ;
+import com.hp.hpl.jena.tdb.store.tupletable.ParallelScan ;
+import com.hp.hpl.jena.tdb.store.tupletable.TupleIndex ;
+import com.hp.hpl.jena.tdb.store.tupletable.TupleIndexRecord ;
+import com.hp.hpl.jena.tdb.sys.ScanControl ;
+
+/** Answer COUNT aggregates of a single triple or quad pattern, grouped by at most one
+ *  variable, from the indexes.
+ *  <p>
+ *  An index is chosen where the constants of the pattern are the leading slots,
+ *  followed by the group variable, then the variable of any COUNT(DISTINCT ?x).
+ *  The scan then comes back in runs of the same group key, and, within a group,
+ *  in runs of the same ?x, so counting is done on NodeIds by counting runs.
+ *  Only the group keys are turned into Nodes.
+ *  The scan is split by key range and the parts are counted in parallel ({@link ParallelScan}).
+ *  <p>
+ *  Supported aggregates: COUNT(*), COUNT(?v), COUNT(DISTINCT *) and COUNT(DISTINCT ?v)
+ *  where ?v is a variable of the pattern, with at most one distinct variable other than
+ *  the group variable. The pattern must not repeat a variable.
+ */
+public class GroupCount
+{
+    /** Execute the group, or return null if it is not of a form that can be answered from the indexes. */
+    public static QueryIterator execute(OpGroup opGroup, ExecutionContext execCxt)
+    {
+        // ---- Group key : none, or one variable.
+        VarExprList groupVars = opGroup.getGroupVars() ;
+        if ( groupVars.size() > 1 )
+            return null ;
+        Var groupVar = null ;
+        if ( groupVars.size() == 1 )
+        {
+            groupVar = groupVars.getVars().get(0) ;
+            if ( groupVars.getExpr(groupVar) != null )
+                return null ;
+        }
+        if ( opGroup.getAggregators().isEmpty() )
+            return null ;
+
+        // ---- The pattern and where to find it.
+        Op sub = opGroup.getSubOp() ;
+        NodeTupleTable ntt = null ;
+        Tuple<Node> pattern = null ;
+        if ( sub instanceof OpQuadPattern )
+        {
+            OpQuadPattern opQuads = (OpQuadPattern)sub ;
+            if ( opQuads.getPattern().size() != 1 )
+                return null ;
+            if ( ! ( execCxt.getDataset() instanceof DatasetGraphTDB ) )
+                return null ;
+            DatasetGraphTDB ds = (DatasetGraphTDB)execCxt.getDataset() ;
+            Node gn = OpExecutorTDB1.decideGraphNode(opQuads.getGraphNode(), execCxt) ;
+            Quad quad = opQuads.getPattern().get(0) ;
+            if ( gn == null )
+            {
+                GraphTDB graph = ds.getEffectiveDefaultGraph() ;
+                return execute(opGroup, graph, quad.asTriple(), groupVar, execCxt) ;
+            }
+            if ( gn == Node.ANY )
+                // Union graph : needs triples made distinct.
+                return null ;
+            ntt = ds.getQuadTable().getNodeTupleTable() ;
+            pattern = Tuple.createTuple(gn, quad.getSubject(), quad.getPredicate(), quad.getObject()) ;
+        }
+        else if ( OpBGP.isBGP(sub) )
+        {
+            OpBGP opBGP = (OpBGP)sub ;
+            if ( opBGP.getPattern().size() != 1 || ! ( execCxt.getActiveGraph() instanceof GraphTDB ) )
+                return null ;
+            GraphTDB graph = (GraphTDB)execCxt.getActiveGraph() ;
+            return execute(opGroup, graph, opBGP.getPattern().get(0), groupVar, execCxt) ;
+        }
+        if ( ntt == null )
+            return null ;
+        return execute(opGroup, ntt, pattern, groupVar, execCxt) ;
+    }
+
+    private static QueryIterator execute(OpGroup opGroup, GraphTDB graph, Triple triple, Var groupVar, ExecutionContext execCxt)
+    {
+        Node gn = OpExecutorTDB1.decideGraphNode(graph.getGraphName(), execCxt) ;
+        if ( gn == null )
+        {
+            NodeTupleTable ntt = graph.getDSG().getTripleTable().getNodeTupleTable() ;
+            Tuple<Node> pattern = Tuple.createTuple(triple.getSubject(), triple.getPredicate(), triple.getObject()) ;
+            return execute(opGroup, ntt, pattern, groupVar, execCxt) ;
+        }
+        if ( gn == Node.ANY )
+            return null ;
+        NodeTupleTable ntt = graph.getDSG().getQuadTable().getNodeTupleTable() ;
+        Tuple<Node> pattern = Tuple.createTuple(gn, triple.getSubject(), triple.getPredicate(), triple.getObject()) ;
+        return execute(opGroup, ntt, pattern, groupVar, execCxt) ;
+    }
+
+    private static QueryIterator execute(OpGroup opGroup, NodeTupleTable ntt, Tuple<Node> pattern, Var groupVar, 
+                                         ExecutionContext execCxt)
+    {
+        int N = pattern.size() ;
+        int groupSlot = -1 ;
+        // Check the variables.
+        for ( int i = 0 ; i < N ; i++ )
+        {
+            Node n = pattern.get(i) ;
+            if ( ! Var.isVar(n) )
+                continue ;
+            if ( slotOf(Var.alloc(n), pattern) != i )
+                // Repeated variable.
+                return null ;
+            if ( n.equals(groupVar) )
+                groupSlot = i ;
+        }
+        if ( groupVar != null && groupSlot < 0 )
+            return null ;
+
+        // What to calculate for each aggregate.
+        int distinctSlot = -1 ;
+        int[] counts = new int[opGroup.getAggregators().size()] ;
+        for ( int j = 0 ; j < counts.length ; j++ )
+        {
+            Aggregator agg = opGroup.getAggregators().get(j).getAggregator() ;
+            if ( agg instanceof AggCount || agg instanceof AggCountDistinct )
+            {
+                // A pattern without repeated variables gives distinct rows.
+                counts[j] = COUNT ;
+                continue ;
+            }
+            if ( ! ( agg instanceof AggCountVar ) && ! ( agg instanceof AggCountVarDistinct ) )
+                return null ;
+            Expr expr = agg.getExpr() ;
+            if ( ! expr.isVariable() )
+                return null ;
+            int slot = slotOf(expr.asVar(), pattern) ;
+            if ( slot < 0 )
+                return null ;
+            if ( agg instanceof AggCountVar )
+                // Always bound.
+                counts[j] = COUNT ;
+            else if ( slot == groupSlot )
+                counts[j] = ONE ;
+            else
+            {
+                if ( distinctSlot >= 0 && distinctSlot != slot )
+                    return null ;
+                distinctSlot = slot ;
+                counts[j] = DISTINCT ;
+            }
+        }
+
+        // ---- Find an index : constants, then the group variable, then the distinct variable.
+        NodeTable nodeTable = ntt.getNodeTable() ;
+        NodeId[] ids = new NodeId[N] ;
+        boolean noMatches = false ;
+        int numConstants = 0 ;
+        for ( int i = 0 ; i < N ; i++ )
+        {
+            Node n = pattern.get(i) ;
+            if ( Var.isVar(n) )
+                continue ;
+            numConstants++ ;
+            ids[i] = nodeTable.getNodeIdForNode(n) ;
+            if ( NodeId.isDoesNotExist(ids[i]) )
+                noMatches = true ;
+        }
+        Tuple<NodeId> idPattern = Tuple.create(ids) ;
+        TupleIndexRecord index = chooseIndex(ntt.getTupleTable().getIndexes(), idPattern, numConstants, groupSlot, distinctSlot) ;
+        if ( index == null )
+            return null ;
+
+        List<Run> runs = new ArrayList<>() ;
+        if ( ! noMatches )
+            runs = scan(index, idPattern, groupSlot, distinctSlot,
+                        QC2.getFilter(execCxt.getContext()), StageMatchTuple.scanControl(execCxt)) ;
+
+        // ---- Results
+        List<ExprAggregator> aggregators = opGroup.getAggregators() ;
+        List<Binding> results = new ArrayList<>() ;
+        if ( runs.isEmpty() )
+        {
+            // As QueryIterGroup : one row, without the group key, of the aggregates of nothing.
+            BindingMap b = BindingFactory.create() ;
+            for ( ExprAggregator agg : aggregators )
+            {
+                Node value = agg.getAggregator().getValueEmpty() ;
+                if ( value != null )
+                    b.add(agg.getVar(), value) ;
+            }
+            results.add(b) ;
+            return new QueryIterPlainWrapper(results.iterator(), execCxt) ;
+        }
+        for ( Run run : runs )
+        {
+            BindingMap b = BindingFactory.create() ;
+            if ( groupVar != null )
+                b.add(groupVar, nodeTable.getNodeForNodeId(NodeId.create(run.key))) ;
+            for ( int j = 0 ; j < counts.length ; j++ )
+            {
+                long x = ( counts[j] == COUNT ) ? run.count : ( counts[j] == DISTINCT ) ? run.distinct : 1 ;
+                b.add(aggregators.get(j).getVar(), NodeValue.makeInteger(x).asNode()) ;
+            }
+            results.add(b) ;
+        }
+        return new QueryIterPlainWrapper(results.iterator(), execCxt) ;
+    }
+
+    private static final int COUNT      = 0 ;
+    private static final int DISTINCT   = 1 ;
+    private static final int ONE        = 2 ;
+
+    private static int slotOf(Var v, Tuple<Node> pattern)
+    {
+        for ( int i = 0 ; i < pattern.size() ; i++ )
+            if ( v.equals(pattern.get(i)) )
+                return i ;
+        return -1 ;
+    }
+
+    /** Find an index with the constants first, then the group slot, then the distinct slot (each if >= 0). */
+    private static TupleIndexRecord chooseIndex(TupleIndex[] indexes, Tuple<NodeId> pattern, int numConstants,
+                                                int groupSlot, int distinctSlot)
+    {
+        for ( TupleIndex idx : indexes )
+        {
+            if ( ! ( idx instanceof TupleIndexRecord ) )
+                continue ;
+            if ( idx.weight(pattern) != numConstants )
+                continue ;
+            int i = numConstants ;
+            if ( groupSlot >= 0 && idx.getColumnMap().fetchSlotIdx(i++) != groupSlot )
+                continue ;
+            if ( distinctSlot >= 0 && idx.getColumnMap().fetchSlotIdx(i) != distinctSlot )
+                continue ;
+            return (TupleIndexRecord)idx ;
+        }
+        return null ;
+    }
+
+    /** A run of tuples with the same group key. */
+    private static class Run
+    {
+        final long key ;
+        long count = 1 ;
+        // Number of runs of the distinct slot.
+        long distinct = 1 ;
+        long firstX ;
+        long lastX ;
+
+        Run(long key, long x)
+        {
+            this.key = key ;
+            this.firstX = x ;
+            this.lastX = x ;
+        }
+    }
+
+    private static List<Run> scan(TupleIndexRecord index, Tuple<NodeId> pattern,
+                                  final int groupSlot, final int distinctSlot,
+                                  final Filter<Tuple<NodeId>> filter, final ScanControl control)
+    {
+        ParallelScan.Task<List<Run>> task = new ParallelScan.Task<List<Run>>() {
+            @Override
+            public List<Run> scan(Iterator<Tuple<NodeId>> tuples)
+            {
+                if ( filter != null )
+                    tuples = Iter.filter(tuples, filter) ;
+                List<Run> runs = new ArrayList<>() ;
+                Run current = null ;
+                while ( tuples.hasNext() )
+                {
+                    Tuple<NodeId> t = tuples.next() ;
+                    long k = ( groupSlot < 0 ) ? 0 : t.get(groupSlot).getId() ;
+                    long x = ( distinctSlot < 0 ) ? 0 : t.get(distinctSlot).getId() ;
+                    if ( current == null || current.key != k )
+                    {
+                        current = new Run(k, x) ;
+                        runs.add(current) ;
+                        continue ;
+                    }
+                    current.count++ ;
+                    if ( current.lastX != x )
+                    {
+                        current.distinct++ ;
+                        current.lastX = x ;
+                    }
+                }
+                return runs ;
+            }
+        } ;
+
+        // Join the runs at the ends of the parts.
+        List<Run> runs = new ArrayList<>() ;
+        for ( List<Run> part : ParallelScan.scan(index, pattern, control, task) )
+        {
+            for ( Run run : part )
+            {
+                Run last = runs.isEmpty() ? null : runs.get(runs.size()-1) ;
+                if ( last == null || last.key != run.key )
+                {
+                    runs.add(run) ;
+                    continue ;
+                }
+                last.count += run.count ;
+                last.distinct += run.distinct ;
+                if ( last.lastX == run.firstX )
+                    last.distinct-- ;
+                last.lastX = run.lastX ;
+            }
+        }
+        return runs ;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hp.hpl.jena.tdb.solver;
+
+import java.util.ArrayList ;
+import java.util.HashMap ;
+import java.util.Iterator ;
+import java.util.List ;
+import java.util.Map ;
+import java.util.NoSuchElementException ;
+
+import org.apache.jena.atlas.iterator.Iter ;
+import org.apache.jena.atlas.lib.Closeable ;
+
+import com.hp.hpl.jena.graph.Node ;
+import com.hp.hpl.jena.sparql.core.Var ;
+import com.hp.hpl.jena.sparql.engine.binding.Binding ;
+import com.hp.hpl.jena.tdb.store.NodeId ;
+import com.hp.hpl.jena.tdb.store.nodetable.NodeTable ;
+import com.hp.hpl.jena.tdb.sys.SystemTDB ;
+
+/** Convert from Iterator&lt;BindingNodeId&gt; to Iterator&lt;Binding&gt; in blocks.
+ *  <p>
+ *  Conversion is still "on demand", as {@link BindingTDB}, but by variable and block:
+ *  the first time a binding of the block needs a variable, the NodeIds of that variable
+ *  for the whole block are looked up with one {@link NodeTable#getNodesForNodeIds} call.
+ *  Variables that are never asked for are never looked up.
+ *  <p>
+ *  The first block is one binding and blocks double up to the maximum size so that
+ *  the first results are not delayed and a small LIMIT does not read far ahead.
+ *  
+ *  @see SystemTDB#NodeIdBlockSize
+ */
+public class IteratorIdToNodeBlocks implements Iterator<Binding>, Closeable
+{
+    private final Iterator<BindingNodeId> input ;
+    private final NodeTable nodeTable ;
+    private final int maxBlockSize ;
+    private int blockSize = 1 ;
+    private Block block = null ;
+    private int idx = 0 ;
+
+    public IteratorIdToNodeBlocks(Iterator<BindingNodeId> input, NodeTable nodeTable, int maxBlockSize)
+    {
+        this.input = input ;
+        this.nodeTable = nodeTable ;
+        this.maxBlockSize = Math.max(1, maxBlockSize) ;
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        if ( block != null && idx < block.rows.size() )
+            return true ;
+        if ( ! input.hasNext() )
+            return false ;
+        List<BindingNodeId> rows = new ArrayList<>(blockSize) ;
+        while ( rows.size() < blockSize && input.hasNext() )
+            rows.add(input.next()) ;
+        block = new Block(nodeTable, rows) ;
+        idx = 0 ;
+        blockSize = Math.min(2*blockSize, maxBlockSize) ;
+        return true ;
+    }
+
+    @Override
+    public Binding next()
+    {
+        if ( ! hasNext() )
+            throw new NoSuchElementException("IteratorIdToNodeBlocks") ;
+        int i = idx++ ;
+        return new BindingTDB(block.rows.get(i), nodeTable, block, i) ;
+    }
+
+    @Override
+    public void remove()
+    { throw new UnsupportedOperationException("IteratorIdToNodeBlocks.remove") ; }
+
+    @Override
+    public void close()
+    {
+        Iter.close(input) ;
+    }
+
+    /** The NodeIds of a block of bindings, turned into Nodes variable by variable */
+    static class Block
+    {
+        private final NodeTable nodeTable ;
+        private final List<BindingNodeId> rows ;
+        private final Map<Var, Node[]> nodes = new HashMap<>() ;
+
+        Block(NodeTable nodeTable, List<BindingNodeId> rows)
+        {
+            this.nodeTable = nodeTable ;
+            this.rows = rows ;
+        }
+
+        /** The node for the variable in the i'th binding of the block, or null */
+        synchronized Node get(Var var, int i)
+        {
+            Node[] x = nodes.get(var) ;
+            if ( x == null )
+            {
+                x = lookup(var) ;
+                nodes.put(var, x) ;
+            }
+            return x[i] ;
+        }
+
+        private Node[] lookup(Var var)
+        {
+            Node[] x = new Node[rows.size()] ;
+            List<NodeId> ids = new ArrayList<>(x.length) ;
+            for ( BindingNodeId b : rows )
+            {
+                NodeId id = b.get(var) ;
+                if ( id != null )
+                    ids.add(id) ;
+            }
+            if ( ids.isEmpty() )
+                return x ;
+            List<Node> found = nodeTable.getNodesForNodeIds(ids) ;
+            int j = 0 ;
+            for ( int i = 0 ; i < x.length ; i++ )
+            {
+                if ( rows.get(i).get(var) != null )
+                    x[i] = found.get(j++) ;
+            }
+            return x ;
+        }
+    }
+}
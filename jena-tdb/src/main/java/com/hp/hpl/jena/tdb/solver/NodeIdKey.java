@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hp.hpl.jena.tdb.solver;
+
+import java.util.ArrayList ;
+import java.util.Arrays ;
+import java.util.Iterator ;
+import java.util.List ;
+
+import com.hp.hpl.jena.graph.Node ;
+import com.hp.hpl.jena.sparql.core.Var ;
+import com.hp.hpl.jena.sparql.engine.binding.Binding ;
+import com.hp.hpl.jena.sparql.engine.binding.BindingFactory ;
+import com.hp.hpl.jena.sparql.engine.binding.BindingMap ;
+import com.hp.hpl.jena.tdb.store.NodeId ;
+import com.hp.hpl.jena.tdb.store.nodetable.NodeTable ;
+
+/** The values of some variables of a binding, as NodeIds, for use as a hash key.
+ *  <p>
+ *  Two keys are equal if they have the same variables bound to the same RDF terms.
+ *  A variable bound by TDB uses its NodeId without looking up the Node.
+ *  Any other value is turned into the NodeId of the term in the node table if there is one, 
+ *  or else kept as the Node (it can not be the same term as any NodeId).
+ *  Unbound variables are not part of the key.
+ */
+public final class NodeIdKey
+{
+    private final Var[] vars ;
+    // NodeId or Node
+    private final Object[] values ;
+    private final int hash ;
+
+    /** Key for the named variables of a binding */ 
+    public static NodeIdKey create(Binding binding, NodeTable nodeTable)
+    {
+        List<Var> vars = new ArrayList<>() ;
+        for ( Iterator<Var> iter = binding.vars() ; iter.hasNext() ; )
+        {
+            Var v = iter.next() ;
+            if ( v.isNamedVar() )
+                vars.add(v) ;
+        }
+        return create(binding, vars.toArray(new Var[vars.size()]), nodeTable) ;
+    }
+
+    /** Key for the given variables of a binding */ 
+    public static NodeIdKey create(Binding binding, Var[] vars, NodeTable nodeTable)
+    {
+        int len = vars.length ;
+        Var[] keyVars = new Var[len] ;
+        Object[] values = new Object[len] ;
+        int j = 0 ;
+        for ( int i = 0 ; i < len ; i++ )
+        {
+            Object x = value(binding, vars[i], nodeTable) ;
+            if ( x == null )
+                continue ;
+            keyVars[j] = vars[i] ;
+            values[j] = x ;
+            j++ ;
+        }
+        if ( j < len )
+        {
+            keyVars = Arrays.copyOf(keyVars, j) ;
+            values = Arrays.copyOf(values, j) ;
+        }
+        return new NodeIdKey(keyVars, values) ;
+    }
+
+    private static Object value(Binding binding, Var var, NodeTable nodeTable)
+    {
+        NodeId id = SolverLib.getNodeId(binding, var, nodeTable) ;
+        if ( id != null )
+            return id ;
+        Node n = binding.get(var) ;
+        if ( n == null )
+            return null ;
+        id = nodeTable.getNodeIdForNode(n) ;
+        // Inline values are canonical: "01"^^xsd:integer has the NodeId of "1"^^xsd:integer. 
+        if ( NodeId.isDoesNotExist(id) || ! n.equals(nodeTable.getNodeForNodeId(id)) )
+            return n ;
+        return id ;
+    }
+
+    private NodeIdKey(Var[] vars, Object[] values)
+    {
+        this.vars = vars ;
+        this.values = values ;
+        // Independent of the order of the variables.
+        int h = 0 ;
+        for ( int i = 0 ; i < vars.length ; i++ )
+            h += vars[i].hashCode() ^ ( 31 * values[i].hashCode() ) ;
+        this.hash = h ;
+    }
+
+    /** The key as a binding of Nodes */
+    public Binding asBinding(NodeTable nodeTable)
+    {
+        BindingMap b = BindingFactory.create() ;
+        for ( int i = 0 ; i < vars.length ; i++ )
+        {
+            Object x = values[i] ;
+            Node n = ( x instanceof NodeId ) ? nodeTable.getNodeForNodeId((NodeId)x) : (Node)x ;
+            b.add(vars[i], n) ;
+        }
+        return b ;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return hash ;
+    }
+
+    @Override
+    public boolean equals(Object other)
+    {
+        if ( this == other ) return true ;
+        if ( ! ( other instanceof NodeIdKey ) ) return false ;
+        NodeIdKey key = (NodeIdKey)other ;
+        if ( hash != key.hash || vars.length != key.vars.length )
+            return false ;
+        for ( int i = 0 ; i < vars.length ; i++ )
+        {
+            // Usually the same variables in the same order.
+            int j = ( key.vars[i].equals(vars[i]) ) ? i : key.indexOf(vars[i]) ;
+            if ( j < 0 || ! values[i].equals(key.values[j]) )
+                return false ;
+        }
+        return true ;
+    }
+
+    private int indexOf(Var v)
+    {
+        for ( int i = 0 ; i < vars.length ; i++ )
+            if ( vars[i].equals(v) )
+                return i ;
+        return -1 ;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder("[") ;
+        for ( int i = 0 ; i < vars.length ; i++ )
+        {
+            if ( i > 0 ) sb.append(" ") ;
+            sb.append(vars[i]).append("=").append(values[i]) ;
+        }
+        return sb.append("]").toString() ;
+    }
+}
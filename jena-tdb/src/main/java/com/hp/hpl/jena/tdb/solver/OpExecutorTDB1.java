@@ -18,6 +18,8 @@
 
 package com.hp.hpl.jena.tdb.solver;
 
+import java.util.Set ;
+
 import org.apache.jena.atlas.iterator.Filter ;
 import org.apache.jena.atlas.lib.Tuple ;
 import org.apache.jena.atlas.logging.Log ;
@@ -26,7 +28,9 @@ import org.slf4j.LoggerFactory ;
 
 import com.hp.hpl.jena.graph.Graph ;
 import com.hp.hpl.jena.graph.Node ;
+import com.hp.hpl.jena.query.ARQ ;
 import com.hp.hpl.jena.sparql.ARQInternalErrorException ;
+import com.hp.hpl.jena.sparql.algebra.JoinType ;
 import com.hp.hpl.jena.sparql.algebra.Op ;
 import com.hp.hpl.jena.sparql.algebra.op.* ;
 import com.hp.hpl.jena.sparql.algebra.optimize.TransformFilterPlacement ;
@@ -36,18 +40,24 @@ import com.hp.hpl.jena.sparql.core.Substitute ;
 import com.hp.hpl.jena.sparql.core.Var ;
 import com.hp.hpl.jena.sparql.engine.ExecutionContext ;
 import com.hp.hpl.jena.sparql.engine.QueryIterator ;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterFilterExpr ;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterGroupPartitioned ;
 import com.hp.hpl.jena.sparql.engine.iterator.QueryIterPeek ;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterRoot ;
 import com.hp.hpl.jena.sparql.engine.main.OpExecutor ;
 import com.hp.hpl.jena.sparql.engine.main.OpExecutorFactory ;
 import com.hp.hpl.jena.sparql.engine.main.QC ;
 import com.hp.hpl.jena.sparql.engine.main.iterator.QueryIterGraph ;
 import com.hp.hpl.jena.sparql.engine.optimizer.reorder.ReorderProc ;
 import com.hp.hpl.jena.sparql.engine.optimizer.reorder.ReorderTransformation ;
+import com.hp.hpl.jena.sparql.expr.Expr ;
 import com.hp.hpl.jena.sparql.expr.ExprList ;
 import com.hp.hpl.jena.sparql.mgt.Explain ;
 import com.hp.hpl.jena.tdb.store.DatasetGraphTDB ;
 import com.hp.hpl.jena.tdb.store.GraphTDB ;
 import com.hp.hpl.jena.tdb.store.NodeId ;
+import com.hp.hpl.jena.tdb.store.nodetable.NodeTable ;
+import com.hp.hpl.jena.tdb.sys.SystemTDB ;
 
 /** TDB executor for algebra expressions.  It is the standard ARQ executor
  *  except for basic graph patterns and filtered basic graph patterns (currently).  
@@ -94,7 +104,12 @@ public class OpExecutorTDB1 extends OpExecutor
     @Override
     protected QueryIterator execute(OpDistinct opDistinct, QueryIterator input)
     {
-        return super.execute(opDistinct, input) ;
+        NodeTable nodeTable = nodeIdTable(execCxt) ;
+        // QueryIterDistinctNodeId does not spill to disk.
+        if ( nodeTable == null || execCxt.getContext().isDefined(ARQ.spillToDiskThreshold) )
+            return super.execute(opDistinct, input) ;
+        QueryIterator qIter = exec(opDistinct.getSubOp(), input) ;
+        return new QueryIterDistinctNodeId(qIter, nodeTable, execCxt) ;
     }
     
     @Override
@@ -103,6 +118,29 @@ public class OpExecutorTDB1 extends OpExecutor
         return super.execute(opReduced, input) ;
     }
     
+    @Override
+    protected QueryIterator execute(OpGroup opGroup, QueryIterator input)
+    {
+        // (group (?v) ((?c (count))) (bgp/quadpattern of one pattern)) at the start of execution.
+        if ( isForTDB && input instanceof QueryIterRoot && execCxt.getContext().isTrueOrUndef(SystemTDB.symCountPushDown) )
+        {
+            QueryIterator qIter = GroupCount.execute(opGroup, execCxt) ;
+            if ( qIter != null )
+            {
+                input.close() ;
+                return qIter ;
+            }
+        }
+        // Grouping on NodeIds is in-memory and single threaded.
+        if ( QueryIterGroupPartitioned.applies(execCxt) )
+            return super.execute(opGroup, input) ;
+        NodeTable nodeTable = nodeIdTable(execCxt) ;
+        if ( nodeTable == null || ! QueryIterGroupNodeId.applies(opGroup.getGroupVars()) )
+            return super.execute(opGroup, input) ;
+        QueryIterator qIter = exec(opGroup.getSubOp(), input) ;
+        return new QueryIterGroupNodeId(qIter, opGroup.getGroupVars(), opGroup.getAggregators(), nodeTable, execCxt) ;
+    }
+    
     @Override
     protected QueryIterator execute(OpFilter opFilter, QueryIterator input)
     {
@@ -132,8 +170,58 @@ public class OpExecutorTDB1 extends OpExecutor
         }
     
         // (filter (anything else))
-        return super.execute(opFilter, input) ;
+        return filter(opFilter.getExprs(), exec(opFilter.getSubOp(), input), execCxt) ;
+    }
+
+    @Override
+    protected QueryIterator execute(OpJoin opJoin, QueryIterator input)
+    {
+        // Hash join on NodeIds.
+        NodeTable nodeTable = nodeIdTable(execCxt) ;
+        Set<Var> joinVars = ( nodeTable == null ) ? null : joinVars(opJoin.getLeft(), opJoin.getRight()) ;
+        if ( joinVars == null )
+            return super.execute(opJoin, input) ;
+        QueryIterator left = exec(opJoin.getLeft(), input) ;
+        QueryIterator right = exec(opJoin.getRight(), root()) ;
+        return new QueryIterHashJoinNodeId(left, right, joinVars, JoinType.PLAIN, null, nodeTable, execCxt) ;
+    }
+
+    @Override
+    protected QueryIterator execute(OpLeftJoin opLeftJoin, QueryIterator input)
+    {
+        NodeTable nodeTable = nodeIdTable(execCxt) ;
+        Set<Var> joinVars = ( nodeTable == null ) ? null : joinVars(opLeftJoin.getLeft(), opLeftJoin.getRight()) ;
+        if ( joinVars == null )
+            return super.execute(opLeftJoin, input) ;
+        QueryIterator left = exec(opLeftJoin.getLeft(), input) ;
+        QueryIterator right = exec(opLeftJoin.getRight(), root()) ;
+        return new QueryIterHashJoinNodeId(left, right, joinVars, JoinType.LEFT, opLeftJoin.getExprs(), nodeTable, execCxt) ;
+    }
+
+    /** The node table for operations on NodeIds, or null if they are not to be used. */
+    private static NodeTable nodeIdTable(ExecutionContext execCxt)
+    {
+        if ( ! execCxt.getContext().isTrueOrUndef(SystemTDB.symLateMaterialization) )
+            return null ;
+        if ( ! ( execCxt.getActiveGraph() instanceof GraphTDB ) )
+            return null ;
+        GraphTDB graph = (GraphTDB)execCxt.getActiveGraph() ;
+        return graph.getDSG().getTripleTable().getNodeTupleTable().getNodeTable() ;
+    }
+
+    /** Apply filter expressions, as {@link OpExecutor}, testing on NodeIds where possible. */
+    private static QueryIterator filter(ExprList exprs, QueryIterator qIter, ExecutionContext execCxt)
+    {
+        NodeTable nodeTable = nodeIdTable(execCxt) ;
+        for ( Expr expr : exprs )
+        {
+            if ( nodeTable == null )
+                qIter = new QueryIterFilterExpr(qIter, expr, execCxt) ;
+            else
+                qIter = QueryIterFilterNodeId.create(qIter, expr, nodeTable, execCxt) ;
         }
+        return qIter ;
+    }
 
     // ---- Triple patterns
     
@@ -424,5 +512,12 @@ public class OpExecutorTDB1 extends OpExecutor
             return super.execute(opQuadPattern, input) ;
         }
 
+        @Override
+        public QueryIterator execute(OpFilter opFilter, QueryIterator input)
+        {
+            // Filters placed in a BGP by TransformFilterPlacement
+            return filter(opFilter.getExprs(), exec(opFilter.getSubOp(), input), execCxt) ;
+        }
+
     }
 }
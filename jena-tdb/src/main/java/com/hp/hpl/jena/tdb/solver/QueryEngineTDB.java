@@ -41,6 +41,7 @@ import com.hp.hpl.jena.tdb.TDB ;
 import com.hp.hpl.jena.tdb.TDBException ;
 import com.hp.hpl.jena.tdb.migrate.A2 ;
 import com.hp.hpl.jena.tdb.store.DatasetGraphTDB ;
+import com.hp.hpl.jena.tdb.sys.ScanControl ;
 import com.hp.hpl.jena.tdb.transaction.DatasetGraphTransaction ;
 
 // This exists to intercept the query execution setup.
@@ -110,6 +111,8 @@ public class QueryEngineTDB extends QueryEngineMain
             op = A2.unionDefaultGraphQuads(op) ;
             Explain.explain("REWRITE(Union default graph)", op, context) ;
         }
+        // Cancellation and budget for the index scans of this execution.
+        ScanControl.create(context) ;
         QueryIterator results = super.eval(op, dsg, input, context) ;
         results = new QueryIteratorMaterializeBinding(results) ;
         return results ; 
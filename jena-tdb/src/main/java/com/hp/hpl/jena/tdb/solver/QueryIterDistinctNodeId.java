@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hp.hpl.jena.tdb.solver;
+
+import java.util.HashSet ;
+import java.util.Set ;
+
+import com.hp.hpl.jena.sparql.engine.ExecutionContext ;
+import com.hp.hpl.jena.sparql.engine.QueryIterator ;
+import com.hp.hpl.jena.sparql.engine.binding.Binding ;
+import com.hp.hpl.jena.sparql.engine.binding.BindingProjectNamed ;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIter1 ;
+import com.hp.hpl.jena.tdb.store.nodetable.NodeTable ;
+
+/** DISTINCT, remembering the rows seen as NodeIds ({@link NodeIdKey}), not Nodes.
+ *  No Node is looked up to decide whether a row from TDB is new. 
+ *  Rows are kept in memory : this does not spill to disk as 
+ *  {@link com.hp.hpl.jena.sparql.engine.iterator.QueryIterDistinct} can.
+ */
+public class QueryIterDistinctNodeId extends QueryIter1
+{
+    private final NodeTable nodeTable ;
+    private Set<NodeIdKey> seen = new HashSet<>() ;
+    private Binding slot = null ;
+
+    public QueryIterDistinctNodeId(QueryIterator input, NodeTable nodeTable, ExecutionContext execCxt)
+    {
+        super(input, execCxt) ;
+        this.nodeTable = nodeTable ;
+    }
+
+    @Override
+    protected boolean hasNextBinding()
+    {
+        if ( slot != null )
+            return true ;
+        while ( getInput().hasNext() )
+        {
+            Binding b = getInput().nextBinding() ;
+            if ( seen.add(NodeIdKey.create(b, nodeTable)) )
+            {
+                // Hide unnamed and internal variables, as QueryIterDistinct.
+                slot = new BindingProjectNamed(b) ;
+                return true ;
+            }
+        }
+        return false ;
+    }
+
+    @Override
+    protected Binding moveToNextBinding()
+    {
+        Binding r = slot ;
+        slot = null ;
+        return r ;
+    }
+
+    @Override
+    protected void closeSubIterator()
+    {
+        seen = null ;
+        slot = null ;
+    }
+
+    @Override
+    protected void requestSubCancel()
+    {}
+}
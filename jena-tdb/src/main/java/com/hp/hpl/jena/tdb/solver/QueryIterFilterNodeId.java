@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hp.hpl.jena.tdb.solver;
+
+import com.hp.hpl.jena.graph.Node ;
+import com.hp.hpl.jena.sparql.core.Var ;
+import com.hp.hpl.jena.sparql.engine.ExecutionContext ;
+import com.hp.hpl.jena.sparql.engine.QueryIterator ;
+import com.hp.hpl.jena.sparql.engine.binding.Binding ;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterFilterExpr ;
+import com.hp.hpl.jena.sparql.expr.E_Equals ;
+import com.hp.hpl.jena.sparql.expr.E_SameTerm ;
+import com.hp.hpl.jena.sparql.expr.Expr ;
+import com.hp.hpl.jena.sparql.expr.ExprFunction2 ;
+import com.hp.hpl.jena.tdb.store.NodeId ;
+import com.hp.hpl.jena.tdb.store.nodetable.NodeTable ;
+
+/** A filter that tests term equality on NodeIds, without looking up the Nodes.
+ *  <p>
+ *  Covers {@code sameTerm(?x, ?y)}, {@code sameTerm(?x, const)} and {@code ?x = <iri>}
+ *  (for an IRI, value equality is term equality).
+ *  A literal constant that would be inlined is left to the expression, because the
+ *  inline NodeId of "01"^^xsd:integer is that of "1"^^xsd:integer.
+ *  Rows where a variable does not have a NodeId are evaluated by the expression.
+ */
+public class QueryIterFilterNodeId extends QueryIterFilterExpr
+{
+    /** Filter by the expression, on NodeIds if possible. */
+    public static QueryIterator create(QueryIterator input, Expr expr, NodeTable nodeTable, ExecutionContext execCxt)
+    {
+        if ( ! ( expr instanceof E_SameTerm ) && ! ( expr instanceof E_Equals ) )
+            return new QueryIterFilterExpr(input, expr, execCxt) ;
+        ExprFunction2 f = (ExprFunction2)expr ;
+        Expr arg1 = f.getArg1() ;
+        Expr arg2 = f.getArg2() ;
+        if ( ! arg1.isVariable() )
+        {
+            Expr x = arg1 ; arg1 = arg2 ; arg2 = x ;
+        }
+        if ( ! arg1.isVariable() )
+            return new QueryIterFilterExpr(input, expr, execCxt) ;
+
+        if ( arg2.isVariable() )
+        {
+            if ( expr instanceof E_SameTerm )
+                return new QueryIterFilterNodeId(input, expr, nodeTable, arg1.asVar(), arg2.asVar(), null, execCxt) ;
+            // = on two variables may be a comparison of values. 
+            return new QueryIterFilterExpr(input, expr, execCxt) ;
+        }
+
+        if ( ! arg2.isConstant() )
+            return new QueryIterFilterExpr(input, expr, execCxt) ;
+        Node n = arg2.getConstant().asNode() ;
+        if ( expr instanceof E_Equals && ! n.isURI() )
+            return new QueryIterFilterExpr(input, expr, execCxt) ;
+        NodeId id = nodeTable.getNodeIdForNode(n) ;
+        if ( NodeId.isInline(id) )
+            return new QueryIterFilterExpr(input, expr, execCxt) ;
+        return new QueryIterFilterNodeId(input, expr, nodeTable, arg1.asVar(), null, id, execCxt) ;
+    }
+
+    private final NodeTable nodeTable ;
+    private final Var var1 ;
+    // One of var2 and constant.
+    private final Var var2 ;
+    private final NodeId constant ;
+
+    private QueryIterFilterNodeId(QueryIterator input, Expr expr, NodeTable nodeTable,
+                                  Var var1, Var var2, NodeId constant, ExecutionContext execCxt)
+    {
+        super(input, expr, execCxt) ;
+        this.nodeTable = nodeTable ;
+        this.var1 = var1 ;
+        this.var2 = var2 ;
+        this.constant = constant ;
+    }
+
+    @Override
+    public Binding accept(Binding binding)
+    {
+        NodeId id1 = SolverLib.getNodeId(binding, var1, nodeTable) ;
+        NodeId id2 = ( var2 != null ) ? SolverLib.getNodeId(binding, var2, nodeTable) : constant ;
+        if ( id1 == null || id2 == null )
+            // Not all NodeIds to hand.
+            return super.accept(binding) ;
+        if ( NodeId.isDoesNotExist(id2) )
+            // Constant not in the database.
+            return null ;
+        return id1.equals(id2) ? binding : null ;
+    }
+}
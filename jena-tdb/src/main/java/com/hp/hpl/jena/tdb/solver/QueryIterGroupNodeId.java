@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hp.hpl.jena.tdb.solver;
+
+import java.util.ArrayList ;
+import java.util.Iterator ;
+import java.util.LinkedHashMap ;
+import java.util.List ;
+import java.util.Map ;
+
+import org.apache.jena.atlas.iterator.Iter ;
+import org.apache.jena.atlas.iterator.IteratorDelayedInitialization ;
+
+import com.hp.hpl.jena.graph.Node ;
+import com.hp.hpl.jena.sparql.core.Var ;
+import com.hp.hpl.jena.sparql.core.VarExprList ;
+import com.hp.hpl.jena.sparql.engine.ExecutionContext ;
+import com.hp.hpl.jena.sparql.engine.QueryIterator ;
+import com.hp.hpl.jena.sparql.engine.binding.Binding ;
+import com.hp.hpl.jena.sparql.engine.binding.BindingFactory ;
+import com.hp.hpl.jena.sparql.engine.binding.BindingMap ;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterPlainWrapper ;
+import com.hp.hpl.jena.sparql.expr.ExprAggregator ;
+import com.hp.hpl.jena.sparql.expr.NodeValue ;
+import com.hp.hpl.jena.sparql.expr.aggregate.Accumulator ;
+import com.hp.hpl.jena.tdb.store.nodetable.NodeTable ;
+
+/** GROUP BY variables (not expressions) with groups keyed by NodeIds ({@link NodeIdKey}).
+ *  <p>
+ *  The Nodes of the group variables are looked up once per group, not once per row.
+ *  Aggregates see the rows as they come from TDB so only the variables an
+ *  aggregate uses are turned into Nodes (none for COUNT(*)).
+ *  Otherwise, as {@link com.hp.hpl.jena.sparql.engine.iterator.QueryIterGroup}.
+ */
+public class QueryIterGroupNodeId extends QueryIterPlainWrapper
+{
+    private final QueryIterator embeddedIterator ;
+
+    /** Test whether the grouping is by variables only. */
+    public static boolean applies(VarExprList groupVars)
+    {
+        for ( Var v : groupVars.getVars() )
+            if ( groupVars.getExpr(v) != null )
+                return false ;
+        return true ;
+    }
+
+    public QueryIterGroupNodeId(QueryIterator qIter, VarExprList groupVars, List<ExprAggregator> aggregators,
+                                NodeTable nodeTable, ExecutionContext execCxt)
+    {
+        super(null, execCxt) ;
+        this.embeddedIterator = qIter ;
+        List<Var> vars = groupVars.getVars() ;
+        setIterator(calc(qIter, vars.toArray(new Var[vars.size()]), aggregators, nodeTable, execCxt)) ;
+    }
+
+    @Override
+    public void requestCancel()
+    {
+        embeddedIterator.cancel() ;
+        super.requestCancel() ;
+    }
+
+    private static Iterator<Binding> calc(final QueryIterator iter, final Var[] groupVars,
+                                          final List<ExprAggregator> aggregators,
+                                          final NodeTable nodeTable, final ExecutionContext execCxt)
+    {
+        return new IteratorDelayedInitialization<Binding>() {
+            @Override
+            protected Iterator<Binding> initializeIterator()
+            {
+                int N = ( aggregators == null ) ? 0 : aggregators.size() ;
+                // Phase 1 : assign rows to groups and pump through the aggregators.
+                Map<NodeIdKey, Accumulator[]> groups = new LinkedHashMap<>() ;
+                while ( iter.hasNext() )
+                {
+                    Binding b = iter.nextBinding() ;
+                    NodeIdKey key = NodeIdKey.create(b, groupVars, nodeTable) ;
+                    Accumulator[] accs = groups.get(key) ;
+                    if ( accs == null )
+                    {
+                        accs = new Accumulator[N] ;
+                        for ( int i = 0 ; i < N ; i++ )
+                            accs[i] = aggregators.get(i).getAggregator().createAccumulator() ;
+                        groups.put(key, accs) ;
+                    }
+                    for ( Accumulator acc : accs )
+                        acc.accumulate(b, execCxt) ;
+                }
+
+                // Phase 2 : No input.
+                // No aggregators : no rows. Aggregators : one row of the values for no input.
+                if ( groups.isEmpty() )
+                {
+                    if ( N == 0 )
+                        return Iter.nullIterator() ;
+                    BindingMap binding = BindingFactory.create() ;
+                    for ( ExprAggregator agg : aggregators )
+                    {
+                        Node value = agg.getAggregator().getValueEmpty() ;
+                        if ( value != null )
+                            binding.add(agg.getVar(), value) ;
+                    }
+                    return Iter.singletonIter((Binding)binding) ;
+                }
+
+                // Phase 2 : One row per group.
+                List<Binding> results = new ArrayList<>(groups.size()) ;
+                for ( Map.Entry<NodeIdKey, Accumulator[]> e : groups.entrySet() )
+                {
+                    BindingMap b = BindingFactory.create(e.getKey().asBinding(nodeTable)) ;
+                    Accumulator[] accs = e.getValue() ;
+                    for ( int i = 0 ; i < N ; i++ )
+                    {
+                        NodeValue value = accs[i].getValue() ;
+                        Var v = aggregators.get(i).getVar() ;
+                        if ( value != null && v != null )
+                            b.add(v, value.asNode()) ;
+                    }
+                    results.add(b) ;
+                }
+                return results.iterator() ;
+            }
+        } ;
+    }
+}
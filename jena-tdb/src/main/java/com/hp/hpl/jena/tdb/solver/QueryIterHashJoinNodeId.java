@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hp.hpl.jena.tdb.solver;
+
+import java.util.Collection ;
+import java.util.Iterator ;
+
+import com.hp.hpl.jena.sparql.algebra.Algebra ;
+import com.hp.hpl.jena.sparql.algebra.JoinType ;
+import com.hp.hpl.jena.sparql.core.Var ;
+import com.hp.hpl.jena.sparql.engine.ExecutionContext ;
+import com.hp.hpl.jena.sparql.engine.QueryIterator ;
+import com.hp.hpl.jena.sparql.engine.binding.Binding ;
+import com.hp.hpl.jena.sparql.engine.main.iterator.QueryIterHashJoinBase ;
+import com.hp.hpl.jena.sparql.expr.ExprList ;
+import com.hp.hpl.jena.tdb.store.NodeId ;
+import com.hp.hpl.jena.tdb.store.nodetable.NodeTable ;
+
+/** Join, or left join, by a hash table of the RHS keyed on the NodeIds of 
+ *  the join variables ({@link NodeIdKey}), not their Nodes.
+ *  Rows from TDB are matched and merged without looking up any Node :
+ *  a joined row is a {@link BindingTDB} that looks up Nodes when asked.
+ *  Rows not from TDB (and rows read back after spilling to disk) 
+ *  are merged on Nodes, as {@link QueryIterHashJoinBase}.
+ */
+public class QueryIterHashJoinNodeId extends QueryIterHashJoinBase
+{
+    private final NodeTable nodeTable ;
+
+    public QueryIterHashJoinNodeId(QueryIterator left, QueryIterator right, Collection<Var> joinVars,
+                                   JoinType joinType, ExprList exprs, NodeTable nodeTable, ExecutionContext execCxt)
+    {
+        super(left, right, joinVars, joinType, exprs, execCxt) ;
+        this.nodeTable = nodeTable ;
+    }
+
+    @Override
+    protected Object key(Binding binding)
+    {
+        Var[] vars = getJoinVars() ;
+        for ( Var v : vars )
+        {
+            if ( ! binding.contains(v) )
+                return null ;
+        }
+        return NodeIdKey.create(binding, vars, nodeTable) ;
+    }
+
+    @Override
+    protected Binding merge(Binding left, Binding right)
+    {
+        BindingNodeId ids = new BindingNodeId(left) ;
+        for ( Iterator<Var> iter = right.vars() ; iter.hasNext() ; )
+        {
+            Var v = iter.next() ;
+            NodeId id = SolverLib.getNodeId(right, v, nodeTable) ;
+            if ( id == null )
+                // Not from TDB.
+                return Algebra.merge(left, right) ;
+            if ( left.contains(v) )
+            {
+                NodeId idLeft = SolverLib.getNodeId(left, v, nodeTable) ;
+                if ( idLeft == null )
+                    return Algebra.merge(left, right) ;
+                if ( ! idLeft.equals(id) )
+                    return null ;
+                continue ;
+            }
+            ids.put(v, id) ;
+        }
+        return new BindingTDB(ids, nodeTable) ;
+    }
+}
@@ -36,6 +36,7 @@ import com.hp.hpl.jena.sparql.core.Var ;
 import com.hp.hpl.jena.sparql.engine.ExecutionContext ;
 import com.hp.hpl.jena.sparql.engine.QueryIterator ;
 import com.hp.hpl.jena.sparql.engine.binding.Binding ;
+import com.hp.hpl.jena.sparql.engine.binding.BindingBase ;
 import com.hp.hpl.jena.sparql.engine.binding.BindingFactory ;
 import com.hp.hpl.jena.sparql.engine.binding.BindingMap ;
 import com.hp.hpl.jena.sparql.engine.iterator.QueryIterNullIterator ;
@@ -46,6 +47,8 @@ import com.hp.hpl.jena.tdb.store.GraphTDB ;
 import com.hp.hpl.jena.tdb.store.NodeId ;
 import com.hp.hpl.jena.tdb.store.nodetable.NodeTable ;
 import com.hp.hpl.jena.tdb.store.nodetupletable.NodeTupleTable ;
+import com.hp.hpl.jena.tdb.sys.ScanControl ;
+import com.hp.hpl.jena.tdb.sys.SystemTDB ;
 import com.hp.hpl.jena.tdb.sys.TDBInternal ;
 
 /** Utilities used within the TDB BGP solver : local TDB store */
@@ -79,10 +82,15 @@ public class SolverLib
     { return Iter.map(iterBindings, convFromBinding(nodeTable)) ; }
     
     /** Convert from Iterator<BindingNodeId> to Iterator<Binding>, conversion "on demand" 
-     * (in convToBinding(BindingNodeId, NodeTable)
+     * (in convToBinding(BindingNodeId, NodeTable),
+     * or in blocks of bindings (see {@link IteratorIdToNodeBlocks}).
      */
     public static Iterator<Binding> convertToNodes(Iterator<BindingNodeId> iterBindingIds, NodeTable nodeTable)
-    { return Iter.map(iterBindingIds, convToBinding(nodeTable)) ; }
+    {
+        if ( SystemTDB.NodeIdBlockSize > 1 )
+            return new IteratorIdToNodeBlocks(iterBindingIds, nodeTable, SystemTDB.NodeIdBlockSize) ;
+        return Iter.map(iterBindingIds, convToBinding(nodeTable)) ;
+    }
     
     // The worker.  Callers choose the NodeTupleTable.  
     //     graphNode may be Node.ANY, meaning we should make triples unique.
@@ -114,7 +122,10 @@ public class SolverLib
         
         Iterator<BindingNodeId> chain = Iter.map(input, SolverLib.convFromBinding(nodeTable)) ;
         List<Abortable> killList = new ArrayList<>() ;
+        ScanControl control = StageMatchTuple.scanControl(execCxt) ;
+        addScanControl(control, killList) ;
         
+        List<Tuple<Node>> tuples = new ArrayList<>(triples.size()) ;
         for ( Triple triple : triples )
         {
             Tuple<Node> tuple = null ;
@@ -124,7 +135,25 @@ public class SolverLib
             else
                 // 4-tuples.
                 tuple = Tuple.createTuple(graphNode, triple.getSubject(), triple.getPredicate(), triple.getObject()) ;
+            tuples.add(tuple) ;
+        }
+        
+        int start = 0 ;
+        // Merge join the first two patterns if both can be read in order of a shared variable.
+        // Not for union graph, which relies on the index choice to make triples unique.
+        if ( tuples.size() >= 2 && ! anyGraph && useMergeJoin(execCxt) 
+             && StageMatchMergeJoin.applies(nodeTupleTable, tuples.get(0), tuples.get(1)) )
+        {
+            chain = new StageMatchMergeJoin(nodeTupleTable, chain, tuples.get(0), tuples.get(1), filter, execCxt) ;
+            chain = countBindings(chain, control) ;
+            chain = makeAbortable(chain, killList) ;
+            start = 2 ;
+        }
+        
+        for ( Tuple<Node> tuple : tuples.subList(start, tuples.size()) )
+        {
             chain = solve(nodeTupleTable, tuple, anyGraph, chain, filter, execCxt) ;
+            chain = countBindings(chain, control) ;
             chain = makeAbortable(chain, killList) ; 
         }
         
@@ -152,6 +181,25 @@ public class SolverLib
         return new QueryIterTDB(iterBinding, killList, input, execCxt) ;
     }
     
+    /** Cancel the scans of the query, as well as the iterators, when the killList is aborted. */
+    static void addScanControl(final ScanControl control, List<Abortable> killList)
+    {
+        if ( control == null )
+            return ;
+        killList.add(new Abortable() {
+            @Override
+            public void abort() { control.cancel() ; }
+        }) ;
+    }
+    
+    /** Count the bindings produced by a stage against the budget of the query. */
+    static <T> Iterator<T> countBindings(Iterator<T> iter, ScanControl control)
+    {
+        if ( control == null )
+            return iter ;
+        return control.bindings(iter) ;
+    }
+    
     /** Create an abortable iterator, storing it in the killList.
      *  Just return the input iterator if kilList is null. 
      */
@@ -206,9 +254,16 @@ public class SolverLib
                                                 Iterator<BindingNodeId> chain, Filter<Tuple<NodeId>> filter,
                                                 ExecutionContext execCxt)
     {
+        if ( execCxt != null && execCxt.getContext().isTrueOrUndef(SystemTDB.symHashJoin) )
+            return new StageMatchTupleHashJoin(nodeTupleTable, chain, tuple, anyGraph, filter, execCxt) ;
         return new StageMatchTuple(nodeTupleTable, chain, tuple, anyGraph, filter, execCxt) ;
     }
     
+    private static boolean useMergeJoin(ExecutionContext execCxt)
+    {
+        return execCxt != null && execCxt.getContext().isTrueOrUndef(SystemTDB.symMergeJoin) ;
+    }
+    
     // Transform : BindingNodeId ==> Binding
     private static Transform<BindingNodeId, Binding> convToBinding(final NodeTable nodeTable) {
         return new Transform<BindingNodeId, Binding>() {
@@ -275,6 +330,27 @@ public class SolverLib
         return b ;
     }
     
+    /** The NodeId of a variable, if the binding, or one of its parents, is from TDB, 
+     *  with the given node table, and has it.
+     *  Returns null if there is no NodeId to hand, which includes a variable that is not bound.
+     */
+    public static NodeId getNodeId(Binding binding, Var var, NodeTable nodeTable)
+    {
+        while ( binding != null )
+        {
+            if ( binding instanceof BindingTDB && ((BindingTDB)binding).getNodeTable() == nodeTable )
+            {
+                NodeId id = ((BindingTDB)binding).getNodeId(var) ;
+                if ( id != null && ! NodeId.isDoesNotExist(id) )
+                    return id ;
+            }
+            if ( ! ( binding instanceof BindingBase ) )
+                return null ;
+            binding = ((BindingBase)binding).getParent() ;
+        }
+        return null ;
+    }
+    
     /** Find whether a specific graph name is in the quads table. */
     public static QueryIterator testForGraphName(DatasetGraphTDB ds, Node graphNode, QueryIterator input,
                                                  Filter<Tuple<NodeId>> filter, ExecutionContext execCxt) {
@@ -305,8 +381,10 @@ public class SolverLib
     public static QueryIterator graphNames(DatasetGraphTDB ds, Node graphNode, QueryIterator input,
                                            Filter<Tuple<NodeId>> filter, ExecutionContext execCxt) {
         List<Abortable> killList = new ArrayList<>() ;
-        Iterator<Tuple<NodeId>> iter1 = ds.getQuadTable().getNodeTupleTable().find(NodeId.NodeIdAny, NodeId.NodeIdAny,
-                                                                                   NodeId.NodeIdAny, NodeId.NodeIdAny) ;
+        ScanControl control = StageMatchTuple.scanControl(execCxt) ;
+        addScanControl(control, killList) ;
+        Tuple<NodeId> any = Tuple.createTuple(NodeId.NodeIdAny, NodeId.NodeIdAny, NodeId.NodeIdAny, NodeId.NodeIdAny) ;
+        Iterator<Tuple<NodeId>> iter1 = ds.getQuadTable().getNodeTupleTable().find(any, control) ;
         if ( filter != null )
             iter1 = Iter.filter(iter1, filter) ;
 
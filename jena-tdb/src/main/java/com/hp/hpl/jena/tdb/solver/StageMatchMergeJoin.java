@@ -0,0 +1,332 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hp.hpl.jena.tdb.solver;
+
+import java.util.ArrayList ;
+import java.util.Iterator ;
+import java.util.LinkedList ;
+import java.util.List ;
+
+import org.apache.jena.atlas.iterator.* ;
+import org.apache.jena.atlas.lib.Closeable ;
+import org.apache.jena.atlas.lib.Tuple ;
+
+import com.hp.hpl.jena.graph.Node ;
+import com.hp.hpl.jena.sparql.core.Var ;
+import com.hp.hpl.jena.sparql.engine.ExecutionContext ;
+import com.hp.hpl.jena.tdb.store.NodeId ;
+import com.hp.hpl.jena.tdb.store.nodetupletable.NodeTupleTable ;
+import com.hp.hpl.jena.tdb.store.tupletable.TupleIndex ;
+import com.hp.hpl.jena.tdb.store.tupletable.TupleIndexRecord ;
+import com.hp.hpl.jena.tdb.sys.ScanControl ;
+import com.hp.hpl.jena.tdb.sys.SystemTDB ;
+
+/** Match two tuple patterns that share a variable by a merge join of two index scans.
+ *  <p>
+ *  Each pattern must be able to use an index where the leading slots are constants
+ *  (or bound by the incoming binding) and the next slot is the shared variable.
+ *  The scans then come back ordered by the NodeId of the shared variable and
+ *  are read in lockstep. When one side is behind, it reads forward
+ *  for {@link SystemTDB#MergeJoinSeekDistance} tuples, then restarts its scan
+ *  at the NodeId of the other side.
+ *  <p>
+ *  If, for some incoming binding, the patterns can not be executed this way,
+ *  they are matched one after the other, as {@link StageMatchTuple}.
+ */
+public class StageMatchMergeJoin extends RepeatApplyIterator<BindingNodeId>
+{
+    private final NodeTupleTable nodeTupleTable ;
+    private final Tuple<Node> patternTuple1 ;
+    private final Tuple<Node> patternTuple2 ;
+    private final Filter<Tuple<NodeId>> filter ;
+    private final ExecutionContext execCxt ;
+    private final ScanControl control ;
+    private final int seekDistance ;
+    // The merge join for the current incoming binding.
+    private MergeJoin current = null ;
+
+    public StageMatchMergeJoin(NodeTupleTable nodeTupleTable, Iterator<BindingNodeId> input,
+                               Tuple<Node> tuple1, Tuple<Node> tuple2,
+                               Filter<Tuple<NodeId>> filter,
+                               ExecutionContext execCxt)
+    {
+        this(nodeTupleTable, input, tuple1, tuple2, filter, execCxt, SystemTDB.MergeJoinSeekDistance) ;
+    }
+
+    public StageMatchMergeJoin(NodeTupleTable nodeTupleTable, Iterator<BindingNodeId> input,
+                               Tuple<Node> tuple1, Tuple<Node> tuple2,
+                               Filter<Tuple<NodeId>> filter,
+                               ExecutionContext execCxt, int seekDistance)
+    {
+        super(input) ;
+        this.nodeTupleTable = nodeTupleTable ;
+        this.patternTuple1 = tuple1 ;
+        this.patternTuple2 = tuple2 ;
+        this.filter = filter ;
+        this.execCxt = execCxt ;
+        this.control = StageMatchTuple.scanControl(execCxt) ;
+        this.seekDistance = seekDistance ;
+    }
+
+    /** Test whether two patterns can be merge joined when no variables are bound by the incoming binding. */
+    public static boolean applies(NodeTupleTable nodeTupleTable, Tuple<Node> tuple1, Tuple<Node> tuple2)
+    {
+        return plan(nodeTupleTable, new BindingNodeId(), tuple1, tuple2) != null ;
+    }
+
+    @Override
+    protected Iterator<BindingNodeId> makeNextStage(BindingNodeId input)
+    {
+        Plan plan = plan(nodeTupleTable, input, patternTuple1, patternTuple2) ;
+        if ( plan == null )
+        {
+            // Not possible for this binding : match one pattern after the other.
+            Iterator<BindingNodeId> chain = new SingletonIterator<>(input) ;
+            chain = new StageMatchTuple(nodeTupleTable, chain, patternTuple1, false, filter, execCxt) ;
+            return new StageMatchTuple(nodeTupleTable, chain, patternTuple2, false, filter, execCxt) ;
+        }
+        if ( plan.noMatches )
+            return Iter.nullIterator() ;
+        Cursor cursor1 = new Cursor(plan.index1, plan.ids1, plan.slot1) ;
+        Cursor cursor2 = new Cursor(plan.index2, plan.ids2, plan.slot2) ;
+        Iter.close(current) ;
+        current = new MergeJoin(input, cursor1, plan.vars1, cursor2, plan.vars2) ;
+        return current ;
+    }
+
+    @Override
+    public void close()
+    {
+        // Release the index scans of a join that was not read to the end.
+        Iter.close(current) ;
+        current = null ;
+        super.close() ;
+    }
+
+    /** How to execute the merge join for one incoming binding */
+    private static class Plan
+    {
+        boolean noMatches = false ;
+        NodeId[] ids1 ;
+        Var[] vars1 ;
+        TupleIndexRecord index1 ;
+        int slot1 ;
+        NodeId[] ids2 ;
+        Var[] vars2 ;
+        TupleIndexRecord index2 ;
+        int slot2 ;
+    }
+
+    /** Find a shared variable and indexes ordered on it, or return null. */
+    private static Plan plan(NodeTupleTable nodeTupleTable, BindingNodeId input, Tuple<Node> tuple1, Tuple<Node> tuple2)
+    {
+        Plan plan = new Plan() ;
+        plan.ids1 = new NodeId[tuple1.size()] ;
+        plan.vars1 = new Var[tuple1.size()] ;
+        plan.ids2 = new NodeId[tuple2.size()] ;
+        plan.vars2 = new Var[tuple2.size()] ;
+        StageMatchTuple.prepare(nodeTupleTable.getNodeTable(), tuple1, input, plan.ids1, plan.vars1) ;
+        StageMatchTuple.prepare(nodeTupleTable.getNodeTable(), tuple2, input, plan.ids2, plan.vars2) ;
+
+        TupleIndex[] indexes = nodeTupleTable.getTupleTable().getIndexes() ;
+        for ( int i = 0 ; i < plan.vars1.length ; i++ )
+        {
+            Var v = plan.vars1[i] ;
+            if ( v == null )
+                continue ;
+            int j = slotOf(v, plan.vars2) ;
+            if ( j < 0 )
+                continue ;
+            TupleIndexRecord idx1 = chooseIndex(indexes, plan.ids1, i) ;
+            TupleIndexRecord idx2 = chooseIndex(indexes, plan.ids2, j) ;
+            if ( idx1 == null || idx2 == null )
+                continue ;
+            plan.index1 = idx1 ;
+            plan.slot1 = i ;
+            plan.index2 = idx2 ;
+            plan.slot2 = j ;
+            for ( NodeId id : plan.ids1 )
+                if ( NodeId.isDoesNotExist(id) ) plan.noMatches = true ;
+            for ( NodeId id : plan.ids2 )
+                if ( NodeId.isDoesNotExist(id) ) plan.noMatches = true ;
+            return plan ;
+        }
+        return null ;
+    }
+
+    private static int slotOf(Var v, Var[] vars)
+    {
+        for ( int j = 0 ; j < vars.length ; j++ )
+            if ( v.equals(vars[j]) )
+                return j ;
+        return -1 ;
+    }
+
+    /** Find an index where the leading slots are bound, at least one of them, and the next is the given slot */
+    private static TupleIndexRecord chooseIndex(TupleIndex[] indexes, NodeId[] ids, int slot)
+    {
+        Tuple<NodeId> pattern = Tuple.create(ids) ;
+        for ( TupleIndex idx : indexes )
+        {
+            if ( ! ( idx instanceof TupleIndexRecord ) )
+                continue ;
+            int leading = idx.weight(pattern) ;
+            if ( leading == 0 || leading == ids.length )
+                continue ;
+            if ( idx.getColumnMap().fetchSlotIdx(leading) == slot )
+                return (TupleIndexRecord)idx ;
+        }
+        return null ;
+    }
+
+    /** A scan of one index, ordered by the NodeId in one slot, that can skip forward */
+    private class Cursor
+    {
+        private final TupleIndexRecord index ;
+        private final Tuple<NodeId> pattern ;
+        private final int slot ;
+        // The index scan, and the scan after filtering.
+        private Iterator<Tuple<NodeId>> scan ;
+        private Iterator<Tuple<NodeId>> iter ;
+        private Tuple<NodeId> current = null ;
+
+        Cursor(TupleIndexRecord index, NodeId[] ids, int slot)
+        {
+            this.index = index ;
+            this.pattern = Tuple.create(ids) ;
+            this.slot = slot ;
+            open(null) ;
+        }
+
+        private void open(NodeId start)
+        {
+            scan = index.findFrom(pattern, start, control) ;
+            iter = ( filter == null ) ? scan : Iter.filter(scan, filter) ;
+            advance() ;
+        }
+
+        boolean hasCurrent()    { return current != null ; }
+
+        long key()              { return current.get(slot).getId() ; }
+
+        void advance()
+        {
+            current = iter.hasNext() ? iter.next() : null ;
+        }
+
+        /** Move to the first tuple with a key equal to or greater than the target. */
+        void seek(long target)
+        {
+            for ( int i = 0 ; i < seekDistance ; i++ )
+            {
+                if ( current == null || key() >= target )
+                    return ;
+                advance() ;
+            }
+            if ( current == null || key() >= target )
+                return ;
+            close() ;
+            open(NodeId.create(target)) ;
+        }
+
+        void close()
+        {
+            Iter.close(scan) ;
+            current = null ;
+        }
+
+        /** The tuples with the given key, moving past them. */
+        List<Tuple<NodeId>> run(long k)
+        {
+            List<Tuple<NodeId>> x = new ArrayList<>() ;
+            while ( current != null && key() == k )
+            {
+                x.add(current) ;
+                advance() ;
+            }
+            return x ;
+        }
+    }
+
+    private static class MergeJoin extends IteratorSlotted<BindingNodeId> implements Closeable
+    {
+        private final BindingNodeId input ;
+        private final Cursor cursor1 ;
+        private final Var[] vars1 ;
+        private final Cursor cursor2 ;
+        private final Var[] vars2 ;
+        private final LinkedList<BindingNodeId> pending = new LinkedList<>() ;
+
+        MergeJoin(BindingNodeId input, Cursor cursor1, Var[] vars1, Cursor cursor2, Var[] vars2)
+        {
+            this.input = input ;
+            this.cursor1 = cursor1 ;
+            this.vars1 = vars1 ;
+            this.cursor2 = cursor2 ;
+            this.vars2 = vars2 ;
+        }
+
+        @Override
+        protected boolean hasMore()
+        {
+            return true ;
+        }
+
+        @Override
+        protected BindingNodeId moveToNext()
+        {
+            while ( pending.isEmpty() )
+            {
+                if ( ! cursor1.hasCurrent() || ! cursor2.hasCurrent() )
+                    return null ;
+                long k1 = cursor1.key() ;
+                long k2 = cursor2.key() ;
+                if ( k1 < k2 )
+                    cursor1.seek(k2) ;
+                else if ( k1 > k2 )
+                    cursor2.seek(k1) ;
+                else
+                {
+                    List<Tuple<NodeId>> run1 = cursor1.run(k1) ;
+                    List<Tuple<NodeId>> run2 = cursor2.run(k1) ;
+                    for ( Tuple<NodeId> t1 : run1 )
+                    {
+                        BindingNodeId b1 = StageMatchTuple.bind(input, vars1, t1) ;
+                        if ( b1 == null )
+                            continue ;
+                        for ( Tuple<NodeId> t2 : run2 )
+                        {
+                            BindingNodeId b2 = StageMatchTuple.bind(b1, vars2, t2) ;
+                            if ( b2 != null )
+                                pending.add(b2) ;
+                        }
+                    }
+                }
+            }
+            return pending.removeFirst() ;
+        }
+
+        @Override
+        protected void closeIterator()
+        {
+            cursor1.close() ;
+            cursor2.close() ;
+        }
+    }
+}
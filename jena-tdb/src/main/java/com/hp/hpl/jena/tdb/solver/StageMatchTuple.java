@@ -31,6 +31,7 @@ import com.hp.hpl.jena.sparql.engine.ExecutionContext;
 import com.hp.hpl.jena.tdb.store.NodeId;
 import com.hp.hpl.jena.tdb.store.nodetable.NodeTable ;
 import com.hp.hpl.jena.tdb.store.nodetupletable.NodeTupleTable ;
+import com.hp.hpl.jena.tdb.sys.ScanControl ;
 
 public class StageMatchTuple extends RepeatApplyIterator<BindingNodeId>
 {
@@ -38,6 +39,7 @@ public class StageMatchTuple extends RepeatApplyIterator<BindingNodeId>
     private final Tuple<Node> patternTuple ;
 
     private final ExecutionContext execCxt ;
+    private final ScanControl control ;
     private boolean anyGraphs ;
     private Filter<Tuple<NodeId>> filter ;
 
@@ -51,6 +53,7 @@ public class StageMatchTuple extends RepeatApplyIterator<BindingNodeId>
         this.nodeTupleTable = nodeTupleTable ; 
         this.patternTuple = tuple ;
         this.execCxt = execCxt ;
+        this.control = scanControl(execCxt) ;
         this.anyGraphs = anyGraphs ; 
     }
 
@@ -86,7 +89,36 @@ public class StageMatchTuple extends RepeatApplyIterator<BindingNodeId>
 
         prepare(nodeTupleTable.getNodeTable(), patternTuple, input, ids, var) ;
         
-        Iterator<Tuple<NodeId>> iterMatches = nodeTupleTable.find(Tuple.create(ids)) ;  
+        Iterator<Tuple<NodeId>> iterMatches = access(nodeTupleTable, ids, anyGraphs, filter, control) ;
+        
+        // Map Tuple<NodeId> to BindingNodeId
+        Transform<Tuple<NodeId>, BindingNodeId> binder = new Transform<Tuple<NodeId>, BindingNodeId>()
+        {
+            @Override
+            public BindingNodeId convert(Tuple<NodeId> tuple)
+            {
+                return bind(input, var, tuple) ;
+            }
+        } ;
+        
+        return Iter.iter(iterMatches).map(binder).removeNulls() ;
+    }
+    
+    /** The ScanControl of the query being executed, or null. */
+    static ScanControl scanControl(ExecutionContext execCxt)
+    {
+        return execCxt == null ? null : ScanControl.get(execCxt.getContext()) ;
+    }
+    
+    /** Find the tuples matching a pattern of NodeIds (null for "any"), applying the filter, if any,
+     *  and, for quads, reducing to distinct triples if matching over any graph.
+     *  The scan is counted and checked for cancellation by the ScanControl, if not null. 
+     */
+    static Iterator<Tuple<NodeId>> access(NodeTupleTable nodeTupleTable, NodeId ids[], 
+                                          boolean anyGraphs, Filter<Tuple<NodeId>> filter,
+                                          ScanControl control)
+    {
+        Iterator<Tuple<NodeId>> iterMatches = nodeTupleTable.find(Tuple.create(ids), control) ;  
         
         // ** Allow a triple or quad filter here.
         if ( filter != null )
@@ -116,29 +148,28 @@ public class StageMatchTuple extends RepeatApplyIterator<BindingNodeId>
             //  No G part way through.
             iterMatches = Iter.distinctAdjacent(iterMatches) ;
         }
-        
-        // Map Tuple<NodeId> to BindingNodeId
-        Transform<Tuple<NodeId>, BindingNodeId> binder = new Transform<Tuple<NodeId>, BindingNodeId>()
+        return iterMatches ;
+    }
+    
+    /** Extend a binding with the variables of a matched tuple.
+     *  Returns null if the tuple is not compatible with the binding
+     *  (a variable is already bound to a different value). 
+     */
+    static BindingNodeId bind(BindingNodeId input, Var[] var, Tuple<NodeId> tuple)
+    {
+        BindingNodeId output = new BindingNodeId(input) ;
+        for ( int i = 0 ; i < var.length ; i++ )
         {
-            @Override
-            public BindingNodeId convert(Tuple<NodeId> tuple)
-            {
-                BindingNodeId output = new BindingNodeId(input) ;
-                for ( int i = 0 ; i < var.length ; i++ )
-                {
-                    Var v = var[i] ;
-                    if ( v == null )
-                        continue ;
-                    NodeId id = tuple.get(i) ;
-                    if ( reject(output, v, id) )
-                        return null ;
-                    output.put(v, id) ;
-                }
-                return output ;
-            }
-        } ;
-        
-        return Iter.iter(iterMatches).map(binder).removeNulls() ;
+            Var v = var[i] ;
+            if ( v == null )
+                continue ;
+            NodeId id = tuple.get(i) ;
+            if ( reject(output, v, id) )
+                return null ;
+            if ( ! output.containsKey(v) )
+                output.put(v, id) ;
+        }
+        return output ;
     }
     
    
@@ -182,7 +213,7 @@ public class StageMatchTuple extends RepeatApplyIterator<BindingNodeId>
         return true ;
     }
     
-    private static Var asVar(Node node)
+    static Var asVar(Node node)
     {
         if ( Var.isVar(node) )
             return Var.alloc(node) ;
@@ -0,0 +1,341 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hp.hpl.jena.tdb.solver;
+
+import java.util.* ;
+
+import org.apache.jena.atlas.iterator.Filter ;
+import org.apache.jena.atlas.iterator.Iter ;
+import org.apache.jena.atlas.iterator.IteratorConcat ;
+import org.apache.jena.atlas.iterator.IteratorSlotted ;
+import org.apache.jena.atlas.lib.Closeable ;
+import org.apache.jena.atlas.lib.Tuple ;
+
+import com.hp.hpl.jena.graph.Node ;
+import com.hp.hpl.jena.sparql.core.Var ;
+import com.hp.hpl.jena.sparql.engine.ExecutionContext ;
+import com.hp.hpl.jena.sparql.util.Utils ;
+import com.hp.hpl.jena.tdb.store.NodeId ;
+import com.hp.hpl.jena.tdb.store.nodetable.NodeTable ;
+import com.hp.hpl.jena.tdb.store.nodetupletable.NodeTupleTable ;
+import com.hp.hpl.jena.tdb.sys.SystemTDB ;
+
+/** Match a tuple pattern against a stream of {@link BindingNodeId}, joining
+ *  batches of bindings at a time.
+ *  <p>
+ *  {@link StageMatchTuple} probes the indexes once for each incoming binding.
+ *  This stage reads a batch of incoming bindings, hashes them on the NodeIds of the
+ *  variables shared with the pattern, then scans the pattern (constants only) once
+ *  and probes the hash table with each tuple found.
+ *  <p>
+ *  The scan is only used when it is cheaper than probing: it must be no longer
+ *  than {@link SystemTDB#HashJoinProbeCost} tuples for each binding in the batch.
+ *  Otherwise, the batch is passed to index probes as in {@link StageMatchTuple}.
+ *  The scan does not depend on the incoming bindings so, once read, it is kept for later batches.
+ */
+public class StageMatchTupleHashJoin implements Iterator<BindingNodeId>, Closeable
+{
+    private final NodeTupleTable nodeTupleTable ;
+    private final Tuple<Node> patternTuple ;
+    private final Iterator<BindingNodeId> input ;
+    private final boolean anyGraphs ;
+    private final Filter<Tuple<NodeId>> filter ;
+    private final ExecutionContext execCxt ;
+    private final int batchSize ;
+    private final int probeCost ;
+
+    // The pattern with the variables as "any".
+    private final NodeId[] scanIds ;
+    // The variables of the pattern, by slot.
+    private final Var[] scanVars ;
+    // A constant of the pattern is not in the node table : no matches.
+    private final boolean noMatches ;
+
+    // The scan, when it has been read completely.
+    private List<Tuple<NodeId>> scanTuples = null ;
+    // The scan is known to be longer than this.
+    private long scanLowerBound = -1 ;
+
+    private Iterator<BindingNodeId> currentStage = null ;
+    private boolean finished = false ;
+
+    public StageMatchTupleHashJoin(NodeTupleTable nodeTupleTable, Iterator<BindingNodeId> input,
+                                   Tuple<Node> tuple, boolean anyGraphs,
+                                   Filter<Tuple<NodeId>> filter,
+                                   ExecutionContext execCxt)
+    {
+        this(nodeTupleTable, input, tuple, anyGraphs, filter, execCxt,
+             SystemTDB.HashJoinBatchSize, SystemTDB.HashJoinProbeCost) ;
+    }
+
+    public StageMatchTupleHashJoin(NodeTupleTable nodeTupleTable, Iterator<BindingNodeId> input,
+                                   Tuple<Node> tuple, boolean anyGraphs,
+                                   Filter<Tuple<NodeId>> filter,
+                                   ExecutionContext execCxt,
+                                   int batchSize, int probeCost)
+    {
+        this.nodeTupleTable = nodeTupleTable ;
+        this.input = input ;
+        this.patternTuple = tuple ;
+        this.anyGraphs = anyGraphs ;
+        this.filter = filter ;
+        this.execCxt = execCxt ;
+        this.batchSize = Math.max(1, batchSize) ;
+        this.probeCost = Math.max(1, probeCost) ;
+
+        NodeTable nodeTable = nodeTupleTable.getNodeTable() ;
+        int N = tuple.size() ;
+        scanIds = new NodeId[N] ;
+        scanVars = new Var[N] ;
+        boolean missing = false ;
+        for ( int i = 0 ; i < N ; i++ )
+        {
+            Node n = tuple.get(i) ;
+            if ( Var.isVar(n) )
+            {
+                scanVars[i] = Var.alloc(n) ;
+                continue ;
+            }
+            NodeId id = nodeTable.getNodeIdForNode(n) ;
+            if ( NodeId.isDoesNotExist(id) )
+                missing = true ;
+            scanIds[i] = id ;
+        }
+        noMatches = missing ;
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        if ( finished )
+            return false ;
+        for ( ;; )
+        {
+            if ( currentStage == null && input.hasNext() )
+                currentStage = makeNextStage(readBatch()) ;
+
+            if ( currentStage == null )
+            {
+                finished = true ;
+                return false ;
+            }
+
+            if ( currentStage.hasNext() )
+                return true ;
+
+            currentStage = null ;
+        }
+    }
+
+    @Override
+    public BindingNodeId next()
+    {
+        if ( ! hasNext() )
+            throw new NoSuchElementException(Utils.className(this)+".next()/finished") ;
+        return currentStage.next() ;
+    }
+
+    @Override
+    public void remove()
+    { throw new UnsupportedOperationException() ; }
+
+    @Override
+    public void close()
+    {
+        Iter.close(input) ;
+    }
+
+    private List<BindingNodeId> readBatch()
+    {
+        List<BindingNodeId> batch = new ArrayList<>() ;
+        while ( batch.size() < batchSize && input.hasNext() )
+            batch.add(input.next()) ;
+        return batch ;
+    }
+
+    private Iterator<BindingNodeId> makeNextStage(List<BindingNodeId> batch)
+    {
+        if ( noMatches )
+            return Iter.nullIterator() ;
+
+        // Group the bindings by which variables of the pattern they bind.
+        // The join slots are bits in the key.
+        Map<Integer, List<BindingNodeId>> groups = new LinkedHashMap<>() ;
+        for ( BindingNodeId binding : batch )
+        {
+            int joinSlots = 0 ;
+            for ( int i = 0 ; i < scanVars.length ; i++ )
+            {
+                if ( scanVars[i] != null && binding.containsKey(scanVars[i]) )
+                    joinSlots |= (1<<i) ;
+            }
+            List<BindingNodeId> x = groups.get(joinSlots) ;
+            if ( x == null )
+            {
+                x = new ArrayList<>() ;
+                groups.put(joinSlots, x) ;
+            }
+            x.add(binding) ;
+        }
+
+        IteratorConcat<BindingNodeId> stage = new IteratorConcat<>() ;
+        for ( Map.Entry<Integer, List<BindingNodeId>> e : groups.entrySet() )
+        {
+            List<BindingNodeId> group = e.getValue() ;
+            if ( group.size() > 1 && scanNoLongerThan((long)group.size()*probeCost) )
+                stage.add(hashJoin(e.getKey(), group)) ;
+            else
+                stage.add(new StageMatchTuple(nodeTupleTable, group.iterator(), patternTuple, anyGraphs, filter, execCxt)) ;
+        }
+        return stage ;
+    }
+
+    /** Read the scan, if it is no longer than limit. Return true if the scan is available. */
+    private boolean scanNoLongerThan(long limit)
+    {
+        if ( scanTuples != null )
+            return scanTuples.size() <= limit ;
+        if ( limit <= scanLowerBound )
+            return false ;
+
+        Iterator<Tuple<NodeId>> iter = StageMatchTuple.access(nodeTupleTable, scanIds.clone(), anyGraphs, filter,
+                                                                StageMatchTuple.scanControl(execCxt)) ;
+        List<Tuple<NodeId>> tuples = new ArrayList<>() ;
+        try {
+            while ( iter.hasNext() )
+            {
+                if ( tuples.size() >= limit )
+                {
+                    scanLowerBound = limit ;
+                    return false ;
+                }
+                tuples.add(iter.next()) ;
+            }
+        } finally { Iter.close(iter) ; }
+        scanTuples = tuples ;
+        return true ;
+    }
+
+    private Iterator<BindingNodeId> hashJoin(int joinSlots, List<BindingNodeId> group)
+    {
+        int[] slots = new int[Integer.bitCount(joinSlots)] ;
+        // The variables to bind from each tuple : those not already bound.
+        Var[] vars = scanVars.clone() ;
+        int j = 0 ;
+        for ( int i = 0 ; i < scanVars.length ; i++ )
+        {
+            if ( (joinSlots & (1<<i)) != 0 )
+            {
+                slots[j++] = i ;
+                vars[i] = null ;
+            }
+        }
+
+        // Build : the batch of bindings, keyed on the NodeIds of the join variables.
+        Map<JoinKey, List<BindingNodeId>> table = new HashMap<>() ;
+        for ( BindingNodeId binding : group )
+        {
+            long[] key = new long[slots.length] ;
+            for ( int i = 0 ; i < slots.length ; i++ )
+                key[i] = binding.get(scanVars[slots[i]]).getId() ;
+            JoinKey k = new JoinKey(key) ;
+            List<BindingNodeId> x = table.get(k) ;
+            if ( x == null )
+            {
+                x = new ArrayList<>() ;
+                table.put(k, x) ;
+            }
+            x.add(binding) ;
+        }
+        return new HashProbe(scanTuples.iterator(), table, slots, vars) ;
+    }
+
+    /** Probe : for each tuple of the scan, find the bindings with the same join key. */
+    private static class HashProbe extends IteratorSlotted<BindingNodeId>
+    {
+        private final Iterator<Tuple<NodeId>> scan ;
+        private final Map<JoinKey, List<BindingNodeId>> table ;
+        private final int[] slots ;
+        private final Var[] vars ;
+
+        private Tuple<NodeId> tuple = null ;
+        private Iterator<BindingNodeId> matches = Iter.nullIterator() ;
+
+        HashProbe(Iterator<Tuple<NodeId>> scan, Map<JoinKey, List<BindingNodeId>> table, int[] slots, Var[] vars)
+        {
+            this.scan = scan ;
+            this.table = table ;
+            this.slots = slots ;
+            this.vars = vars ;
+        }
+
+        @Override
+        protected boolean hasMore()
+        {
+            return true ;
+        }
+
+        @Override
+        protected BindingNodeId moveToNext()
+        {
+            for ( ;; )
+            {
+                while ( matches.hasNext() )
+                {
+                    BindingNodeId b = StageMatchTuple.bind(matches.next(), vars, tuple) ;
+                    if ( b != null )
+                        return b ;
+                }
+                if ( ! scan.hasNext() )
+                    return null ;
+                tuple = scan.next() ;
+                long[] key = new long[slots.length] ;
+                for ( int i = 0 ; i < slots.length ; i++ )
+                    key[i] = tuple.get(slots[i]).getId() ;
+                List<BindingNodeId> x = table.get(new JoinKey(key)) ;
+                matches = ( x == null ) ? Iter.<BindingNodeId>nullIterator() : x.iterator() ;
+            }
+        }
+    }
+
+    /** Hash key of NodeId values */
+    private static final class JoinKey
+    {
+        private final long[] ids ;
+        private final int hash ;
+
+        JoinKey(long[] ids)
+        {
+            this.ids = ids ;
+            this.hash = Arrays.hashCode(ids) ;
+        }
+
+        @Override
+        public int hashCode()
+        { return hash ; }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            if ( this == other ) return true ;
+            if ( ! ( other instanceof JoinKey ) ) return false ;
+            return Arrays.equals(ids, ((JoinKey)other).ids) ;
+        }
+    }
+}
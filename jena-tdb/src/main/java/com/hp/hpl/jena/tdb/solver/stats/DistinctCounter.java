@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hp.hpl.jena.tdb.solver.stats;
+
+import java.util.TreeSet ;
+
+/** Estimate of the number of distinct items, from the K smallest hash values seen ("KMV").
+ *  Exact until K distinct items have been seen.
+ */
+class DistinctCounter
+{
+    private final int k ;
+    private final TreeSet<Long> smallest = new TreeSet<>() ;
+
+    DistinctCounter(int k)
+    {
+        this.k = k ;
+    }
+
+    /** Record an item by its (64 bit) hash */
+    void add(long hash)
+    {
+        // Non-negative : the range is 0 to 2^63.
+        long h = mix(hash) >>> 1 ;
+        if ( smallest.size() < k )
+        {
+            smallest.add(h) ;
+            return ;
+        }
+        if ( h >= smallest.last() || smallest.contains(h) )
+            return ;
+        smallest.add(h) ;
+        smallest.pollLast() ;
+    }
+
+    long estimate()
+    {
+        if ( smallest.size() < k )
+            return smallest.size() ;
+        double fraction = (double)smallest.last() / Long.MAX_VALUE ;
+        return Math.round((k-1) / fraction) ;
+    }
+
+    // MurmurHash3 finalizer.
+    private static long mix(long h)
+    {
+        h ^= h >>> 33 ;
+        h *= 0xff51afd7ed558ccdL ;
+        h ^= h >>> 33 ;
+        h *= 0xc4ceb9fe1a85ec53L ;
+        h ^= h >>> 33 ;
+        return h ;
+    }
+}
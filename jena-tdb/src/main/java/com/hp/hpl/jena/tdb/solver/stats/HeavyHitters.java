@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hp.hpl.jena.tdb.solver.stats;
+
+import java.util.* ;
+import java.util.Map.Entry ;
+
+/** The most frequent items, approximately, kept in a fixed number of counters ("space saving").
+ *  Counts may be over-estimated, by at most the recorded error.
+ */
+class HeavyHitters<T>
+{
+    private final int size ;
+    private final Map<T, long[]> counters ;     // { count, error }
+
+    HeavyHitters(int size)
+    {
+        this.size = size ;
+        this.counters = new HashMap<>(2*size) ;
+    }
+
+    void add(T item)
+    {
+        long[] c = counters.get(item) ;
+        if ( c != null )
+        {
+            c[0]++ ;
+            return ;
+        }
+        if ( counters.size() < size )
+        {
+            counters.put(item, new long[]{1, 0}) ;
+            return ;
+        }
+        // Replace the least counter.
+        T minKey = null ;
+        long[] min = null ;
+        for ( Entry<T, long[]> e : counters.entrySet() )
+        {
+            if ( min == null || e.getValue()[0] < min[0] )
+            {
+                minKey = e.getKey() ;
+                min = e.getValue() ;
+            }
+        }
+        counters.remove(minKey) ;
+        counters.put(item, new long[]{min[0]+1, min[0]}) ;
+    }
+
+    /** The items, at most N, that certainly occur at least the given number of times, with that lower bound count. */
+    Map<T, Long> top(int N, long atLeast)
+    {
+        List<Entry<T, long[]>> x = new ArrayList<>(counters.entrySet()) ;
+        Collections.sort(x, new Comparator<Entry<T, long[]>>() {
+            @Override
+            public int compare(Entry<T, long[]> e1, Entry<T, long[]> e2)
+            {
+                return Long.compare(lowerBound(e2.getValue()), lowerBound(e1.getValue())) ;
+            }
+        }) ;
+        Map<T, Long> results = new LinkedHashMap<>() ;
+        for ( Entry<T, long[]> e : x )
+        {
+            long n = lowerBound(e.getValue()) ;
+            if ( results.size() >= N || n < atLeast )
+                break ;
+            results.put(e.getKey(), n) ;
+        }
+        return results ;
+    }
+
+    private static long lowerBound(long[] c)    { return c[0]-c[1] ; }
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hp.hpl.jena.tdb.solver.stats;
+
+import java.io.File ;
+
+import org.slf4j.Logger ;
+import org.slf4j.LoggerFactory ;
+
+import com.hp.hpl.jena.sparql.ARQException ;
+import com.hp.hpl.jena.sparql.core.BasicPattern ;
+import com.hp.hpl.jena.sparql.engine.optimizer.reorder.ReorderLib ;
+import com.hp.hpl.jena.sparql.engine.optimizer.reorder.ReorderProc ;
+import com.hp.hpl.jena.sparql.engine.optimizer.reorder.ReorderTransformation ;
+import com.hp.hpl.jena.sparql.sse.Item ;
+import com.hp.hpl.jena.sparql.sse.ItemException ;
+
+/** The BGP optimizer for a stats file, which is reloaded by {@link #refresh()} if the file
+ *  has changed since it was last read. When the statistics are maintained, write transactions
+ *  call {@link #reload(Item)} on commit with the counts as committed.
+ *  <p>
+ *  A stats file with a selectivity section uses the selectivity statistics,
+ *  otherwise the weights (see {@link ReorderLib#selectivity(String)}).
+ */
+public class ReorderStatsFile implements ReorderTransformation
+{
+    private static Logger log = LoggerFactory.getLogger(ReorderStatsFile.class) ;
+    private final String filename ;
+    private volatile ReorderTransformation reorder ;
+    private long lastModified ;
+    private long length ;
+
+    /** Read the stats file : throws an exception if the file can not be parsed */
+    public ReorderStatsFile(String filename)
+    {
+        this.filename = filename ;
+        File f = new File(filename) ;
+        this.lastModified = f.lastModified() ;
+        this.length = f.length() ;
+        this.reorder = ReorderLib.selectivity(filename) ;
+    }
+
+    /** Reload the stats file if it has changed. Return true if it was reloaded. 
+     *  If the new file can not be read, the current statistics continue to be used.
+     */
+    public synchronized boolean refresh()
+    {
+        File f = new File(filename) ;
+        if ( ! f.exists() )
+            return false ;
+        long m = f.lastModified() ;
+        long len = f.length() ;
+        if ( m == lastModified && len == length )
+            return false ;
+        try {
+            reorder = ReorderLib.selectivity(filename) ;
+            lastModified = m ;
+            length = len ;
+            log.debug("Reloaded stats file: "+filename) ;
+            return true ;
+        } catch (ARQException | ItemException ex) {
+            log.warn("Error in stats file: " + ex.getMessage()) ;
+            return false ;
+        }
+    }
+
+    /** Use statistics just written to the stats file */
+    public synchronized void reload(Item stats)
+    {
+        reorder = ReorderLib.selectivity(stats) ;
+        File f = new File(filename) ;
+        lastModified = f.lastModified() ;
+        length = f.length() ;
+    }
+
+    public ReorderTransformation get()          { return reorder ; }
+
+    @Override
+    public BasicPattern reorder(BasicPattern pattern)
+    {
+        return reorder.reorder(pattern) ;
+    }
+
+    @Override
+    public ReorderProc reorderIndexes(BasicPattern pattern)
+    {
+        return reorder.reorderIndexes(pattern) ;
+    }
+}
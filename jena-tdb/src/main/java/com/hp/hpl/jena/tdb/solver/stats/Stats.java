@@ -28,6 +28,7 @@ import java.io.OutputStream ;
 import java.util.Iterator ;
 import java.util.Map ;
 import java.util.Map.Entry ;
+import java.util.Set ;
 
 import org.apache.jena.atlas.logging.Log ;
 
@@ -35,6 +36,8 @@ import com.hp.hpl.jena.graph.Graph ;
 import com.hp.hpl.jena.graph.Node ;
 import com.hp.hpl.jena.graph.Triple ;
 import com.hp.hpl.jena.sparql.engine.optimizer.StatsMatcher ;
+import com.hp.hpl.jena.sparql.engine.optimizer.StatsSelectivity ;
+import com.hp.hpl.jena.sparql.engine.optimizer.StatsSelectivity.PredicateStats ;
 import com.hp.hpl.jena.sparql.graph.NodeConst ;
 import com.hp.hpl.jena.sparql.sse.Item ;
 import com.hp.hpl.jena.sparql.sse.ItemList ;
@@ -48,28 +51,18 @@ public class Stats
 
     /** Write statistics */
     static public void write(String filename, StatsResults stats)
-    {
-        write(filename, stats.getPredicates(), stats.getTypes(), stats.getCount()) ;
-    }
-    
-    /** Write statistics */
-    static public void write(OutputStream output, StatsResults stats)
-    {
-        write(output, stats.getPredicates(), stats.getTypes(), stats.getCount()) ;
-    }
-    
-    static private void write(String filename, Map<Node, Integer> predicateStats, Map<Node, Integer> typeStats, long statsTotal)
     {
         // Write out the stats
         try (OutputStream statsOut = new BufferedOutputStream(new FileOutputStream(filename))) {
-            write(statsOut, predicateStats, typeStats, statsTotal) ;
+            write(statsOut, stats) ;
         } catch (IOException ex)
         { Log.warn(Stats.class, "Problem when writing stats file", ex) ; }
     }
     
-    static private void write(OutputStream output, Map<Node, Integer> predicateStats, Map<Node, Integer> typeStats, long statsTotal)
+    /** Write statistics */
+    static public void write(OutputStream output, StatsResults stats)
     {
-        Item item = format(predicateStats, typeStats, statsTotal) ;
+        Item item = format(stats) ;
         ItemWriter.write(output, item) ;
     }
     
@@ -89,9 +82,12 @@ public class Stats
         return stats ;
     }
 
-    public static Item format(StatsResults stats)
+    public static Item format(StatsResults results)
     {
-        return format(stats.getPredicates(), stats.getTypes(), stats.getCount()) ;
+        Item stats = format(results.getPredicates(), results.getTypes(), results.getCount()) ;
+        if ( ! results.getSelectivity().isEmpty() || ! results.getCharacteristicSets().isEmpty() )
+            stats.getList().add(formatSelectivity(results.getSelectivity(), results.getCharacteristicSets())) ;
+        return stats ;
     }
     
     private static Item format(Map<Node, Integer> predicates, Map<Node, Integer> types, long count)
@@ -117,7 +113,7 @@ public class Stats
         {
             Node node = entry.getKey() ;
             // Skip these - they just clog things up!
-            if ( node.getURI().startsWith("http://www.w3.org/1999/02/22-rdf-syntax-ns#_") )
+            if ( isContainerMembership(node) )
                 continue ;
             addPair(statsList, node, NodeFactoryExtra.intToNode(entry.getValue())) ;
         }
@@ -128,6 +124,47 @@ public class Stats
         return stats ;
     }
 
+    private static Item formatSelectivity(Map<Node, PredicateStats> predicates, Map<Set<Node>, Long> charsets)
+    {
+        Item section = createTagged(StatsSelectivity.SELECTIVITY) ;
+        ItemList list = section.getList() ;
+        for ( Entry<Node, PredicateStats> entry : predicates.entrySet() )
+        {
+            Node node = entry.getKey() ;
+            if ( isContainerMembership(node) )
+                continue ;
+            PredicateStats ps = entry.getValue() ;
+            Item pred = createTagged(StatsSelectivity.PRED) ;
+            pred.getList().add(node) ;
+            addPair(pred.getList(), StatsMatcher.COUNT, NodeFactoryExtra.intToNode(ps.getCount())) ;
+            addPair(pred.getList(), StatsSelectivity.SUBJECTS, NodeFactoryExtra.intToNode(ps.getSubjects())) ;
+            addPair(pred.getList(), StatsSelectivity.OBJECTS, NodeFactoryExtra.intToNode(ps.getObjects())) ;
+            if ( ! ps.getValues().isEmpty() )
+            {
+                Item values = createTagged(StatsSelectivity.VALUES) ;
+                for ( Entry<Node, Long> v : ps.getValues().entrySet() )
+                    addPair(values.getList(), v.getKey(), NodeFactoryExtra.intToNode(v.getValue())) ;
+                pred.getList().add(values) ;
+            }
+            list.add(pred) ;
+        }
+        
+        for ( Entry<Set<Node>, Long> entry : charsets.entrySet() )
+        {
+            Item charset = createTagged(StatsSelectivity.CHARSET) ;
+            charset.getList().add(NodeFactoryExtra.intToNode(entry.getValue())) ;
+            for ( Node p : entry.getKey() )
+                charset.getList().add(p) ;
+            list.add(charset) ;
+        }
+        return section ;
+    }
+
+    private static boolean isContainerMembership(Node node)
+    {
+        return node.getURI().startsWith("http://www.w3.org/1999/02/22-rdf-syntax-ns#_") ;
+    }
+
     private static void addTypeTriple(ItemList statsList, Node type, Node intCount)
     {
         ItemList triple = new ItemList() ;
@@ -33,4 +33,10 @@ public class StatsCollector extends StatsCollectorBase<Node>
     {
         return map ;
     }
+
+    @Override
+    protected Node toNode(Node item)
+    {
+        return item ;
+    }
 }
@@ -16,23 +16,52 @@
  * limitations under the License.
  */
 
+
 package com.hp.hpl.jena.tdb.solver.stats;
 
 
-import java.util.HashMap ;
-import java.util.Map ;
+import java.util.* ;
+import java.util.Map.Entry ;
 
 import com.hp.hpl.jena.graph.Node ;
+import com.hp.hpl.jena.sparql.engine.optimizer.StatsSelectivity.PredicateStats ;
 
 import org.apache.jena.atlas.lib.MapUtils ;
 
-/** Statistics collector, general purpose */
+/** Statistics collector, general purpose.
+ * <p>
+ * As well as the counts, for each predicate, it estimates the number of distinct
+ * subjects and objects and finds the most common objects.
+ * It also counts the characteristic sets (the set of predicates of a subject) which
+ * assumes the triples for a subject are recorded together, as they are when scanning
+ * the primary index.
+ */
 abstract class StatsCollectorBase<T>
 {
+    private static final int DistinctCounterSize    = 256 ;
+    private static final int HeavyHittersSize       = 32 ;
+    private static final int MaxValues              = 10 ;
+    private static final int MaxCharSets            = 10000 ;
+
     private long count = 0 ;
     private Map<T, Integer> predicates = new HashMap<>(10000) ;
     private Map<T, Integer> types = new HashMap<>(10000) ;
     private T typeTrigger ;
+
+    private Map<T, PredicateCounters<T>> selectivity = new HashMap<>(10000) ;
+    // Characteristic sets, unless there are too many.
+    private Map<Set<T>, Long> charsets = new HashMap<>() ;
+    private boolean charsetsOverflow = false ;
+    private T currentGraph = null ;
+    private T currentSubject = null ;
+    private Set<T> currentPredicates = new HashSet<>() ;
+    
+    private static class PredicateCounters<T>
+    {
+        final DistinctCounter subjects = new DistinctCounter(DistinctCounterSize) ;
+        final DistinctCounter objects = new DistinctCounter(DistinctCounterSize) ;
+        final HeavyHitters<T> values = new HeavyHitters<>(HeavyHittersSize) ;
+    }
     
     protected StatsCollectorBase(T typeTrigger)
     {
@@ -45,12 +74,88 @@ abstract class StatsCollectorBase<T>
         MapUtils.increment(predicates, p) ;
         if ( typeTrigger != null && typeTrigger.equals(p) )
             MapUtils.increment(types, o) ;
+        
+        PredicateCounters<T> counters = selectivity.get(p) ;
+        if ( counters == null )
+        {
+            counters = new PredicateCounters<>() ;
+            selectivity.put(p, counters) ;
+        }
+        counters.subjects.add(hash(s)) ;
+        counters.objects.add(hash(o)) ;
+        counters.values.add(o) ;
+        
+        if ( ! Objects.equals(s, currentSubject) || ! Objects.equals(g, currentGraph) )
+        {
+            endSubject(charsets) ;
+            currentPredicates.clear() ;
+            currentSubject = s ;
+            currentGraph = g ;
+        }
+        currentPredicates.add(p) ;
+    }
+
+    private void endSubject(Map<Set<T>, Long> sets)
+    {
+        if ( charsetsOverflow || currentPredicates.size() < 2 )
+            return ;
+        Long n = sets.get(currentPredicates) ;
+        if ( n != null )
+        {
+            sets.put(currentPredicates, n+1) ;
+            return ;
+        }
+        if ( sets.size() >= MaxCharSets )
+        {
+            // Too many to be useful.
+            charsetsOverflow = true ;
+            sets.clear() ;
+            return ;
+        }
+        sets.put(new HashSet<>(currentPredicates), 1L) ;
+    }
+
+    /** Hash of an item, used for estimating the number of distinct items */
+    protected long hash(T item)
+    {
+        return item.hashCode() ;
     }
 
     protected abstract Map<Node, Integer> convert(Map<T, Integer> map) ;
     
+    protected abstract Node toNode(T item) ;
+    
     public StatsResults results()
     {
-        return new StatsResults(convert(predicates), convert(types), count) ;
+        // Include the current subject, without changing the collector.
+        Map<Set<T>, Long> sets = new HashMap<>(charsets) ;
+        endSubject(sets) ;
+        Map<Set<Node>, Long> charsetNodes = new HashMap<>() ;
+        if ( ! charsetsOverflow )
+        {
+            for ( Entry<Set<T>, Long> e : sets.entrySet() )
+            {
+                Set<Node> x = new HashSet<>() ;
+                for ( T p : e.getKey() )
+                    x.add(toNode(p)) ;
+                charsetNodes.put(x, e.getValue()) ;
+            }
+        }
+        
+        Map<Node, PredicateStats> predicateStats = new HashMap<>() ;
+        for ( Entry<T, PredicateCounters<T>> e : selectivity.entrySet() )
+        {
+            long n = predicates.get(e.getKey()) ;
+            PredicateCounters<T> counters = e.getValue() ;
+            long subjects = Math.min(n, counters.subjects.estimate()) ;
+            long objects = Math.min(n, counters.objects.estimate()) ;
+            // Only values much more common than average.
+            long atLeast = Math.max(2, 2*n/Math.max(1, objects)) ;
+            Map<Node, Long> values = new HashMap<>() ;
+            for ( Entry<T, Long> v : counters.values.top(MaxValues, atLeast).entrySet() )
+                values.put(toNode(v.getKey()), v.getValue()) ;
+            predicateStats.put(toNode(e.getKey()), new PredicateStats(n, subjects, objects, values)) ;
+        }
+        return new StatsResults(convert(predicates), convert(types), count, predicateStats, charsetNodes) ;
     }
 }
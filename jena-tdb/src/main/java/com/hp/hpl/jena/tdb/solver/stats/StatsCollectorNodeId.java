@@ -53,4 +53,16 @@ public class StatsCollectorNodeId extends StatsCollectorBase<NodeId>
         }
         return statsNodes ;
     }
+
+    @Override
+    protected long hash(NodeId item)
+    {
+        return item.getId() ;
+    }
+
+    @Override
+    protected Node toNode(NodeId item)
+    {
+        return nodeTable.getNodeForNodeId(item) ;
+    }
 }
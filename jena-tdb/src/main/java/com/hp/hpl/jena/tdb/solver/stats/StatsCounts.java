@@ -0,0 +1,361 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hp.hpl.jena.tdb.solver.stats;
+
+import java.io.BufferedOutputStream ;
+import java.io.ByteArrayOutputStream ;
+import java.io.File ;
+import java.io.FileOutputStream ;
+import java.io.IOException ;
+import java.io.OutputStream ;
+import java.util.* ;
+import java.util.Map.Entry ;
+
+import org.apache.jena.atlas.io.IO ;
+import org.slf4j.Logger ;
+import org.slf4j.LoggerFactory ;
+
+import com.hp.hpl.jena.graph.Node ;
+import com.hp.hpl.jena.sparql.engine.optimizer.StatsMatcher ;
+import com.hp.hpl.jena.sparql.engine.optimizer.StatsSelectivity ;
+import com.hp.hpl.jena.sparql.engine.optimizer.StatsSelectivity.PredicateStats ;
+import com.hp.hpl.jena.sparql.graph.NodeConst ;
+import com.hp.hpl.jena.sparql.sse.Item ;
+import com.hp.hpl.jena.sparql.sse.ItemList ;
+import com.hp.hpl.jena.sparql.sse.ItemWriter ;
+import com.hp.hpl.jena.sparql.sse.SSE ;
+import com.hp.hpl.jena.sparql.util.NodeFactoryExtra ;
+
+/** Counts for the statistics of a dataset, kept up to date as triples and quads are added and deleted.
+ * <p>
+ * The counts for the default graph are the triple count, the count for each predicate
+ * and for each <code>rdf:type</code> object. For the named graphs, the number of quads in each graph.
+ * They start from a stats file, as written by {@link Stats}, and are written back to it
+ * by {@link #write()}. The selectivity section of the file is kept, with the
+ * counts updated; distinct subjects and objects are not maintained.
+ * <p>
+ * A transaction records its changes in its own {@code StatsCounts} which is merged
+ * into the dataset's counts when the transaction commits. The statistics, with the
+ * changes, are written to the journal with the commit (see {@link #bytes(StatsCounts)})
+ * and so reach the file when the journal is written back or recovered.
+ * Otherwise, the file is written when the dataset is synced or closed.
+ */
+public class StatsCounts
+{
+    private static Logger log = LoggerFactory.getLogger(StatsCounts.class) ;
+    public static final String GRAPHS = "graphs" ;
+
+    // Null for the changes in a transaction.
+    private final String filename ;
+    private long count = 0 ;
+    private final Map<Node, Long> predicates = new HashMap<>() ;
+    private final Map<Node, Long> types = new HashMap<>() ;
+    private boolean triplesCleared = false ;
+    // Quads in each named graph : null if not known.
+    private Map<Node, Long> graphs = new HashMap<>() ;
+    private boolean quadsCleared = false ;
+    private StatsSelectivity selectivity = new StatsSelectivity() ;
+    private boolean changed = false ;
+
+    /** Counts for recording changes (e.g. in a transaction) */
+    public StatsCounts()
+    {
+        this(null) ;
+    }
+
+    private StatsCounts(String filename)
+    {
+        this.filename = filename ;
+    }
+
+    /** Read the counts from a stats file. Returns null if the file is not one written by {@link Stats},
+     *  for example, it has hand written weights.
+     *  @param filename     The stats file
+     *  @param quadsEmpty   Whether there are no quads, in which case the counts for named graphs
+     *                      start from zero if the file does not have them.
+     */
+    public static StatsCounts read(String filename, boolean quadsEmpty)
+    {
+        if ( ! new File(filename).exists() )
+            return null ;
+        Item stats = SSE.readFile(filename) ;
+        if ( stats.isNil() || ! stats.isTagged(StatsMatcher.STATS) )
+            return null ;
+        StatsCounts counts = new StatsCounts(filename) ;
+        if ( ! counts.init(stats, quadsEmpty) )
+        {
+            log.debug("Stats file not maintained: "+filename) ;
+            return null ;
+        }
+        return counts ;
+    }
+
+    private boolean init(Item stats, boolean quadsEmpty)
+    {
+        ItemList list = stats.getList().cdr() ;
+        if ( list.isEmpty() || ! list.car().isTagged(StatsMatcher.META) )
+            return false ;
+        ItemList meta = list.car().getList() ;
+        Item x = Item.find(meta, StatsMatcher.COUNT) ;
+        if ( x == null )
+            return false ;
+        count = x.getList().get(1).getInteger() ;
+        Item g = Item.find(meta, GRAPHS) ;
+        if ( g != null )
+        {
+            for ( Item pair : g.getList().cdr() )
+                graphs.put(pair.getList().get(0).getNode(), pair.getList().get(1).getInteger()) ;
+        }
+        else if ( ! quadsEmpty )
+            graphs = null ;
+
+        for ( Item elt : list.cdr() )
+        {
+            if ( elt.isTagged(StatsSelectivity.SELECTIVITY) )
+                continue ;
+            if ( ! elt.isList() || elt.getList().size() != 2 )
+                return false ;
+            Item pat = elt.getList().get(0) ;
+            Item w = elt.getList().get(1) ;
+            if ( ! w.isNode() || ! w.getNode().isLiteral() )
+                return false ;
+            if ( pat.equals(StatsMatcher.OTHER) )
+                continue ;
+            long n = w.getInteger() ;
+            if ( pat.isNodeURI() )
+            {
+                predicates.put(pat.getNode(), n) ;
+                continue ;
+            }
+            // ((VAR rdf:type T) n)
+            if ( pat.isList() && pat.getList().size() == 3 &&
+                 pat.getList().get(0).isSymbol("VAR") &&
+                 pat.getList().get(1).isNode() && NodeConst.nodeRDFType.equals(pat.getList().get(1).getNode()) &&
+                 pat.getList().get(2).isNode() )
+            {
+                types.put(pat.getList().get(2).getNode(), n) ;
+                continue ;
+            }
+            return false ;
+        }
+        selectivity = new StatsSelectivity(stats) ;
+        return true ;
+    }
+
+    public synchronized void addTriple(Node p, Node o)
+    {
+        changeTriple(p, o, 1) ;
+    }
+
+    public synchronized void deleteTriple(Node p, Node o)
+    {
+        changeTriple(p, o, -1) ;
+    }
+
+    private void changeTriple(Node p, Node o, long delta)
+    {
+        count += delta ;
+        adjust(predicates, p, delta) ;
+        if ( NodeConst.nodeRDFType.equals(p) )
+            adjust(types, o, delta) ;
+        changed = true ;
+    }
+
+    public synchronized void clearTriples()
+    {
+        count = 0 ;
+        predicates.clear() ;
+        types.clear() ;
+        triplesCleared = true ;
+        changed = true ;
+    }
+
+    public synchronized void addQuad(Node g)
+    {
+        changeQuad(g, 1) ;
+    }
+
+    public synchronized void deleteQuad(Node g)
+    {
+        changeQuad(g, -1) ;
+    }
+
+    private void changeQuad(Node g, long delta)
+    {
+        if ( graphs != null )
+            adjust(graphs, g, delta) ;
+        changed = true ;
+    }
+
+    public synchronized void clearQuads()
+    {
+        if ( graphs != null )
+            graphs.clear() ;
+        quadsCleared = true ;
+        changed = true ;
+    }
+
+    /** Include changes */
+    public synchronized void merge(StatsCounts changes)
+    {
+        synchronized (changes)
+        {
+            if ( ! changes.changed )
+                return ;
+            if ( changes.triplesCleared )
+                clearTriples() ;
+            if ( changes.quadsCleared )
+                clearQuads() ;
+            count += changes.count ;
+            for ( Entry<Node, Long> e : changes.predicates.entrySet() )
+                adjust(predicates, e.getKey(), e.getValue()) ;
+            for ( Entry<Node, Long> e : changes.types.entrySet() )
+                adjust(types, e.getKey(), e.getValue()) ;
+            if ( graphs != null )
+            {
+                for ( Entry<Node, Long> e : changes.graphs.entrySet() )
+                    adjust(graphs, e.getKey(), e.getValue()) ;
+            }
+            changed = true ;
+        }
+    }
+
+    // Changes can be negative; counts are removed when they reach zero.
+    private void adjust(Map<Node, Long> map, Node key, long delta)
+    {
+        Long x = map.get(key) ;
+        long n = ( x == null ) ? delta : x+delta ;
+        if ( filename != null && n <= 0 )
+            map.remove(key) ;
+        else
+            map.put(key, n) ;
+    }
+
+    public synchronized long getCount()                 { return count ; }
+
+    public synchronized long getCount(Node predicate)
+    {
+        Long x = predicates.get(predicate) ;
+        return ( x == null ) ? 0 : x ;
+    }
+
+    /** Number of quads in a named graph or -1 if not known */
+    public synchronized long getGraphCount(Node graph)
+    {
+        if ( graphs == null )
+            return -1 ;
+        Long x = graphs.get(graph) ;
+        return ( x == null ) ? 0 : x ;
+    }
+
+    public synchronized boolean isChanged()             { return changed ; }
+
+    /** Write the stats file, if there have been changes, and return the statistics written, else return null */
+    public synchronized Item write()
+    {
+        if ( filename == null || ! changed )
+            return null ;
+        Item stats = format() ;
+        writeFile(filename, bytes(stats)) ;
+        changed = false ;
+        return stats ;
+    }
+
+    /** The statistics, as written to the stats file */
+    public synchronized Item format()
+    {
+        Item stats = Stats.format(results()) ;
+        if ( graphs != null )
+        {
+            Item g = Item.createTagged(GRAPHS) ;
+            for ( Entry<Node, Long> e : graphs.entrySet() )
+                Item.addPair(g.getList(), e.getKey(), NodeFactoryExtra.intToNode(e.getValue())) ;
+            Item.find(stats.getList(), StatsMatcher.META).getList().add(g) ;
+        }
+        return stats ;
+    }
+
+    /** The contents of the stats file for these counts with some changes included,
+     *  for example, the changes of a transaction that is committing.
+     */
+    public synchronized byte[] bytes(StatsCounts changes)
+    {
+        StatsCounts x = new StatsCounts(filename) ;
+        x.count = count ;
+        x.predicates.putAll(predicates) ;
+        x.types.putAll(types) ;
+        x.graphs = ( graphs == null ) ? null : new HashMap<>(graphs) ;
+        x.selectivity = selectivity ;
+        x.merge(changes) ;
+        return bytes(x.format()) ;
+    }
+
+    private static byte[] bytes(Item stats)
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream() ;
+        ItemWriter.write(out, stats) ;
+        return out.toByteArray() ;
+    }
+
+    /** Replace the stats file with new contents */
+    public static void writeFile(String filename, byte[] contents)
+    {
+        File tmp = new File(filename+".tmp") ;
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp))) {
+            out.write(contents) ;
+        } catch (IOException ex) { IO.exception(ex) ; }
+        File f = new File(filename) ;
+        f.delete() ;
+        if ( ! tmp.renameTo(f) )
+            log.warn("Failed to rename "+tmp+" to "+f) ;
+    }
+
+    private StatsResults results()
+    {
+        Map<Node, PredicateStats> predicateStats = new HashMap<>() ;
+        for ( Entry<Node, PredicateStats> e : selectivity.getPredicates().entrySet() )
+        {
+            // Distinct subjects and objects are as last gathered, but no more than the count.
+            long n = getCount(e.getKey()) ;
+            if ( n <= 0 )
+                continue ;
+            PredicateStats ps = e.getValue() ;
+            Map<Node, Long> values = new HashMap<>() ;
+            for ( Entry<Node, Long> v : ps.getValues().entrySet() )
+                values.put(v.getKey(), Math.min(n, v.getValue())) ;
+            predicateStats.put(e.getKey(), new PredicateStats(n, Math.min(n, ps.getSubjects()), Math.min(n, ps.getObjects()), values)) ;
+        }
+        return new StatsResults(toInt(predicates), toInt(types), count, predicateStats, selectivity.getCharacteristicSets()) ;
+    }
+
+    private static Map<Node, Integer> toInt(Map<Node, Long> map)
+    {
+        Map<Node, Integer> x = new HashMap<>() ;
+        for ( Entry<Node, Long> e : map.entrySet() )
+            x.put(e.getKey(), (int)Math.min(Integer.MAX_VALUE, e.getValue())) ;
+        return x ;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "StatsCounts: count="+count+" predicates="+predicates.size()+" graphs="+(graphs == null ? "?" : graphs.size()) ;
+    }
+}
@@ -19,8 +19,10 @@
 package com.hp.hpl.jena.tdb.solver.stats;
 
 import java.util.Map ;
+import java.util.Set ;
 
 import com.hp.hpl.jena.graph.Node ;
+import com.hp.hpl.jena.sparql.engine.optimizer.StatsSelectivity.PredicateStats ;
 
 /** Statistics collector */
 public class StatsResults 
@@ -28,12 +30,17 @@ public class StatsResults
     private final Map<Node, Integer> predicates ;
     private final Map<Node, Integer> types ;
     private final long count ;
+    private final Map<Node, PredicateStats> selectivity ;
+    private final Map<Set<Node>, Long> charsets ;
 
-    StatsResults(Map<Node, Integer> predicates, Map<Node, Integer> types, long count)
+    StatsResults(Map<Node, Integer> predicates, Map<Node, Integer> types, long count,
+                 Map<Node, PredicateStats> selectivity, Map<Set<Node>, Long> charsets)
     {
         this.count = count ;
         this.predicates = predicates ;
         this.types = types ;
+        this.selectivity = selectivity ;
+        this.charsets = charsets ;
     }
 
     public Map<Node, Integer> getPredicates()
@@ -50,4 +57,16 @@ public class StatsResults
     {
         return count ;
     }
+
+    /** Distinct subjects, distinct objects and common objects, per predicate */
+    public Map<Node, PredicateStats> getSelectivity()
+    {
+        return selectivity ;
+    }
+
+    /** Characteristic sets of two or more predicates, with the number of subjects for each */
+    public Map<Set<Node>, Long> getCharacteristicSets()
+    {
+        return charsets ;
+    }
 }
@@ -36,8 +36,13 @@ import com.hp.hpl.jena.sparql.core.DatasetGraphCaching ;
 import com.hp.hpl.jena.sparql.core.DatasetImpl ;
 import com.hp.hpl.jena.sparql.core.Quad ;
 import com.hp.hpl.jena.sparql.engine.optimizer.reorder.ReorderTransformation ;
+import com.hp.hpl.jena.sparql.graph.NodeConst ;
+import com.hp.hpl.jena.sparql.sse.Item ;
 import com.hp.hpl.jena.tdb.base.file.Location ;
 import com.hp.hpl.jena.tdb.lib.NodeLib ;
+import com.hp.hpl.jena.tdb.solver.stats.ReorderStatsFile ;
+import com.hp.hpl.jena.tdb.solver.stats.StatsCounts ;
+import com.hp.hpl.jena.tdb.store.nodetable.NodeTable ;
 import com.hp.hpl.jena.tdb.store.nodetupletable.NodeTupleTable ;
 import com.hp.hpl.jena.tdb.sys.Session ;
 import com.hp.hpl.jena.tdb.transaction.DatasetGraphTransaction ;
@@ -62,6 +67,7 @@ public class DatasetGraphTDB extends DatasetGraphCaching
     private DatasetPrefixesTDB prefixes ;
     private final ReorderTransformation transform ;
     private final StorageConfig config ;
+    private StatsCounts statsCounts = null ;
     
     private GraphTDB effectiveDefaultGraph ;
     private boolean closed = false ;
@@ -123,6 +129,7 @@ public class DatasetGraphTDB extends DatasetGraphCaching
             return ;
         closed = true ;
         
+        syncStats() ;
         tripleTable.close() ;
         quadTable.close() ;
         prefixes.close();
@@ -172,6 +179,30 @@ public class DatasetGraphTDB extends DatasetGraphCaching
     
     public ReorderTransformation getReorderTransform()      { return transform ; }
     
+    /** Counts kept up to date as triples and quads are added and deleted, or null */
+    public StatsCounts getStatsCounts()                     { return statsCounts ; }
+    
+    public void setStatsCounts(StatsCounts statsCounts)
+    {
+        this.statsCounts = statsCounts ;
+        tripleTable.setStatsCounts(statsCounts) ;
+        quadTable.setStatsCounts(statsCounts) ;
+    }
+    
+    /** Write the stats file, if the counts have changed, and use it for the BGP optimizer */
+    public void syncStats()
+    {
+        if ( statsCounts == null )
+            return ;
+        reloadStats(statsCounts.write()) ;
+    }
+    
+    private void reloadStats(Item stats)
+    {
+        if ( stats != null && transform instanceof ReorderStatsFile )
+            ((ReorderStatsFile)transform).reload(stats) ;
+    }
+    
     public DatasetPrefixesTDB getPrefixes()                 { return prefixes ; }
 
     static private Transform<Tuple<NodeId>, NodeId> project0 = new Transform<Tuple<NodeId>, NodeId>()
@@ -249,7 +280,8 @@ public class DatasetGraphTDB extends DatasetGraphCaching
 
             // Delete them.
             for (int i = 0; i < len; i++) {
-                t.getTupleTable().delete(array[i]) ;
+                if ( t.getTupleTable().delete(array[i]) && statsCounts != null )
+                    countDelete(t.getNodeTable(), array[i]) ;
                 array[i] = null ;
             }
             // Finished?
@@ -260,6 +292,19 @@ public class DatasetGraphTDB extends DatasetGraphCaching
         finishUpdate() ;
     }
     
+    private void countDelete(NodeTable nodeTable, Tuple<NodeId> tuple)
+    {
+        if ( tuple.size() == 3 )
+        {
+            // The object is only needed for rdf:type.
+            Node p = nodeTable.getNodeForNodeId(tuple.get(1)) ;
+            Node o = NodeConst.nodeRDFType.equals(p) ? nodeTable.getNodeForNodeId(tuple.get(2)) : null ;
+            statsCounts.deleteTriple(p, o) ;
+        }
+        else
+            statsCounts.deleteQuad(nodeTable.getNodeForNodeId(tuple.get(0))) ;
+    }
+    
     public Location getLocation()       { return config.location ; }
 
     @Override
@@ -268,6 +313,7 @@ public class DatasetGraphTDB extends DatasetGraphCaching
         tripleTable.sync() ;
         quadTable.sync() ;
         prefixes.sync() ;
+        syncStats() ;
     }
     
     // --- GraphStore
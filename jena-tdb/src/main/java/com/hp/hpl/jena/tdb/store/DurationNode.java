@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hp.hpl.jena.tdb.store;
+
+import java.util.regex.Matcher ;
+import java.util.regex.Pattern ;
+
+import org.apache.jena.atlas.lib.BitsLong ;
+
+/** Inline encoding of xsd:duration as a number of months and a number of whole seconds.
+ *  Only lexical forms in the canonical form produced by {@link #unpack} are encoded,
+ *  so "P1Y" is inline but "P12M" and "PT1.5S" are not.
+ */
+public class DurationNode
+{
+    // Layout:
+    // Bits 56-63 : type
+    // Bit  53              : negative
+    // Bits 36-52 (17 bits) : months
+    // Bits 0-35  (36 bits) : seconds
+
+    static final int SECONDS = 0 ;
+    static final int SECONDS_LEN = 36 ;
+    static final int MONTHS = SECONDS+SECONDS_LEN ;
+    static final int MONTHS_LEN = 17 ;
+    static final int NEGATIVE = MONTHS+MONTHS_LEN ;
+
+    static final long MAX_SECONDS = (1L<<SECONDS_LEN)-1 ;
+    static final long MAX_MONTHS = (1L<<MONTHS_LEN)-1 ;
+
+    private static final Pattern pattern =
+        Pattern.compile("(-)?P(?:(\\d{1,9})Y)?(?:(\\d{1,9})M)?(?:(\\d{1,9})D)?(?:T(?:(\\d{1,9})H)?(?:(\\d{1,9})M)?(?:(\\d{1,9})S)?)?") ;
+
+    /** Pack a duration, return -1 if it does not fit */
+    public static long pack(String lex)
+    {
+        Matcher m = pattern.matcher(lex) ;
+        if ( ! m.matches() )
+            return -1 ;
+        boolean negative = ( m.group(1) != null ) ;
+        long months = 12*field(m, 2) + field(m, 3) ;
+        long seconds = 24*3600*field(m, 4) + 3600*field(m, 5) + 60*field(m, 6) + field(m, 7) ;
+        if ( months > MAX_MONTHS || seconds > MAX_SECONDS )
+            return -1 ;
+
+        long v = 0 ;
+        v = BitsLong.pack(v, seconds, SECONDS, SECONDS+SECONDS_LEN) ;
+        v = BitsLong.pack(v, months, MONTHS, MONTHS+MONTHS_LEN) ;
+        if ( negative )
+            v = BitsLong.set(v, NEGATIVE) ;
+        v = NodeId.setType(v, NodeId.DURATION) ;
+        if ( ! lex.equals(unpack(v)) )
+            return -1 ;
+        return v ;
+    }
+
+    private static long field(Matcher m, int idx)
+    {
+        String s = m.group(idx) ;
+        return ( s == null ) ? 0 : Long.parseLong(s) ;
+    }
+
+    /** The lexical form */
+    public static String unpack(long v)
+    {
+        long seconds = BitsLong.unpack(v, SECONDS, SECONDS+SECONDS_LEN) ;
+        long months = BitsLong.unpack(v, MONTHS, MONTHS+MONTHS_LEN) ;
+
+        StringBuilder sb = new StringBuilder() ;
+        if ( BitsLong.isSet(v, NEGATIVE) )
+            sb.append('-') ;
+        sb.append('P') ;
+        field(sb, months/12, 'Y') ;
+        field(sb, months%12, 'M') ;
+        field(sb, seconds/(24*3600), 'D') ;
+        long time = seconds%(24*3600) ;
+        if ( time != 0 || ( months == 0 && seconds == 0 ) )
+        {
+            sb.append('T') ;
+            field(sb, time/3600, 'H') ;
+            field(sb, (time/60)%60, 'M') ;
+            if ( time%60 != 0 || time == 0 )
+                sb.append(time%60).append('S') ;
+        }
+        return sb.toString() ;
+    }
+
+    private static void field(StringBuilder sb, long x, char unit)
+    {
+        if ( x != 0 )
+            sb.append(x).append(unit) ;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hp.hpl.jena.tdb.store;
+
+import org.apache.jena.atlas.lib.BitsLong ;
+
+/** Inline encodings of xsd:float and xsd:double */
+public class FloatNode
+{
+    // Float: the 32 bits of the IEEE 754 value, in bits 0-31.
+    // Double: the top 56 bits of the IEEE 754 value.  Only doubles with the low 8 bits
+    // (of the mantissa) zero fit; that includes all floats and all integers up to 2^45.
+
+    static final int DROP_BITS = 8 ;
+
+    public static long packFloat(float f)
+    {
+        long v = Float.floatToIntBits(f) & 0xFFFFFFFFL ;
+        return NodeId.setType(v, NodeId.FLOAT) ;
+    }
+
+    public static float unpackFloat(long v)
+    {
+        return Float.intBitsToFloat((int)v) ;
+    }
+
+    /** Pack a double, return -1 if it does not fit */
+    public static long packDouble(double d)
+    {
+        long bits = Double.doubleToLongBits(d) ;
+        if ( BitsLong.unpack(bits, 0, DROP_BITS) != 0 )
+            return -1 ;
+        return NodeId.setType(bits >>> DROP_BITS, NodeId.DOUBLE) ;
+    }
+
+    public static double unpackDouble(long v)
+    {
+        long bits = BitsLong.clear(v, 56, 64) << DROP_BITS ;
+        return Double.longBitsToDouble(bits) ;
+    }
+}
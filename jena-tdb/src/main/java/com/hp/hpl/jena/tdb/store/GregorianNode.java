@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hp.hpl.jena.tdb.store;
+
+import java.util.regex.Matcher ;
+import java.util.regex.Pattern ;
+
+import org.apache.jena.atlas.lib.BitsLong ;
+
+import com.hp.hpl.jena.datatypes.RDFDatatype ;
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype ;
+
+/** Inline encoding of the xsd:gYear family: gYear, gYearMonth, gMonth, gMonthDay, gDay.
+ *  Only lexical forms that are exactly reproduced by {@link #unpack} are encoded.
+ */
+public class GregorianNode
+{
+    // Layout:
+    // Bits 56-63 : type
+    // Bits 53-55 (3 bits)  : which datatype, index into "datatypes"
+    // Bits 42-52 (11 bits) : timezone in minutes, offset by TZ_OFFSET, or TZ_Z or TZ_NONE
+    // Bits 37-41 (5 bits)  : day
+    // Bits 33-36 (4 bits)  : month
+    // Bits 0-32  (33 bits) : year, signed
+
+    static final int YEAR = 0 ;
+    static final int YEAR_LEN = 33 ;
+    static final int MONTH = YEAR+YEAR_LEN ;
+    static final int MONTH_LEN = 4 ;
+    static final int DAY = MONTH+MONTH_LEN ;
+    static final int DAY_LEN = 5 ;
+    static final int TZ = DAY+DAY_LEN ;
+    static final int TZ_LEN = 11 ;
+    static final int SUBTYPE = TZ+TZ_LEN ;
+    static final int SUBTYPE_LEN = 3 ;
+
+    static final int TZ_OFFSET = 14*60 ;
+    static final int TZ_Z = 0x7FE ;
+    static final int TZ_NONE = 0x7FF ;
+
+    static final long MAX_YEAR = (1L<<(YEAR_LEN-1))-1 ;
+
+    static final RDFDatatype[] datatypes = {
+        XSDDatatype.XSDgYear,
+        XSDDatatype.XSDgYearMonth,
+        XSDDatatype.XSDgMonth,
+        XSDDatatype.XSDgMonthDay,
+        XSDDatatype.XSDgDay
+    } ;
+
+    private static final String tz = "(Z|[+-]\\d\\d:\\d\\d)?" ;
+    private static final Pattern[] patterns = {
+        Pattern.compile("(-?\\d{4,10})"+tz),
+        Pattern.compile("(-?\\d{4,10})-(\\d\\d)"+tz),
+        Pattern.compile("--(\\d\\d)"+tz),
+        Pattern.compile("--(\\d\\d)-(\\d\\d)"+tz),
+        Pattern.compile("---(\\d\\d)"+tz)
+    } ;
+
+    /** Return the index of the datatype in the family, or -1 */
+    public static int subtype(RDFDatatype datatype)
+    {
+        for ( int i = 0 ; i < datatypes.length ; i++ )
+            if ( datatypes[i].equals(datatype) )
+                return i ;
+        return -1 ;
+    }
+
+    /** Pack a lexical form of one of the datatypes. Return -1 if it does not fit. */
+    public static long pack(String lex, int subtype)
+    {
+        Matcher m = patterns[subtype].matcher(lex) ;
+        if ( ! m.matches() )
+            return -1 ;
+        long year = 0 ;
+        int month = 0 ;
+        int day = 0 ;
+        int g = 1 ;
+        switch (subtype)
+        {
+            case 0 : year = Long.parseLong(m.group(g++)) ; break ;
+            case 1 : year = Long.parseLong(m.group(g++)) ; month = Integer.parseInt(m.group(g++)) ; break ;
+            case 2 : month = Integer.parseInt(m.group(g++)) ; break ;
+            case 3 : month = Integer.parseInt(m.group(g++)) ; day = Integer.parseInt(m.group(g++)) ; break ;
+            case 4 : day = Integer.parseInt(m.group(g++)) ; break ;
+        }
+        if ( year > MAX_YEAR || year < -MAX_YEAR || month > 12 || day > 31 )
+            return -1 ;
+        int tzValue = timezone(m.group(g)) ;
+
+        long v = 0 ;
+        v = BitsLong.pack(v, year, YEAR, YEAR+YEAR_LEN) ;
+        v = BitsLong.pack(v, month, MONTH, MONTH+MONTH_LEN) ;
+        v = BitsLong.pack(v, day, DAY, DAY+DAY_LEN) ;
+        v = BitsLong.pack(v, tzValue, TZ, TZ+TZ_LEN) ;
+        v = BitsLong.pack(v, subtype, SUBTYPE, SUBTYPE+SUBTYPE_LEN) ;
+        v = NodeId.setType(v, NodeId.GREGORIAN) ;
+        // Leading zeros, "-00:00" and other variations are not reproduced.
+        if ( ! lex.equals(unpack(v)) )
+            return -1 ;
+        return v ;
+    }
+
+    private static int timezone(String str)
+    {
+        if ( str == null )
+            return TZ_NONE ;
+        if ( str.equals("Z") )
+            return TZ_Z ;
+        int hours = Integer.parseInt(str.substring(1, 3)) ;
+        int mins = Integer.parseInt(str.substring(4, 6)) ;
+        int x = hours*60+mins ;
+        if ( x > TZ_OFFSET )
+            return TZ_NONE ;    // Out of range : the round trip test fails.
+        if ( str.charAt(0) == '-' )
+            x = -x ;
+        return x+TZ_OFFSET ;
+    }
+
+    public static RDFDatatype unpackDatatype(long v)
+    {
+        return datatypes[(int)BitsLong.unpack(v, SUBTYPE, SUBTYPE+SUBTYPE_LEN)] ;
+    }
+
+    /** The lexical form */
+    public static String unpack(long v)
+    {
+        int subtype = (int)BitsLong.unpack(v, SUBTYPE, SUBTYPE+SUBTYPE_LEN) ;
+        long year = BitsLong.unpack(v, YEAR, YEAR+YEAR_LEN) ;
+        if ( BitsLong.isSet(year, YEAR_LEN-1) )
+            year = BitsLong.set(year, YEAR_LEN, Long.SIZE) ;
+        int month = (int)BitsLong.unpack(v, MONTH, MONTH+MONTH_LEN) ;
+        int day = (int)BitsLong.unpack(v, DAY, DAY+DAY_LEN) ;
+        int tzValue = (int)BitsLong.unpack(v, TZ, TZ+TZ_LEN) ;
+
+        StringBuilder sb = new StringBuilder() ;
+        switch (subtype)
+        {
+            case 0 : year(sb, year) ; break ;
+            case 1 : year(sb, year) ; sb.append('-') ; two(sb, month) ; break ;
+            case 2 : sb.append("--") ; two(sb, month) ; break ;
+            case 3 : sb.append("--") ; two(sb, month) ; sb.append('-') ; two(sb, day) ; break ;
+            case 4 : sb.append("---") ; two(sb, day) ; break ;
+        }
+        if ( tzValue == TZ_Z )
+            sb.append('Z') ;
+        else if ( tzValue != TZ_NONE )
+        {
+            int x = tzValue-TZ_OFFSET ;
+            sb.append(x < 0 ? '-' : '+') ;
+            x = Math.abs(x) ;
+            two(sb, x/60) ;
+            sb.append(':') ;
+            two(sb, x%60) ;
+        }
+        return sb.toString() ;
+    }
+
+    private static void year(StringBuilder sb, long year)
+    {
+        if ( year < 0 )
+            sb.append('-') ;
+        sb.append(String.format("%04d", Math.abs(year))) ;
+    }
+
+    private static void two(StringBuilder sb, int x)
+    {
+        if ( x < 10 )
+            sb.append('0') ;
+        sb.append(x) ;
+    }
+}
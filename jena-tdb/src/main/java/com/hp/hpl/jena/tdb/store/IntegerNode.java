@@ -48,4 +48,34 @@ public class IntegerNode
             val = BitsLong.set(v, LEN, LBITS) ;
         return val ;
     }
+
+    // Derived integer types (xsd:int etc) which keep their datatype:
+    // 4 bits of datatype, then 52 bits of value, including sign bit.
+    public static int DERIVED_LEN = 52 ;
+    public static int SUBTYPE_LEN = 4 ;
+    public static long DERIVED_MAX = (1L<< (DERIVED_LEN-1) )-1;
+    public static long DERIVED_MIN = -(1L<< (DERIVED_LEN-1) ) ;
+
+    public static long packDerived(long v, int subtype) 
+    {
+        if ( v < DERIVED_MIN || v > DERIVED_MAX )
+            return -1 ;
+        v = BitsLong.clear(v, DERIVED_LEN, LBITS) ;
+        v = BitsLong.pack(v, subtype, DERIVED_LEN, DERIVED_LEN+SUBTYPE_LEN) ;
+        v = NodeId.setType(v, NodeId.INTEGER_DERIVED) ;
+        return v ;
+    }
+
+    public static long unpackDerived(long v) 
+    {
+        long val = BitsLong.clear(v, DERIVED_LEN, LBITS) ;
+        if ( BitsLong.isSet(val, DERIVED_LEN-1) )
+            val = BitsLong.set(val, DERIVED_LEN, LBITS) ;
+        return val ;
+    }
+
+    public static int unpackDerivedSubtype(long v) 
+    {
+        return (int)BitsLong.unpack(v, DERIVED_LEN, DERIVED_LEN+SUBTYPE_LEN) ;
+    }
 }
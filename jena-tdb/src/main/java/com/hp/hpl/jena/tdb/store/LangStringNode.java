@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hp.hpl.jena.tdb.store;
+
+import org.apache.jena.atlas.lib.BitsLong ;
+
+/** Inline encoding of short language tagged strings.
+ *  The language tag is two lower case letters and the lexical form 
+ *  is at most 6 ASCII characters. Both are kept exactly as given. 
+ */
+public class LangStringNode
+{
+    // Layout:
+    // Bits 56-63 : type
+    // Bits 53-55 (3 bits)  : length of the lexical form.
+    // Bits 43-52 (10 bits) : language tag, 5 bits a letter.
+    // Bits 0-41  (42 bits) : lexical form, 7 bits a character, first character lowest.
+
+    public static final int MAX_LEN = 6 ;
+
+    static final int CHAR_LEN = 7 ;
+    static final int LANG = 43 ;
+    static final int LANG_CHAR_LEN = 5 ;
+    static final int LENGTH = 53 ;
+    static final int LENGTH_LEN = 3 ;
+
+    /** Pack a language tagged string, return -1 if it does not fit */
+    public static long pack(String lex, String lang)
+    {
+        if ( lex.length() > MAX_LEN || lang.length() != 2 )
+            return -1 ;
+        long v = 0 ;
+        for ( int i = 0 ; i < lang.length() ; i++ )
+        {
+            char ch = lang.charAt(i) ;
+            if ( ch < 'a' || ch > 'z' )
+                return -1 ;
+            int start = LANG + i*LANG_CHAR_LEN ;
+            v = BitsLong.pack(v, ch-'a', start, start+LANG_CHAR_LEN) ;
+        }
+        for ( int i = 0 ; i < lex.length() ; i++ )
+        {
+            char ch = lex.charAt(i) ;
+            if ( ch >= 0x80 )
+                return -1 ;
+            v = BitsLong.pack(v, ch, i*CHAR_LEN, (i+1)*CHAR_LEN) ;
+        }
+        v = BitsLong.pack(v, lex.length(), LENGTH, LENGTH+LENGTH_LEN) ;
+        return NodeId.setType(v, NodeId.LANG_STRING) ;
+    }
+
+    public static String unpackLexicalForm(long v)
+    {
+        int len = (int)BitsLong.unpack(v, LENGTH, LENGTH+LENGTH_LEN) ;
+        char[] chars = new char[len] ;
+        for ( int i = 0 ; i < len ; i++ )
+            chars[i] = (char)BitsLong.unpack(v, i*CHAR_LEN, (i+1)*CHAR_LEN) ;
+        return new String(chars) ;
+    }
+
+    public static String unpackLang(long v)
+    {
+        char[] chars = new char[2] ;
+        for ( int i = 0 ; i < chars.length ; i++ )
+        {
+            int start = LANG + i*LANG_CHAR_LEN ;
+            chars[i] = (char)('a'+BitsLong.unpack(v, start, start+LANG_CHAR_LEN)) ;
+        }
+        return new String(chars) ;
+    }
+}
@@ -31,6 +31,7 @@ import com.hp.hpl.jena.graph.Node ;
 import com.hp.hpl.jena.graph.NodeFactory ;
 import com.hp.hpl.jena.graph.impl.LiteralLabel ;
 import com.hp.hpl.jena.sparql.graph.NodeConst ;
+import com.hp.hpl.jena.sparql.util.Utils ;
 import com.hp.hpl.jena.tdb.TDBException ;
 import com.hp.hpl.jena.tdb.sys.SystemTDB ;
 
@@ -139,6 +140,17 @@ public class NodeId
      *  Date format:
      *  DateTime format:
      *  Boolean format:
+     *  
+     *  The extended encodings, used only when asked for (a database layout choice),
+     *  keep the lexical form exactly; a literal whose lexical form would not come back
+     *  unchanged is not encoded by them.
+     *  
+     *  Float format: the 32 bits of the float.
+     *  Double format: the top 56 bits of the double, when the low 8 bits are zero.
+     *  Derived integer format: 4 bits of datatype, 52 bits of signed value.
+     *  Language string format: see LangStringNode.
+     *  gYear family format: see GregorianNode.
+     *  Duration format: see DurationNode.
      */
     
     // Type codes.
@@ -151,10 +163,29 @@ public class NodeId
     public static final int DATETIME           = 4 ;
     public static final int BOOLEAN            = 5 ;
     public static final int SHORT_STRING       = 6 ;
+    // Extended encodings.
+    public static final int FLOAT              = 7 ;
+    public static final int DOUBLE             = 8 ;
+    public static final int INTEGER_DERIVED    = 9 ;
+    public static final int LANG_STRING        = 10 ;
+    public static final int GREGORIAN          = 11 ;
+    public static final int DURATION           = 12 ;
     public static final int SPECIAL            = 0xFF ;
     
     /** Encode a node as an inline literal.  Return null if it can't be done */
     public static NodeId inline(Node node)
+    {
+        return inline(node, false) ;
+    }
+    
+    /** Encode a node as an inline literal, trying the extended encodings
+     *  (float, double, derived integers, short language tagged strings,
+     *  the gYear family and durations) first if asked.
+     *  Return null if it can't be done.
+     *  <p>
+     *  Every node that is inline without the extended encodings is also inline with them.
+     */
+    public static NodeId inline(Node node, boolean extended)
     {
         if ( node == null )
         {
@@ -163,11 +194,21 @@ public class NodeId
         }
         
         if ( ! node.isLiteral() ) return null ;
-        if ( node.getLiteralDatatype() == null ) return null ;
+        if ( ! extended && node.getLiteralDatatype() == null ) return null ;
         
         if ( ! enableInlineLiterals ) return null ;
         
-        try { return inline$(node) ; }
+        try {
+            if ( extended )
+            {
+                NodeId nodeId = inlineExtended$(node) ;
+                if ( nodeId != null )
+                    return nodeId ;
+                if ( node.getLiteralDatatype() == null )
+                    return null ;
+            }
+            return inline$(node) ;
+        }
         catch (Throwable th) {
             Log.warn(NodeId.class, "Failed to process "+node) ;
             return null ; 
@@ -194,16 +235,142 @@ public class NodeId
         XSDDatatype.XSDboolean
     } ;
 
+    /** Derived integer types, in the order of the datatype code of the extended encoding */
+    private static RDFDatatype[] derivedIntegers = {
+        XSDDatatype.XSDlong,
+        XSDDatatype.XSDint,
+        XSDDatatype.XSDshort,
+        XSDDatatype.XSDbyte,
+        
+        XSDDatatype.XSDunsignedLong,
+        XSDDatatype.XSDunsignedInt,
+        XSDDatatype.XSDunsignedShort,
+        XSDDatatype.XSDunsignedByte,
+        
+        XSDDatatype.XSDnonNegativeInteger,
+        XSDDatatype.XSDpositiveInteger,
+        XSDDatatype.XSDnonPositiveInteger,
+        XSDDatatype.XSDnegativeInteger
+    } ;
+    
+    /** Datatypes that are candidates for inlining, in addition to {@link #datatypes},
+     *  with the extended encodings */ 
+    private static RDFDatatype[] datatypesExtended = { 
+        XSDDatatype.XSDfloat,
+        XSDDatatype.XSDdouble,
+        
+        XSDDatatype.XSDnonNegativeInteger,
+        XSDDatatype.XSDpositiveInteger,
+        XSDDatatype.XSDnonPositiveInteger,
+        XSDDatatype.XSDnegativeInteger,
+        
+        XSDDatatype.XSDgYear,
+        XSDDatatype.XSDgYearMonth,
+        XSDDatatype.XSDgMonth,
+        XSDDatatype.XSDgMonthDay,
+        XSDDatatype.XSDgDay,
+        XSDDatatype.XSDduration
+    } ;
+
     /** Return true if this node has a datatype that look sliek it is inlineable.
      * The node may still be out of range (e.g. very large integer).
      * Only inline(Node)->NodeId can determine that. 
      */
     public static boolean hasInlineDatatype(Node node) {
+        return hasInlineDatatype(node, false) ;
+    }
+    
+    /** As {@link #hasInlineDatatype(Node)}, including the extended encodings if asked. 
+     *  Language tagged strings are candidates with the extended encodings.
+     */
+    public static boolean hasInlineDatatype(Node node, boolean extended) {
+        if ( extended && ! node.getLiteralLanguage().isEmpty() )
+            return true ;
         RDFDatatype dtn = node.getLiteralDatatype() ;
         for ( RDFDatatype dt : datatypes )
             if ( dt.equals(dtn) ) return true ;
+        if ( extended )
+        {
+            for ( RDFDatatype dt : datatypesExtended )
+                if ( dt.equals(dtn) ) return true ;
+        }
         return false ;
     }
+    
+    private static int indexOf(RDFDatatype[] dts, RDFDatatype dt) {
+        for ( int i = 0 ; i < dts.length ; i++ )
+            if ( dts[i].equals(dt) ) return i ;
+        return -1 ;
+    }
+    
+    /** The extended encodings. Return null if none apply. */
+    private static NodeId inlineExtended$(Node node)
+    {
+        String lang = node.getLiteralLanguage() ;
+        if ( ! lang.isEmpty() )
+        {
+            long v = LangStringNode.pack(node.getLiteralLexicalForm(), lang) ;
+            return ( v == -1 ) ? null : new NodeId(v) ;
+        }
+
+        RDFDatatype dt = node.getLiteralDatatype() ;
+        if ( dt == null )
+            return null ;
+        LiteralLabel lit = node.getLiteral() ;
+        String lex = lit.getLexicalForm() ;
+
+        if ( dt.equals(XSDDatatype.XSDdouble) )
+        {
+            if ( ! dt.isValid(lex) )
+                return null ;
+            double d = ((Number)lit.getValue()).doubleValue() ;
+            if ( ! lex.equals(Utils.stringForm(d)) )
+                return null ;
+            long v = FloatNode.packDouble(d) ;
+            return ( v == -1 ) ? null : new NodeId(v) ;
+        }
+        
+        if ( dt.equals(XSDDatatype.XSDfloat) )
+        {
+            if ( ! dt.isValid(lex) )
+                return null ;
+            float f = ((Number)lit.getValue()).floatValue() ;
+            if ( ! lex.equals(Utils.stringForm(f)) )
+                return null ;
+            return new NodeId(FloatNode.packFloat(f)) ;
+        }
+        
+        int idx = indexOf(derivedIntegers, dt) ;
+        if ( idx >= 0 )
+        {
+            // Otherwise, leave to the xsd:integer encoding.
+            if ( lex.length() > 19 || ! dt.isValid(lex) )
+                return null ;
+            long x = Long.parseLong(lex) ;
+            if ( ! lex.equals(Long.toString(x)) )
+                return null ;
+            long v = IntegerNode.packDerived(x, idx) ;
+            return ( v == -1 ) ? null : new NodeId(v) ;
+        }
+        
+        idx = GregorianNode.subtype(dt) ;
+        if ( idx >= 0 )
+        {
+            if ( ! dt.isValid(lex) )
+                return null ;
+            long v = GregorianNode.pack(lex, idx) ;
+            return ( v == -1 ) ? null : new NodeId(v) ;
+        }
+        
+        if ( dt.equals(XSDDatatype.XSDduration) )
+        {
+            if ( ! dt.isValid(lex) )
+                return null ;
+            long v = DurationNode.pack(lex) ;
+            return ( v == -1 ) ? null : new NodeId(v) ;
+        }
+        return null ;
+    }
      
     private static NodeId inline$(Node node)
     {
@@ -308,6 +475,12 @@ public class NodeId
             case DATETIME:
             case DATE:
             case BOOLEAN:
+            case FLOAT:
+            case DOUBLE:
+            case INTEGER_DERIVED:
+            case LANG_STRING:
+            case GREGORIAN:
+            case DURATION:
                 return true ;
             default:
                 throw new TDBException("Unrecognized node id type: "+type) ;
@@ -355,6 +528,32 @@ public class NodeId
                     return NodeConst.nodeTrue ;
                 throw new TDBException("Unrecognized boolean node id : " + val) ;
             }
+            case FLOAT : {
+                float f = FloatNode.unpackFloat(v) ;
+                return NodeFactory.createLiteral(Utils.stringForm(f), XSDDatatype.XSDfloat) ;
+            }
+            case DOUBLE : {
+                double d = FloatNode.unpackDouble(v) ;
+                return NodeFactory.createLiteral(Utils.stringForm(d), XSDDatatype.XSDdouble) ;
+            }
+            case INTEGER_DERIVED : {
+                long val = IntegerNode.unpackDerived(v) ;
+                RDFDatatype dt = derivedIntegers[IntegerNode.unpackDerivedSubtype(v)] ;
+                return NodeFactory.createLiteral(Long.toString(val), dt) ;
+            }
+            case LANG_STRING : {
+                String lex = LangStringNode.unpackLexicalForm(v) ;
+                String lang = LangStringNode.unpackLang(v) ;
+                return NodeFactory.createLiteral(lex, lang, false) ;
+            }
+            case GREGORIAN : {
+                String lex = GregorianNode.unpack(v) ;
+                return NodeFactory.createLiteral(lex, GregorianNode.unpackDatatype(v)) ;
+            }
+            case DURATION : {
+                String lex = DurationNode.unpack(v) ;
+                return NodeFactory.createLiteral(lex, XSDDatatype.XSDduration) ;
+            }
             default :
                 throw new TDBException("Unrecognized node id type: " + type) ;
         }
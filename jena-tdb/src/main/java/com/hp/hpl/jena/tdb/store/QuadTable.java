@@ -60,7 +60,10 @@ public class QuadTable extends TableBase
     /** Add a quad - return true if it was added, false if it already existed */
     public boolean add(Node g, Node s, Node p, Node o) 
     { 
-        return table.addRow(g,s,p,o) ;
+        boolean b = table.addRow(g,s,p,o) ;
+        if ( b && statsCounts != null )
+            statsCounts.addQuad(g) ;
+        return b ;
     }
     
     /** Delete a quad - return true if it was deleted, false if it didn't exist */
@@ -78,7 +81,10 @@ public class QuadTable extends TableBase
     /** Delete a quad - return true if it was deleted, false if it didn't exist */
     public boolean delete(Node g, Node s, Node p, Node o) 
     { 
-        return table.deleteRow(g, s, p, o) ;
+        boolean b = table.deleteRow(g, s, p, o) ;
+        if ( b && statsCounts != null )
+            statsCounts.deleteQuad(g) ;
+        return b ;
     }
     
     /** Find matching quads */
@@ -100,5 +106,9 @@ public class QuadTable extends TableBase
 
     /** Clear - does not clear the associated node tuple table */
     public void clearQuads()
-    { table.clear() ; }
+    { 
+        table.clear() ;
+        if ( statsCounts != null )
+            statsCounts.clearQuads() ;
+    }
 }
@@ -21,6 +21,7 @@ package com.hp.hpl.jena.tdb.store;
 import org.apache.jena.atlas.lib.Closeable ;
 import org.apache.jena.atlas.lib.Sync ;
 
+import com.hp.hpl.jena.tdb.solver.stats.StatsCounts ;
 import com.hp.hpl.jena.tdb.store.nodetable.NodeTable ;
 import com.hp.hpl.jena.tdb.store.nodetupletable.NodeTupleTable ;
 import com.hp.hpl.jena.tdb.store.nodetupletable.NodeTupleTableConcrete ;
@@ -30,6 +31,8 @@ import com.hp.hpl.jena.tdb.sys.DatasetControl ;
 public class TableBase implements Sync, Closeable
 {
     final protected NodeTupleTable table ;
+    // Counts kept up to date with adds and deletes, if any.
+    protected StatsCounts statsCounts = null ;
     
     protected TableBase(int N, TupleIndex[] indexes, NodeTable nodeTable, DatasetControl policy)
     {
@@ -39,6 +42,9 @@ public class TableBase implements Sync, Closeable
     public NodeTupleTable getNodeTupleTable()   { return table ; }
     public DatasetControl getPolicy()           { return table.getPolicy() ; }
     
+    public StatsCounts getStatsCounts()         { return statsCounts ; }
+    public void setStatsCounts(StatsCounts statsCounts) { this.statsCounts = statsCounts ; }
+    
 //  /** Clear - including the associated node tuple table */
 //  public void clear()
 //  { 
@@ -55,7 +55,10 @@ public class TripleTable extends TableBase
 
     public boolean add(Node s, Node p, Node o) 
     { 
-        return table.addRow(s, p, o) ;
+        boolean b = table.addRow(s, p, o) ;
+        if ( b && statsCounts != null )
+            statsCounts.addTriple(p, o) ;
+        return b ;
     }
     
     /** Delete a triple  - return true if it was deleted, false if it didn't exist */
@@ -67,7 +70,10 @@ public class TripleTable extends TableBase
     /** Delete a triple  - return true if it was deleted, false if it didn't exist */
     public boolean delete(Node s, Node p, Node o) 
     { 
-        return table.deleteRow(s, p, o) ;
+        boolean b = table.deleteRow(s, p, o) ;
+        if ( b && statsCounts != null )
+            statsCounts.deleteTriple(p, o) ;
+        return b ;
     }
 
     /** Find matching triples */
@@ -89,5 +95,9 @@ public class TripleTable extends TableBase
    
     /** Clear - does not clear the associated node tuple table */
     public void clearTriples()
-    { table.clear() ; }
+    { 
+        table.clear() ;
+        if ( statsCounts != null )
+            statsCounts.clearTriples() ;
+    }
 }
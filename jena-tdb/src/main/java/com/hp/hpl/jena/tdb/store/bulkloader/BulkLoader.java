@@ -34,12 +34,14 @@ import com.hp.hpl.jena.sparql.core.Quad ;
 import com.hp.hpl.jena.sparql.util.Utils ;
 import com.hp.hpl.jena.tdb.TDB ;
 import com.hp.hpl.jena.tdb.TDBException ;
+import com.hp.hpl.jena.tdb.setup.DatasetBuilderStd ;
 import com.hp.hpl.jena.tdb.solver.stats.Stats ;
 import com.hp.hpl.jena.tdb.solver.stats.StatsCollector ;
 import com.hp.hpl.jena.tdb.store.DatasetGraphTDB ;
 import com.hp.hpl.jena.tdb.store.nodetupletable.NodeTupleTable ;
 import com.hp.hpl.jena.tdb.store.nodetupletable.NodeTupleTableView ;
 import com.hp.hpl.jena.tdb.sys.Names ;
+import com.hp.hpl.jena.tdb.transaction.BlockTracker ;
 
 /** Overall framework for bulk loading */
 public class BulkLoader {
@@ -193,6 +195,8 @@ public class BulkLoader {
 
         DestinationDSG(final DatasetGraphTDB dsg, boolean showProgress) {
             this.dsg = dsg ;
+            // Not journaled: the next block-level backup is a full copy.
+            BlockTracker.delete(dsg.getLocation()) ;
             startedEmpty = dsg.isEmpty() ;
             monitor1 = createLoadMonitor(dsg, "triples", showProgress) ;
             monitor2 = createLoadMonitor(dsg, "quads", showProgress) ;
@@ -258,6 +262,7 @@ public class BulkLoader {
                 String filename = dsg.getLocation().getPath(Names.optStats) ;
                 Stats.write(filename, stats.results()) ;
             }
+            resetStats(dsg, startedEmpty) ;
             forceSync(dsg) ;
         }
 
@@ -289,6 +294,8 @@ public class BulkLoader {
         // Graph node is null for default graph.
         DestinationGraph(final DatasetGraphTDB dsg, Node graphNode, boolean showProgress) {
             this.dsg = dsg ;
+            // Not journaled: the next block-level backup is a full copy.
+            BlockTracker.delete(dsg.getLocation()) ;
             this.graphName = graphNode ;
 
             // Choose NodeTupleTable.
@@ -334,6 +341,7 @@ public class BulkLoader {
                 String filename = dsg.getLocation().getPath(Names.optStats) ;
                 Stats.write(filename, stats.results()) ;
             }
+            resetStats(dsg, startedEmpty) ;
             forceSync(dsg) ;
         }
 
@@ -365,6 +373,15 @@ public class BulkLoader {
         public void finish() {}
     }
 
+    // The loaders bypass the triple and quad tables so the maintained statistics
+    // are out of date. Pick up a new stats file, or stop maintaining them.
+    static void resetStats(DatasetGraphTDB dsg, boolean startedEmpty) {
+        if ( startedEmpty )
+            DatasetBuilderStd.attachStats(dsg) ;
+        else
+            dsg.setStatsCounts(null) ;
+    }
+
     static void forceSync(DatasetGraphTDB dsg) {
         // Force sync - we have been bypassing DSG tables.
         // THIS DOES NOT WORK IF modules check for SYNC necessity.
@@ -0,0 +1,416 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hp.hpl.jena.tdb.store.bulkloader ;
+
+import java.io.File ;
+import java.io.InputStream ;
+import java.util.* ;
+import java.util.concurrent.* ;
+
+import org.apache.jena.atlas.lib.ColumnMap ;
+import org.apache.jena.atlas.lib.Pair ;
+import org.apache.jena.atlas.lib.Tuple ;
+import org.apache.jena.riot.Lang ;
+import org.apache.jena.riot.RDFDataMgr ;
+import org.apache.jena.riot.RDFLanguages ;
+import org.apache.jena.riot.system.StreamRDF ;
+import org.slf4j.Logger ;
+
+import com.hp.hpl.jena.graph.Node ;
+import com.hp.hpl.jena.graph.Triple ;
+import com.hp.hpl.jena.sparql.core.Quad ;
+import com.hp.hpl.jena.sparql.util.Utils ;
+import com.hp.hpl.jena.tdb.TDB ;
+import com.hp.hpl.jena.tdb.TDBException ;
+import com.hp.hpl.jena.tdb.base.record.Record ;
+import com.hp.hpl.jena.tdb.index.RangeIndex ;
+import com.hp.hpl.jena.tdb.index.bplustree.BPlusTree ;
+import com.hp.hpl.jena.tdb.index.bplustree.BPlusTreeRewriter ;
+import com.hp.hpl.jena.tdb.lib.TupleLib ;
+import com.hp.hpl.jena.tdb.solver.stats.Stats ;
+import com.hp.hpl.jena.tdb.solver.stats.StatsCollector ;
+import com.hp.hpl.jena.tdb.store.DatasetGraphTDB ;
+import com.hp.hpl.jena.tdb.store.NodeId ;
+import com.hp.hpl.jena.tdb.store.bulkloader2.ExternalSort ;
+import com.hp.hpl.jena.tdb.store.nodetable.NodeTable ;
+import com.hp.hpl.jena.tdb.store.tupletable.TupleIndex ;
+import com.hp.hpl.jena.tdb.store.tupletable.TupleIndexRecord ;
+import com.hp.hpl.jena.tdb.sys.Names ;
+import com.hp.hpl.jena.tdb.transaction.BlockTracker ;
+
+/** Bulk loader where each stage runs on its own thread, with bounded queues between stages.
+ * <ul>
+ * <li>Parsing : batches of nodes.
+ * <li>Node table : converts batches of nodes to batches of NodeIds, allocating new NodeIds.
+ *     The distinct nodes of a batch are written to the node table in one call.
+ * <li>Indexes : one thread per index, for the triple and quad tables. An empty B+Tree index
+ *     is built by sorting all the tuples with an {@link ExternalSort} and packing them into
+ *     the B+Tree with {@link BPlusTreeRewriter}. Otherwise, tuples are collected into chunks,
+ *     sorted into the index order and then added.
+ * </ul>
+ * All indexes are written at the same time; there is no separate index phase.
+ */
+public class BulkLoaderParallel {
+    /** Number of triples or quads passed between stages at a time */
+    public static int       BatchSize             = 10 * 1000 ;
+    /** Number of batches waiting between stages */
+    public static int       QueueLength           = 10 ;
+    /** Number of tuples sorted together before adding to an index */
+    public static int       SortChunkSize         = 500 * 1000 ;
+    /** Memory for sorting tuples for empty indexes, shared between the indexes */
+    public static long      SortMemory            = 256L * 1024 * 1024 ;
+
+    static private Logger   loadLogger            = TDB.logLoader ;
+
+    // End of data marker on the queues.
+    private static final List<Node[]>        EndNodes  = Collections.emptyList() ;
+    private static final List<Tuple<NodeId>> EndTuples = Collections.emptyList() ;
+
+    /** Load into default graph */
+    public static void loadDefaultGraph(DatasetGraphTDB dsg, List<String> urls, boolean showProgress) {
+        load(dsg, null, urls, null, Lang.NTRIPLES, showProgress) ;
+    }
+
+    /** Load into default graph */
+    public static void loadDefaultGraph(DatasetGraphTDB dsg, InputStream input, boolean showProgress) {
+        load(dsg, null, null, input, Lang.NTRIPLES, showProgress) ;
+    }
+
+    /** Load into named graph */
+    public static void loadNamedGraph(DatasetGraphTDB dsg, Node graphNode, List<String> urls, boolean showProgress) {
+        load(dsg, graphNode, urls, null, Lang.NTRIPLES, showProgress) ;
+    }
+
+    /** Load into named graph */
+    public static void loadNamedGraph(DatasetGraphTDB dsg, Node graphNode, InputStream input, boolean showProgress) {
+        load(dsg, graphNode, null, input, Lang.NTRIPLES, showProgress) ;
+    }
+
+    /** Load into a dataset */
+    public static void loadDataset(DatasetGraphTDB dsg, List<String> urls, boolean showProgress) {
+        load(dsg, null, urls, null, Lang.NQUADS, showProgress) ;
+    }
+
+    /** Load into a dataset */
+    public static void loadDataset(DatasetGraphTDB dsg, InputStream input, boolean showProgress) {
+        load(dsg, null, null, input, Lang.NQUADS, showProgress) ;
+    }
+
+    private static void load(DatasetGraphTDB dsg, Node graphNode, List<String> urls, InputStream input,
+                             Lang dftLang, boolean showProgress) {
+        if ( graphNode != null && Quad.isDefaultGraph(graphNode) )
+            graphNode = null ;
+        LoadMonitor monitor = BulkLoader.createLoadMonitor(dsg, "tuples", showProgress) ;
+        boolean startedEmpty = dsg.isEmpty() ;
+        // Not journaled: the next block-level backup is a full copy.
+        BlockTracker.delete(dsg.getLocation()) ;
+
+        TupleIndex[] tripleIndexes = dsg.getTripleTable().getNodeTupleTable().getTupleTable().getIndexes() ;
+        TupleIndex[] quadIndexes = dsg.getQuadTable().getNodeTupleTable().getTupleTable().getIndexes() ;
+
+        BlockingQueue<List<Node[]>> parsed = new ArrayBlockingQueue<>(QueueLength) ;
+        List<IndexStage> indexStages = new ArrayList<>() ;
+        long sortMemory = SortMemory / (tripleIndexes.length+quadIndexes.length) ;
+        File tmpDir = dsg.getLocation().isMem() ? null : new File(dsg.getLocation().getDirectoryPath()) ;
+        for ( TupleIndex idx : tripleIndexes )
+            indexStages.add(new IndexStage(idx, sortMemory, tmpDir)) ;
+        for ( TupleIndex idx : quadIndexes )
+            indexStages.add(new IndexStage(idx, sortMemory, tmpDir)) ;
+
+        ParseStage parseStage = new ParseStage(parsed, graphNode, urls, input, dftLang) ;
+        NodeStage nodeStage = new NodeStage(parsed, dsg.getTripleTable().getNodeTupleTable().getNodeTable(),
+                                            indexStages.subList(0, tripleIndexes.length),
+                                            indexStages.subList(tripleIndexes.length, indexStages.size()),
+                                            monitor) ;
+
+        monitor.startLoad() ;
+        monitor.startDataPhase() ;
+        ExecutorService executor = Executors.newFixedThreadPool(2+indexStages.size()) ;
+        CompletionService<Object> stages = new ExecutorCompletionService<>(executor) ;
+        try {
+            stages.submit(parseStage) ;
+            stages.submit(nodeStage) ;
+            for ( IndexStage stage : indexStages )
+                stages.submit(stage) ;
+            // Wait for all stages. The first failure stops the rest.
+            for ( int i = 0 ; i < 2+indexStages.size() ; i++ )
+                stages.take().get() ;
+        } catch (InterruptedException ex) {
+            throw new TDBException("Interrupted during bulk load", ex) ;
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause() ;
+            if ( cause instanceof RuntimeException )
+                throw (RuntimeException)cause ;
+            throw new TDBException("Bulk load failed", cause) ;
+        } finally {
+            executor.shutdownNow() ;
+            for ( IndexStage stage : indexStages )
+                stage.close() ;
+        }
+        monitor.finishDataPhase() ;
+
+        for ( Pair<String, String> p : parseStage.prefixes ) {
+            if ( graphNode == null )
+                dsg.getPrefixes().getPrefixMapping().setNsPrefix(p.getLeft(), p.getRight()) ;
+            else if ( graphNode.isURI() )
+                dsg.getPrefixes().getPrefixMapping(graphNode.getURI()).setNsPrefix(p.getLeft(), p.getRight()) ;
+        }
+        monitor.finishLoad() ;
+        if ( !dsg.getLocation().isMem() && startedEmpty ) {
+            String filename = dsg.getLocation().getPath(Names.optStats) ;
+            Stats.write(filename, nodeStage.stats.results()) ;
+        }
+        BulkLoader.resetStats(dsg, startedEmpty) ;
+        BulkLoader.forceSync(dsg) ;
+    }
+
+    /** Parse, and send batches of nodes : s,p,o for triples, g,s,p,o for quads. */
+    private static final class ParseStage implements Callable<Object>, StreamRDF {
+        private final BlockingQueue<List<Node[]>> output ;
+        private final Node graphNode ;
+        private final List<String> urls ;
+        private final InputStream input ;
+        private final Lang dftLang ;
+        private List<Node[]> batch = new ArrayList<>(BatchSize) ;
+        final List<Pair<String, String>> prefixes = new ArrayList<>() ;
+
+        ParseStage(BlockingQueue<List<Node[]>> output, Node graphNode, List<String> urls, InputStream input, Lang dftLang) {
+            this.output = output ;
+            this.graphNode = graphNode ;
+            this.urls = urls ;
+            this.input = input ;
+            this.dftLang = dftLang ;
+        }
+
+        @Override
+        public Object call() throws InterruptedException {
+            if ( urls != null ) {
+                for ( String url : urls ) {
+                    loadLogger.info("Load: " + url + " -- " + Utils.nowAsString()) ;
+                    Lang lang = RDFLanguages.filenameToLang(url, dftLang) ;
+                    RDFDataMgr.parse(this, url, lang) ;
+                }
+            } else {
+                loadLogger.info("Load: from input stream -- " + Utils.nowAsString()) ;
+                RDFDataMgr.parse(this, input, dftLang) ;
+            }
+            flush() ;
+            output.put(EndNodes) ;
+            return null ;
+        }
+
+        private void send(Node[] row) {
+            batch.add(row) ;
+            if ( batch.size() >= BatchSize )
+                flush() ;
+        }
+
+        private void flush() {
+            if ( batch.isEmpty() )
+                return ;
+            try { output.put(batch) ; }
+            catch (InterruptedException ex) { throw new TDBException("Interrupted during parsing", ex) ; }
+            batch = new ArrayList<>(BatchSize) ;
+        }
+
+        @Override
+        public void triple(Triple triple) {
+            if ( graphNode == null )
+                send(new Node[]{triple.getSubject(), triple.getPredicate(), triple.getObject()}) ;
+            else
+                send(new Node[]{graphNode, triple.getSubject(), triple.getPredicate(), triple.getObject()}) ;
+        }
+
+        @Override
+        public void quad(Quad quad) {
+            // Loading a graph : only the default graph of quads formats is loaded.
+            if ( quad.isTriple() || quad.isDefaultGraph() )
+                triple(quad.asTriple()) ;
+            else if ( graphNode == null )
+                send(new Node[]{quad.getGraph(), quad.getSubject(), quad.getPredicate(), quad.getObject()}) ;
+        }
+
+        @Override
+        public void prefix(String prefix, String iri) {
+            prefixes.add(Pair.create(prefix, iri)) ;
+        }
+
+        @Override
+        public void start() {}
+
+        @Override
+        public void base(String base) {}
+
+        @Override
+        public void finish() {}
+    }
+
+    /** Turn nodes into NodeIds and send the tuples to every index of the triple or quad table. */
+    private static final class NodeStage implements Callable<Object> {
+        private final BlockingQueue<List<Node[]>> input ;
+        private final NodeTable nodeTable ;
+        private final List<IndexStage> tripleStages ;
+        private final List<IndexStage> quadStages ;
+        private final LoadMonitor monitor ;
+        final StatsCollector stats = new StatsCollector() ;
+
+        NodeStage(BlockingQueue<List<Node[]>> input, NodeTable nodeTable,
+                  List<IndexStage> tripleStages, List<IndexStage> quadStages, LoadMonitor monitor) {
+            this.input = input ;
+            this.nodeTable = nodeTable ;
+            this.tripleStages = tripleStages ;
+            this.quadStages = quadStages ;
+            this.monitor = monitor ;
+        }
+
+        @Override
+        public Object call() throws InterruptedException {
+            Map<Node, NodeId> batchIds = new HashMap<>() ;
+            List<Node> batchNodes = new ArrayList<>() ;
+            for ( ;; ) {
+                List<Node[]> batch = input.take() ;
+                if ( batch == EndNodes )
+                    break ;
+                List<Tuple<NodeId>> triples = new ArrayList<>(batch.size()) ;
+                List<Tuple<NodeId>> quads = new ArrayList<>() ;
+                // The distinct nodes of the batch, written in one call.
+                batchIds.clear() ;
+                batchNodes.clear() ;
+                for ( Node[] row : batch ) {
+                    for ( Node n : row ) {
+                        if ( ! batchIds.containsKey(n) ) {
+                            batchIds.put(n, null) ;
+                            batchNodes.add(n) ;
+                        }
+                    }
+                }
+                List<NodeId> nodeIds = nodeTable.getAllocateNodeIds(batchNodes) ;
+                for ( int i = 0 ; i < batchNodes.size() ; i++ )
+                    batchIds.put(batchNodes.get(i), nodeIds.get(i)) ;
+                for ( Node[] row : batch ) {
+                    NodeId[] ids = new NodeId[row.length] ;
+                    for ( int i = 0 ; i < row.length ; i++ )
+                        ids[i] = batchIds.get(row[i]) ;
+                    if ( row.length == 3 ) {
+                        triples.add(Tuple.create(ids)) ;
+                        stats.record(null, row[0], row[1], row[2]) ;
+                    } else {
+                        quads.add(Tuple.create(ids)) ;
+                        stats.record(row[0], row[1], row[2], row[3]) ;
+                    }
+                    monitor.dataItem() ;
+                }
+                send(triples, tripleStages) ;
+                send(quads, quadStages) ;
+            }
+            nodeTable.sync() ;
+            for ( IndexStage stage : tripleStages )
+                stage.input.put(EndTuples) ;
+            for ( IndexStage stage : quadStages )
+                stage.input.put(EndTuples) ;
+            return null ;
+        }
+
+        private static void send(List<Tuple<NodeId>> tuples, List<IndexStage> stages) throws InterruptedException {
+            if ( tuples.isEmpty() )
+                return ;
+            // Shared : index stages do not change the list. 
+            List<Tuple<NodeId>> x = Collections.unmodifiableList(tuples) ;
+            for ( IndexStage stage : stages )
+                stage.input.put(x) ;
+        }
+    }
+
+    /** Add tuples to one index. An empty B+Tree index is built from all the tuples, sorted;
+     *  otherwise tuples are sorted into the index order and added a chunk at a time. */
+    private static final class IndexStage implements Callable<Object> {
+        final BlockingQueue<List<Tuple<NodeId>>> input = new ArrayBlockingQueue<>(QueueLength) ;
+        private final TupleIndex index ;
+        private final Comparator<Tuple<NodeId>> indexOrder ;
+        private final List<Tuple<NodeId>> chunk = new ArrayList<>() ;
+        // Building an empty index : all the tuples, as index records.
+        private final ExternalSort sorter ;
+        private final BPlusTree bpt ;
+
+        IndexStage(TupleIndex index, long sortMemory, File tmpDir) {
+            this.index = index ;
+            this.indexOrder = indexOrder(index.getColumnMap()) ;
+            RangeIndex rIdx = ( index instanceof TupleIndexRecord ) ? ((TupleIndexRecord)index).getRangeIndex() : null ;
+            if ( rIdx instanceof BPlusTree && index.isEmpty() ) {
+                this.bpt = (BPlusTree)rIdx ;
+                this.sorter = new ExternalSort(bpt.getRecordFactory(), sortMemory, 1, tmpDir) ;
+            } else {
+                this.bpt = null ;
+                this.sorter = null ;
+            }
+        }
+
+        @Override
+        public Object call() throws InterruptedException {
+            for ( ;; ) {
+                List<Tuple<NodeId>> batch = input.take() ;
+                if ( batch == EndTuples )
+                    break ;
+                if ( sorter != null ) {
+                    for ( Tuple<NodeId> t : batch )
+                        sorter.add(TupleLib.record(bpt.getRecordFactory(), t, index.getColumnMap())) ;
+                    continue ;
+                }
+                chunk.addAll(batch) ;
+                if ( chunk.size() >= SortChunkSize )
+                    flush() ;
+            }
+            if ( sorter != null ) {
+                Iterator<Record> records = sorter.sorted() ;
+                BPlusTreeRewriter.packIntoBPlusTree(records, bpt) ;
+            } else
+                flush() ;
+            index.sync() ;
+            return null ;
+        }
+
+        private void flush() {
+            Collections.sort(chunk, indexOrder) ;
+            for ( Tuple<NodeId> t : chunk )
+                index.add(t) ;
+            chunk.clear() ;
+        }
+
+        /** Remove any temporary files */
+        void close() {
+            if ( sorter != null )
+                sorter.close() ;
+        }
+    }
+
+    private static Comparator<Tuple<NodeId>> indexOrder(final ColumnMap colMap) {
+        return new Comparator<Tuple<NodeId>>() {
+            @Override
+            public int compare(Tuple<NodeId> t1, Tuple<NodeId> t2) {
+                for ( int i = 0 ; i < t1.size() ; i++ ) {
+                    int slot = colMap.fetchSlotIdx(i) ;
+                    int x = Long.compare(t1.get(slot).getId(), t2.get(slot).getId()) ;
+                    if ( x != 0 )
+                        return x ;
+                }
+                return 0 ;
+            }
+        } ;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hp.hpl.jena.tdb.store.bulkloader2;
+
+import java.io.File ;
+import java.io.FileNotFoundException ;
+import java.io.FileOutputStream ;
+import java.io.InputStream ;
+import java.io.OutputStream ;
+import java.util.Arrays ;
+import java.util.Iterator ;
+import java.util.List ;
+
+import org.apache.jena.atlas.AtlasException ;
+import org.apache.jena.atlas.io.IO ;
+import org.apache.jena.atlas.lib.ColumnMap ;
+import org.apache.jena.atlas.lib.FileOps ;
+import org.apache.jena.atlas.logging.ProgressLogger ;
+import org.apache.jena.riot.RiotReader ;
+import org.slf4j.Logger ;
+import tdb.cmdline.CmdTDB ;
+
+import com.hp.hpl.jena.sparql.util.Utils ;
+import com.hp.hpl.jena.tdb.TDB ;
+import com.hp.hpl.jena.tdb.base.file.Location ;
+import com.hp.hpl.jena.tdb.base.record.Record ;
+import com.hp.hpl.jena.tdb.base.record.RecordFactory ;
+import com.hp.hpl.jena.tdb.setup.DatasetBuilderStd ;
+import com.hp.hpl.jena.tdb.solver.stats.Stats ;
+import com.hp.hpl.jena.tdb.store.DatasetGraphTDB ;
+import com.hp.hpl.jena.tdb.store.bulkloader.BulkLoader ;
+import com.hp.hpl.jena.tdb.store.bulkloader2.CmdNodeTableBuilder.NodeTableBuilder ;
+import com.hp.hpl.jena.tdb.sys.Names ;
+import com.hp.hpl.jena.tdb.sys.SystemTDB ;
+
+/** The tdbloader2 process, in-process : build the node table, writing the tuples to work files,
+ *  then build each index by sorting the tuples with an {@link ExternalSort} into
+ *  the index order and packing them into a B+Tree.
+ *  <p>
+ *  As tdbloader2, the location must be a new, empty database on disk, and prefixes are not loaded.
+ */
+public class BulkLoader2
+{
+    private static Logger loadLogger = TDB.logLoader ;
+
+    /** Bytes of records held in memory by the sort of each index */
+    public static long MemoryBudget = Runtime.getRuntime().maxMemory()/4 ;
+    /** Threads sorting runs of records */
+    public static int SortThreads = Math.max(1, Runtime.getRuntime().availableProcessors()-1) ;
+
+    public static void main(String...argv)
+    {
+        CmdTDB.init() ;
+        if ( argv.length < 2 )
+        {
+            System.err.println("Usage: Location dataFile ...") ;
+            System.exit(1) ;
+        }
+        Location location = Location.create(argv[0]) ;
+        load(location, Arrays.asList(argv).subList(1, argv.length)) ;
+    }
+
+    public static void load(Location location, List<String> urls)
+    {
+        load(location, urls, MemoryBudget, SortThreads) ;
+    }
+
+    public static void load(Location location, List<String> urls, long memoryBudget, int sortThreads)
+    {
+        if ( location.isMem() )
+            throw new AtlasException("BulkLoader2: location must be on disk: "+location) ;
+        DatasetGraphTDB dsg = DatasetBuilderStd.create(location) ;
+        if ( ! dsg.isEmpty() )
+            throw new AtlasException("BulkLoader2: database is not empty: "+location) ;
+        // Only the node table is used here.
+        dsg.getTripleTable().getNodeTupleTable().getTupleTable().close();
+        dsg.getQuadTable().getNodeTupleTable().getTupleTable().close();
+        dsg.getPrefixes().close() ;
+
+        String dataFileTriples = location.getPath("triples", "tmp") ;
+        String dataFileQuads = location.getPath("quads", "tmp") ;
+        OutputStream outputTriples = null ;
+        OutputStream outputQuads = null ;
+        try { 
+            outputTriples = new FileOutputStream(dataFileTriples) ; 
+            outputQuads = new FileOutputStream(dataFileQuads) ;
+        }
+        catch (FileNotFoundException e) { throw new AtlasException(e) ; }
+
+        try {
+            ProgressLogger monitor = new ProgressLogger(loadLogger, "Data", BulkLoader.DataTickPoint, BulkLoader.superTick) ;
+            NodeTableBuilder sink = new NodeTableBuilder(dsg, monitor, outputTriples, outputQuads) ;
+            monitor.start() ;
+            sink.startBulk() ;
+            for ( String filename : urls )
+            {
+                loadLogger.info("Load: "+filename+" -- "+Utils.nowAsString()) ;
+                RiotReader.parse(filename, sink) ;
+            }
+            sink.finishBulk() ;
+            IO.close(outputTriples) ;
+            IO.close(outputQuads) ;
+            Stats.write(location.getPath(Names.optStats), sink.getCollector().results()) ;
+            dsg.getTripleTable().getNodeTupleTable().getNodeTable().close() ;
+            monitor.finish() ;
+
+            File tmpDir = new File(location.getDirectoryPath()) ;
+            for ( String indexName : Names.tripleIndexes )
+                buildIndex(location, indexName, dataFileTriples, memoryBudget, sortThreads, tmpDir) ;
+            for ( String indexName : Names.quadIndexes )
+                buildIndex(location, indexName, dataFileQuads, memoryBudget, sortThreads, tmpDir) ;
+        } finally {
+            IO.closeSilent(outputTriples) ;
+            IO.closeSilent(outputQuads) ;
+            FileOps.deleteSilent(dataFileTriples) ;
+            FileOps.deleteSilent(dataFileQuads) ;
+        }
+    }
+
+    /** Build one index from a work file of tuples, written by {@link WriteRows} in primary order */ 
+    public static void buildIndex(Location location, String indexName, String dataFile,
+                                  long memoryBudget, int sortThreads, File tmpDir)
+    {
+        loadLogger.info("Index "+indexName+" -- "+Utils.nowAsString()) ;
+        int tupleLength = indexName.length() ;
+        ColumnMap colMap = new ColumnMap(CmdIndexBuild.primaryOrder(indexName), indexName) ;
+        RecordFactory recordFactory = new RecordFactory(tupleLength*SystemTDB.SizeOfNodeId, 0) ;
+        InputStream input = IO.openFile(dataFile) ;
+        try ( ExternalSort sorter = new ExternalSort(recordFactory, memoryBudget, sortThreads, tmpDir) ) {
+            Iterator<Record> iter = new RecordsFromInput(input, tupleLength, colMap, 1000) ;
+            while ( iter.hasNext() )
+                sorter.add(iter.next()) ;
+            CmdIndexBuild.build(location, indexName, sorter.sorted()) ;
+        } finally { IO.closeSilent(input) ; }
+    }
+}
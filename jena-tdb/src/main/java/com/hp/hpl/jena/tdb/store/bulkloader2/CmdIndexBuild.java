@@ -24,6 +24,7 @@ import java.util.Iterator ;
 import org.apache.jena.atlas.AtlasException ;
 import org.apache.jena.atlas.io.IO ;
 import org.apache.jena.atlas.lib.ColumnMap ;
+import org.apache.jena.atlas.lib.FileOps ;
 import org.apache.jena.atlas.logging.LogCtl ;
 import tdb.cmdline.CmdTDB ;
 
@@ -38,6 +39,7 @@ import com.hp.hpl.jena.tdb.index.bplustree.BPlusTreeParams ;
 import com.hp.hpl.jena.tdb.index.bplustree.BPlusTreeRewriter ;
 import com.hp.hpl.jena.tdb.sys.Names ;
 import com.hp.hpl.jena.tdb.sys.SystemTDB ;
+import com.hp.hpl.jena.tdb.transaction.BlockTracker ;
 
 /** From a file of records, build a (packed) index */ 
 public class CmdIndexBuild
@@ -74,40 +76,35 @@ public class CmdIndexBuild
         //InputStream input = System.in ;
         InputStream input = IO.openFile(dataFile) ;
         
-        int keyLength = SystemTDB.SizeOfNodeId * indexName.length() ;
-        int valueLength = 0 ;
-        
-        // The name is the order.
-        String primary = indexName ;  
+        int tupleLength = indexName.length() ;
+        ColumnMap colMap = new ColumnMap(primaryOrder(indexName), indexName) ;
         
-        // Scope for optimization:
-        // Null column map => no churn.
-        // Do record -> record copy, not Tuple, Tuple copy.
-
-        String primaryOrder ;
-        int dftKeyLength ;
-        int dftValueLength ;
+        int rowBlock = 1000 ;
+        Iterator<Record> iter = new RecordsFromInput(input, tupleLength, colMap, rowBlock) ;
+        build(location, indexName, iter) ;
+    }
+    
+    /** Primary order for the tuples of an index : "SPO" for triple indexes, "GSPO" for quad indexes */ 
+    public static String primaryOrder(String indexName)
+    {
         int tupleLength = indexName.length() ;
-
         if ( tupleLength == 3 )
-        {
-            primaryOrder = Names.primaryIndexTriples ;
-            dftKeyLength = SystemTDB.LenIndexTripleRecord ;
-            dftValueLength = 0 ;
-        }
-        else if ( tupleLength == 4 )
-        {
-            primaryOrder = Names.primaryIndexQuads ;
-            dftKeyLength = SystemTDB.LenIndexQuadRecord ;
-            dftValueLength = 0 ;
-        }
-        else
-        {
-            throw new AtlasException("Index name: "+indexName) ;
-        }
-        
-        ColumnMap colMap = new ColumnMap(primaryOrder, indexName) ;
-
+            return Names.primaryIndexTriples ;
+        if ( tupleLength == 4 )
+            return Names.primaryIndexQuads ;
+        throw new AtlasException("Index name: "+indexName) ;
+    }
+    
+    /** Build a packed index from records in index order, without duplicates.
+     *  Any existing index files of that name are replaced.
+     */
+    public static void build(Location location, String indexName, Iterator<Record> sortedRecords)
+    {
+        int tupleLength = indexName.length() ;
+        int dftKeyLength = SystemTDB.SizeOfNodeId * tupleLength ;
+        int dftValueLength = 0 ;
+        // Check the name.
+        primaryOrder(indexName) ;
 
         // -1? Write only.
         // Also flush cache every so often => block writes (but not sequential so boring).
@@ -124,13 +121,16 @@ public class CmdIndexBuild
         int blockSizeRecords = blockSize ;
 
         FileSet destination = new FileSet(location, indexName) ;
+        // Not journaled: the next block-level backup is a full copy.
+        BlockTracker.delete(location) ;
+        // As the tdbloader2 scripts : start from empty files.
+        FileOps.delete(destination.filename(Names.bptExtTree)) ;
+        FileOps.delete(destination.filename(Names.bptExtRecords)) ;
 
         BlockMgr blkMgrNodes = BlockMgrFactory.create(destination, Names.bptExtTree, blockSizeNodes, readCacheSize, writeCacheSize) ;
         BlockMgr blkMgrRecords = BlockMgrFactory.create(destination, Names.bptExtRecords, blockSizeRecords, readCacheSize, writeCacheSize) ;
         
-        int rowBlock = 1000 ;
-        Iterator<Record> iter = new RecordsFromInput(input, tupleLength, colMap, rowBlock) ;
-        BPlusTree bpt2 = BPlusTreeRewriter.packIntoBPlusTree(iter, bptParams, recordFactory, blkMgrNodes, blkMgrRecords) ;
+        BPlusTree bpt2 = BPlusTreeRewriter.packIntoBPlusTree(sortedRecords, bptParams, recordFactory, blkMgrNodes, blkMgrRecords) ;
         bpt2.close() ;
     }
 }
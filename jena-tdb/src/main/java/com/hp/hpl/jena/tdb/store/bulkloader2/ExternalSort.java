@@ -0,0 +1,309 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hp.hpl.jena.tdb.store.bulkloader2;
+
+import java.io.* ;
+import java.util.* ;
+import java.util.concurrent.* ;
+
+import org.apache.jena.atlas.AtlasException ;
+import org.apache.jena.atlas.io.IO ;
+
+import com.hp.hpl.jena.tdb.base.record.Record ;
+import com.hp.hpl.jena.tdb.base.record.RecordFactory ;
+
+/** Sort fixed-width records, with duplicate keys removed, using temporary files
+ *  when the records do not fit in the memory budget.
+ *  <p>
+ *  Records are collected into runs. Each full run is sorted and written to a
+ *  temporary file by one of a pool of threads while the next run is filled.
+ *  The run files are then merged, {@link #MergeFanIn} at a time.
+ *  <p>
+ *  Use once : {@link #add} the records, call {@link #sorted}, then {@link #close}.
+ */
+public class ExternalSort implements Closeable
+{
+    /** Maximum number of files merged in one pass */
+    public static int MergeFanIn = 64 ;
+    /** Minimum number of records in a run */
+    public static int MinRunSize = 1000 ;
+    // Estimate of the space used by a Record object, in addition to the bytes of the record.
+    private static final int RecordOverhead = 64 ;
+
+    private static final Comparator<Record> keyOrder = new Comparator<Record>() {
+        @Override
+        public int compare(Record r1, Record r2) { return Record.compareByKey(r1, r2) ; }
+    } ;
+
+    private final RecordFactory factory ;
+    private final File tmpDir ;
+    private final int runSize ;
+    private final ExecutorService executor ;
+    private final Semaphore runsInMemory ;
+    private final List<Future<File>> runs = new ArrayList<>() ;
+    private final List<File> files = Collections.synchronizedList(new ArrayList<File>()) ;
+    private List<Record> buffer ;
+    private boolean finished = false ;
+
+    /**
+     * @param factory       Describes the records
+     * @param memoryBudget  Approximate number of bytes for records held in memory  
+     * @param threads       Number of threads sorting and writing runs
+     * @param tmpDir        Directory for temporary files; null means the system default.
+     */
+    public ExternalSort(RecordFactory factory, long memoryBudget, int threads, File tmpDir)
+    {
+        if ( threads < 1 )
+            throw new IllegalArgumentException("ExternalSort: threads must be positive: "+threads) ;
+        this.factory = factory ;
+        this.tmpDir = tmpDir ;
+        // One run filling and one being sorted by each thread.
+        long perRun = memoryBudget / ( (threads+1L) * (factory.recordLength()+RecordOverhead) ) ;
+        this.runSize = (int)Math.min(Integer.MAX_VALUE-8, Math.max(MinRunSize, perRun)) ;
+        this.executor = Executors.newFixedThreadPool(threads) ;
+        this.runsInMemory = new Semaphore(threads) ;
+        this.buffer = new ArrayList<>() ;
+    }
+
+    public void add(Record record)
+    {
+        if ( finished )
+            throw new AtlasException("ExternalSort: add after sorted()") ;
+        buffer.add(record) ;
+        if ( buffer.size() >= runSize )
+            spill() ;
+    }
+
+    /** Number of run files written so far */
+    public int getRunCount()    { return runs.size() ; }
+
+    /** Finish adding records and return them in key order, without duplicates */
+    public Iterator<Record> sorted()
+    {
+        if ( finished )
+            throw new AtlasException("ExternalSort: sorted() already called") ;
+        finished = true ;
+        if ( runs.isEmpty() )
+        {
+            // All in memory.
+            executor.shutdown() ;
+            Collections.sort(buffer, keyOrder) ;
+            Iterator<Record> iter = new Distinct(buffer.iterator()) ;
+            buffer = null ;
+            return iter ;
+        }
+        if ( ! buffer.isEmpty() )
+            spill() ;
+        buffer = null ;
+
+        List<File> level = new ArrayList<>() ;
+        try {
+            for ( Future<File> f : runs )
+                level.add(f.get()) ;
+        } catch (InterruptedException ex) {
+            throw new AtlasException("ExternalSort: interrupted", ex) ;
+        } catch (ExecutionException ex) {
+            throw new AtlasException("ExternalSort: writing run failed", ex.getCause()) ;
+        } finally {
+            executor.shutdown() ;
+        }
+
+        // Merge passes until one final merge will do.
+        while ( level.size() > MergeFanIn )
+        {
+            List<File> next = new ArrayList<>() ;
+            for ( int i = 0 ; i < level.size() ; i += MergeFanIn )
+            {
+                List<File> group = level.subList(i, Math.min(i+MergeFanIn, level.size())) ;
+                Iterator<Record> iter = merge(group) ;
+                next.add(write(iter)) ;
+                for ( File f : group )
+                    delete(f) ;
+            }
+            level = next ;
+        }
+        return merge(level) ;
+    }
+
+    /** Delete the temporary files */
+    @Override
+    public void close()
+    {
+        executor.shutdownNow() ;
+        synchronized(files)
+        {
+            for ( File f : files )
+                f.delete() ;
+            files.clear() ;
+        }
+    }
+
+    private void spill()
+    {
+        final List<Record> run = buffer ;
+        buffer = new ArrayList<>() ;
+        try { runsInMemory.acquire() ; }
+        catch (InterruptedException ex) { throw new AtlasException("ExternalSort: interrupted", ex) ; }
+        Callable<File> task = new Callable<File>() {
+            @Override
+            public File call()
+            {
+                try {
+                    Collections.sort(run, keyOrder) ;
+                    return write(new Distinct(run.iterator())) ;
+                } finally { runsInMemory.release() ; }
+            }
+        } ;
+        runs.add(executor.submit(task)) ;
+    }
+
+    private File write(Iterator<Record> iter)
+    {
+        OutputStream out = null ;
+        try {
+            File f = File.createTempFile("sort", ".tmp", tmpDir) ;
+            files.add(f) ;
+            out = new BufferedOutputStream(new FileOutputStream(f), 128*1024) ;
+            while ( iter.hasNext() )
+            {
+                Record r = iter.next() ;
+                out.write(r.getKey()) ;
+                if ( factory.hasValue() )
+                    out.write(r.getValue()) ;
+            }
+            out.close() ;
+            out = null ;
+            return f ;
+        } catch (IOException ex) { throw new AtlasException(ex) ; }
+        finally { IO.closeSilent(out) ; }
+    }
+
+    private void delete(File f)
+    {
+        files.remove(f) ;
+        f.delete() ;
+    }
+
+    private Iterator<Record> merge(List<File> group)
+    {
+        PriorityQueue<RunReader> queue = new PriorityQueue<>(group.size(), new Comparator<RunReader>() {
+            @Override
+            public int compare(RunReader r1, RunReader r2) { return Record.compareByKey(r1.current, r2.current) ; }
+        }) ;
+        for ( File f : group )
+        {
+            RunReader r = new RunReader(f, factory) ;
+            if ( r.advance() )
+                queue.add(r) ;
+        }
+        return new Distinct(new Merge(queue)) ;
+    }
+
+    /** Read the records of a run file */
+    private static final class RunReader
+    {
+        private final RecordFactory factory ;
+        private final DataInputStream in ;
+        Record current = null ;
+
+        RunReader(File file, RecordFactory factory)
+        {
+            this.factory = factory ;
+            try { this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64*1024)) ; }
+            catch (FileNotFoundException ex) { throw new AtlasException(ex) ; }
+        }
+
+        boolean advance()
+        {
+            Record r = factory.create() ;
+            try {
+                in.readFully(r.getKey()) ;
+                if ( factory.hasValue() )
+                    in.readFully(r.getValue()) ;
+                current = r ;
+                return true ;
+            } catch (EOFException ex) {
+                IO.close(in) ;
+                current = null ;
+                return false ;
+            } catch (IOException ex) { throw new AtlasException(ex) ; }
+        }
+    }
+
+    /** Multi-way merge of sorted run files */
+    private static final class Merge implements Iterator<Record>
+    {
+        private final PriorityQueue<RunReader> queue ;
+
+        Merge(PriorityQueue<RunReader> queue)    { this.queue = queue ; }
+
+        @Override
+        public boolean hasNext()                { return ! queue.isEmpty() ; }
+
+        @Override
+        public Record next()
+        {
+            RunReader r = queue.poll() ;
+            if ( r == null )
+                throw new NoSuchElementException() ;
+            Record x = r.current ;
+            if ( r.advance() )
+                queue.add(r) ;
+            return x ;
+        }
+
+        @Override
+        public void remove()                    { throw new UnsupportedOperationException() ; }
+    }
+
+    /** Skip records with the same key as the previous one, in a sorted stream */
+    private static final class Distinct implements Iterator<Record>
+    {
+        private final Iterator<Record> iter ;
+        private Record previous = null ;
+        private Record slot = null ;
+
+        Distinct(Iterator<Record> iter)         { this.iter = iter ; }
+
+        @Override
+        public boolean hasNext()
+        {
+            while ( slot == null && iter.hasNext() )
+            {
+                Record r = iter.next() ;
+                if ( previous == null || ! Record.keyEQ(previous, r) )
+                    slot = r ;
+            }
+            return slot != null ;
+        }
+
+        @Override
+        public Record next()
+        {
+            if ( ! hasNext() )
+                throw new NoSuchElementException() ;
+            previous = slot ;
+            slot = null ;
+            return previous ;
+        }
+
+        @Override
+        public void remove()                    { throw new UnsupportedOperationException() ; }
+    }
+}
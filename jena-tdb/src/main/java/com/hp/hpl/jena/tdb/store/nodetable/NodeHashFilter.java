@@ -0,0 +1,264 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hp.hpl.jena.tdb.store.nodetable;
+
+import java.io.* ;
+import java.util.Arrays ;
+import java.util.Iterator ;
+
+import org.apache.jena.atlas.io.IO ;
+import org.apache.jena.atlas.lib.Bytes ;
+import org.slf4j.Logger ;
+import org.slf4j.LoggerFactory ;
+
+import com.hp.hpl.jena.tdb.base.record.Record ;
+import com.hp.hpl.jena.tdb.index.Index ;
+
+/** A Bloom filter over the node hashes in a node table index.
+ *  "No" means the node is not in the index; "maybe" means look in the index.
+ *  <p>
+ *  The filter grows by adding a filter twice the size of the last one,
+ *  each with half the false positive rate, so the overall rate stays within the setting.
+ *  <p>
+ *  The filter is saved when the node table is closed, together with the length
+ *  of the node data file at that point. When opened, a filter file for a different
+ *  length or a different false positive rate is ignored, and the filter
+ *  is rebuilt from the index.
+ *  <p>
+ *  Not synchronized: adds must be done under the node table lock. 
+ *  Lookups can be done at any time.
+ */
+public class NodeHashFilter
+{
+    private static Logger log = LoggerFactory.getLogger(NodeHashFilter.class) ;
+    
+    private static final int Magic      = 0x54444248 ;
+    private static final int Version    = 1 ;
+    /** Smallest number of hashes a filter is sized for */ 
+    public static final long MinCapacity = 64*1024 ;
+    
+    private final String filename ;
+    private final double fpr ;
+    private volatile Bits[] filters ;
+    private boolean changed = false ;
+
+    /** A filter for the hashes of an index, from the file if it is up to date, else built from the index.
+     *  A null filename means the filter is not saved.
+     */
+    public static NodeHashFilter open(String filename, double fpr, Index index, long dataLength)
+    {
+        if ( fpr <= 0 || fpr >= 1 )
+            throw new IllegalArgumentException("NodeHashFilter: false positive rate must be between 0 and 1: "+fpr) ;
+        NodeHashFilter filter = new NodeHashFilter(filename, fpr) ;
+        if ( filename != null && filter.read(dataLength) )
+            return filter ;
+        filter.rebuild(index) ;
+        return filter ;
+    }
+
+    /** An empty filter */
+    public static NodeHashFilter create(double fpr)
+    {
+        NodeHashFilter filter = new NodeHashFilter(null, fpr) ;
+        filter.filters = new Bits[]{ new Bits(MinCapacity, fpr/2) } ;
+        return filter ;
+    }
+    
+    private NodeHashFilter(String filename, double fpr)
+    {
+        this.filename = filename ;
+        this.fpr = fpr ;
+    }
+    
+    public double getFPR()          { return fpr ; }
+
+    /** Number of hashes added */ 
+    public long count()
+    {
+        long x = 0 ;
+        for ( Bits b : filters )
+            x += b.count ;
+        return x ;
+    }
+    
+    /** Return false if the hash has definitely not been added to the filter. */ 
+    public boolean mightContain(byte[] hash)
+    {
+        long h1 = h1(hash) ;
+        long h2 = h2(hash) ;
+        for ( Bits b : filters )
+        {
+            if ( b.mightContain(h1, h2) )
+                return true ;
+        }
+        return false ;
+    }
+    
+    public void add(byte[] hash)
+    {
+        Bits[] x = filters ;
+        Bits last = x[x.length-1] ;
+        if ( last.count >= last.capacity )
+        {
+            // Next filter : twice the size, half the false positive rate.
+            last = new Bits(2*last.capacity, fpr/(2L<<x.length)) ;
+            Bits[] x2 = Arrays.copyOf(x, x.length+1) ;
+            x2[x.length] = last ;
+            filters = x2 ;
+        }
+        last.add(h1(hash), h2(hash)) ;
+        changed = true ;
+    }
+
+    /** Clear and refill from the keys of an index. */
+    public void rebuild(Index index)
+    {
+        long n = index.size() ;
+        Bits b = new Bits(Math.max(MinCapacity, 2*n), fpr/2) ;
+        Iterator<Record> iter = index.iterator() ;
+        for ( ; iter.hasNext() ; )
+        {
+            byte[] k = iter.next().getKey() ;
+            b.add(h1(k), h2(k)) ;
+        }
+        filters = new Bits[]{ b } ;
+        changed = true ;
+    }
+
+    /** Save the filter, if it has changed, stamped with the length of the node data. */ 
+    public void save(long dataLength)
+    {
+        if ( filename == null || ! changed )
+            return ;
+        File tmp = new File(filename+".tmp") ;
+        try ( DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp))) ) {
+            Bits[] x = filters ;
+            out.writeInt(Magic) ;
+            out.writeInt(Version) ;
+            out.writeLong(dataLength) ;
+            out.writeDouble(fpr) ;
+            out.writeInt(x.length) ;
+            for ( Bits b : x )
+            {
+                out.writeLong(b.capacity) ;
+                out.writeLong(b.count) ;
+                out.writeInt(b.k) ;
+                out.writeInt(b.words.length) ;
+                for ( long w : b.words )
+                    out.writeLong(w) ;
+            }
+        } catch (IOException ex) { IO.exception(ex) ; }
+        File f = new File(filename) ;
+        f.delete() ;
+        if ( ! tmp.renameTo(f) )
+            log.warn("Failed to rename "+tmp+" to "+f) ;
+        changed = false ;
+    }
+
+    /** Read the filter file; return false if it is missing or does not match. */
+    private boolean read(long dataLength)
+    {
+        File f = new File(filename) ;
+        if ( ! f.exists() )
+            return false ;
+        try ( DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f))) ) {
+            if ( in.readInt() != Magic || in.readInt() != Version )
+                return false ;
+            if ( in.readLong() != dataLength || in.readDouble() != fpr )
+                return false ;
+            int n = in.readInt() ;
+            Bits[] x = new Bits[n] ;
+            for ( int i = 0 ; i < n ; i++ )
+            {
+                long capacity = in.readLong() ;
+                long count = in.readLong() ;
+                int k = in.readInt() ;
+                long[] words = new long[in.readInt()] ;
+                for ( int j = 0 ; j < words.length ; j++ )
+                    words[j] = in.readLong() ;
+                x[i] = new Bits(capacity, count, k, words) ;
+            }
+            if ( n == 0 )
+                return false ;
+            filters = x ;
+            return true ;
+        } catch (IOException ex) {
+            log.warn("Failed to read "+filename+" : "+ex.getMessage()) ;
+            return false ;
+        }
+    }
+
+    // The hash is MD5 : take the bit positions straight from it (Kirsch-Mitzenmacher).
+    private static long h1(byte[] hash)     { return Bytes.getLong(hash, 0) ; }
+    private static long h2(byte[] hash)     { return Bytes.getLong(hash, hash.length-8) | 1 ; }
+    
+    private static final class Bits
+    {
+        final long capacity ;
+        long count ;
+        final int k ;
+        final long[] words ;
+        final long numBits ;
+
+        Bits(long capacity, double p)
+        {
+            this.capacity = capacity ;
+            this.count = 0 ;
+            double ln2 = Math.log(2) ;
+            long m = (long)Math.ceil(-capacity*Math.log(p)/(ln2*ln2)) ;
+            this.words = new long[(int)Math.max(1, (m+63)/64)] ;
+            this.numBits = 64L*words.length ;
+            this.k = Math.max(1, (int)Math.round(ln2*numBits/capacity)) ;
+        }
+        
+        Bits(long capacity, long count, int k, long[] words)
+        {
+            this.capacity = capacity ;
+            this.count = count ;
+            this.k = k ;
+            this.words = words ;
+            this.numBits = 64L*words.length ;
+        }
+
+        boolean mightContain(long h1, long h2)
+        {
+            long h = h1 ;
+            for ( int i = 0 ; i < k ; i++ )
+            {
+                long bit = (h & Long.MAX_VALUE) % numBits ;
+                if ( ( words[(int)(bit >>> 6)] & (1L << bit) ) == 0 )
+                    return false ;
+                h += h2 ;
+            }
+            return true ;
+        }
+        
+        void add(long h1, long h2)
+        {
+            long h = h1 ;
+            for ( int i = 0 ; i < k ; i++ )
+            {
+                long bit = (h & Long.MAX_VALUE) % numBits ;
+                words[(int)(bit >>> 6)] |= (1L << bit) ;
+                h += h2 ;
+            }
+            count++ ;
+        }
+    }
+}
@@ -19,6 +19,7 @@
 package com.hp.hpl.jena.tdb.store.nodetable;
 
 import java.util.Iterator ;
+import java.util.List ;
 
 import org.apache.jena.atlas.lib.Closeable ;
 import org.apache.jena.atlas.lib.Pair ;
@@ -37,12 +38,24 @@ public interface NodeTable extends Sync, Closeable
     /** Store the node in the node table (if not already present) and return the allocated Id. */
     public NodeId getAllocateNodeId(Node node) ;
     
+    /** Store a number of nodes (if not already present) and return the allocated Ids, in the same order.
+     *  This is for adding many nodes at once, such as a batch of a bulk load:
+     *  the underlying index is accessed in one pass, in key order.
+     */
+    public List<NodeId> getAllocateNodeIds(List<Node> nodes) ;
+    
     /** Look up node and return the NodeId - return NodeId.NodeDoesNotExist if not found */
     public NodeId getNodeIdForNode(Node node) ;
     
     /** Look up node id and return the Node - return null if not found */
     public Node getNodeForNodeId(NodeId id) ;
     
+    /** Look up a number of node ids and return the Nodes, in the same order - an entry is null if not found.
+     *  This is for turning many NodeIds into Nodes at once, such as for a block of results:
+     *  the underlying storage is read in one pass, in file order.
+     */
+    public List<Node> getNodesForNodeIds(List<NodeId> ids) ;
+    
     /** Test whether the node table contains an entry for node */
     public boolean containsNode(Node node) ;
 
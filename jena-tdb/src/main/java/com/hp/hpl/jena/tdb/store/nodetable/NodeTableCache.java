@@ -18,13 +18,18 @@
 
 package com.hp.hpl.jena.tdb.store.nodetable;
 
+import java.util.ArrayList ;
+import java.util.Arrays ;
 import java.util.Iterator ;
+import java.util.List ;
 
 import org.apache.jena.atlas.iterator.Iter ;
 import org.apache.jena.atlas.lib.Cache ;
 import org.apache.jena.atlas.lib.CacheFactory ;
 import org.apache.jena.atlas.lib.CacheSet ;
+import org.apache.jena.atlas.lib.CacheStats ;
 import org.apache.jena.atlas.lib.Pair ;
+import org.apache.jena.atlas.lib.cache.CacheConcurrent ;
 import org.apache.jena.atlas.logging.Log ;
 
 import com.hp.hpl.jena.graph.Node ;
@@ -35,6 +40,10 @@ import com.hp.hpl.jena.tdb.store.NodeId ;
 /** Cache wrapper around a NodeTable.  
  * Assumes all access goes through this wrapper.
  * Read-cache - write caching is done via the object file used by the base NodeTable. 
+ * <p>
+ * In "concurrent" mode, cache hits do not take a lock and a cache miss locks
+ * only one of a number of stripes, chosen by the Node or NodeId being looked up.
+ * Otherwise all access is under a single lock.
  */ 
 public class NodeTableCache implements NodeTable
 {
@@ -48,31 +57,75 @@ public class NodeTableCache implements NodeTable
     private CacheSet<Node> notPresent = null ;
     private NodeTable baseTable ;
     private Object lock = new Object() ;
+    // Concurrent mode: the locks for cache misses.
+    private final Object[] stripes ;
+    private static final int NumStripes = 64 ;
 
     public static NodeTable create(NodeTable nodeTable, StoreParams params) {
-        int nodeToIdCacheSize = params.getNode2NodeIdCacheSize() ;
-        int idToNodeCacheSize = params.getNodeId2NodeCacheSize() ;
-        if ( nodeToIdCacheSize <= 0 && idToNodeCacheSize <= 0 )
-            return nodeTable ;
-        return new NodeTableCache(nodeTable, nodeToIdCacheSize, idToNodeCacheSize, params.getNodeMissCacheSize()) ;
+        return create(nodeTable,
+                      params.getNode2NodeIdCacheSize(),
+                      params.getNodeId2NodeCacheSize(),
+                      params.getNodeMissCacheSize(),
+                      params.getNodeCacheConcurrent()) ;
     }
 
     public static NodeTable create(NodeTable nodeTable, int nodeToIdCacheSize, int idToNodeCacheSize, int nodeMissesCacheSize)
+    {
+        return create(nodeTable, nodeToIdCacheSize, idToNodeCacheSize, nodeMissesCacheSize, false) ;
+    }
+
+    public static NodeTable create(NodeTable nodeTable, int nodeToIdCacheSize, int idToNodeCacheSize, int nodeMissesCacheSize,
+                                   boolean concurrent)
     {
         if ( nodeToIdCacheSize <= 0 && idToNodeCacheSize <= 0 )
             return nodeTable ;
-        return new NodeTableCache(nodeTable, nodeToIdCacheSize, idToNodeCacheSize, nodeMissesCacheSize) ;
+        return new NodeTableCache(nodeTable, nodeToIdCacheSize, idToNodeCacheSize, nodeMissesCacheSize, concurrent) ;
     }
 
-    private NodeTableCache(NodeTable baseTable, int nodeToIdCacheSize, int idToNodeCacheSize, int nodeMissesCacheSize)
+    private NodeTableCache(NodeTable baseTable, int nodeToIdCacheSize, int idToNodeCacheSize, int nodeMissesCacheSize,
+                           boolean concurrent)
     {
         this.baseTable = baseTable ;
+        if ( ! concurrent )
+        {
+            stripes = null ;
+            if ( nodeToIdCacheSize > 0) 
+                node2id_Cache = CacheFactory.createCache(nodeToIdCacheSize) ;
+            if ( idToNodeCacheSize > 0)
+                id2node_Cache = CacheFactory.createCache(idToNodeCacheSize) ;
+            if ( nodeMissesCacheSize > 0 )
+                notPresent = CacheFactory.createCacheSet(nodeMissesCacheSize) ;
+            return ;
+        }
+        stripes = new Object[NumStripes] ;
+        for ( int i = 0 ; i < stripes.length ; i++ )
+            stripes[i] = new Object() ;
         if ( nodeToIdCacheSize > 0) 
-            node2id_Cache = CacheFactory.createCache(nodeToIdCacheSize) ;
+            node2id_Cache = CacheFactory.createCacheConcurrent(nodeToIdCacheSize) ;
         if ( idToNodeCacheSize > 0)
-            id2node_Cache = CacheFactory.createCache(idToNodeCacheSize) ;
+            id2node_Cache = CacheFactory.createCacheConcurrent(idToNodeCacheSize) ;
         if ( nodeMissesCacheSize > 0 )
-            notPresent = CacheFactory.createCacheSet(nodeMissesCacheSize) ;
+            notPresent = CacheFactory.createSync(CacheFactory.<Node>createCacheSet(nodeMissesCacheSize)) ;
+    }
+
+    /** Statistics for the Node to NodeId cache, or null if it does not keep statistics */
+    public CacheStats<Node, NodeId> getNode2NodeIdCacheStats()
+    {
+        return ( node2id_Cache instanceof CacheStats<?,?> ) ? (CacheStats<Node, NodeId>)node2id_Cache : null ;
+    }
+
+    /** Statistics for the NodeId to Node cache, or null if it does not keep statistics */
+    public CacheStats<NodeId, Node> getNodeId2NodeCacheStats()
+    {
+        return ( id2node_Cache instanceof CacheStats<?,?> ) ? (CacheStats<NodeId, Node>)id2node_Cache : null ;
+    }
+
+    /** The lock for a cache miss on a Node or NodeId */
+    private Object lockFor(Object key)
+    {
+        if ( stripes == null )
+            return lock ;
+        return stripes[(key.hashCode() & 0x7FFFFFFF) % stripes.length] ;
     }
 
     @Override
@@ -85,6 +138,20 @@ public class NodeTableCache implements NodeTable
         return _retrieveNodeByNodeId(id) ;
     }
 
+    /** Get the Nodes for these NodeIds : the cache misses go to the base table in one call */
+    @Override
+    public List<Node> getNodesForNodeIds(List<NodeId> ids)
+    {
+        if ( stripes == null )
+        {
+            synchronized (lock)
+            {
+                return _retrieveNodesByNodeIds(ids) ;
+            }
+        }
+        return _retrieveNodesByNodeIds(ids) ;
+    }
+
     /** Find the NodeId for a node, or return NodeId.NodeDoesNotExist */ 
     @Override
     public NodeId getNodeIdForNode(Node node)  { return _idForNode(node, false) ; }
@@ -93,6 +160,20 @@ public class NodeTableCache implements NodeTable
     @Override
     public NodeId getAllocateNodeId(Node node)  { return _idForNode(node, true) ; }
 
+    /** Find or allocate the NodeIds for these nodes : the cache misses go to the base table in one call */
+    @Override
+    public List<NodeId> getAllocateNodeIds(List<Node> nodes)
+    {
+        if ( stripes == null )
+        {
+            synchronized (lock)
+            {
+                return _idsForNodes(nodes) ;
+            }
+        }
+        return _idsForNodes(nodes) ;
+    }
+
     @Override
     public boolean containsNode(Node node) {
         NodeId x = getNodeIdForNode(node) ;
@@ -114,7 +195,15 @@ public class NodeTableCache implements NodeTable
         if ( NodeId.isAny(id) )
             return null ;
 
-        synchronized (lock)
+        if ( stripes != null )
+        {
+            // Lock-free cache hit. A miss is counted by the lookup under the lock.
+            Node n = cacheProbe(id) ;
+            if ( n != null )
+                return n ;
+        }
+
+        synchronized (lockFor(id))
         {
             Node n = cacheLookup(id) ;
             if ( n != null )
@@ -129,13 +218,69 @@ public class NodeTableCache implements NodeTable
         }
     }
 
+    // NodeIds ==> Nodes
+    // Not concurrent mode: called with the lock held.
+    private List<Node> _retrieveNodesByNodeIds(List<NodeId> ids)
+    {
+        Node[] nodes = new Node[ids.size()] ;
+        List<NodeId> misses = null ;
+        for ( int i = 0 ; i < nodes.length ; i++ )
+        {
+            NodeId id = ids.get(i) ;
+            if ( NodeId.isDoesNotExist(id) || NodeId.isAny(id) )
+                continue ;
+            Node n = cacheLookup(id) ;
+            if ( n != null )
+            {
+                nodes[i] = n ;
+                continue ;
+            }
+            if ( misses == null )
+                misses = new ArrayList<>() ;
+            misses.add(id) ;
+        }
+        if ( misses == null )
+            return Arrays.asList(nodes) ;
+
+        List<Node> x = baseTable.getNodesForNodeIds(misses) ;
+        int j = 0 ;
+        for ( int i = 0 ; i < nodes.length ; i++ )
+        {
+            NodeId id = ids.get(i) ;
+            if ( nodes[i] != null || NodeId.isDoesNotExist(id) || NodeId.isAny(id) )
+                continue ;
+            Node n = x.get(j++) ;
+            nodes[i] = n ;
+            if ( n == null )
+                continue ;
+            if ( stripes == null )
+                cacheUpdate(n, id) ;
+            else
+            {
+                synchronized (lockFor(id))
+                {
+                    cacheUpdate(n, id) ;
+                }
+            }
+        }
+        return Arrays.asList(nodes) ;
+    }
+
     // Node ==> NodeId
     private NodeId _idForNode(Node node, boolean allocate)
     {
         if ( node == Node.ANY )
             return NodeId.NodeIdAny ;
         
-        synchronized (lock)
+        if ( stripes != null )
+        {
+            // Lock-free cache hit. A miss is counted by the lookup under the lock.
+            NodeId nodeId = cacheProbe(node) ;
+            if ( nodeId != null )
+                return nodeId ;
+        }
+
+        synchronized (lockFor(node))
         {
             // Check caches.
             NodeId nodeId = cacheLookup(node) ;
@@ -153,14 +298,65 @@ public class NodeTableCache implements NodeTable
         }
     }
 
+    // Nodes ==> NodeIds, allocating.
+    // Not concurrent mode: called with the lock held.
+    // Concurrent mode: the base table allocates under its own lock, so a race finds the same NodeId.
+    private List<NodeId> _idsForNodes(List<Node> nodes)
+    {
+        NodeId[] ids = new NodeId[nodes.size()] ;
+        List<Node> misses = null ;
+        for ( int i = 0 ; i < ids.length ; i++ )
+        {
+            Node node = nodes.get(i) ;
+            if ( node == Node.ANY )
+            {
+                ids[i] = NodeId.NodeIdAny ;
+                continue ;
+            }
+            NodeId nodeId = cacheLookup(node) ;
+            if ( nodeId != null )
+            {
+                ids[i] = nodeId ;
+                continue ;
+            }
+            if ( misses == null )
+                misses = new ArrayList<>() ;
+            misses.add(node) ;
+        }
+        if ( misses == null )
+            return Arrays.asList(ids) ;
+
+        List<NodeId> x = baseTable.getAllocateNodeIds(misses) ;
+        int j = 0 ;
+        for ( int i = 0 ; i < ids.length ; i++ )
+        {
+            if ( ids[i] != null )
+                continue ;
+            Node node = nodes.get(i) ;
+            NodeId nodeId = x.get(j++) ;
+            ids[i] = nodeId ;
+            if ( stripes == null )
+                cacheUpdate(node, nodeId) ;
+            else
+            {
+                synchronized (lockFor(node))
+                {
+                    cacheUpdate(node, nodeId) ;
+                }
+            }
+        }
+        return Arrays.asList(ids) ;
+    }
+
     // ----------------
     // ---- Only places that the caches are touched
     
     /** Check caches to see if we can map a NodeId to a Node. Returns null on no cache entry. */ 
     private Node cacheLookup(NodeId id)
     {
-        if ( id2node_Cache == null ) return null ;
-        return id2node_Cache.get(id) ;
+        Cache<NodeId, Node> cache = id2node_Cache ;
+        if ( cache == null ) return null ;
+        return cache.get(id) ;
     }
     
     /** Check caches to see if we can map a Node to a NodeId. Returns null on no cache entry. */ 
@@ -169,15 +365,37 @@ public class NodeTableCache implements NodeTable
         // Remember things known (currently) not to exist
         if ( notPresent != null && notPresent.contains(node) ) 
             return null ;
-        if ( node2id_Cache == null )
+        Cache<Node, NodeId> cache = node2id_Cache ;
+        if ( cache == null )
+            return null ;
+        return cache.get(node) ; 
+    }
+
+    /** Concurrent mode: as {@link #cacheLookup(NodeId)} but a miss is not counted. */ 
+    private Node cacheProbe(NodeId id)
+    {
+        Cache<NodeId, Node> cache = id2node_Cache ;
+        if ( cache == null ) return null ;
+        return ((CacheConcurrent<NodeId, Node>)cache).probe(id) ;
+    }
+
+    /** Concurrent mode: as {@link #cacheLookup(Node)} but a miss is not counted. */ 
+    private NodeId cacheProbe(Node node)
+    {
+        if ( notPresent != null && notPresent.contains(node) ) 
+            return null ;
+        Cache<Node, NodeId> cache = node2id_Cache ;
+        if ( cache == null )
             return null ;
-        return node2id_Cache.get(node) ; 
+        return ((CacheConcurrent<Node, NodeId>)cache).probe(node) ; 
     }
 
     /** Update the Node->NodeId caches */
     private void cacheUpdate(Node node, NodeId id)
     {
         // synchronized is further out.
+        // In concurrent mode, only the lock for one of node or id is held.
+        // Entries are never changed once a node has a NodeId, so a race puts the same mapping.
         // The "notPresent" cache is used to note whether a node
         // is known not to exist.
         // This must be specially handled later if the node is added. 
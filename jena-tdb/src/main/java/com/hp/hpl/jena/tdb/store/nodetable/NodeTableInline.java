@@ -18,6 +18,9 @@
 
 package com.hp.hpl.jena.tdb.store.nodetable;
 
+import java.util.ArrayList ;
+import java.util.Arrays ;
+import java.util.List ;
 
 import com.hp.hpl.jena.graph.Node ;
 import com.hp.hpl.jena.tdb.store.NodeId ;
@@ -27,6 +30,9 @@ import com.hp.hpl.jena.tdb.store.nodetable.NodeTable ;
  * If a node can be made inline, then the underlying table never sees it.
  * If an inline Nodeid is seen, it is decoded and returned without
  * the underlying table being called. 
+ * <p>
+ * The extended inline encodings are a choice made when the database is created:
+ * a node table always sees the same choice.
  */
 
 public class NodeTableInline extends NodeTableWrapper
@@ -35,26 +41,64 @@ public class NodeTableInline extends NodeTableWrapper
     
     public static NodeTable create(NodeTable nodeTable)
     {
-        return new NodeTableInline(nodeTable) ;
+        return create(nodeTable, false) ;
     }
     
-    private NodeTableInline(NodeTable nodeTable)
+    public static NodeTable create(NodeTable nodeTable, boolean extended)
+    {
+        return new NodeTableInline(nodeTable, extended) ;
+    }
+    
+    private final boolean extended ;
+    
+    private NodeTableInline(NodeTable nodeTable, boolean extended)
     {
         super(nodeTable) ;
+        this.extended = extended ;
     }
     
+    public boolean isExtended() { return extended ; }
+    
     @Override
     public final NodeId getAllocateNodeId(Node node)
     {
-        NodeId nid = NodeId.inline(node) ;
+        NodeId nid = NodeId.inline(node, extended) ;
         if ( nid != null ) return nid ;
         return super.getAllocateNodeId(node) ;
     }
 
+    @Override
+    public final List<NodeId> getAllocateNodeIds(List<Node> nodes)
+    {
+        // Inline the ones that can be, pass the rest down in one call.
+        NodeId[] ids = new NodeId[nodes.size()] ;
+        List<Node> others = new ArrayList<>(nodes.size()) ;
+        for ( int i = 0 ; i < ids.length ; i++ )
+        {
+            NodeId nid = NodeId.inline(nodes.get(i), extended) ;
+            if ( nid != null )
+                ids[i] = nid ;
+            else
+                others.add(nodes.get(i)) ;
+        }
+        if ( others.isEmpty() )
+            return Arrays.asList(ids) ;
+        if ( others.size() == ids.length )
+            return super.getAllocateNodeIds(nodes) ;
+        List<NodeId> x = super.getAllocateNodeIds(others) ;
+        int j = 0 ;
+        for ( int i = 0 ; i < ids.length ; i++ )
+        {
+            if ( ids[i] == null )
+                ids[i] = x.get(j++) ;
+        }
+        return Arrays.asList(ids) ;
+    }
+
     @Override
     public final NodeId getNodeIdForNode(Node node)
     {
-        NodeId nid = NodeId.inline(node) ;
+        NodeId nid = NodeId.inline(node, extended) ;
         if ( nid != null ) return nid ;
         return super.getNodeIdForNode(node) ;
     }
@@ -68,5 +112,34 @@ public class NodeTableInline extends NodeTableWrapper
     }
     
     @Override
-    public String toString() { return "Inline("+nodeTable.toString()+")" ; }
+    public final List<Node> getNodesForNodeIds(List<NodeId> ids)
+    {
+        // Decode the inline ones, pass the rest down in one call.
+        Node[] nodes = new Node[ids.size()] ;
+        List<NodeId> others = new ArrayList<>(ids.size()) ;
+        for ( int i = 0 ; i < nodes.length ; i++ )
+        {
+            NodeId id = ids.get(i) ;
+            Node n = NodeId.extract(id) ;
+            if ( n != null )
+                nodes[i] = n ;
+            else
+                others.add(id) ;
+        }
+        if ( others.isEmpty() )
+            return Arrays.asList(nodes) ;
+        if ( others.size() == nodes.length )
+            return super.getNodesForNodeIds(ids) ;
+        List<Node> x = super.getNodesForNodeIds(others) ;
+        int j = 0 ;
+        for ( int i = 0 ; i < nodes.length ; i++ )
+        {
+            if ( nodes[i] == null )
+                nodes[i] = x.get(j++) ;
+        }
+        return Arrays.asList(nodes) ;
+    }
+    
+    @Override
+    public String toString() { return (extended ? "InlineExt(" : "Inline(")+nodeTable.toString()+")" ; }
 }
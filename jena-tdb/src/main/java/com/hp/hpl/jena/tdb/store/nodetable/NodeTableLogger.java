@@ -19,6 +19,7 @@
 package com.hp.hpl.jena.tdb.store.nodetable;
 
 import java.util.Iterator ;
+import java.util.List ;
 
 import org.apache.jena.atlas.lib.Pair ;
 import org.slf4j.Logger ;
@@ -51,6 +52,14 @@ public class NodeTableLogger implements NodeTable
         return nId ;
     }
 
+    @Override
+    public List<NodeId> getAllocateNodeIds(List<Node> nodes)
+    {
+        List<NodeId> nIds = nodeTable.getAllocateNodeIds(nodes) ;
+        info("getAllocateNodeIds("+nodes+") => "+nIds) ;
+        return nIds ;
+    }
+
     @Override
     public NodeId getNodeIdForNode(Node node)
     {
@@ -69,6 +78,14 @@ public class NodeTableLogger implements NodeTable
         return n ;
     }
     
+    @Override
+    public List<Node> getNodesForNodeIds(List<NodeId> ids)
+    {
+        List<Node> nodes = nodeTable.getNodesForNodeIds(ids) ;
+        info("getNodesForNodeIds("+ids+") => "+nodes) ;
+        return nodes ;
+    }
+    
     @Override
     public boolean containsNode(Node node) {
         //info("containsNodeId("+id+") =>") ;
@@ -21,7 +21,10 @@ package com.hp.hpl.jena.tdb.store.nodetable;
 import static com.hp.hpl.jena.tdb.lib.NodeLib.setHash ;
 
 import java.nio.ByteBuffer ;
+import java.util.Arrays ;
+import java.util.Comparator ;
 import java.util.Iterator ;
+import java.util.List ;
 
 import org.apache.jena.atlas.iterator.Iter ;
 import org.apache.jena.atlas.iterator.Transform ;
@@ -30,6 +33,7 @@ import org.apache.jena.atlas.lib.Pair ;
 import com.hp.hpl.jena.graph.Node ;
 import com.hp.hpl.jena.tdb.TDBException ;
 import com.hp.hpl.jena.tdb.base.objectfile.ObjectFile ;
+import com.hp.hpl.jena.tdb.base.objectfile.ObjectFileMapped ;
 import com.hp.hpl.jena.tdb.base.record.Record ;
 import com.hp.hpl.jena.tdb.index.Index ;
 import com.hp.hpl.jena.tdb.lib.NodeLib ;
@@ -44,6 +48,7 @@ public class NodeTableNative implements NodeTable
     
     protected ObjectFile objects ;
     protected Index nodeHashToId ;        // hash -> int
+    protected NodeHashFilter filter = null ;  // Node hashes in nodeHashToId, or null
     private boolean syncNeeded = false ;
     
     // Delayed construction - must call init explicitly.
@@ -56,12 +61,32 @@ public class NodeTableNative implements NodeTable
         init(nodeToId, objectFile) ;
     }
     
+    /** A NodeTable with a Bloom filter over the node hashes in the index. */
+    public NodeTableNative(Index nodeToId, ObjectFile objectFile, NodeHashFilter filter)
+    {
+        this() ;
+        init(nodeToId, objectFile) ;
+        this.filter = filter ;
+    }
+    
     protected void init(Index nodeToId, ObjectFile objectFile)
     {
         this.nodeHashToId = nodeToId ;
         this.objects = objectFile;
     }
 
+    public NodeHashFilter getFilter()
+    {
+        return filter ;
+    }
+
+    /** Rebuild the node hash filter from the index, for when the index has been changed by other means (e.g. recovery). */
+    public synchronized void resetFilter()
+    {
+        if ( filter != null )
+            filter.rebuild(nodeHashToId) ;
+    }
+
     // ---- Public interface for Node <==> NodeId
 
     /** Get the Node for this NodeId, or null if none */
@@ -71,6 +96,48 @@ public class NodeTableNative implements NodeTable
         return _retrieveNodeByNodeId(id) ;
     }
 
+    /** Get the Nodes for these NodeIds, reading the object file in increasing offset order */
+    @Override
+    public List<Node> getNodesForNodeIds(final List<NodeId> ids)
+    {
+        Node[] nodes = new Node[ids.size()] ;
+        Integer[] order = new Integer[nodes.length] ;
+        int N = 0 ;
+        for ( int i = 0 ; i < nodes.length ; i++ )
+        {
+            NodeId id = ids.get(i) ;
+            if ( NodeId.isDoesNotExist(id) || NodeId.isAny(id) )
+                continue ;
+            order[N++] = i ;
+        }
+        Arrays.sort(order, 0, N, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i1, Integer i2)
+            {
+                return Long.compare(ids.get(i1).getId(), ids.get(i2).getId()) ;
+            }
+        }) ;
+        synchronized (this) // As readNodeFromTable
+        {
+            long length = getObjects().length() ;
+            long lastId = -1 ;
+            Node lastNode = null ;
+            for ( int k = 0 ; k < N ; k++ )
+            {
+                int i = order[k] ;
+                long x = ids.get(i).getId() ;
+                // Repeats are adjacent.
+                if ( x != lastId )
+                {
+                    lastNode = ( x >= length ) ? null : NodeLib.fetchDecode(x, getObjects()) ;
+                    lastId = x ;
+                }
+                nodes[i] = lastNode ;
+            }
+        }
+        return Arrays.asList(nodes) ;
+    }
+
     /** Find the NodeId for a node, or return NodeId.NodeDoesNotExist */ 
     @Override
     public NodeId getNodeIdForNode(Node node)  { return _idForNode(node, false) ; }
@@ -79,6 +146,51 @@ public class NodeTableNative implements NodeTable
     @Override
     public NodeId getAllocateNodeId(Node node)  { return _idForNode(node, true) ; }
 
+    /** Find or allocate the NodeIds for these nodes, accessing the index in key order under one lock */
+    @Override
+    public List<NodeId> getAllocateNodeIds(List<Node> nodes)
+    {
+        NodeId[] ids = new NodeId[nodes.size()] ;
+        final Record[] keys = new Record[ids.length] ;
+        Integer[] order = new Integer[ids.length] ;
+        int N = 0 ;
+        for ( int i = 0 ; i < ids.length ; i++ )
+        {
+            Node node = nodes.get(i) ;
+            if ( node == Node.ANY )
+            {
+                ids[i] = NodeId.NodeIdAny ;
+                continue ;
+            }
+            keys[i] = hashRecord(node) ;
+            order[N++] = i ;
+        }
+        Arrays.sort(order, 0, N, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i1, Integer i2)
+            {
+                return Record.compareByKey(keys[i1], keys[i2]) ;
+            }
+        }) ;
+        synchronized (this) // As accessIndex
+        {
+            Record lastKey = null ;
+            NodeId lastId = null ;
+            for ( int k = 0 ; k < N ; k++ )
+            {
+                int i = order[k] ;
+                // Repeats are adjacent.
+                if ( lastKey == null || Record.keyNE(lastKey, keys[i]) )
+                {
+                    lastId = accessIndex$(nodes.get(i), keys[i], true) ;
+                    lastKey = keys[i] ;
+                }
+                ids[i] = lastId ;
+            }
+        }
+        return Arrays.asList(ids) ;
+    }
+
     @Override
     public boolean containsNode(Node node) {
         NodeId x = getNodeIdForNode(node) ;
@@ -128,39 +240,59 @@ public class NodeTableNative implements NodeTable
     }
     
     protected final NodeId accessIndex(Node node, boolean create)
+    {
+        Record r = hashRecord(node) ;
+        byte k[] = r.getKey() ;
+        
+        // Definitely not in the index. 
+        if ( ! create && filter != null && ! filter.mightContain(k) )
+            return NodeId.NodeDoesNotExist ;
+        
+        synchronized (this)  // Pair to readNodeFromTable.
+        {
+            return accessIndex$(node, r, create) ;
+        }
+    }
+    
+    /** The key-only index record for a node */
+    private Record hashRecord(Node node)
     {
         Hash hash = new Hash(nodeHashToId.getRecordFactory().keyLength()) ;
         setHash(hash, node) ;
         byte k[] = hash.getBytes() ;        
         // Key only.
-        Record r = nodeHashToId.getRecordFactory().create(k) ;
-        
-        synchronized (this)  // Pair to readNodeFromTable.
+        return nodeHashToId.getRecordFactory().create(k) ;
+    }
+    
+    // Called with the lock held.
+    private NodeId accessIndex$(Node node, Record r, boolean create)
+    {
+        byte k[] = r.getKey() ;
+        // Key and value, or null
+        Record r2 = ( filter == null || filter.mightContain(k) ) ? nodeHashToId.find(r) : null ;
+        if ( r2 != null )
         {
-            // Key and value, or null
-            Record r2 = nodeHashToId.find(r) ;
-            if ( r2 != null )
-            {
-                // Found.  Get the NodeId.
-                NodeId id = NodeId.create(r2.getValue(), 0) ;
-                return id ;
-            }
+            // Found.  Get the NodeId.
+            NodeId id = NodeId.create(r2.getValue(), 0) ;
+            return id ;
+        }
 
-            // Not found.
-            if ( ! create )
-                return NodeId.NodeDoesNotExist ;
-            // Write the node, which allocates an id for it.
-            NodeId id = writeNodeToTable(node) ;
+        // Not found.
+        if ( ! create )
+            return NodeId.NodeDoesNotExist ;
+        // Write the node, which allocates an id for it.
+        NodeId id = writeNodeToTable(node) ;
 
-            // Update the r record with the new id.
-            // r.value := id bytes ; 
-            id.toBytes(r.getValue(), 0) ;
+        // Update the r record with the new id.
+        // r.value := id bytes ; 
+        id.toBytes(r.getValue(), 0) ;
 
-            // Put in index - may appear because of concurrency
-            if ( ! nodeHashToId.add(r) )
-                throw new TDBException("NodeTableBase::nodeToId - record mysteriously appeared") ;
-            return id ;
-        }
+        // Put in index - may appear because of concurrency
+        if ( ! nodeHashToId.add(r) )
+            throw new TDBException("NodeTableBase::nodeToId - record mysteriously appeared") ;
+        if ( filter != null )
+            filter.add(k) ;
+        return id ;
     }
     
     // -------- NodeId<->Node
@@ -180,6 +312,13 @@ public class NodeTableNative implements NodeTable
 
     private final Node readNodeFromTable(NodeId id)
     {
+        // Objects in the mapped part of the file do not change : no lock needed.
+        if ( objects instanceof ObjectFileMapped )
+        {
+            ByteBuffer bb = ((ObjectFileMapped)objects).readMapped(id.getId()) ;
+            if ( bb != null )
+                return NodeLib.decode(bb) ;
+        }
         synchronized (this) // Pair to accessIndex
         {
             if ( id.getId() >= getObjects().length() )
@@ -200,6 +339,8 @@ public class NodeTableNative implements NodeTable
         }
         if ( getObjects() != null )
         {
+            if ( filter != null )
+                filter.save(getObjects().length()) ;
             getObjects().close() ;
             objects = null ;
         }
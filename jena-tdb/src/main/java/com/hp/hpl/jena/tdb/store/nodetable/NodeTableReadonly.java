@@ -18,6 +18,9 @@
 
 package com.hp.hpl.jena.tdb.store.nodetable;
 
+import java.util.ArrayList ;
+import java.util.List ;
+
 import com.hp.hpl.jena.graph.Node ;
 import com.hp.hpl.jena.tdb.TDBException ;
 import com.hp.hpl.jena.tdb.store.NodeId ;
@@ -37,4 +40,13 @@ public class NodeTableReadonly extends NodeTableWrapper
             throw new TDBException("Allocation attempt on NodeTableReadonly") ;
         return nodeId ;
     }
+
+    @Override
+    public List<NodeId> getAllocateNodeIds(List<Node> nodes)
+    {
+        List<NodeId> nodeIds = new ArrayList<>(nodes.size()) ;
+        for ( Node node : nodes )
+            nodeIds.add(getAllocateNodeId(node)) ;
+        return nodeIds ;
+    }
 }
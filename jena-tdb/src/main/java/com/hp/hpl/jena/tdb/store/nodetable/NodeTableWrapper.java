@@ -19,6 +19,7 @@
 package com.hp.hpl.jena.tdb.store.nodetable;
 
 import java.util.Iterator ;
+import java.util.List ;
 
 import org.apache.jena.atlas.lib.Pair ;
 
@@ -43,6 +44,12 @@ public class NodeTableWrapper implements NodeTable
         return nodeTable.getAllocateNodeId(node) ;
     }
 
+    @Override
+    public List<NodeId> getAllocateNodeIds(List<Node> nodes)
+    {
+        return nodeTable.getAllocateNodeIds(nodes) ;
+    }
+
     @Override
     public NodeId getNodeIdForNode(Node node)
     {
@@ -55,6 +62,12 @@ public class NodeTableWrapper implements NodeTable
         return nodeTable.getNodeForNodeId(id) ;
     }
     
+    @Override
+    public List<Node> getNodesForNodeIds(List<NodeId> ids)
+    {
+        return nodeTable.getNodesForNodeIds(ids) ;
+    }
+    
     @Override
     public boolean containsNode(Node node) {
         return nodeTable.containsNode(node) ;
@@ -29,6 +29,7 @@ import com.hp.hpl.jena.tdb.store.NodeId ;
 import com.hp.hpl.jena.tdb.store.nodetable.NodeTable ;
 import com.hp.hpl.jena.tdb.store.tupletable.TupleTable ;
 import com.hp.hpl.jena.tdb.sys.DatasetControl ;
+import com.hp.hpl.jena.tdb.sys.ScanControl ;
 
 public interface NodeTupleTable extends Sync, Closeable
 {
@@ -48,6 +49,11 @@ public interface NodeTupleTable extends Sync, Closeable
     /** Find by NodeId. */
     public Iterator<Tuple<NodeId>> find(Tuple<NodeId> ids) ;
 
+    /** Find by NodeId, counting the records read, and checking for cancellation,
+     *  with the ScanControl of the query (which may be null). 
+     */
+    public Iterator<Tuple<NodeId>> find(Tuple<NodeId> ids, ScanControl control) ;
+
     /** Find all tuples */ 
     public Iterator<Tuple<NodeId>> findAll() ;
 
@@ -34,6 +34,7 @@ import com.hp.hpl.jena.tdb.store.nodetable.NodeTable ;
 import com.hp.hpl.jena.tdb.store.tupletable.TupleIndex ;
 import com.hp.hpl.jena.tdb.store.tupletable.TupleTable ;
 import com.hp.hpl.jena.tdb.sys.DatasetControl ;
+import com.hp.hpl.jena.tdb.sys.ScanControl ;
 
 /** Group a tuple table and node table together to provide a real NodeTupleTable */
 public class NodeTupleTableConcrete implements NodeTupleTable
@@ -159,12 +160,19 @@ public class NodeTupleTableConcrete implements NodeTupleTable
     /** Find by NodeId. */
     @Override
     public Iterator<Tuple<NodeId>> find(Tuple<NodeId> tuple)
+    {
+        return find(tuple, null) ;
+    }
+
+    /** Find by NodeId, with the ScanControl of the query. */
+    @Override
+    public Iterator<Tuple<NodeId>> find(Tuple<NodeId> tuple, ScanControl control)
     {
         // All find/*, except findAll, comes through this operation so startRead/finishRead/checkIterator only needs to happen here.
         try {
             startRead() ;
             // find worker - need also protect iterators that access the node table.
-            Iterator<Tuple<NodeId>> iter = tupleTable.find(tuple) ;
+            Iterator<Tuple<NodeId>> iter = tupleTable.find(tuple, control) ;
             return iteratorControl(iter) ;
         } finally { finishRead() ; }
     }
@@ -26,6 +26,7 @@ import org.apache.jena.atlas.lib.Tuple ;
 import com.hp.hpl.jena.graph.Node ;
 import com.hp.hpl.jena.tdb.store.NodeId ;
 import com.hp.hpl.jena.tdb.store.tupletable.TupleTable ;
+import com.hp.hpl.jena.tdb.sys.ScanControl ;
 
 /** (Read-only?) projection of another NodeTupleTable. 
  * This will not reduce a N-wide tuple to N-1 when find*() used. 
@@ -86,6 +87,13 @@ public class NodeTupleTableView extends NodeTupleTableWrapper
         return nodeTupleTable.find(ids2) ;
     }
 
+    @Override
+    public Iterator<Tuple<NodeId>> find(Tuple<NodeId> ids, ScanControl control)
+    {
+        NodeId[] ids2 = push(NodeId.class, prefixId, ids.tuple()) ;
+        return nodeTupleTable.find(Tuple.create(ids2), control) ;
+    }
+
     @Override
     public Iterator<Tuple<NodeId>> findAsNodeIds(Node... nodes)
     {
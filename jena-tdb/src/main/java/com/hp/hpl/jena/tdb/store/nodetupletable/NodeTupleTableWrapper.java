@@ -27,6 +27,7 @@ import com.hp.hpl.jena.tdb.store.NodeId ;
 import com.hp.hpl.jena.tdb.store.nodetable.NodeTable ;
 import com.hp.hpl.jena.tdb.store.tupletable.TupleTable ;
 import com.hp.hpl.jena.tdb.sys.DatasetControl ;
+import com.hp.hpl.jena.tdb.sys.ScanControl ;
 
 public class NodeTupleTableWrapper implements NodeTupleTable
 {
@@ -64,6 +65,10 @@ public class NodeTupleTableWrapper implements NodeTupleTable
     public Iterator<Tuple<NodeId>> find(Tuple<NodeId> tuple)
     { return nodeTupleTable.find(tuple) ; }
     
+    @Override
+    public Iterator<Tuple<NodeId>> find(Tuple<NodeId> tuple, ScanControl control)
+    { return nodeTupleTable.find(tuple, control) ; }
+    
     @Override
     public Iterator<Tuple<NodeId>> findAsNodeIds(Node... nodes)
     { return nodeTupleTable.findAsNodeIds(nodes) ; }
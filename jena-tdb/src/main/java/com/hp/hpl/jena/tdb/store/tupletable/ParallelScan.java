@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hp.hpl.jena.tdb.store.tupletable;
+
+import java.util.ArrayList ;
+import java.util.Iterator ;
+import java.util.List ;
+import java.util.concurrent.Callable ;
+import java.util.concurrent.ExecutionException ;
+import java.util.concurrent.ForkJoinPool ;
+import java.util.concurrent.Future ;
+
+import org.apache.jena.atlas.iterator.Iter ;
+import org.apache.jena.atlas.lib.Tuple ;
+
+import com.hp.hpl.jena.tdb.TDBException ;
+import com.hp.hpl.jena.tdb.store.NodeId ;
+import com.hp.hpl.jena.tdb.sys.ScanControl ;
+import com.hp.hpl.jena.tdb.sys.SystemTDB ;
+
+/** Scan a {@link TupleIndex} on several threads.
+ *  <p>
+ *  The scan is split into parts by key range ({@link TupleIndex#findParts}) and
+ *  a task is run on each part, in a shared pool of {@link SystemTDB#ScanThreads} threads.
+ *  The results of the tasks are returned in index order, for the caller to combine.
+ *  <p>
+ *  Scans only read the indexes, but the caller must make sure the index does not change
+ *  while the scan is running, for example, by being inside a read transaction.
+ */
+public class ParallelScan
+{
+    /** Work on one part of a scan. Called on a thread of the pool. */
+    public interface Task<T>
+    {
+        public T scan(Iterator<Tuple<NodeId>> tuples) ;
+    }
+
+    private static ForkJoinPool pool = null ;
+
+    private static synchronized ForkJoinPool pool()
+    {
+        if ( pool == null )
+            pool = new ForkJoinPool(Math.max(1, SystemTDB.ScanThreads)) ;
+        return pool ;
+    }
+
+    /** Run a task on each part of the scan of the tuples matching a pattern,
+     *  using the default number of threads.
+     */
+    public static <T> List<T> scan(TupleIndex index, Tuple<NodeId> pattern, ScanControl control, Task<T> task)
+    {
+        return scan(index, pattern, SystemTDB.ScanThreads, control, task) ;
+    }
+
+    /** Run a task on each part of the scan of the tuples matching a pattern, split into
+     *  at most the given number of parts. Returns the results of the tasks, in index order.
+     *  The records read by all the parts are counted and checked by the ScanControl of the query, if not null.
+     */
+    public static <T> List<T> scan(TupleIndex index, Tuple<NodeId> pattern, int parallelism, ScanControl control, final Task<T> task)
+    {
+        List<Iterator<Tuple<NodeId>>> parts = index.findParts(pattern, parallelism, control) ;
+        List<T> results = new ArrayList<>(parts.size()) ;
+        if ( parts.size() == 1 )
+        {
+            results.add(run(task, parts.get(0))) ;
+            return results ;
+        }
+
+        List<Future<T>> futures = new ArrayList<>(parts.size()) ;
+        for ( final Iterator<Tuple<NodeId>> part : parts )
+        {
+            futures.add(pool().submit(new Callable<T>() {
+                @Override
+                public T call()
+                {
+                    return run(task, part) ;
+                }
+            })) ;
+        }
+        try {
+            for ( Future<T> f : futures )
+                results.add(f.get()) ;
+        } catch (InterruptedException ex) {
+            cancel(futures) ;
+            Thread.currentThread().interrupt() ;
+            throw new TDBException("Interrupted during a parallel scan", ex) ;
+        } catch (ExecutionException ex) {
+            cancel(futures) ;
+            Throwable cause = ex.getCause() ;
+            if ( cause instanceof RuntimeException )
+                throw (RuntimeException)cause ;
+            if ( cause instanceof Error )
+                throw (Error)cause ;
+            throw new TDBException("Parallel scan", cause) ;
+        }
+        return results ;
+    }
+
+    private static <T> T run(Task<T> task, Iterator<Tuple<NodeId>> part)
+    {
+        try { return task.scan(part) ; }
+        finally { Iter.close(part) ; }
+    }
+
+    private static <T> void cancel(List<Future<T>> futures)
+    {
+        for ( Future<T> f : futures )
+            f.cancel(true) ;
+    }
+}
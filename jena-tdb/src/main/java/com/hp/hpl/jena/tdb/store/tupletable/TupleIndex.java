@@ -19,6 +19,7 @@
 package com.hp.hpl.jena.tdb.store.tupletable;
 
 import java.util.Iterator ;
+import java.util.List ;
 
 import org.apache.jena.atlas.lib.Closeable ;
 import org.apache.jena.atlas.lib.ColumnMap ;
@@ -26,6 +27,7 @@ import org.apache.jena.atlas.lib.Sync ;
 import org.apache.jena.atlas.lib.Tuple ;
 
 import com.hp.hpl.jena.tdb.store.NodeId ;
+import com.hp.hpl.jena.tdb.sys.ScanControl ;
 
 public interface TupleIndex extends Sync, Closeable
 {
@@ -49,6 +51,19 @@ public interface TupleIndex extends Sync, Closeable
 
     public Iterator<Tuple<NodeId>> find(Tuple<NodeId> pattern) ;
     
+    /** Find all matching tuples, counting the records read, and checking for cancellation,
+     *  with the ScanControl of the query (which may be null). 
+     */
+    public Iterator<Tuple<NodeId>> find(Tuple<NodeId> pattern, ScanControl control) ;
+    
+    /** Find all matching tuples, as at most n separate scans, of roughly equal size, in index order.
+     *  Together, the scans find the same tuples as {@link #find(Tuple)}.
+     *  A scan starts when it is first used, and different scans may be used on different threads.
+     *  The records read by all the scans are counted with the ScanControl of the query (which may be null).
+     *  @see ParallelScan
+     */
+    public List<Iterator<Tuple<NodeId>>> findParts(Tuple<NodeId> pattern, int n, ScanControl control) ;
+    
     /** return an iterator of everything */
     public Iterator<Tuple<NodeId>> all() ;
     
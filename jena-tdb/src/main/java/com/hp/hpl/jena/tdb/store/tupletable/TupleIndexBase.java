@@ -18,7 +18,9 @@
 
 package com.hp.hpl.jena.tdb.store.tupletable;
 
+import java.util.ArrayList ;
 import java.util.Iterator ;
+import java.util.List ;
 
 import org.apache.jena.atlas.lib.ColumnMap ;
 import org.apache.jena.atlas.lib.Tuple ;
@@ -26,6 +28,7 @@ import org.apache.jena.atlas.lib.Tuple ;
 
 import com.hp.hpl.jena.tdb.TDBException ;
 import com.hp.hpl.jena.tdb.store.NodeId ;
+import com.hp.hpl.jena.tdb.sys.ScanControl ;
 
 public abstract class TupleIndexBase implements TupleIndex
 {
@@ -52,6 +55,12 @@ public abstract class TupleIndexBase implements TupleIndex
     /** Find tuples worker: Tuple passed in unmaped (untouched) order */
     protected abstract Iterator<Tuple<NodeId>> performFind(Tuple<NodeId> tuple) ;
 
+    /** Find tuples worker, with a ScanControl (not null) : by default, counts the tuples found. */
+    protected Iterator<Tuple<NodeId>> performFind(Tuple<NodeId> tuple, ScanControl control)
+    {
+        return control.scan(performFind(tuple)) ;
+    }
+
     /** Insert a tuple - return true if it was really added, false if it was a duplicate */
     @Override
     public final boolean add(Tuple<NodeId> tuple) 
@@ -91,6 +100,24 @@ public abstract class TupleIndexBase implements TupleIndex
         return performFind(pattern) ;
     }
     
+    @Override
+    public final Iterator<Tuple<NodeId>> find(Tuple<NodeId> pattern, ScanControl control)
+    {
+        if ( control == null )
+            return find(pattern) ;
+        control.check() ;
+        return performFind(pattern, control) ;
+    }
+    
+    /** Find tuples in parts : by default, one part. */
+    @Override
+    public List<Iterator<Tuple<NodeId>>> findParts(Tuple<NodeId> pattern, int n, ScanControl control)
+    {
+        List<Iterator<Tuple<NodeId>>> x = new ArrayList<>() ;
+        x.add(find(pattern, control)) ;
+        return x ;
+    }
+    
     @Override
     public final int weight(Tuple<NodeId> pattern)
     {
@@ -21,10 +21,13 @@ package com.hp.hpl.jena.tdb.store.tupletable;
 import static com.hp.hpl.jena.tdb.sys.SystemTDB.SizeOfNodeId;
 import static java.lang.String.format;
 
+import java.util.ArrayList ;
 import java.util.Iterator;
+import java.util.List ;
 
 import org.apache.jena.atlas.iterator.* ;
 import org.apache.jena.atlas.lib.Bytes ;
+import org.apache.jena.atlas.lib.Closeable ;
 import org.apache.jena.atlas.lib.ColumnMap ;
 import org.apache.jena.atlas.lib.Tuple ;
 
@@ -37,6 +40,7 @@ import com.hp.hpl.jena.tdb.base.record.RecordFactory;
 import com.hp.hpl.jena.tdb.index.RangeIndex ;
 import com.hp.hpl.jena.tdb.lib.TupleLib;
 import com.hp.hpl.jena.tdb.store.NodeId;
+import com.hp.hpl.jena.tdb.sys.ScanControl ;
 
 public class TupleIndexRecord extends TupleIndexBase
 {
@@ -80,23 +84,31 @@ public class TupleIndexRecord extends TupleIndexBase
         return findOrScan(pattern) ;
     }
 
+    /** As performFind, counting the records read from the index, before any partial scan filters them. */
+    @Override
+    protected Iterator<Tuple<NodeId>> performFind(Tuple<NodeId> pattern, ScanControl control)
+    {
+        return findWorker(pattern, true, true, control) ;
+    }
+
     // Package visibility for testing.
     final Iterator<Tuple<NodeId>> findOrScan(Tuple<NodeId> pattern)
     {
-        return findWorker(pattern, true, true) ;
+        return findWorker(pattern, true, true, null) ;
     }
     
     final Iterator<Tuple<NodeId>> findOrPartialScan(Tuple<NodeId> pattern)
     {
-        return findWorker(pattern, true, false) ;
+        return findWorker(pattern, true, false, null) ;
     }
 
     final Iterator<Tuple<NodeId>> findByIndex(Tuple<NodeId> pattern)
     {
-        return findWorker(pattern, false, false) ;
+        return findWorker(pattern, false, false, null) ;
     }
     
-    private Iterator<Tuple<NodeId>> findWorker(Tuple<NodeId> patternNaturalOrder, boolean partialScanAllowed, boolean fullScanAllowed)
+    private Iterator<Tuple<NodeId>> findWorker(Tuple<NodeId> patternNaturalOrder, boolean partialScanAllowed, boolean fullScanAllowed,
+                                               ScanControl control)
     {
         if ( Check )
         {
@@ -166,6 +178,8 @@ public class TupleIndexRecord extends TupleIndexBase
             iter = index.iterator(minRec, maxRec) ;
         }
         
+        if ( control != null )
+            iter = control.scan(iter) ;
         Iterator<Tuple<NodeId>> tuples = Iter.map(iter, transformToTuple) ;
         
         if ( leadingIdx < numSlots-1 )
@@ -181,6 +195,125 @@ public class TupleIndexRecord extends TupleIndexBase
         return tuples ;
     }
     
+    /** Find all matching tuples, in index order, starting from a given NodeId in the first unbound slot.
+     *  The leading slots of the pattern, in index order, must be bound; the rest are scanned.
+     *  A null start means from the beginning.
+     *  Returns null if the pattern does not have a leading bound slot in this index.
+     *  Input pattern in natural order, not index order.
+     */
+    public final Iterator<Tuple<NodeId>> findFrom(Tuple<NodeId> patternNaturalOrder, NodeId start)
+    {
+        return findFrom(patternNaturalOrder, start, null) ;
+    }
+
+    /** As {@link #findFrom(Tuple, NodeId)}, counting the records read with the ScanControl of the query, if not null. */
+    public final Iterator<Tuple<NodeId>> findFrom(Tuple<NodeId> patternNaturalOrder, NodeId start, ScanControl control)
+    {
+        int leading = weight(patternNaturalOrder) ;
+        if ( leading == 0 )
+            return null ;
+        if ( leading == tupleLength )
+            return findWorker(patternNaturalOrder, true, true, control) ;
+
+        Tuple<NodeId> pattern = colMap.map(patternNaturalOrder) ;
+        Record minRec = factory.createKeyOnly() ;
+        Record maxRec = factory.createKeyOnly() ;
+        setRange(pattern, leading, minRec, maxRec) ;
+        if ( start != null )
+            Bytes.setLong(start.getId(), minRec.getKey(), leading*SizeOfNodeId) ;
+        return rangeScan(minRec, maxRec, patternNaturalOrder, partialScan(pattern, leading), control) ;
+    }
+
+    /** Find all matching tuples, as at most n scans of parts of the key range, split using the index.
+     *  The scan for a part is started when first used.
+     *  All the parts count the records they read with the ScanControl, if not null.
+     */
+    @Override
+    public List<Iterator<Tuple<NodeId>>> findParts(final Tuple<NodeId> patternNaturalOrder, int n, final ScanControl control)
+    {
+        if ( control != null )
+            control.check() ;
+        List<Iterator<Tuple<NodeId>>> parts = new ArrayList<>() ;
+        int leading = weight(patternNaturalOrder) ;
+        if ( n <= 1 || leading == tupleLength )
+        {
+            parts.add(findWorker(patternNaturalOrder, true, true, control)) ;
+            return parts ;
+        }
+        Tuple<NodeId> pattern = colMap.map(patternNaturalOrder) ;
+        // Full scan : no bounds.
+        Record minRec = null ;
+        Record maxRec = null ;
+        if ( leading > 0 )
+        {
+            minRec = factory.createKeyOnly() ;
+            maxRec = factory.createKeyOnly() ;
+            setRange(pattern, leading, minRec, maxRec) ;
+        }
+        final boolean partialScan = partialScan(pattern, leading) ;
+
+        Record lo = minRec ;
+        List<Record> splits = index.splitRange(minRec, maxRec, n) ;
+        for ( int i = 0 ; i <= splits.size() ; i++ )
+        {
+            final Record from = lo ;
+            final Record to = ( i < splits.size() ) ? splits.get(i) : maxRec ;
+            parts.add(new IteratorDelayedInitialization<Tuple<NodeId>>() {
+                @Override
+                protected Iterator<Tuple<NodeId>> initializeIterator()
+                {
+                    return rangeScan(from, to, patternNaturalOrder, partialScan, control) ;
+                }
+            }) ;
+            lo = to ;
+        }
+        return parts ;
+    }
+
+    /** Set the key range of records that start with the leading NodeIds of a pattern, in index order. */
+    private void setRange(Tuple<NodeId> pattern, int leading, Record minRec, Record maxRec)
+    {
+        for ( int i = 0 ; i < leading ; i++ )
+        {
+            long x = pattern.get(i).getId() ;
+            Bytes.setLong(x, minRec.getKey(), i*SizeOfNodeId) ;
+            Bytes.setLong(x, maxRec.getKey(), i*SizeOfNodeId) ;
+        }
+        // As findWorker: the leading NodeIds, +1, exclusive.
+        Bytes.setLong(pattern.get(leading-1).getId()+1, maxRec.getKey(), (leading-1)*SizeOfNodeId) ;
+    }
+
+    /** Whether a pattern, in index order, has a bound slot after the leading ones. */
+    private boolean partialScan(Tuple<NodeId> pattern, int leading)
+    {
+        for ( int i = leading ; i < tupleLength ; i++ )
+        {
+            if ( ! undef(pattern.get(i)) )
+                return true ;
+        }
+        return false ;
+    }
+
+    private Iterator<Tuple<NodeId>> rangeScan(Record minRec, Record maxRec, Tuple<NodeId> patternNaturalOrder,
+                                              boolean partialScan, ScanControl control)
+    {
+        Iterator<Record> records = index.iterator(minRec, maxRec) ;
+        if ( control != null )
+            records = control.scan(records) ;
+        Iterator<Tuple<NodeId>> tuples = Iter.map(records, transformToTuple) ;
+        if ( partialScan )
+            tuples = scan(tuples, patternNaturalOrder) ;
+        // Closing the tuples, before the end, releases the index block being read.
+        final Iterator<Record> source = records ;
+        return new IteratorResourceClosing<>(tuples, new Closeable() {
+            @Override
+            public void close()
+            {
+                Iter.close(source) ;
+            }
+        }) ;
+    }
+
     @Override
     public Iterator<Tuple<NodeId>> all()
     {
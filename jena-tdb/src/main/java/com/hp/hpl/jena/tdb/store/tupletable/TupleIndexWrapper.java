@@ -19,12 +19,14 @@
 package com.hp.hpl.jena.tdb.store.tupletable;
 
 import java.util.Iterator ;
+import java.util.List ;
 
 import org.apache.jena.atlas.lib.ColumnMap ;
 import org.apache.jena.atlas.lib.Tuple ;
 
 import com.hp.hpl.jena.tdb.store.NodeId ;
 import com.hp.hpl.jena.tdb.store.tupletable.TupleIndex ;
+import com.hp.hpl.jena.tdb.sys.ScanControl ;
 
 public class TupleIndexWrapper implements TupleIndex
 {
@@ -47,6 +49,16 @@ public class TupleIndexWrapper implements TupleIndex
         return index.find(pattern) ;
     }
 
+    @Override
+    public Iterator<Tuple<NodeId>> find(Tuple<NodeId> pattern, ScanControl control) {
+        return index.find(pattern, control) ;
+    }
+
+    @Override
+    public List<Iterator<Tuple<NodeId>>> findParts(Tuple<NodeId> pattern, int n, ScanControl control) {
+        return index.findParts(pattern, n, control) ;
+    }
+
     @Override
     public Iterator<Tuple<NodeId>> all() {
         return index.all() ;
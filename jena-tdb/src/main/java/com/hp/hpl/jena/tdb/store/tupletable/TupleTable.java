@@ -31,6 +31,7 @@ import org.slf4j.LoggerFactory ;
 
 import com.hp.hpl.jena.tdb.TDBException ;
 import com.hp.hpl.jena.tdb.store.NodeId ;
+import com.hp.hpl.jena.tdb.sys.ScanControl ;
 import com.hp.hpl.jena.tdb.sys.SystemTDB ;
 
 /** A TupleTable is a set of TupleIndexes.  The first TupleIndex is the "primary" index and must exist */
@@ -158,6 +159,14 @@ public class TupleTable implements Sync, Closeable
 
     /** Find all matching tuples - a slot of NodeId.NodeIdAny (or null) means match any */
     public Iterator<Tuple<NodeId>> find(Tuple<NodeId> pattern)
+    {
+        return find(pattern, null) ;
+    }
+
+    /** Find all matching tuples, counting the records read, and checking for cancellation,
+     *  with the ScanControl of the query, if not null. 
+     */
+    public Iterator<Tuple<NodeId>> find(Tuple<NodeId> pattern, ScanControl control)
     {
 //        for ( NodeId n : pattern.tuple() )
 //        {
@@ -178,7 +187,12 @@ public class TupleTable implements Sync, Closeable
         }
 
         if ( numSlots == 0 )
-            return scanAllIndex.all() ;
+        {
+            if ( control == null )
+                return scanAllIndex.all() ;
+            control.check() ;
+            return control.scan(scanAllIndex.all()) ;
+        }
         
         int indexNumSlots = 0 ;
         TupleIndex index = null ;
@@ -198,7 +212,7 @@ public class TupleTable implements Sync, Closeable
         if ( index == null )
             // No index at all.  Scan.
             index = indexes[0] ;
-        return index.find(pattern) ;
+        return index.find(pattern, control) ;
     }
     
     @Override
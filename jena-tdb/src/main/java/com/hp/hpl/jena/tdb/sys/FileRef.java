@@ -80,6 +80,8 @@ public class FileRef
         file("node2id.dat") ;
         file("prefixIdx.idn") ;
         file("prefixIdx.dat") ;
+        // Statistics, journaled with a commit.
+        file("stats.opt") ;
         
         add(1000+idxOffset, "TEST") ;
         add(1001+idxOffset, "TEST1") ;
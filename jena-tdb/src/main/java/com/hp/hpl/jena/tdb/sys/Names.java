@@ -46,6 +46,7 @@ public class Names
     
     /** Node file */
     public static final String extNodeData              = "dat" ;           // Extension of node files
+    public static final String extNodeFilter            = "bloom" ;         // Extension of the node hash filter file
     public static final String extJournal               = "jrnl" ;          // Extension of node files.
     public static final String journalFileBase          = "journal" ;
     public static final String journalFile              = journalFileBase+"."+extJournal ;
@@ -66,6 +67,12 @@ public class Names
     public static final String optNone                  = "none.opt" ; 
     public static final String optDefault               = optFixed ;
     
+    public static final String lockFile                 = "tdb.lock" ;      // Lock on the location for a JVM
+    
+    /** Block-level backup */
+    public static final String backupBlocks             = "backup.blocks" ;   // Blocks changed since the last backup
+    public static final String backupToken              = "backup.token" ;    // Marks a complete backup directory
+    
     public static final String extMeta                  = "info" ;
     public static final String directoryMetafile        = "this" ;          // Root name of the directory for a metafile.  
 
@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hp.hpl.jena.tdb.sys;
+
+import java.util.Iterator ;
+import java.util.concurrent.atomic.AtomicLong ;
+
+import org.apache.jena.atlas.iterator.Iter ;
+import org.apache.jena.atlas.iterator.IteratorWrapper ;
+import org.apache.jena.atlas.lib.Closeable ;
+import org.slf4j.Logger ;
+import org.slf4j.LoggerFactory ;
+
+import com.hp.hpl.jena.query.QueryCancelledException ;
+import com.hp.hpl.jena.sparql.util.Context ;
+import com.hp.hpl.jena.sparql.util.Symbol ;
+import com.hp.hpl.jena.tdb.TDBException ;
+
+/** Cooperative cancellation, and a budget, for the index scans of one query execution.
+ *  <p>
+ *  Scans count the records they read and, every {@link SystemTDB#ScanCheckInterval} records,
+ *  check whether the query has been cancelled or has read more records than the budget allows.
+ *  The BGP solver does the same for the bindings it produces.
+ *  Either ends the query with a {@link QueryCancelledException}.
+ *  <p>
+ *  {@link #cancel} can be called from any thread. The counts are shared by all scans of the query.
+ */
+public class ScanControl
+{
+    private static Logger log = LoggerFactory.getLogger(ScanControl.class) ;
+    // The ScanControl of a query execution : kept in the (per-execution) context.
+    private static final Symbol symScanControl = SystemTDB.allocSymbol("scanControl") ;
+
+    private volatile boolean cancelled = false ;
+    private final long maxRecords ;
+    private final long maxBindings ;
+    private final int interval ;
+    private final AtomicLong records = new AtomicLong(0) ;
+    private final AtomicLong bindings = new AtomicLong(0) ;
+
+    /** Limits of -1 mean no limit */
+    public ScanControl(long maxRecords, long maxBindings, int interval)
+    {
+        this.maxRecords = maxRecords ;
+        this.maxBindings = maxBindings ;
+        this.interval = Math.max(1, interval) ;
+    }
+
+    /** Create the ScanControl for a query execution, from the {@link SystemTDB#symScanLimit}
+     *  and {@link SystemTDB#symBindingLimit} settings, and record it in the execution context.
+     */
+    public static ScanControl create(Context context)
+    {
+        ScanControl control = new ScanControl(limit(context, SystemTDB.symScanLimit),
+                                              limit(context, SystemTDB.symBindingLimit),
+                                              SystemTDB.ScanCheckInterval) ;
+        context.set(symScanControl, control) ;
+        return control ;
+    }
+
+    /** The ScanControl of a query execution, or null if there isn't one. */
+    public static ScanControl get(Context context)
+    {
+        if ( context == null )
+            return null ;
+        return (ScanControl)context.get(symScanControl) ;
+    }
+
+    private static long limit(Context context, Symbol symbol)
+    {
+        Object obj = context.get(symbol) ;
+        if ( obj == null )
+            return -1 ;
+        if ( obj instanceof Number )
+            return ((Number)obj).longValue() ;
+        try { return Long.parseLong(obj.toString().trim()) ; }
+        catch (NumberFormatException ex)
+        { throw new TDBException("Bad value for "+symbol+": "+obj) ; }
+    }
+
+    /** Cancel the query : the next check by any scan will throw {@link QueryCancelledException}. */
+    public void cancel()                { cancelled = true ; }
+
+    public boolean isCancelled()        { return cancelled ; }
+
+    /** Records read by scans, up to the last check, or the end, of each scan */
+    public long getRecordsScanned()     { return records.get() ; }
+
+    /** Bindings produced, up to the last check, or the end, of each stage */
+    public long getBindingsProduced()   { return bindings.get() ; }
+
+    /** Throw {@link QueryCancelledException} if the query has been cancelled. */
+    public void check()
+    {
+        if ( cancelled )
+            throw new QueryCancelledException() ;
+    }
+
+    /** Wrap an iterator of the records, or tuples, of a scan so that they are counted and checked. */
+    public <T> Iterator<T> scan(Iterator<T> iter)
+    {
+        return new Monitor<>(iter, records, maxRecords, "records scanned") ;
+    }
+
+    /** Wrap an iterator of bindings so that they are counted and checked. */
+    public <T> Iterator<T> bindings(Iterator<T> iter)
+    {
+        return new Monitor<>(iter, bindings, maxBindings, "bindings produced") ;
+    }
+
+    private void add(long n, AtomicLong counter, long limit, String label)
+    {
+        long x = counter.addAndGet(n) ;
+        check() ;
+        if ( limit >= 0 && x > limit )
+        {
+            // Stop any other scans of the query as well.
+            cancelled = true ;
+            log.warn("Query cancelled: "+label+" over the limit of "+limit) ;
+            throw new QueryCancelledException() ;
+        }
+    }
+
+    /** Count items locally; every "interval" items, add to the query count and check. */
+    private class Monitor<T> extends IteratorWrapper<T> implements Closeable
+    {
+        private final AtomicLong counter ;
+        private final long limit ;
+        private final String label ;
+        private int count = 0 ;
+
+        Monitor(Iterator<T> iter, AtomicLong counter, long limit, String label)
+        {
+            super(iter) ;
+            this.counter = counter ;
+            this.limit = limit ;
+            this.label = label ;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            boolean b = super.hasNext() ;
+            if ( ! b )
+                flush() ;
+            return b ;
+        }
+
+        @Override
+        public T next()
+        {
+            T item = super.next() ;
+            if ( ++count >= interval )
+            {
+                int n = count ;
+                count = 0 ;
+                add(n, counter, limit, label) ;
+            }
+            return item ;
+        }
+
+        @Override
+        public void close()
+        {
+            flush() ;
+            Iter.close(iterator) ;
+        }
+
+        // End of iteration : add the rest to the query count, without a check.
+        private void flush()
+        {
+            if ( count > 0 )
+            {
+                counter.addAndGet(count) ;
+                count = 0 ;
+            }
+        }
+    }
+}
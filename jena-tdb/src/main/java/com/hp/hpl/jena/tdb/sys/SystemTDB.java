@@ -118,6 +118,24 @@ public class SystemTDB
     /** Experimental : triple and quad filtering at scan level */
     public static final Symbol symTupleFilter       = allocSymbol("tupleFilter") ;
 
+    /** Use the batched NodeId hash join in the BGP solver where it is cheaper than index probes (default: true) */
+    public static final Symbol symHashJoin          = allocSymbol("hashJoin") ;
+
+    /** Use a merge join, over sorted index scans, for the first two patterns of a BGP where possible (default: true) */
+    public static final Symbol symMergeJoin         = allocSymbol("mergeJoin") ;
+
+    /** Answer COUNT, grouped by at most one variable, of a single pattern by counting over an index scan (default: true) */
+    public static final Symbol symCountPushDown     = allocSymbol("countPushDown") ;
+
+    /** Execute DISTINCT, GROUP BY variables and term equality filters on NodeIds, not Nodes (default: true) */
+    public static final Symbol symLateMaterialization = allocSymbol("lateMaterialization") ;
+
+    /** Largest number of index records a query may read, over all its scans (default: no limit) */
+    public static final Symbol symScanLimit         = allocSymbol("scanLimit") ;
+
+    /** Largest number of bindings the BGP stages of a query may produce, over all stages (default: no limit) */
+    public static final Symbol symBindingLimit      = allocSymbol("bindingLimit") ;
+
     private static final String propertyFileKey1    = tdbPropertyRoot+".settings" ;
     private static final String propertyFileKey2    = tdbSymbolPrefix+":settings" ;
 
@@ -141,6 +159,12 @@ public class SystemTDB
     /** Size, in bytes, of a block for testing */
     public static final int BlockSizeTest           = 1024 ; // intValue("BlockSizeTest", 1024) ;
 
+    /** Whether B+Tree leaf blocks of new databases are written prefix compressed */
+    public static final boolean LeafCompression     = false ;
+
+    /** Whether new databases use the extended set of inline literal encodings */
+    public static final boolean InlineExtended      = false ;
+
     /** Size, in bytes, of a block for testing */
     public static final int BlockSizeTestMem         = 500 ;
 
@@ -172,12 +196,61 @@ public class SystemTDB
     /** Size of Node lookup miss cache. */
     public static final int NodeMissCacheSize       = 100 ;
     
+    /** Whether the node table caches use lock-free lookup (else a single lock). */
+    public static final boolean NodeCacheConcurrent = false ;
+    
+    /** Access to the node data file (nodes.dat) : direct is by file reads, mapped is by memory mapping for reading. */
+    public static final FileMode NodeFileMode       = FileMode.direct ;
+    
+    /** False positive rate of the Bloom filter on node hashes in front of the node table index. 0 means no filter. */
+    public static final double NodeFilterFPR        = 0 ;
+    
     /** Size of the delayed-write block cache (32 bit systems only) (per file) */
     public static final int BlockWriteCacheSize     = intValue("BlockWriteCacheSize", 2*1000) ;
 
     /** Size of read block cache (32 bit systems only).  Increase JVM size as necessary. Per file. */
     public static final int BlockReadCacheSize      = intValue("BlockReadCacheSize", 10*1000) ;
     
+    // ---- BGP solver
+    
+    /** Number of incoming bindings read as one batch by the NodeId hash join of the BGP solver */
+    public static final int HashJoinBatchSize       = intValue("HashJoinBatchSize", 1000) ;
+    
+    /** Estimated cost, measured in tuples read from a scan, of one index probe.
+     *  The BGP solver scans and hash joins a batch of bindings when the scan is no longer than
+     *  this cost times the number of bindings in the batch. 
+     */
+    public static final int HashJoinProbeCost       = intValue("HashJoinProbeCost", 50) ;
+    
+    /** Number of tuples the merge join of the BGP solver reads sequentially, when skipping forward,
+     *  before it restarts the index scan at the target NodeId instead. 
+     */
+    public static final int MergeJoinSeekDistance   = intValue("MergeJoinSeekDistance", 20) ;
+    
+    /** Number of records a scan, or bindings a BGP stage, reads between checks
+     *  for cancellation of the query and its budget (see {@link ScanControl}).
+     */
+    public static final int ScanCheckInterval       = intValue("ScanCheckInterval", 1000) ;
+    
+    /** Number of threads, and of parts of a scan, for scans of an index on several threads (see {@link com.hp.hpl.jena.tdb.store.tupletable.ParallelScan}). */
+    public static final int ScanThreads             = intValue("ScanThreads", Runtime.getRuntime().availableProcessors()) ;
+    
+    /** Largest number of results of a BGP that have their NodeIds turned into Nodes together,
+     *  one variable at a time, with one node table call. 0 or 1 means one result at a time.
+     */
+    public static final int NodeIdBlockSize         = intValue("NodeIdBlockSize", 256) ;
+    
+    // ---- Transactions
+    
+    /** Group commit: the time, in milliseconds, a committing writer waits for other writers
+     *  to commit so that one journal sync covers them all. 0 means sync each commit on its own.
+     *  Commit still returns only after the journal sync.
+     */
+    public static int JournalGroupCommitWindow      = intValue("JournalGroupCommitWindow", 0) ;
+    
+    /** Group commit: the number of waiting commits that ends the wait early. */
+    public static int JournalGroupCommitSize        = intValue("JournalGroupCommitSize", 32) ;
+    
     // ---- Misc
     
 //    /** Number of adds/deletes between calls to sync (-ve to disable) */
@@ -186,6 +259,11 @@ public class SystemTDB
     /** Default BGP optimizer */
     public static ReorderTransformation defaultReorderTransform = ReorderLib.fixed() ;
 
+    /** Keep the counts in a stats file (one written by tdbstats or a bulk loader) up to date
+     *  as triples and quads are added and deleted. The file is rewritten on commit.
+     */
+    public static boolean OnlineStats = true ;
+
     public static final ByteOrder NetworkOrder      = ByteOrder.BIG_ENDIAN ;
     
     /** Unsupported (for non-standard setups) 
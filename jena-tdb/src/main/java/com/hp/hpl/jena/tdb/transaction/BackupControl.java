@@ -0,0 +1,275 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hp.hpl.jena.tdb.transaction;
+
+import java.io.* ;
+import java.nio.ByteBuffer ;
+import java.nio.channels.FileChannel ;
+import java.util.* ;
+
+import org.apache.jena.atlas.io.IO ;
+import org.apache.jena.atlas.lib.FileOps ;
+import org.slf4j.Logger ;
+import org.slf4j.LoggerFactory ;
+
+import com.hp.hpl.jena.tdb.TDBException ;
+import com.hp.hpl.jena.tdb.base.file.Location ;
+import com.hp.hpl.jena.tdb.store.DatasetGraphTDB ;
+import com.hp.hpl.jena.tdb.sys.FileRef ;
+import com.hp.hpl.jena.tdb.sys.Names ;
+
+/** Block-level backup of the files of a database.
+ *  <p>
+ *  The backup is a copy of the database files, including the journal, taken when they are not
+ *  changing. It is a database, as it would be after a crash at that point: when opened, the
+ *  committed transactions in the journal are written to the database files.
+ *  <p>
+ *  The next backup into the same directory only copies the blocks written back from the
+ *  journal since then (see {@link BlockTracker}) and the new part of the node data files.
+ *  Other files, including the node table indexes which are not updated via the journal,
+ *  are compared with the backup copy and only the changed parts written.
+ *  If the database has been changed other than by transactions since the last backup
+ *  (see {@link BlockTracker#delete}), the backup is a full copy.
+ */
+public class BackupControl
+{
+    private static Logger log = LoggerFactory.getLogger(BackupControl.class) ;
+
+    /** Copy the files of a database to a backup directory. The database files must not change
+     *  during the copy (see {@link TransactionManager#backup}).
+     *  If the directory has the backup the tracker records changes from, only the changes are copied.
+     *  Returns the tracker for changes from this backup.
+     */
+    public static BlockTracker backup(DatasetGraphTDB dsg, Journal journal, BlockTracker tracker, String directory)
+    {
+        Location location = dsg.getLocation() ;
+        if ( location.isMem() )
+            throw new TDBException("Can't back up an in-memory database") ;
+        FileOps.ensureDir(directory) ;
+        File dir = new File(directory) ;
+        String token = readToken(dir) ;
+        boolean incremental = ( tracker != null && tracker.getToken().equals(token) && tracker.isValid() ) ;
+        // Not a complete backup until the copy finishes.
+        FileOps.delete(new File(dir, Names.backupToken).getPath()) ;
+        // With group commit, the last commit may not be on disk yet.
+        journal.syncCommits() ;
+
+        Set<String> blockFiles = new HashSet<>() ;
+        for ( FileRef ref : dsg.getConfig().blockMgrs.keySet() )
+            blockFiles.add(ref.getFilename()) ;
+        // Append-only.
+        Set<String> dataFiles = new HashSet<>() ;
+        for ( FileRef ref : dsg.getConfig().nodeTables.keySet() )
+            dataFiles.add(ref.getFilename()) ;
+
+        Set<String> names = new HashSet<>() ;
+        long bytes = 0 ;
+        for ( File src : files(new File(location.getDirectoryPath())) )
+        {
+            String name = src.getName() ;
+            if ( name.equals(Names.backupBlocks) )
+                continue ;
+            names.add(name) ;
+            File dst = new File(dir, name) ;
+            if ( ! incremental || ! dst.exists() )
+                bytes += copyFile(src, dst) ;
+            else if ( blockFiles.contains(name) )
+                bytes += copyBlocks(src, dst, tracker.getBlocks(name), tracker.getBlockSize(name)) ;
+            else if ( dataFiles.contains(name) && dst.length() <= src.length() )
+                bytes += copyTail(src, dst) ;
+            else
+                bytes += copyChanges(src, dst) ;
+        }
+        // Files no longer in the database, only if the directory is known to be a backup. 
+        if ( token != null )
+        {
+            for ( File f : files(dir) )
+                if ( ! names.contains(f.getName()) )
+                    f.delete() ;
+        }
+        log.debug((incremental ? "Incremental" : "Full")+" backup: "+bytes+" bytes copied to "+directory) ;
+
+        String newToken = UUID.randomUUID().toString() ;
+        BlockTracker newTracker = BlockTracker.create(location, newToken) ;
+        writeToken(dir, newToken) ;
+        return newTracker ;
+    }
+
+    /** Restore a database from a backup directory into an empty location that is not in use. */
+    public static void restore(String directory, Location location)
+    {
+        File dir = new File(directory) ;
+        if ( readToken(dir) == null )
+            throw new TDBException("Not a complete backup: "+directory) ;
+        if ( location.isMem() )
+            throw new TDBException("Can't restore to an in-memory database") ;
+        FileOps.ensureDir(location.getDirectoryPath()) ;
+        File dest = new File(location.getDirectoryPath()) ;
+        if ( ! files(dest).isEmpty() )
+            throw new TDBException("Location is not empty: "+location.getDirectoryPath()) ;
+        for ( File src : files(dir) )
+        {
+            if ( src.getName().equals(Names.backupToken) )
+                continue ;
+            copyFile(src, new File(dest, src.getName())) ;
+        }
+    }
+
+    /** The regular files of a directory, except lock and temporary files. */
+    private static List<File> files(File dir)
+    {
+        List<File> x = new ArrayList<>() ;
+        File[] files = dir.listFiles() ;
+        if ( files == null )
+            return x ;
+        for ( File f : files )
+        {
+            if ( ! f.isFile() || f.getName().equals(Names.lockFile) || f.getName().endsWith(".tmp") )
+                continue ;
+            x.add(f) ;
+        }
+        return x ;
+    }
+
+    private static long copyFile(File src, File dst)
+    {
+        long n = 0 ;
+        try ( FileChannel in = new FileInputStream(src).getChannel() ;
+              FileChannel out = new FileOutputStream(dst).getChannel() ) {
+            n = transfer(in, 0, in.size(), out) ;
+            out.force(true) ;
+        } catch (IOException ex) { IO.exception(ex) ; }
+        dst.setLastModified(src.lastModified()) ;
+        return n ;
+    }
+
+    // From the end of the backup copy of an append-only file. 
+    private static long copyTail(File src, File dst)
+    {
+        long n = 0 ;
+        try ( FileChannel in = new FileInputStream(src).getChannel() ;
+              FileChannel out = new RandomAccessFile(dst, "rw").getChannel() ) {
+            long start = out.size() ;
+            out.position(start) ;
+            n = transfer(in, start, in.size()-start, out) ;
+            out.force(true) ;
+        } catch (IOException ex) { IO.exception(ex) ; }
+        dst.setLastModified(src.lastModified()) ;
+        return n ;
+    }
+
+    private static final int CompareChunk = 64*1024 ;
+
+    // Write the parts of the file that differ from the backup copy.
+    private static long copyChanges(File src, File dst)
+    {
+        long n = 0 ;
+        try ( FileChannel in = new FileInputStream(src).getChannel() ;
+              FileChannel out = new RandomAccessFile(dst, "rw").getChannel() ) {
+            long length = in.size() ;
+            ByteBuffer bb1 = ByteBuffer.allocate(CompareChunk) ;
+            ByteBuffer bb2 = ByteBuffer.allocate(CompareChunk) ;
+            for ( long posn = 0 ; posn < length ; posn += CompareChunk )
+            {
+                read(in, posn, bb1) ;
+                read(out, posn, bb2) ;
+                if ( bb1.equals(bb2) )
+                    continue ;
+                while ( bb1.hasRemaining() )
+                    out.write(bb1, posn+bb1.position()) ;
+                n += bb1.limit() ;
+            }
+            if ( out.size() > length )
+                out.truncate(length) ;
+            out.force(true) ;
+        } catch (IOException ex) { IO.exception(ex) ; }
+        dst.setLastModified(src.lastModified()) ;
+        return n ;
+    }
+
+    private static void read(FileChannel chan, long posn, ByteBuffer bb) throws IOException
+    {
+        bb.clear() ;
+        while ( bb.hasRemaining() && chan.read(bb, posn+bb.position()) > 0 ) { }
+        bb.flip() ;
+    }
+
+    private static long copyBlocks(File src, File dst, Set<Long> blocks, int blockSize)
+    {
+        long n = 0 ;
+        try ( FileChannel in = new FileInputStream(src).getChannel() ;
+              FileChannel out = new RandomAccessFile(dst, "rw").getChannel() ) {
+            long length = in.size() ;
+            if ( blockSize > 0 )
+            {
+                // In file order.
+                List<Long> ids = new ArrayList<>(blocks) ;
+                Collections.sort(ids) ;
+                ByteBuffer bb = ByteBuffer.allocate(blockSize) ;
+                for ( long id : ids )
+                {
+                    long posn = id*blockSize ;
+                    if ( posn >= length )
+                        continue ;
+                    read(in, posn, bb) ;
+                    while ( bb.hasRemaining() )
+                        out.write(bb, posn+bb.position()) ;
+                    n += blockSize ;
+                }
+            }
+            if ( out.size() > length )
+                out.truncate(length) ;
+            out.force(true) ;
+        } catch (IOException ex) { IO.exception(ex) ; }
+        dst.setLastModified(src.lastModified()) ;
+        return n ;
+    }
+
+    private static long transfer(FileChannel in, long start, long length, FileChannel out) throws IOException
+    {
+        long posn = 0 ;
+        while ( posn < length )
+        {
+            long x = in.transferTo(start+posn, length-posn, out) ;
+            if ( x <= 0 )
+                break ;
+            posn += x ;
+        }
+        return posn ;
+    }
+
+    private static String readToken(File dir)
+    {
+        File f = new File(dir, Names.backupToken) ;
+        if ( ! f.exists() )
+            return null ;
+        try ( BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(f), "UTF-8")) ) {
+            String s = in.readLine() ;
+            return ( s == null || s.isEmpty() ) ? null : s.trim() ;
+        } catch (IOException ex) { IO.exception(ex) ; return null ; }
+    }
+
+    private static void writeToken(File dir, String token)
+    {
+        try ( FileOutputStream out = new FileOutputStream(new File(dir, Names.backupToken)) ) {
+            out.write((token+"\n").getBytes("UTF-8")) ;
+            out.getFD().sync() ;
+        } catch (IOException ex) { IO.exception(ex) ; }
+    }
+}
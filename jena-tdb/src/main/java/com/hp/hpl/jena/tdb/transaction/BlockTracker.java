@@ -0,0 +1,207 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hp.hpl.jena.tdb.transaction;
+
+import java.io.* ;
+import java.util.HashMap ;
+import java.util.HashSet ;
+import java.util.Map ;
+import java.util.Set ;
+
+import org.apache.jena.atlas.io.IO ;
+import org.apache.jena.atlas.lib.FileOps ;
+import org.slf4j.Logger ;
+import org.slf4j.LoggerFactory ;
+
+import com.hp.hpl.jena.tdb.base.file.Location ;
+import com.hp.hpl.jena.tdb.sys.Names ;
+
+/** The blocks of the database files written back from the journal since the last
+ *  block-level backup, so the next backup need only copy those blocks.
+ *  <p>
+ *  The record is kept in a file in the database directory so it survives restarts.
+ *  The file only exists once a block-level backup has been taken. It is the token
+ *  of the backup, then lines of "file blockSize blockId". 
+ *  <p>
+ *  Anything that changes the database files other than by the journal (bulk loading,
+ *  index building, non-transactional use) must call {@link #delete(Location)}:
+ *  the next backup is then a full copy.
+ */
+public class BlockTracker
+{
+    private static Logger log = LoggerFactory.getLogger(BlockTracker.class) ;
+    
+    private final String filename ;
+    private final String token ;
+    private final Map<String, Set<Long>> blocks = new HashMap<>() ;
+    private final Map<String, Integer> blockSizes = new HashMap<>() ;
+    // Not yet in the file.
+    private final StringBuilder pending = new StringBuilder() ;
+    // The file has been deleted : the blocks recorded are not all the changes.
+    private boolean invalid = false ;
+
+    private BlockTracker(String filename, String token)
+    {
+        this.filename = filename ;
+        this.token = token ;
+    }
+
+    /** The tracker for a database, or null if blocks are not being tracked. */
+    public static BlockTracker open(Location location)
+    {
+        if ( location.isMem() )
+            return null ;
+        String fn = location.getPath(Names.backupBlocks) ;
+        if ( ! FileOps.exists(fn) )
+            return null ;
+        try ( BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(fn), "UTF-8")) ) {
+            String token = in.readLine() ;
+            if ( token == null || token.isEmpty() )
+            {
+                log.warn("Bad backup block file: "+fn) ;
+                return null ;
+            }
+            BlockTracker tracker = new BlockTracker(fn, token) ;
+            for ( String line ; ( line = in.readLine() ) != null ; )
+            {
+                String[] x = line.split(" ") ;
+                // A partial last line is from a crash before the journal was truncated.
+                // The journal is replayed again and the blocks recorded again. 
+                if ( x.length != 3 )
+                    continue ;
+                try {
+                    tracker.add(x[0], Integer.parseInt(x[1]), Long.parseLong(x[2])) ;
+                } catch (NumberFormatException ex) { continue ; }
+            }
+            return tracker ;
+        } catch (IOException ex) { IO.exception(ex) ; return null ; }
+    }
+
+    /** Start tracking, from a backup, with no changed blocks. */
+    public static BlockTracker create(Location location, String token)
+    {
+        String fn = location.getPath(Names.backupBlocks) ;
+        File tmp = new File(fn+".tmp") ;
+        try ( Writer out = new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8") ) {
+            out.write(token) ;
+            out.write("\n") ;
+        } catch (IOException ex) { IO.exception(ex) ; }
+        File f = new File(fn) ;
+        f.delete() ;
+        if ( ! tmp.renameTo(f) )
+            log.warn("Failed to rename "+tmp+" to "+f) ;
+        return new BlockTracker(fn, token) ;
+    }
+
+    /** Stop tracking, because the database files are about to be changed other than
+     *  by journal write-back. The next backup is a full copy. */
+    public static void delete(Location location)
+    {
+        if ( location.isMem() )
+            return ;
+        String fn = location.getPath(Names.backupBlocks) ;
+        if ( FileOps.exists(fn) )
+        {
+            log.debug("Block tracking stopped: "+location.getDirectoryPath()) ;
+            FileOps.delete(fn) ;
+        }
+    }
+
+    /** The token of the backup the changes are from. */
+    public String getToken()        { return token ; }
+
+    /** Whether the recorded blocks are all the changes since the backup with this token;
+     *  false if tracking has been stopped since. */
+    public synchronized boolean isValid()
+    {
+        if ( invalid )
+            return false ;
+        if ( ! FileOps.exists(filename) )
+        {
+            invalid = true ;
+            return false ;
+        }
+        try ( BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(filename), "UTF-8")) ) {
+            if ( ! token.equals(in.readLine()) )
+                invalid = true ;
+        } catch (IOException ex) { IO.exception(ex) ; }
+        return ! invalid ;
+    }
+
+    /** Note that a block is going to be written to a file. */
+    public synchronized void record(String file, int blockSize, long blockId)
+    {
+        if ( invalid )
+            return ;
+        if ( add(file, blockSize, blockId) )
+            pending.append(file).append(' ').append(blockSize).append(' ').append(blockId).append('\n') ;
+    }
+
+    private boolean add(String file, int blockSize, long blockId)
+    {
+        Set<Long> x = blocks.get(file) ;
+        if ( x == null )
+        {
+            x = new HashSet<>() ;
+            blocks.put(file, x) ;
+            blockSizes.put(file, blockSize) ;
+        }
+        return x.add(blockId) ;
+    }
+
+    /** Write the recorded blocks to disk. Call before the journal is truncated:
+     *  if the system crashes before then, the journal is replayed again. */
+    public synchronized void sync()
+    {
+        if ( pending.length() == 0 )
+            return ;
+        if ( invalid || ! FileOps.exists(filename) )
+        {
+            // Tracking stopped : don't recreate the file without its token.
+            invalid = true ;
+            pending.setLength(0) ;
+            return ;
+        }
+        try ( FileOutputStream out = new FileOutputStream(filename, true) ) {
+            out.write(pending.toString().getBytes("UTF-8")) ;
+            out.getFD().sync() ;
+        } catch (IOException ex) { IO.exception(ex) ; }
+        pending.setLength(0) ;
+    }
+
+    /** The changed blocks of a file. */
+    public synchronized Set<Long> getBlocks(String file)
+    {
+        Set<Long> x = blocks.get(file) ;
+        return ( x == null ) ? new HashSet<Long>() : new HashSet<>(x) ;
+    }
+
+    /** The block size of a file, or -1 if it has no changed blocks. */
+    public synchronized int getBlockSize(String file)
+    {
+        Integer x = blockSizes.get(file) ;
+        return ( x == null ) ? -1 : x ;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "BlockTracker: "+token+" files="+blocks.size() ;
+    }
+}
@@ -36,6 +36,7 @@ import com.hp.hpl.jena.tdb.setup.BlockMgrBuilder ;
 import com.hp.hpl.jena.tdb.setup.DatasetBuilderStd ;
 import com.hp.hpl.jena.tdb.setup.NodeTableBuilder ;
 import com.hp.hpl.jena.tdb.setup.StoreParams ;
+import com.hp.hpl.jena.tdb.solver.stats.StatsCounts ;
 import com.hp.hpl.jena.tdb.store.DatasetGraphTDB ;
 import com.hp.hpl.jena.tdb.store.nodetable.NodeTable ;
 import com.hp.hpl.jena.tdb.store.nodetable.NodeTableInline ;
@@ -93,6 +94,9 @@ public class DatasetBuilderTxn
         DatasetBuilderStd x = new DatasetBuilderStd(blockMgrBuilder, nodeTableBuilder) ;
         DatasetGraphTDB dsg2 = x._build(dsg.getLocation(), dsg.getConfig().params, true, dsg.getReorderTransform()) ;
         dsg2.getContext().putAll(dsg.getContext()) ;
+        // Record the changes to the statistics; merged into the base dataset on commit.
+        if ( dsg.getStatsCounts() != null )
+            dsg2.setStatsCounts(new StatsCounts()) ;
         return dsg2 ;
     }
 
@@ -139,7 +143,7 @@ public class DatasetBuilderTxn
             txn.addComponent(ntt) ;
 
             // Add inline wrapper.
-            NodeTable nt = NodeTableInline.create(ntt) ;
+            NodeTable nt = NodeTableInline.create(ntt, params.getInlineExtended()) ;
             return nt ;
         }
     }
@@ -106,6 +106,7 @@ public class DatasetGraphTransaction extends DatasetGraphTrackActive implements
             throw new TDBTransactionException("Not in a transaction") ;
 
         // Never used in a transaction - return underlying database for old style (non-transactional) usage.  
+        sConn.noteDirectUse() ;
         return sConn.getBaseDataset() ;
     }
 
@@ -22,6 +22,7 @@ import static com.hp.hpl.jena.tdb.sys.SystemTDB.SizeOfInt ;
 
 import java.nio.ByteBuffer ;
 import java.util.Iterator ;
+import java.util.concurrent.atomic.AtomicLong ;
 import java.util.zip.Adler32 ;
 
 import org.apache.jena.atlas.iterator.IteratorSlotted ;
@@ -71,6 +72,15 @@ class Journal implements Sync, Closeable
     private static int SizeofCRC = SizeOfInt ;
     private ByteBuffer crcTrailer = ByteBuffer.allocate(SizeofCRC) ;    // Adler: 32 bit.
     
+    // Group commit : commit records are numbered as they are written.
+    // One force of the channel makes all the commits written before it durable. 
+    private final AtomicLong commitsWritten = new AtomicLong(0) ;
+    private final Object syncLock = new Object() ;
+    // Guarded by syncLock.
+    private long commitsSynced = 0 ;
+    private boolean syncing = false ;
+    private long syncCount = 0 ;
+    
     public static boolean exists(Location location)
     {
         if ( location.isMem() ) return false ;
@@ -183,6 +193,98 @@ class Journal implements Sync, Closeable
         return posn ;
     }
     
+    /** Write a commit record, without forcing it to disk.
+     *  Returns the number of the commit, for {@link #syncCommit}.
+     */
+    synchronized
+    public long writeCommit()
+    {
+        write(JournalEntryType.Commit, FileRef.Journal, null) ;
+        long x = commitsWritten.incrementAndGet() ;
+        synchronized(syncLock) { syncLock.notifyAll() ; }
+        return x ;
+    }
+    
+    /** Return when the commit record numbered {@code commit} is on disk.
+     *  <p>
+     *  The first thread to wait becomes the leader: it waits for up to {@code window} milliseconds,
+     *  or until {@code groupSize} commits are waiting, then forces the journal once
+     *  for all the commits written so far. Other threads wait for the leader.
+     *  A window of zero forces the journal immediately.
+     */
+    public void syncCommit(long commit, long window, int groupSize)
+    {
+        long target ;
+        synchronized(syncLock)
+        {
+            for ( ;; )
+            {
+                if ( commitsSynced >= commit )
+                    return ;
+                if ( ! syncing )
+                    break ;
+                waitOn(0) ;
+            }
+            syncing = true ;
+            // Leader. Give other writers a chance to commit. 
+            long deadline = System.currentTimeMillis()+window ;
+            for ( ;; )
+            {
+                long remaining = deadline-System.currentTimeMillis() ;
+                if ( remaining <= 0 || commitsWritten.get()-commitsSynced >= groupSize )
+                    break ;
+                if ( commitsSynced >= commit )
+                {
+                    // Synced by someone else.
+                    syncing = false ;
+                    syncLock.notifyAll() ;
+                    return ;
+                }
+                waitOn(remaining) ;
+            }
+            target = commitsWritten.get() ;
+        }
+        boolean synced = false ;
+        try { 
+            channel.sync() ;
+            synced = true ;
+        } finally {
+            synchronized(syncLock)
+            {
+                syncing = false ;
+                syncCount++ ;
+                // If the sync failed, the next waiter tries again.  
+                if ( synced && target > commitsSynced )
+                    commitsSynced = target ;
+                syncLock.notifyAll() ;
+            }
+        }
+    }
+    
+    // Must hold syncLock.
+    private void waitOn(long millis)
+    {
+        try { syncLock.wait(millis) ; }
+        catch (InterruptedException ex) { throw new TDBTransactionException("Interrupted waiting for the journal to sync", ex) ; }
+    }
+    
+    /** Force all commit records written so far to disk, without waiting for a group. */
+    public void syncCommits()
+    {
+        synchronized(syncLock)
+        {
+            if ( commitsSynced >= commitsWritten.get() )
+                return ;
+        }
+        sync() ;
+    }
+    
+    /** Number of forces done for {@link #syncCommit} */
+    public long getCommitSyncCount()
+    {
+        synchronized(syncLock) { return syncCount ; }
+    }
+    
     synchronized
     public JournalEntry readJournal(long id)
     {
@@ -286,7 +388,17 @@ class Journal implements Sync, Closeable
     }
 
     @Override
-    public void sync()  { channel.sync() ; }
+    public void sync()
+    {
+        long x = commitsWritten.get() ;
+        channel.sync() ;
+        synchronized(syncLock)
+        {
+            if ( x > commitsSynced )
+                commitsSynced = x ;
+            syncLock.notifyAll() ;
+        }
+    }
 
     @Override
     public void close() { channel.close() ; }
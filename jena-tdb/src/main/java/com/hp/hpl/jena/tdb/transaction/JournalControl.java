@@ -42,9 +42,11 @@ import com.hp.hpl.jena.tdb.base.file.Location ;
 import com.hp.hpl.jena.tdb.base.objectfile.ObjectFile ;
 import com.hp.hpl.jena.tdb.base.record.RecordFactory ;
 import com.hp.hpl.jena.tdb.index.IndexMap ;
+import com.hp.hpl.jena.tdb.solver.stats.StatsCounts ;
 import com.hp.hpl.jena.tdb.store.DatasetGraphTDB ;
 import com.hp.hpl.jena.tdb.store.StorageConfig ;
 import com.hp.hpl.jena.tdb.store.nodetable.NodeTable ;
+import com.hp.hpl.jena.tdb.store.nodetable.NodeTableNative ;
 import com.hp.hpl.jena.tdb.sys.FileRef ;
 import com.hp.hpl.jena.tdb.sys.Names ;
 import com.hp.hpl.jena.tdb.sys.SystemTDB ;
@@ -88,7 +90,10 @@ public class JournalControl
         
         for ( FileRef fileRef : dsg.getConfig().nodeTables.keySet() )
             recoverNodeDat(dsg, fileRef) ;
-        recoverFromJournal(dsg.getConfig(), journal) ;
+        recoverFromJournal(dsg.getConfig(), journal, BlockTracker.open(dsg.getLocation())) ;
+        // Any node hash filters were made before the node indexes were recovered. 
+        for ( NodeTable nodeTable : dsg.getConfig().nodeTables.values() )
+            resetFilter(nodeTable) ;
         
         journal.close() ;
         // Recovery complete.  Tidy up.  Node journal files have already been handled.
@@ -99,6 +104,14 @@ public class JournalControl
         }
     }
     
+    private static void resetFilter(NodeTable nodeTable)
+    {
+        while ( nodeTable.wrapped() != null )
+            nodeTable = nodeTable.wrapped() ;
+        if ( nodeTable instanceof NodeTableNative )
+            ((NodeTableNative)nodeTable).resetFilter() ;
+    }
+    
     private static Journal findJournal(DatasetGraphTDB dsg)
     {
         Location loc = dsg.getLocation() ;
@@ -118,6 +131,12 @@ public class JournalControl
      *  Return true if a recovery was attempted; return false if we decided no work needed.
      */
     public static boolean recoverFromJournal(StorageConfig sConf, Journal jrnl)
+    {
+        return recoverFromJournal(sConf, jrnl, null) ;
+    }
+
+    /** Recovery from a journal, noting the blocks written in a {@link BlockTracker} (which may be null). */
+    public static boolean recoverFromJournal(StorageConfig sConf, Journal jrnl, BlockTracker tracker)
     {
         if ( jrnl.isEmpty() )
             return false ;
@@ -135,11 +154,13 @@ public class JournalControl
             catch (TDBException ex) { x = -1 ; }
             
             if ( x == -1 ) break ;
-            recoverSegment(jrnl, posn, x, sConf) ;
+            recoverSegment(jrnl, posn, x, sConf, tracker) ;
             posn = x ;
         }
 
         // We have replayed the journals - clean up.
+        if ( tracker != null )
+            tracker.sync() ;
         jrnl.truncate(0) ;
         jrnl.sync() ;
         syncAll(sConf) ;
@@ -169,7 +190,7 @@ public class JournalControl
      *  Return true is a commit was found.
      *  Leave journal positioned just after commit or at end if none found.
      */
-    private static void recoverSegment(Journal jrnl, long startPosn, long endPosn, StorageConfig sConf)
+    private static void recoverSegment(Journal jrnl, long startPosn, long endPosn, StorageConfig sConf, BlockTracker tracker)
     {
         Iterator<JournalEntry> iter = jrnl.entries(startPosn) ;
         iter = jrnl.entries(startPosn) ;
@@ -183,7 +204,7 @@ public class JournalControl
                         log.warn(format("Inconsistent: end at %d; expected %d", e.getEndPosition(), endPosn)) ;
                     return ;
                 }
-                replay(e, sConf) ;
+                replay(e, sConf, tracker) ;
             }
         } finally { Iter.close(iter) ; }
     }
@@ -217,23 +238,34 @@ public class JournalControl
     }
     
     public static void replay(Transaction transaction)
+    {
+        replay(transaction, null) ;
+    }
+
+    public static void replay(Transaction transaction, BlockTracker tracker)
     {
         if ( syslog.isDebugEnabled())
             syslog.debug("Replay "+transaction.getLabel()) ;
         Journal journal = transaction.getJournal() ;
         DatasetGraphTDB dsg = transaction.getBaseDataset() ;
         // Currently, we (crudely) replay the whole journal.
-        replay(journal, dsg.getConfig()) ;
+        replay(journal, dsg.getConfig(), tracker) ;
     }
     
     /** Replay a journal onto a dataset */
     public static void replay(Journal journal, DatasetGraphTDB dsg)
     {
-        replay(journal, dsg.getConfig()) ;
+        replay(journal, dsg, null) ;
+    }
+    
+    /** Replay a journal onto a dataset, noting the blocks written in a {@link BlockTracker} (which may be null). */
+    public static void replay(Journal journal, DatasetGraphTDB dsg, BlockTracker tracker)
+    {
+        replay(journal, dsg.getConfig(), tracker) ;
     }
     
     /** Replay a journal onto a store configuration (the file resources) */
-    private static void replay(Journal journal, StorageConfig sConf)
+    private static void replay(Journal journal, StorageConfig sConf, BlockTracker tracker)
     {
         if ( journal.size() == 0 )
             return ;
@@ -245,7 +277,7 @@ public class JournalControl
             for (  ; iter.hasNext() ; )
             {
                 JournalEntry e = iter.next() ;
-                replay(e, sConf) ;
+                replay(e, sConf, tracker) ;
 
                 // There is no point sync here.  
                 // No writes via the DSG have been done. 
@@ -263,12 +295,14 @@ public class JournalControl
         Collection<BlockMgr> x = sConf.blockMgrs.values() ;
         for ( BlockMgr blkMgr : x )
             blkMgr.syncForce() ;
+        if ( tracker != null )
+            tracker.sync() ;
         // Must do a hard sync before this.
         journal.truncate(0) ;
     }
 
     /** return true for "go on" */
-    private static boolean replay(JournalEntry e, StorageConfig sConf)
+    private static boolean replay(JournalEntry e, StorageConfig sConf, BlockTracker tracker)
     {
         switch (e.getType())
         {
@@ -276,6 +310,8 @@ public class JournalControl
             {
                 BlockMgr blkMgr = sConf.blockMgrs.get(e.getFileRef()) ;
                 Block blk = e.getBlock() ;
+                if ( tracker != null )
+                    tracker.record(e.getFileRef().getFilename(), blk.getByteBuffer().capacity(), blk.getId()) ;
                 log.debug("Replay: {} {}",e.getFileRef(), blk) ;
                 blk.setModified(true) ;
                 blkMgr.overwrite(blk) ; 
@@ -283,6 +319,11 @@ public class JournalControl
             }   
             case Buffer:
             {
+                if ( Names.optStats.equals(e.getFileRef().getFilename()) )
+                {
+                    replayStats(e, sConf) ;
+                    return true ;
+                }
                 BufferChannel chan = sConf.bufferChannels.get(e.getFileRef()) ;
                 ByteBuffer bb = e.getByteBuffer() ;
                 log.debug("Replay: {} {}",e.getFileRef(), bb) ;
@@ -300,6 +341,18 @@ public class JournalControl
         return false ;
     }
 
+    /** The statistics written with a commit : the whole stats file. */
+    private static void replayStats(JournalEntry e, StorageConfig sConf)
+    {
+        if ( sConf.location.isMem() )
+            return ;
+        ByteBuffer bb = e.getByteBuffer() ;
+        byte[] contents = new byte[bb.remaining()] ;
+        bb.get(contents) ;
+        log.debug("Replay: {}",e.getFileRef()) ;
+        StatsCounts.writeFile(sConf.location.getPath(Names.optStats), contents) ;
+    }
+
     private static void syncAll(StorageConfig sConf)
     {
         Collection<BlockMgr> x = sConf.blockMgrs.values() ;
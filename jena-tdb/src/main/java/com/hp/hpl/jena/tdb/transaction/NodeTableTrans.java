@@ -22,7 +22,10 @@ import static org.apache.jena.atlas.logging.FmtLog.warn ;
 import static org.apache.jena.atlas.logging.Log.warn ;
 
 import java.nio.ByteBuffer ;
+import java.util.ArrayList ;
+import java.util.Arrays ;
 import java.util.Iterator ;
+import java.util.List ;
 
 import org.apache.jena.atlas.iterator.Iter ;
 import org.apache.jena.atlas.lib.ByteBufferLib ;
@@ -91,6 +94,17 @@ public class NodeTableTrans implements NodeTable, TransactionLifecycle
         return nodeId ;
     }
     
+    @Override
+    public List<NodeId> getAllocateNodeIds(List<Node> nodes)
+    {
+        if ( passthrough ) return base.getAllocateNodeIds(nodes) ;
+        // New nodes go to the journal one at a time.
+        List<NodeId> nodeIds = new ArrayList<>(nodes.size()) ;
+        for ( Node node : nodes )
+            nodeIds.add(getAllocateNodeId(node)) ;
+        return nodeIds ;
+    }
+    
     @Override
     public NodeId getNodeIdForNode(Node node)
     {
@@ -118,6 +132,40 @@ public class NodeTableTrans implements NodeTable, TransactionLifecycle
         return node ;
     }
 
+    @Override
+    public List<Node> getNodesForNodeIds(List<NodeId> ids)
+    {
+        if ( passthrough ) return base.getNodesForNodeIds(ids) ;
+        // One call to the base table and one to the journal table.
+        Node[] nodes = new Node[ids.size()] ;
+        List<NodeId> baseIds = new ArrayList<>() ;
+        List<NodeId> journalIds = new ArrayList<>() ;
+        for ( NodeId id : ids )
+        {
+            if ( NodeId.isAny(id) )
+                continue ;
+            if ( id.getId() < allocOffset )
+                baseIds.add(id) ;
+            else
+                journalIds.add(mapToJournal(id)) ;
+        }
+        List<Node> fromBase = baseIds.isEmpty() ? null : base.getNodesForNodeIds(baseIds) ;
+        List<Node> fromJournal = journalIds.isEmpty() ? null : nodeTableJournal.getNodesForNodeIds(journalIds) ;
+        int b = 0 ;
+        int j = 0 ;
+        for ( int i = 0 ; i < nodes.length ; i++ )
+        {
+            NodeId id = ids.get(i) ;
+            if ( NodeId.isAny(id) )
+                nodes[i] = Node.ANY ;
+            else if ( id.getId() < allocOffset )
+                nodes[i] = fromBase.get(b++) ;
+            else
+                nodes[i] = fromJournal.get(j++) ;
+        }
+        return Arrays.asList(nodes) ;
+    }
+
     @Override
     public boolean containsNode(Node node) {
         NodeId x = getNodeIdForNode(node) ;
@@ -26,6 +26,10 @@ public class SysTxnState
     final public long committedWriters ;
     final public long abortedWriters ;
     final public long queuedCommits ;
+    final public long journalSize ;
+    final public long writeBacks ;
+    final public long writeBackMillis ;
+    final public long lastWriteBackMillis ;
     
     SysTxnState(TransactionManager tm)
     {
@@ -35,6 +39,10 @@ public class SysTxnState
         committedWriters = tm.committedWriters.get() ;
         abortedWriters = tm.abortedWriters.get() ;
         queuedCommits = tm.commitedAwaitingFlush.size() ;
+        journalSize = tm.getJournal().size() ;
+        writeBacks = tm.writeBacks.get() ;
+        writeBackMillis = tm.writeBackMillis.get() ;
+        lastWriteBackMillis = tm.lastWriteBackMillis ;
     }
     
     @Override
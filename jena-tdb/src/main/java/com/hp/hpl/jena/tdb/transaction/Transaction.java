@@ -26,7 +26,6 @@ import org.apache.jena.atlas.logging.Log ;
 
 import com.hp.hpl.jena.query.ReadWrite ;
 import com.hp.hpl.jena.tdb.store.DatasetGraphTDB ;
-import com.hp.hpl.jena.tdb.sys.FileRef ;
 import com.hp.hpl.jena.tdb.sys.SystemTDB ;
 
 /** A transaction.  Much of the work is done in the transaction manager */
@@ -94,6 +93,11 @@ public class Transaction
      */
     
     public void commit() {
+        // Group commit: the transaction manager is told when the commit record is written,
+        // so the next writer can start and share the journal sync. New readers only
+        // see the transaction after the sync.
+        boolean groupCommit = ( SystemTDB.JournalGroupCommitWindow > 0 ) ;
+        long commitNumber = -1 ;
         synchronized (this) {
             // Do prepare, write the COMMIT record.
             // Enacting is left to the TransactionManager.
@@ -126,8 +130,9 @@ public class Transaction
                     // ---- end prepare
                     
                     try {
-                        journal.write(JournalEntryType.Commit, FileRef.Journal, null) ;
-                        journal.sync() ;        // Commit point.
+                        commitNumber = journal.writeCommit() ;
+                        if ( ! groupCommit )
+                            journal.sync() ;        // Commit point.
                     } catch (RuntimeException ex) {
                         // It either did all commit or didn't but we don't know which.
                         // Some low level system error - probably a sign of something
@@ -146,7 +151,32 @@ public class Transaction
             // The transaction manager does the enact and clearup calls
         }
         
-        try { txnMgr.notifyCommit(this) ; }
+        if ( groupCommit && commitNumber > 0 ) {
+            txnMgr.notifyCommitWritten(this) ;
+            RuntimeException syncEx = null ;
+            try { journal.syncCommit(commitNumber, SystemTDB.JournalGroupCommitWindow, SystemTDB.JournalGroupCommitSize) ; }
+            catch (RuntimeException ex) { syncEx = ex ; }
+            // Always tell the transaction manager, in commit order, so later commits are not held up.
+            notifyCommit(true) ;
+            if ( syncEx != null ) {
+                if ( isIOException(syncEx) )
+                    SystemTDB.errlog.warn("IOException during 'commit' : transaction status not known (but not a partial commit): "+syncEx.getMessage()) ;
+                else
+                    SystemTDB.errlog.warn("Exception during 'commit' : transaction status not known (but not a partial commit): ",syncEx) ;
+                throw new TDBTransactionException("Exception at commit point", syncEx) ;
+            }
+            return ;
+        }
+        notifyCommit(false) ;
+    }
+
+    private void notifyCommit(boolean groupCommit) {
+        try {
+            if ( groupCommit )
+                txnMgr.notifyCommitSynced(this) ;
+            else
+                txnMgr.notifyCommit(this) ;
+        }
         catch (RuntimeException ex) {
             if ( isIOException(ex) )
                 SystemTDB.errlog.warn("IOException after commit point : transaction commited but internal status not recorded properly : "+ex.getMessage()) ;
@@ -171,6 +201,8 @@ public class Transaction
             x.commitPrepare(this) ;
         for ( NodeTableTrans x : nodeTableTrans )
             x.commitPrepare(this) ;
+        if ( txnMgr != null )
+            txnMgr.prepareStats(this) ;
     }
 
     public void abort() {
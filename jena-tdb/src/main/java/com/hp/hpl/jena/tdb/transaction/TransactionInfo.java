@@ -66,4 +66,23 @@ public class TransactionInfo implements TransactionInfoMBean {
 		return transactionManager.activeReaders.get() ;
 	}
 
+	@Override
+	public long getJournalSize() {
+		return transactionManager.getJournal().size() ;
+	}
+
+	@Override
+	public long getWriteBackCount() {
+		return transactionManager.writeBacks.get() ;
+	}
+
+	@Override
+	public long getWriteBackTotalTime() {
+		return transactionManager.writeBackMillis.get() ;
+	}
+
+	@Override
+	public long getWriteBackLastTime() {
+		return transactionManager.lastWriteBackMillis ;
+	}
 }
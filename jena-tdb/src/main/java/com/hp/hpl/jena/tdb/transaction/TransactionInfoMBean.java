@@ -44,4 +44,16 @@ public interface TransactionInfoMBean
 
     /** Number of read transactions executing */
     long getCurrentReadTransactionCount() ; 
+
+    /** Bytes in the journal waiting to be written back to the base database */
+    long getJournalSize() ; 
+
+    /** Number of times the journal has been written back to the base database */
+    long getWriteBackCount() ; 
+
+    /** Total time, in milliseconds, spent writing back the journal */
+    long getWriteBackTotalTime() ; 
+
+    /** Time, in milliseconds, of the last write back of the journal */
+    long getWriteBackLastTime() ; 
 }
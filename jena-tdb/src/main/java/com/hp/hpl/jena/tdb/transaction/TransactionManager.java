@@ -24,6 +24,7 @@ import static com.hp.hpl.jena.tdb.transaction.TransactionManager.TxnPoint.CLOSE
 import static java.lang.String.format ;
 
 import java.io.File ;
+import java.nio.ByteBuffer ;
 import java.util.ArrayList ;
 import java.util.HashSet ;
 import java.util.List ;
@@ -41,7 +42,13 @@ import org.slf4j.LoggerFactory ;
 
 import com.hp.hpl.jena.query.ReadWrite ;
 import com.hp.hpl.jena.shared.Lock ;
+import com.hp.hpl.jena.sparql.engine.optimizer.reorder.ReorderTransformation ;
+import com.hp.hpl.jena.tdb.base.block.Block ;
+import com.hp.hpl.jena.tdb.solver.stats.ReorderStatsFile ;
+import com.hp.hpl.jena.tdb.solver.stats.StatsCounts ;
 import com.hp.hpl.jena.tdb.store.DatasetGraphTDB ;
+import com.hp.hpl.jena.tdb.sys.FileRef ;
+import com.hp.hpl.jena.tdb.sys.Names ;
 import com.hp.hpl.jena.tdb.sys.SystemTDB ;
 
 public class TransactionManager
@@ -76,6 +83,16 @@ public class TransactionManager
         return 0 ;
     }
     
+    /** Write back the journal to the main database on a thread of the transaction manager,
+     *  rather than in the transaction that finishes when the database is quiet.
+     *  Applies to transaction managers created after it is set.
+     *  <p>
+     *  The write back is still a replay of the whole journal, done when no transaction
+     *  is active: readers share the base files with the views of queued commits.
+     *  A long running transaction delays it until the transaction finishes.
+     */
+    public static boolean BackgroundWriteBack = false ;
+    
     enum TxnPoint { BEGIN, COMMIT, ABORT, CLOSE, QUEUE, UNQUEUE }
     private List<Pair<Transaction, TxnPoint>> transactionStateTransition ;
     
@@ -90,6 +107,9 @@ public class TransactionManager
     
     int maxQueue = 0 ;
     List<Transaction> commitedAwaitingFlush = new ArrayList<>() ;
+    // Group commit: write transactions with a commit record that is not yet on disk, in commit order.
+    // The next writer starts from the latest of these; readers do not see them. Guarded by "this".
+    private List<Transaction> commitedAwaitingSync = new ArrayList<>() ;
     
     static AtomicLong transactionId = new AtomicLong(1) ;
     
@@ -105,6 +125,11 @@ public class TransactionManager
     AtomicLong committedWriters = new AtomicLong(0) ;
     AtomicLong abortedWriters = new AtomicLong(0) ;
     
+    // Write back stats
+    AtomicLong writeBacks = new AtomicLong(0) ;
+    AtomicLong writeBackMillis = new AtomicLong(0) ;
+    volatile long lastWriteBackMillis = 0 ;
+    
     // This is the DatasetGraphTDB for the first read-transaction created for
     // a particular view.  The read DatasetGraphTDB can be used by all the readers
     // seeing the same view.
@@ -117,10 +142,15 @@ public class TransactionManager
     // Delayes enacting transactions.
     private BlockingQueue<Transaction> queue = new LinkedBlockingDeque<>() ;
 
-    private Thread committerThread ;    // Later
+    private Thread committerThread = null ;
+    private boolean closing = false ;
 
     private DatasetGraphTDB baseDataset ;
     private Journal journal ;
+    // Blocks written back since the last block-level backup; null if not tracking.
+    private BlockTracker blockTracker ;
+    // During a block-level backup, the base database files must not change. Guarded by "this".
+    private boolean writeBackSuspended = false ;
     
     /*
      * The order of calls is: 
@@ -269,16 +299,32 @@ public class TransactionManager
     {
         this.baseDataset = dsg ; 
         this.journal = Journal.create(dsg.getLocation()) ;
-        // LATER
-//        Committer c = new Committer() ;
-//        this.committerThread = new Thread(c) ;
-//        committerThread.setDaemon(true) ;
-//        committerThread.start() ;
+        this.blockTracker = BlockTracker.open(dsg.getLocation()) ;
+        if ( BackgroundWriteBack )
+        {
+            Committer c = new Committer() ;
+            this.committerThread = new Thread(c, "TDB write back: "+dsg.getLocation().getDirectoryPath()) ;
+            committerThread.setDaemon(true) ;
+            committerThread.start() ;
+        }
     }
 
     public void closedown()
     {
-        processDelayedReplayQueue(null) ;
+        if ( committerThread != null )
+        {
+            synchronized(this)
+            {
+                closing = true ;
+                notifyAll() ;
+            }
+            try { committerThread.join() ; }
+            catch (InterruptedException ex) { Log.warn(this, "Interrupted waiting for the write back thread") ; }
+        }
+        synchronized(this)
+        {
+            processDelayedReplayQueue(null) ;
+        }
         journal.close() ;
     }
 
@@ -311,7 +357,14 @@ public class TransactionManager
             }
         }
         // entry synchronized part
-        return begin$(mode, label) ;
+        try { return begin$(mode, label) ; }
+        catch (RuntimeException ex)
+        {
+            // Did not start : give up the permit.
+            if ( mode == ReadWrite.WRITE )
+                writersWaiting.release() ;
+            throw ex ;
+        }
     }
         
     // If DatasetGraphTransaction has a sync lock on sConn, this
@@ -321,7 +374,8 @@ public class TransactionManager
     synchronized
     private DatasetGraphTxn begin$(ReadWrite mode, String label)
     {
-        if ( mode == ReadWrite.WRITE && activeWriters.get() > 0 )    // Guard
+        // Writers waiting for a group commit sync have finished as far as the next writer is concerned.
+        if ( mode == ReadWrite.WRITE && activeWriters.get() > commitedAwaitingSync.size() )    // Guard
             throw new TDBTransactionException("Existing active write transaction") ;
 
         if ( DEBUG ) 
@@ -333,7 +387,10 @@ public class TransactionManager
         
         DatasetGraphTDB dsg = baseDataset ;
         // *** But, if there are pending, committed transactions, use latest.
-        if ( ! commitedAwaitingFlush.isEmpty() )
+        // A writer also builds on commits that are waiting for the journal sync.
+        if ( mode == ReadWrite.WRITE && ! commitedAwaitingSync.isEmpty() )
+            dsg = commitedAwaitingSync.get(commitedAwaitingSync.size()-1).getActiveDataset().getView() ;
+        else if ( ! commitedAwaitingFlush.isEmpty() )
         {  
             if ( DEBUG ) System.out.print(commitedAwaitingFlush.size()) ;
             dsg = commitedAwaitingFlush.get(commitedAwaitingFlush.size()-1).getActiveDataset().getView() ;
@@ -408,6 +465,51 @@ public class TransactionManager
      */ 
     synchronized
     public void notifyCommit(Transaction transaction)
+    {
+        if ( transaction.getMode() == ReadWrite.WRITE )
+            commitStats(transaction) ;
+        commitWorker(transaction) ;
+        if ( transaction.getMode() == ReadWrite.WRITE )
+            writersWaiting.release() ;              // Single writer: let another (waiting?) writer have a turn.
+    }
+
+    /** Group commit: the commit record of a write transaction has been written
+     *  but the journal is not yet on disk. Another writer can now start, from this
+     *  transaction's view. New readers do not see the transaction until
+     *  {@link #notifyCommitSynced}.
+     */
+    synchronized
+    public void notifyCommitWritten(Transaction transaction)
+    {
+        // Before the next writer journals the statistics.
+        commitStats(transaction) ;
+        commitedAwaitingSync.add(transaction) ;
+        writersWaiting.release() ;
+    }
+
+    /** Group commit: the journal sync for a transaction has finished.
+     *  Commits become visible in commit order: this waits for earlier
+     *  transactions of the group to be notified.
+     */
+    synchronized
+    public void notifyCommitSynced(Transaction transaction)
+    {
+        // The earlier transactions are already synced: each tells the transaction manager
+        // after its sync, whether or not it succeeded. Do not give up on an interrupt.
+        boolean interrupted = false ;
+        while ( commitedAwaitingSync.get(0) != transaction )
+        {
+            try { wait() ; }
+            catch (InterruptedException ex) { interrupted = true ; }
+        }
+        commitedAwaitingSync.remove(0) ;
+        commitWorker(transaction) ;
+        notifyAll() ;
+        if ( interrupted )
+            Thread.currentThread().interrupt() ;
+    }
+
+    private void commitWorker(Transaction transaction)
     {
         if ( ! activeTransactions.contains(transaction) )
             SystemTDB.errlog.warn("Transaction not active: "+transaction.getTxnId()) ;
@@ -419,10 +521,55 @@ public class TransactionManager
             case READ: break ;
             case WRITE:
                 currentReaderView.set(null) ;       // Clear the READ transaction cache.
-                writersWaiting.release() ;          // Single writer: let another (waiting?) writer have a turn.
+                refreshStats(transaction) ;
         }
     }
 
+    /** Write the statistics, with the changes made by a write transaction, to the journal.
+     *  Part of the prepare step of the transaction, so the statistics are recovered with it.
+     */
+    void prepareStats(Transaction transaction)
+    {
+        StatsCounts counts = baseDataset.getStatsCounts() ;
+        StatsCounts changes = statsChanges(transaction) ;
+        if ( counts == null || changes == null || ! changes.isChanged() )
+            return ;
+        ByteBuffer bytes = ByteBuffer.wrap(counts.bytes(changes)) ;
+        FileRef fileRef = FileRef.create(baseDataset.getLocation().getPath(Names.optStats)) ;
+        journal.write(JournalEntryType.Buffer, fileRef, new Block(0, bytes)) ;
+    }
+
+    // Add the changes to the statistics made by the transaction.
+    // The statistics file is written when the journal is written back.
+    private void commitStats(Transaction transaction)
+    {
+        StatsCounts counts = baseDataset.getStatsCounts() ;
+        StatsCounts changes = statsChanges(transaction) ;
+        if ( counts != null && changes != null )
+            counts.merge(changes) ;
+    }
+
+    private static StatsCounts statsChanges(Transaction transaction)
+    {
+        DatasetGraphTxn dsgTxn = transaction.getActiveDataset() ;
+        return ( dsgTxn == null ) ? null : dsgTxn.getView().getStatsCounts() ;
+    }
+
+    // The BGP optimizer uses the statistics as just committed,
+    // otherwise picks up a changed stats file.
+    private void refreshStats(Transaction transaction)
+    {
+        ReorderTransformation reorder = baseDataset.getReorderTransform() ;
+        if ( ! ( reorder instanceof ReorderStatsFile ) )
+            return ;
+        StatsCounts counts = baseDataset.getStatsCounts() ;
+        StatsCounts changes = statsChanges(transaction) ;
+        if ( counts != null && changes != null && changes.isChanged() )
+            ((ReorderStatsFile)reorder).reload(counts.format()) ;
+        else
+            ((ReorderStatsFile)reorder).refresh() ;
+    }
+
     synchronized
     public void notifyAbort(Transaction transaction)
     {
@@ -442,6 +589,9 @@ public class TransactionManager
     /** The stage in a commit after committing - make the changes permanent in the base data */ 
     private void enactTransaction(Transaction transaction)
     {
+        // With group commit, the commit record may not be on disk yet.
+        // It must be before the base data changes.
+        journal.syncCommits() ;
         // Really, really do it!
         for ( TransactionLifecycle x : transaction.lifecycleComponents() )
         {
@@ -464,19 +614,30 @@ public class TransactionManager
     
     private void readerFinishesWorker(Transaction txn)
     {
+        if ( committerThread != null )
+        {
+            notifyAll() ;
+            return ;
+        }
         if ( queue.size() >= QueueBatchSize )
             processDelayedReplayQueue(txn) ;
     }
     
     private void writerAbortsWorker(Transaction txn)
     {
+        if ( committerThread != null )
+        {
+            notifyAll() ;
+            return ;
+        }
         if ( queue.size() >= QueueBatchSize )
             processDelayedReplayQueue(txn) ;
     }
     
     private void writerCommitsWorker(Transaction txn)
     {
-        if ( activeReaders.get() == 0 && queue.size() >= QueueBatchSize )
+        // Group commit: a later writer may already be active.
+        if ( committerThread == null && activeReaders.get() == 0 && activeWriters.get() == 0 && queue.size() >= QueueBatchSize )
         {
             // Can commit immediately.
             // Ensure the queue is empty though.
@@ -491,7 +652,7 @@ public class TransactionManager
             
             processDelayedReplayQueue(txn) ;
             enactTransaction(txn) ;
-            JournalControl.replay(txn) ;
+            JournalControl.replay(txn, blockTracker) ;
         }
         else
         {
@@ -500,12 +661,16 @@ public class TransactionManager
             maxQueue = Math.max(commitedAwaitingFlush.size(), maxQueue) ;
             if ( log() ) log("Add to pending queue", txn) ; 
             queue.add(txn) ;
+            if ( committerThread != null )
+                notifyAll() ;
         }
 
     }
     
     private void processDelayedReplayQueue(Transaction txn)
     {
+        if ( writeBackSuspended )
+            return ;
         // Can we do work?
         if ( activeReaders.get() != 0 || activeWriters.get() != 0 )
         {
@@ -528,6 +693,7 @@ public class TransactionManager
         
         if ( log() )
             log("Start flush delayed commits", txn) ;
+        long startTime = System.currentTimeMillis() ;
         
         // Drop the cached reader view so that next time it is recreated
         // against the updated database.
@@ -557,7 +723,7 @@ public class TransactionManager
         if ( DEBUG ) checkNodesDatJrnl("3", txn) ;
 
         // Whole journal to base database
-        JournalControl.replay(journal, baseDataset) ;
+        JournalControl.replay(journal, baseDataset, blockTracker) ;
 
         if ( DEBUG ) checkNodesDatJrnl("4", txn) ;
         
@@ -565,8 +731,61 @@ public class TransactionManager
         if ( log() )
             log("End flush delayed commits", txn) ;
         
-        
-        
+        long time = System.currentTimeMillis()-startTime ;
+        lastWriteBackMillis = time ;
+        writeBackMillis.addAndGet(time) ;
+        writeBacks.incrementAndGet() ;
+    }
+
+    /** Copy the database files to a directory while the database is in use.
+     *  Writers wait, and committed transactions are not written back to the database,
+     *  until the copy is complete; readers carry on.
+     *  @see BackupControl#backup
+     */
+    public void backup(String directory)
+    {
+        try { writersWaiting.acquire() ; }
+        catch (InterruptedException e)
+        {
+            log.error("backup", e) ;
+            throw new TDBTransactionException(e) ;
+        }
+        try {
+            synchronized(this)
+            {
+                // Write back now, if possible, so less of the journal is copied.
+                processDelayedReplayQueue(null) ;
+                writeBackSuspended = true ;
+            }
+            BlockTracker tracker = BackupControl.backup(baseDataset, journal, blockTracker, directory) ;
+            synchronized(this)
+            {
+                blockTracker = tracker ;
+            }
+        } finally {
+            synchronized(this)
+            {
+                writeBackSuspended = false ;
+                processDelayedReplayQueue(null) ;
+                notifyAll() ;
+            }
+            writersWaiting.release() ;
+        }
+    }
+
+    public synchronized BlockTracker getBlockTracker()
+    {
+        return blockTracker ;
+    }
+
+    /** The base database is being changed directly, not by transactions: stop tracking
+     *  blocks so the next block-level backup is a full copy. */
+    public synchronized void stopBlockTracking()
+    {
+        if ( blockTracker == null )
+            return ;
+        blockTracker = null ;
+        BlockTracker.delete(baseDataset.getLocation()) ;
     }
 
     private void checkNodesDatJrnl(String label, Transaction txn)
@@ -709,31 +928,43 @@ public class TransactionManager
         return new SysTxnState(this) ;
     }
     
-    // LATER.
+    /** Background write back: wait for the database to be quiet, with enough transactions
+     *  queued, then write back.
+     */
     class Committer implements Runnable
     {
         @Override
         public void run()
         {
-            for(;;)
+            synchronized(TransactionManager.this)
             {
-                // Wait until the reader count goes to zero.
-                
-                // This wakes up for every transation but maybe 
-                // able to play several transactions at once (later).
-                try {
-                    Transaction txn = queue.take() ;
-                    // This takes a Write lock on the  DSG - this is where it blocks.
-                    JournalControl.replay(txn) ;
-                    synchronized(TransactionManager.this)
+                for(;;)
+                {
+                    try {
+                        while ( ! closing && ! writeBackReady() )
+                            TransactionManager.this.wait() ;
+                    } catch (InterruptedException ex)
+                    { Log.fatal(this, "Interruped!", ex) ; return ; }
+                    if ( closing )
+                        return ;
+                    try { processDelayedReplayQueue(null) ; }
+                    catch (RuntimeException ex)
                     {
-                        commitedAwaitingFlush.remove(txn) ;
+                        // Logged by the journal replay; try again later.
+                        try { TransactionManager.this.wait(1000) ; }
+                        catch (InterruptedException ex2) { return ; }
                     }
-                } catch (InterruptedException ex)
-                { Log.fatal(this, "Interruped!", ex) ; }
+                }
             }
         }
-        
+    }
+    
+    // Must hold the lock on "this"
+    private boolean writeBackReady()
+    {
+        if ( writeBackSuspended || queue.isEmpty() || activeReaders.get() != 0 || activeWriters.get() != 0 )
+            return false ;
+        return queue.size() >= QueueBatchSize ;
     }
     
     private void transactionStarts(Transaction txn)
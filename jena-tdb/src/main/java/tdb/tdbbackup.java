@@ -18,33 +18,49 @@
 
 package tdb;
 
+import arq.cmdline.ArgDecl ;
 import tdb.cmdline.CmdTDB ;
 
 import com.hp.hpl.jena.tdb.TDBBackup ;
 
 public class tdbbackup extends CmdTDB
 {
+    private static final ArgDecl argDir = new ArgDecl(ArgDecl.HasValue, "dir") ;
+    private String directory = null ;
+    
     static public void main(String... argv)
     { 
         CmdTDB.init() ;
-        new tdbdump(argv).mainRun() ;
+        new tdbbackup(argv).mainRun() ;
     }
 
     protected tdbbackup(String[] argv)
     {
         super(argv) ;
+        super.add(argDir, "--dir=DIR",
+                  "Copy the database files to a directory (only changes if it has the last backup)") ;
     }
     
+    @Override
+    protected void processModulesAndArgs()
+    {
+        super.processModulesAndArgs() ;
+        directory = super.getValue(argDir) ;
+    }
+
     @Override
     protected String getSummary()
     {
-        return getCommandName()+" : Write N-Quads to stdout" ;
+        return getCommandName()+" : Write N-Quads to stdout, or copy the database files with --dir" ;
     }
 
     @Override
     protected void exec()
     {
-        TDBBackup.backup(getLocation(), System.out) ;
+        if ( directory != null )
+            TDBBackup.backupFiles(getLocation(), directory) ;
+        else
+            TDBBackup.backup(getLocation(), System.out) ;
     }
 }
 
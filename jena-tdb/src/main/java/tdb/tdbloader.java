@@ -22,6 +22,7 @@ import java.util.List ;
 
 import org.apache.jena.riot.Lang ;
 import org.apache.jena.riot.RDFLanguages ;
+import arq.cmdline.ArgDecl ;
 import tdb.cmdline.CmdTDB ;
 import tdb.cmdline.CmdTDBGraph ;
 
@@ -29,13 +30,14 @@ import com.hp.hpl.jena.query.ARQ ;
 import com.hp.hpl.jena.tdb.TDB ;
 import com.hp.hpl.jena.tdb.TDBLoader ;
 import com.hp.hpl.jena.tdb.store.GraphTDB ;
+import com.hp.hpl.jena.tdb.store.bulkloader.BulkLoaderParallel ;
 
 public class tdbloader extends CmdTDBGraph {
-    // private static final ArgDecl argParallel = new ArgDecl(ArgDecl.NoValue, "parallel") ;
+    private static final ArgDecl argParallel = new ArgDecl(ArgDecl.NoValue, "parallel") ;
     // private static final ArgDecl argIncremental = new ArgDecl(ArgDecl.NoValue, "incr", "incremental") ;
 
     private boolean showProgress  = true ;
-    // private boolean doInParallel = false ;
+    private boolean doInParallel = false ;
     // private boolean doIncremental = false ;
 
     static public void main(String... argv) {
@@ -46,8 +48,8 @@ public class tdbloader extends CmdTDBGraph {
 
     protected tdbloader(String[] argv) {
         super(argv) ;
-        // super.add(argParallel, "--parallel",
-        // "Do rebuilding of secondary indexes in a parallel") ;
+        super.add(argParallel, "--parallel",
+                  "Parse, allocate node ids and build all indexes concurrently") ;
         // super.add(argIncremental, "--incremental",
         // "Do an incremental load (keep indexes during data load)") ;
         // super.add(argStats, "--stats",
@@ -58,7 +60,7 @@ public class tdbloader extends CmdTDBGraph {
     @Override
     protected void processModulesAndArgs() {
         super.processModulesAndArgs() ;
-        // doInParallel = super.contains(argParallel) ;
+        doInParallel = super.contains(argParallel) ;
         // doIncremental = super.contains(argIncremental) ;
     }
 
@@ -110,11 +112,22 @@ public class tdbloader extends CmdTDBGraph {
 
     void loadNamedGraph(List<String> urls) {
         GraphTDB graph = getGraph() ;
+        if ( doInParallel ) {
+            if ( graph.getGraphName() == null )
+                BulkLoaderParallel.loadDefaultGraph(graph.getDSG(), urls, showProgress) ;
+            else
+                BulkLoaderParallel.loadNamedGraph(graph.getDSG(), graph.getGraphName(), urls, showProgress) ;
+            return ;
+        }
         TDBLoader.load(graph, urls, showProgress) ;
         return ;
     }
 
     void loadQuads(List<String> urls) {
+        if ( doInParallel ) {
+            BulkLoaderParallel.loadDataset(getDatasetGraphTDB(), urls, showProgress) ;
+            return ;
+        }
         TDBLoader.load(getDatasetGraphTDB(), urls, showProgress) ;
         return ;
     }
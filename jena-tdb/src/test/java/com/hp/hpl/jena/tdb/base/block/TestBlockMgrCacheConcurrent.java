@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hp.hpl.jena.tdb.base.block;
+
+import static org.apache.jena.atlas.lib.ByteBufferLib.fill ;
+
+import java.lang.management.ManagementFactory ;
+
+import javax.management.MBeanServer ;
+import javax.management.ObjectName ;
+
+import org.apache.jena.atlas.lib.FileOps ;
+import org.junit.AfterClass ;
+import org.junit.BeforeClass ;
+import org.junit.Test ;
+
+import com.hp.hpl.jena.tdb.ConfigTest ;
+import com.hp.hpl.jena.tdb.TDB ;
+import com.hp.hpl.jena.tdb.base.file.BlockAccess ;
+import com.hp.hpl.jena.tdb.base.file.BlockAccessDirect ;
+
+public class TestBlockMgrCacheConcurrent extends AbstractTestBlockMgr
+{
+    static final String filename = ConfigTest.getTestingDir()+"/block-mgr-cache" ;
+    
+    @BeforeClass static public void remove1() { FileOps.delete(filename) ; } 
+    @AfterClass  static public void remove2() { FileOps.delete(filename) ; }
+    
+    @Override
+    protected BlockMgr make()
+    { 
+        FileOps.delete(filename) ;
+        BlockAccess file = new BlockAccessDirect(filename, BlkSize) ;
+        BlockMgr mgr = new BlockMgrFileAccess(file, BlkSize) ;
+        // Small caches so that blocks are dropped.
+        return BlockMgrCacheConcurrent.create(2, 2, mgr) ;
+    }
+
+    @Test public void cacheConcurrent01()
+    {
+        BlockMgrCacheConcurrent cache = (BlockMgrCacheConcurrent)blockMgr ;
+        long[] ids = new long[5] ;
+        for ( int i = 0 ; i < ids.length ; i++ )
+        {
+            Block block = blockMgr.allocate(BlkSize) ;
+            fill(block.getByteBuffer(), (byte)i) ;
+            ids[i] = block.getId() ;
+            blockMgr.write(block) ;
+            blockMgr.release(block) ;
+        }
+        blockMgr.sync() ;
+        for ( int i = 0 ; i < ids.length ; i++ )
+        {
+            Block block = blockMgr.getRead(ids[i]) ;
+            assertEquals((byte)i, block.getByteBuffer().get(0)) ;
+            blockMgr.release(block) ;
+        }
+        Block block = blockMgr.getRead(ids[4]) ;
+        assertEquals((byte)4, block.getByteBuffer().get(0)) ;
+        blockMgr.release(block) ;
+        assertTrue(cache.getReadCacheStats().getCacheHits() >= 1) ;
+        assertTrue(cache.getReadCacheStats().getCacheEntries() <= 2) ;
+    }
+
+    // Statistics are registered with the platform MBeanServer while the cache is open.
+    @Test public void cacheConcurrentJMX() throws Exception
+    {
+        BlockMgrCacheConcurrent cache = (BlockMgrCacheConcurrent)blockMgr ;
+        MBeanServer mbs = ManagementFactory.getPlatformMBeanServer() ;
+        ObjectName name = new ObjectName(TDB.PATH+".block:type=Cache,file="+ObjectName.quote(cache.getLabel())) ;
+        assertTrue(mbs.isRegistered(name)) ;
+        Block block = blockMgr.allocate(BlkSize) ;
+        long id = block.getId() ;
+        blockMgr.write(block) ;
+        blockMgr.release(block) ;
+        blockMgr.sync() ;
+        blockMgr.release(blockMgr.getRead(id)) ;
+        blockMgr.release(blockMgr.getRead(id)) ;
+        assertEquals(cache.getReadCacheStats().getCacheHits(), mbs.getAttribute(name, "ReadCacheHits")) ;
+        assertEquals(cache.getReadCacheStats().getCacheMisses(), mbs.getAttribute(name, "ReadCacheMisses")) ;
+        blockMgr.endUpdate() ;
+        blockMgr.close() ;
+        blockMgr = null ;
+        assertFalse(mbs.isRegistered(name)) ;
+    }
+}
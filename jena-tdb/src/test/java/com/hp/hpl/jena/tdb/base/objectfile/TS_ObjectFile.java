@@ -26,6 +26,7 @@ import org.junit.runners.Suite ;
     TestObjectFileMem.class
     , TestObjectFileDisk.class
     , TestObjectFileBuffering.class
+    , TestObjectFileMapped.class
     , TestStringFileMem.class 
     , TestStringFileDisk.class
 })
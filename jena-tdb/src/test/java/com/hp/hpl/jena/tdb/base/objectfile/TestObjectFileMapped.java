@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hp.hpl.jena.tdb.base.objectfile;
+
+import static com.hp.hpl.jena.tdb.base.BufferTestLib.sameValue ;
+
+import java.nio.ByteBuffer ;
+
+import org.apache.jena.atlas.lib.FileOps ;
+import org.junit.AfterClass ;
+import org.junit.Test ;
+
+import com.hp.hpl.jena.tdb.ConfigTest ;
+import com.hp.hpl.jena.tdb.base.file.BufferChannel ;
+import com.hp.hpl.jena.tdb.base.file.BufferChannelFile ;
+
+public class TestObjectFileMapped extends AbstractTestObjectFile
+{
+    static String filename = ConfigTest.getTestingDir()+"/test-objectfile-mapped" ;
+
+    @AfterClass public static void cleanup() { FileOps.deleteSilent(filename) ; } 
+    
+    @Override
+    protected ObjectFile make()
+    {
+        FileOps.deleteSilent(filename) ;
+        BufferChannel chan = BufferChannelFile.create(filename) ;
+        // Small write buffer and small segments.
+        return new ObjectFileMapped(filename, new ObjectFileStorage(chan, 20), 16) ;
+    }
+    
+    @Override
+    protected void release(ObjectFile file)
+    {
+        file.truncate(0) ;
+        file.close() ;
+    }
+    
+    private ByteBuffer bytes(int len)
+    {
+        ByteBuffer bb = ByteBuffer.allocate(len) ;
+        fill(bb) ;
+        return bb ;
+    }
+
+    // Read from the write buffer, then from the mapping. 
+    @Test public void objectfile_mapped_01()
+    {
+        ByteBuffer bb = bytes(6) ;
+        long x = file.write(bb) ;
+        assertTrue(sameValue(bb, file.read(x))) ;
+        assertNull(((ObjectFileMapped)file).readMapped(x)) ;
+        file.sync() ;
+        // Maps the file.
+        ByteBuffer bb1 = file.read(x) ;
+        assertTrue(bb1.isDirect()) ;
+        assertEquals(0, bb1.position()) ;
+        assertTrue(sameValue(bb, bb1)) ;
+        ByteBuffer bb2 = ((ObjectFileMapped)file).readMapped(x) ;
+        assertNotNull(bb2) ;
+        assertTrue(sameValue(bb, bb2)) ;
+    }
+
+    // Objects across segment boundaries, and a file that grows after mapping.
+    @Test public void objectfile_mapped_02()
+    {
+        int N = 20 ;
+        long[] locs = new long[N] ;
+        for ( int i = 0 ; i < N ; i++ )
+        {
+            locs[i] = file.write(bytes(i)) ;
+            if ( i % 5 == 0 )
+            {
+                file.sync() ;
+                assertTrue(sameValue(bytes(i), file.read(locs[i]))) ;
+            }
+        }
+        for ( int i = 0 ; i < N ; i++ )
+            assertTrue(sameValue(bytes(i), file.read(locs[i]))) ;
+        file.sync() ;
+        for ( int i = 0 ; i < N ; i++ )
+        {
+            assertTrue(sameValue(bytes(i), file.read(locs[i]))) ;
+            assertTrue(sameValue(bytes(i), ((ObjectFileMapped)file).readMapped(locs[i]))) ;
+        }
+    }
+
+    // Truncate drops the mapping.
+    @Test public void objectfile_mapped_03()
+    {
+        long x1 = file.write(bytes(10)) ;
+        long x2 = file.write(bytes(30)) ;
+        file.sync() ;
+        assertTrue(sameValue(bytes(30), file.read(x2))) ;
+        file.truncate(x2) ;
+        assertNull(((ObjectFileMapped)file).readMapped(x2)) ;
+        long x3 = file.write(bytes(12)) ;
+        assertEquals(x2, x3) ;
+        file.sync() ;
+        assertTrue(sameValue(bytes(12), file.read(x3))) ;
+        assertTrue(sameValue(bytes(10), file.read(x1))) ;
+    }
+}
@@ -25,12 +25,14 @@ import static com.hp.hpl.jena.tdb.index.IndexTestLib.randTest ;
 import static com.hp.hpl.jena.tdb.index.IndexTestLib.testInsert ;
 import static com.hp.hpl.jena.tdb.index.IndexTestLib.testInsertDelete ;
 
+import java.util.ArrayList ;
 import java.util.List ;
 
 import org.apache.jena.atlas.junit.BaseTest ;
 import org.junit.After ;
 import org.junit.Test ;
 
+import com.hp.hpl.jena.tdb.base.record.Record ;
 import com.hp.hpl.jena.tdb.base.record.RecordLib ;
 
 public abstract class AbstractTestRangeIndex extends BaseTest {
@@ -421,6 +423,51 @@ public abstract class AbstractTestRangeIndex extends BaseTest {
     
     @Test public void tree_clear_06()   { testClear(5500) ; }
 
+    @Test public void tree_split_01()   { testSplit(0, 4, -1, -1) ; }
+
+    @Test public void tree_split_02()   { testSplit(4, 4, -1, -1) ; }
+
+    @Test public void tree_split_03()   { testSplit(1000, 4, -1, -1) ; }
+
+    @Test public void tree_split_04()   { testSplit(1000, 1, -1, -1) ; }
+
+    @Test public void tree_split_05()   { testSplit(1000, 8, 100, 600) ; }
+
+    @Test public void tree_split_06()   { testSplit(5500, 16, 4000, 9000) ; }
+
+    @Test public void tree_split_07()   { testSplit(5500, 3, 10, 20) ; }
+
+    void testSplit(int N, int parts, int min, int max) {
+        int[] keys = new int[N] ;
+        for ( int i = 0 ; i < keys.length ; i++ )
+            keys[i] = i ;
+        rIndex = makeRangeIndex(3) ;
+        add(rIndex, keys) ;
+        Record minRec = ( min < 0 ) ? null : r(min) ;
+        Record maxRec = ( max < 0 ) ? null : r(max) ;
+        List<Record> splits = rIndex.splitRange(minRec, maxRec, parts) ;
+        assertTrue(splits.size() <= parts-1) ;
+
+        List<Integer> all = toIntList(rIndex.iterator(minRec, maxRec)) ;
+        if ( all.size() > 10*parts )
+            assertEquals(parts-1, splits.size()) ;
+        // The parts, in order, are the whole range.
+        List<Integer> x = new ArrayList<>() ;
+        Record lo = minRec ;
+        for ( int i = 0 ; i <= splits.size() ; i++ ) {
+            Record hi = ( i < splits.size() ) ? splits.get(i) : maxRec ;
+            if ( lo != null && hi != null )
+                assertTrue(Record.keyLT(lo, hi)) ;
+            List<Integer> part = toIntList(rIndex.iterator(lo, hi)) ;
+            // Roughly equal.
+            if ( all.size() > 10*parts )
+                assertTrue(part.size() <= 3*all.size()/parts) ;
+            x.addAll(part) ;
+            lo = hi ;
+        }
+        assertEquals(all, x) ;
+    }
+
     void testClear(int N) {
         int[] keys = new int[N] ; // Slice is 1000.
         for ( int i = 0 ; i < keys.length ; i++ )
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hp.hpl.jena.tdb.index.bplustree;
+
+import static com.hp.hpl.jena.tdb.base.record.RecordLib.r ;
+
+import java.util.List ;
+
+import org.junit.AfterClass ;
+import org.junit.BeforeClass ;
+import org.junit.Test ;
+
+import com.hp.hpl.jena.tdb.base.block.BlockMgr ;
+import com.hp.hpl.jena.tdb.base.block.BlockMgrFactory ;
+import com.hp.hpl.jena.tdb.base.record.RecordFactory ;
+import com.hp.hpl.jena.tdb.base.record.RecordLib ;
+import com.hp.hpl.jena.tdb.base.recordbuffer.RecordBufferPage ;
+import com.hp.hpl.jena.tdb.base.recordbuffer.RecordBufferPageMgr ;
+import com.hp.hpl.jena.tdb.index.AbstractTestRangeIndex ;
+import com.hp.hpl.jena.tdb.index.IndexTestLib ;
+import com.hp.hpl.jena.tdb.index.RangeIndex ;
+import com.hp.hpl.jena.tdb.sys.SystemTDB ;
+
+/** B+Trees with prefix compressed leaf blocks */
+public class TestBPlusTreeCompressed extends AbstractTestRangeIndex
+{
+    static boolean originalNullOut ; 
+    @BeforeClass static public void beforeClass()
+    {
+        BPlusTreeParams.CheckingNode = true ;
+        originalNullOut = SystemTDB.NullOut ;
+        SystemTDB.NullOut = true ;    
+    }
+    
+    @AfterClass static public void afterClass()
+    {
+        SystemTDB.NullOut = originalNullOut ;    
+    }
+
+    @Override
+    protected RangeIndex makeRangeIndex(int order, int minRecords)
+    {
+        return make(order, minRecords, true) ;
+    }
+
+    private static BPlusTree make(int order, int minRecords, boolean compressed)
+    {
+        RecordFactory factory = new RecordFactory(RecordLib.TestRecordLength, 0) ;
+        BPlusTreeParams params = new BPlusTreeParams(order, factory, compressed) ;
+        int blkSize = RecordBufferPage.calcBlockSize(factory, 2*minRecords) ;
+        BlockMgr mgr1 = BlockMgrFactory.createMem("compressed(nodes)", params.getCalcBlockSize()) ;
+        BlockMgr mgr2 = BlockMgrFactory.createMem("compressed(records)", blkSize) ;
+        return BPlusTree.create(params, mgr1, mgr2) ;
+    }
+
+    // Sequential keys share leading bytes : fewer leaf blocks.
+    @Test public void tree_compressed_01()
+    {
+        BPlusTree bpt1 = make(3, 10, false) ;
+        BPlusTree bpt2 = make(3, 10, true) ;
+        for ( int i = 0 ; i < 1000 ; i++ )
+        {
+            bpt1.add(r(i)) ;
+            bpt2.add(r(i)) ;
+        }
+        assertEquals(1000, bpt2.size()) ;
+        int blocks1 = countBlocks(bpt1.getRecordsMgr().getBlockMgr()) ;
+        int blocks2 = countBlocks(bpt2.getRecordsMgr().getBlockMgr()) ;
+        assertTrue("Compressed: "+blocks2+" : Uncompressed: "+blocks1, 3*blocks2 < 2*blocks1) ;
+    }
+
+    // Range scans across many compressed blocks.
+    @Test public void tree_compressed_02()
+    {
+        BPlusTree bpt = make(3, 10, true) ;
+        int[] keys = new int[500] ;
+        for ( int i = 0 ; i < keys.length ; i++ )
+        {
+            keys[i] = 3*i ;
+            bpt.add(r(keys[i])) ;
+        }
+        IndexTestLib.testIteration(bpt, keys, 50) ;
+        List<Integer> x = RecordLib.toIntList(bpt.iterator(r(100), r(112))) ;
+        assertEquals(4, x.size()) ;
+        assertEquals(102, x.get(0).intValue()) ;
+    }
+
+    // Delete down to nothing : merges and shifts of compressed blocks.
+    @Test public void tree_compressed_03()
+    {
+        BPlusTree bpt = make(2, 4, true) ;
+        for ( int i = 0 ; i < 400 ; i++ )
+            bpt.add(r(i)) ;
+        for ( int i = 0 ; i < 400 ; i += 2 )
+            bpt.delete(r(i)) ;
+        assertEquals(200, bpt.size()) ;
+        for ( int i = 1 ; i < 400 ; i += 2 )
+            bpt.delete(r(i)) ;
+        assertTrue(bpt.isEmpty()) ;
+    }
+
+    // Find reads a compressed leaf directly; reading pages are sized to their records.
+    @Test public void tree_compressed_04()
+    {
+        BPlusTree bpt = make(3, 10, true) ;
+        for ( int i = 0 ; i < 300 ; i++ )
+            bpt.add(r(2*i)) ;
+        for ( int i = 0 ; i < 600 ; i++ )
+        {
+            if ( i%2 == 0 )
+                assertTrue(bpt.contains(r(i))) ;
+            else
+                assertFalse(bpt.contains(r(i))) ;
+        }
+        assertFalse(bpt.contains(r(-1))) ;
+        assertFalse(bpt.contains(r(1000))) ;
+
+        RecordBufferPageMgr mgr = bpt.getRecordsMgr().getRecordBufferPageMgr() ;
+        int total = 0 ;
+        for ( int id = 0 ; mgr.valid(id) ; id++ )
+        {
+            RecordBufferPage page = mgr.getReadIterator(id) ;
+            assertEquals(page.getCount(), page.getMaxSize()) ;
+            total += page.getCount() ;
+            mgr.release(page) ;
+        }
+        assertEquals(300, total) ;
+    }
+
+    private static int countBlocks(BlockMgr blockMgr)
+    {
+        int n = 0 ;
+        while ( blockMgr.valid(n) )
+            n++ ;
+        return n ;
+    }
+}
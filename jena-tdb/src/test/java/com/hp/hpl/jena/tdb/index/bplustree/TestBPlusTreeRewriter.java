@@ -64,6 +64,22 @@ public class TestBPlusTreeRewriter extends BaseTest
     
     @Test public void bpt_rewrite_99()  { runTest(5, 1000) ; }
     
+    // Pack into an existing, empty B+Tree.
+    @Test public void bpt_rewrite_inplace_01()  { runTestInPlace(2, 0) ; }
+    @Test public void bpt_rewrite_inplace_02()  { runTestInPlace(2, 1) ; }
+    @Test public void bpt_rewrite_inplace_03()  { runTestInPlace(3, 2) ; }
+    @Test public void bpt_rewrite_inplace_04()  { runTestInPlace(2, 100) ; }
+    @Test public void bpt_rewrite_inplace_05()  { runTestInPlace(5, 1000) ; }
+    
+    @Test(expected=BPTreeException.class)
+    public void bpt_rewrite_inplace_06()
+    {
+        BPlusTree bpt = SetupTDB.createBPTree(FileSet.mem(), 3, -1, -1, -1, recordFactory) ;
+        List<Record> data = createData(10, recordFactory) ;
+        bpt.add(data.get(0)) ;
+        BPlusTreeRewriter.packIntoBPlusTree(data.iterator(), bpt) ;
+    }
+    
     static void runTest(int order, int N)
     { runOneTest(order, N , recordFactory, false) ; }
     
@@ -99,6 +115,25 @@ public class TestBPlusTreeRewriter extends BaseTest
         sizeComparison(originaldata, bpt2) ;
     }
     
+    static void runTestInPlace(int order, int N)
+    {
+        BPlusTree bpt = SetupTDB.createBPTree(FileSet.mem(), order, -1, -1, -1, recordFactory) ;
+        List<Record> originaldata = TestBPlusTreeRewriter.createData(N, recordFactory) ;
+        BPlusTreeRewriter.packIntoBPlusTree(originaldata.iterator(), bpt) ;
+        bpt.check() ;
+        scanComparision(originaldata, bpt) ;
+        findComparison(originaldata, bpt) ;
+        assertEquals(N, bpt.size()) ;
+        assertEquals(N == 0, bpt.isEmpty()) ;
+        
+        // Still a working B+Tree.
+        List<Record> more = TestBPlusTreeRewriter.createData(N+10, recordFactory) ;
+        for ( Record r : more )
+            bpt.add(r) ;
+        bpt.check() ;
+        scanComparision(more, bpt) ;
+    }
+    
     public static void scanComparision(List<Record> originaldata, BPlusTree bpt2)
     {
         // ** Scan comparison
@@ -92,6 +92,53 @@ public class TestStoreParams extends BaseTest {
         assertArrayEquals(expected, params.getTripleIndexes()) ;
     }
 
+    @Test public void store_params_15() {
+        String xs = "{ \"tdb.node_cache_concurrent\": true }" ;
+        JsonObject x = JSON.parse(xs) ;
+        StoreParams params = StoreParamsCodec.decode(x) ;
+        assertTrue(params.isSetNodeCacheConcurrent()) ;
+        assertTrue(params.getNodeCacheConcurrent()) ;
+        assertEqualsStoreParams(params, roundTrip(params)) ;
+    }
+
+    @Test public void store_params_16() {
+        StoreParams params = StoreParams.builder().leafCompression(true).build() ;
+        assertTrue(params.getLeafCompression()) ;
+        assertEqualsStoreParams(params, roundTrip(params)) ;
+        assertFalse(StoreParams.sameValues(params, StoreParams.getDftStoreParams())) ;
+    }
+
+    @Test public void store_params_17() {
+        String xs = "{ \"tdb.inline_extended\": true }" ;
+        JsonObject x = JSON.parse(xs) ;
+        StoreParams params = StoreParamsCodec.decode(x) ;
+        assertTrue(params.getInlineExtended()) ;
+        assertFalse(StoreParams.getDftStoreParams().getInlineExtended()) ;
+        assertEqualsStoreParams(params, roundTrip(params)) ;
+        assertFalse(StoreParams.sameValues(params, StoreParams.getDftStoreParams())) ;
+    }
+
+    @Test public void store_params_18() {
+        String xs = "{ \"tdb.node_file_mode\": \"mapped\" }" ;
+        JsonObject x = JSON.parse(xs) ;
+        StoreParams params = StoreParamsCodec.decode(x) ;
+        assertTrue(params.isSetNodeFileMode()) ;
+        assertEquals(FileMode.mapped, params.getNodeFileMode()) ;
+        assertEquals(FileMode.direct, StoreParams.getDftStoreParams().getNodeFileMode()) ;
+        assertEqualsStoreParams(params, roundTrip(params)) ;
+        assertFalse(StoreParams.sameValues(params, StoreParams.getDftStoreParams())) ;
+    }
+
+    @Test public void store_params_19() {
+        String xs = "{ \"tdb.node_filter_fpr\": 0.005 }" ;
+        JsonObject x = JSON.parse(xs) ;
+        StoreParams params = StoreParamsCodec.decode(x) ;
+        assertTrue(params.isSetNodeFilterFPR()) ;
+        assertEquals(0.005, params.getNodeFilterFPR(), 0) ;
+        assertEqualsStoreParams(params, roundTrip(params)) ;
+        assertFalse(StoreParams.sameValues(params, StoreParams.getDftStoreParams())) ;
+    }
+
     // Check that setting gets recorded and propagated.
 
     @Test public void store_params_20() {
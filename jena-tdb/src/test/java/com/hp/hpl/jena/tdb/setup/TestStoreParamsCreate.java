@@ -32,9 +32,16 @@ import org.junit.After ;
 import org.junit.Before ;
 import org.junit.Test ;
 
+import com.hp.hpl.jena.graph.Node ;
+import com.hp.hpl.jena.graph.NodeFactory ;
+import com.hp.hpl.jena.graph.Triple ;
+import com.hp.hpl.jena.query.ReadWrite ;
+import com.hp.hpl.jena.tdb.base.block.FileMode ;
 import com.hp.hpl.jena.tdb.ConfigTest ;
 import com.hp.hpl.jena.tdb.StoreConnection ;
 import com.hp.hpl.jena.tdb.base.file.Location ;
+import com.hp.hpl.jena.tdb.store.NodeId ;
+import com.hp.hpl.jena.tdb.transaction.DatasetGraphTxn ;
 
 /**
  * This test suite uses on-disk structures, does a lot of clean/create/sync
@@ -146,6 +153,62 @@ public class TestStoreParamsCreate extends BaseTest {
         assertEquals(pApp.getBlockSize(), pDB.getBlockSize()) ;
     }
 
+    // Extended inlines are a layout setting : kept across reconnects and used by transactions.
+    @Test public void params_reconnect_04() { 
+        StoreParams pInline = StoreParams.builder(pApp).inlineExtended(true).build() ;
+        Node o = NodeFactory.createLiteral("chat", "fr", false) ;
+        Triple t = new Triple(NodeFactory.createURI("http://example/s"), NodeFactory.createURI("http://example/p"), o) ;
+        // Create.
+        StoreConnection sConn = StoreConnection.make(loc, pInline) ;
+        DatasetGraphTxn dsg = sConn.begin(ReadWrite.WRITE) ;
+        dsg.getDefaultGraph().add(t) ;
+        dsg.commit() ;
+        dsg.end() ;
+        // Drop.
+        StoreConnection.expel(loc, true) ;
+        // Reconnect
+        sConn = StoreConnection.make(loc, null) ;
+        StoreParams pDB = sConn.getBaseDataset().getConfig().params ;
+        assertTrue(pDB.getInlineExtended()) ;
+        
+        dsg = sConn.begin(ReadWrite.READ) ;
+        assertTrue(dsg.getDefaultGraph().contains(t)) ;
+        NodeId nodeId = dsg.getView().getTripleTable().getNodeTupleTable().getNodeTable().getNodeIdForNode(o) ;
+        assertTrue(NodeId.isInline(nodeId)) ;
+        dsg.end() ;
+    }
+
+    // Mapped node file is a dynamic setting : the same database, read either way.
+    @Test public void params_reconnect_05() { 
+        StoreParams pMapped = StoreParams.builder(pApp).nodeFileMode(FileMode.mapped).build() ;
+        Triple t = new Triple(NodeFactory.createURI("http://example/s"), NodeFactory.createURI("http://example/p"),
+                              NodeFactory.createLiteral("abc")) ;
+        // Create.
+        StoreConnection sConn = StoreConnection.make(loc, pMapped) ;
+        DatasetGraphTxn dsg = sConn.begin(ReadWrite.WRITE) ;
+        dsg.getDefaultGraph().add(t) ;
+        dsg.commit() ;
+        dsg.end() ;
+        dsg = sConn.begin(ReadWrite.READ) ;
+        assertTrue(dsg.getDefaultGraph().contains(t)) ;
+        dsg.end() ;
+        // Drop.
+        StoreConnection.expel(loc, true) ;
+        // Reconnect, not mapped.
+        sConn = StoreConnection.make(loc, StoreParams.builder().nodeFileMode(FileMode.direct).build()) ;
+        assertEquals(FileMode.direct, sConn.getBaseDataset().getConfig().params.getNodeFileMode()) ;
+        dsg = sConn.begin(ReadWrite.READ) ;
+        assertTrue(dsg.getDefaultGraph().contains(t)) ;
+        dsg.end() ;
+        StoreConnection.expel(loc, true) ;
+        // Reconnect, mapped.
+        sConn = StoreConnection.make(loc, pMapped) ;
+        dsg = sConn.begin(ReadWrite.READ) ;
+        assertEquals(1, dsg.getDefaultGraph().find(null, null, null).toList().size()) ;
+        assertEquals(t, dsg.getDefaultGraph().find(null, null, null).next()) ;
+        dsg.end() ;
+    }
+
     
 //    // Custom then modified.
 //    @Test public void params_reconnect_03() { 
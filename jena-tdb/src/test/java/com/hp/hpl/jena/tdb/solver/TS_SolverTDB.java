@@ -25,6 +25,14 @@ import org.junit.runners.Suite ;
 @Suite.SuiteClasses( {
     TestSolverTDB.class     // Tests the TDB connectivity
     , TestStats.class
+    , TestReorderStatsFile.class
+    , TestStatsCounts.class
+    , TestStageMatchTupleHashJoin.class
+    , TestStageMatchMergeJoin.class
+    , TestIteratorIdToNodeBlocks.class
+    , TestScanControl.class
+    , TestGroupCount.class
+    , TestLateMaterialization.class
 })
 
 public class TS_SolverTDB
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hp.hpl.jena.tdb.solver;
+
+import org.apache.jena.atlas.junit.BaseTest ;
+import org.junit.Test ;
+
+import com.hp.hpl.jena.query.* ;
+import com.hp.hpl.jena.sparql.resultset.ResultSetCompare ;
+import com.hp.hpl.jena.sparql.sse.SSE ;
+import com.hp.hpl.jena.tdb.TDBFactory ;
+import com.hp.hpl.jena.tdb.store.DatasetGraphTDB ;
+import com.hp.hpl.jena.tdb.sys.ScanControl ;
+import com.hp.hpl.jena.tdb.sys.SystemTDB ;
+import com.hp.hpl.jena.tdb.sys.TDBInternal ;
+
+public class TestGroupCount extends BaseTest
+{
+    static Dataset dataset          = TDBFactory.createDataset() ;
+    static DatasetGraphTDB dsg      = TDBInternal.getBaseDatasetGraphTDB(dataset.asDatasetGraph()) ;
+    static Dataset empty            = TDBFactory.createDataset() ;
+
+    static {
+        // Enough for the index scans to split into several parts.
+        for ( int i = 0 ; i < 5000 ; i++ )
+        {
+            dsg.getDefaultGraph().add(SSE.parseTriple("(<http://ex/s"+i+"> <http://ex/p"+(i%7)+"> <http://ex/o"+(i%13)+">)")) ;
+            dsg.getDefaultGraph().add(SSE.parseTriple("(<http://ex/s"+i+"> <http://ex/type> <http://ex/C"+(i%5)+">)")) ;
+            if ( i % 3 == 0 )
+                dsg.add(SSE.parseQuad("(<http://ex/g"+(i%4)+"> <http://ex/s"+i+"> <http://ex/p"+(i%2)+"> "+(i%11)+")")) ;
+        }
+    }
+
+    @Test public void group_count_01()  { test("SELECT ?p (count(*) AS ?c) { ?s ?p ?o } GROUP BY ?p") ; }
+    @Test public void group_count_02()  { test("SELECT ?p (count(DISTINCT ?o) AS ?c) { ?s ?p ?o } GROUP BY ?p") ; }
+    @Test public void group_count_03()  { test("SELECT ?c (count(?s) AS ?n) { ?s <http://ex/type> ?c } GROUP BY ?c") ; }
+    @Test public void group_count_04()  { test("SELECT (count(*) AS ?c) { ?s ?p ?o }") ; }
+    @Test public void group_count_05()  { test("SELECT (count(DISTINCT ?t) AS ?c) (count(*) AS ?n) { ?s <http://ex/type> ?t }") ; }
+    @Test public void group_count_06()  { test("SELECT ?o (count(DISTINCT ?s) AS ?c) (count(DISTINCT ?o) AS ?one) { ?s <http://ex/p3> ?o } GROUP BY ?o") ; }
+    // No matches
+    @Test public void group_count_07()  { test("SELECT (count(*) AS ?c) { ?s <http://ex/unknown> ?o }") ; }
+    @Test public void group_count_08()  { test("SELECT ?s (count(*) AS ?c) { ?s <http://ex/unknown> ?o } GROUP BY ?s") ; }
+    @Test public void group_count_09()  { test(empty, "SELECT (count(*) AS ?c) { ?s ?p ?o }", true) ; }
+    @Test public void group_count_12()  { test("SELECT ?s (count(*) AS ?c) { ?s <http://ex/p1> <http://ex/C0> } GROUP BY ?s") ; }
+    @Test public void group_count_13()  { test(empty, "SELECT ?p (count(DISTINCT ?o) AS ?c) { ?s ?p ?o } GROUP BY ?p", true) ; }
+    // Named graphs
+    @Test public void group_count_10()  { test("SELECT ?g (count(*) AS ?c) { GRAPH ?g { ?s ?p ?o } } GROUP BY ?g") ; }
+    @Test public void group_count_11()  { test("SELECT ?p (count(DISTINCT ?o) AS ?c) { GRAPH <http://ex/g1> { ?s ?p ?o } } GROUP BY ?p") ; }
+
+    // Not pushed down : two patterns, a group expression, an aggregate that is not a count,
+    // a variable not in the pattern, no index for the distinct variable.
+    @Test public void group_count_20()  { test(dataset, "SELECT ?p (count(*) AS ?c) { ?s ?p ?o . ?s <http://ex/type> ?t } GROUP BY ?p", false) ; }
+    @Test public void group_count_21()  { test(dataset, "SELECT ?x (count(*) AS ?c) { ?s ?p ?o } GROUP BY (str(?p) AS ?x)", false) ; }
+    @Test public void group_count_22()  { test(dataset, "SELECT ?p (max(?o) AS ?c) { ?s ?p ?o } GROUP BY ?p", false) ; }
+    @Test public void group_count_23()  { test(dataset, "SELECT (count(?z) AS ?c) { ?s ?p ?o }", false) ; }
+    @Test public void group_count_24()  { test(dataset, "SELECT (count(DISTINCT ?s) AS ?c) { ?s <http://ex/type> ?t }", false) ; }
+    // Union graph
+    @Test public void group_count_25()  { test(dataset, "SELECT ?p (count(*) AS ?c) { GRAPH <"+"urn:x-arq:UnionGraph"+"> { ?s ?p ?o } } GROUP BY ?p", false) ; }
+
+    private static void test(String qs)
+    {
+        test(dataset, qs, true) ;
+    }
+
+    private static void test(Dataset ds, String qs, boolean pushDown)
+    {
+        QueryExecution qExec1 = QueryExecutionFactory.create(qs, ds) ;
+        qExec1.getContext().set(SystemTDB.symCountPushDown, false) ;
+        ResultSetRewindable rs1 = ResultSetFactory.makeRewindable(qExec1.execSelect()) ;
+        qExec1.close() ;
+
+        QueryExecution qExec2 = QueryExecutionFactory.create(qs, ds) ;
+        ResultSetRewindable rs2 = ResultSetFactory.makeRewindable(qExec2.execSelect()) ;
+        qExec2.close() ;
+        // Pushed down : no bindings from the BGP stages.
+        ScanControl control = ScanControl.get(qExec2.getContext()) ;
+        assertEquals(pushDown, control.getBindingsProduced() == 0) ;
+
+        // Empty input : one row, as the aggregates of nothing.
+        assertTrue(rs1.size() > 0) ;
+        assertEquals(rs1.size(), rs2.size()) ;
+        boolean b = ResultSetCompare.equalsByTerm(rs1, rs2) ;
+        if ( ! b )
+        {
+            rs1.reset() ;
+            rs2.reset() ;
+            ResultSetFormatter.out(rs1) ;
+            ResultSetFormatter.out(rs2) ;
+        }
+        assertTrue(b) ;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hp.hpl.jena.tdb.solver;
+
+import java.util.ArrayList ;
+import java.util.Iterator ;
+import java.util.List ;
+
+import org.apache.jena.atlas.junit.BaseTest ;
+import org.junit.Test ;
+
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype ;
+import com.hp.hpl.jena.graph.Node ;
+import com.hp.hpl.jena.graph.NodeFactory ;
+import com.hp.hpl.jena.sparql.core.Var ;
+import com.hp.hpl.jena.sparql.engine.binding.Binding ;
+import com.hp.hpl.jena.tdb.TDBFactory ;
+import com.hp.hpl.jena.tdb.store.DatasetGraphTDB ;
+import com.hp.hpl.jena.tdb.store.nodetable.NodeTable ;
+import com.hp.hpl.jena.tdb.sys.TDBInternal ;
+
+public class TestIteratorIdToNodeBlocks extends BaseTest
+{
+    static DatasetGraphTDB dsg      = TDBInternal.getBaseDatasetGraphTDB(TDBFactory.createDatasetGraph()) ;
+    static NodeTable nodeTable      = dsg.getTripleTable().getNodeTupleTable().getNodeTable() ;
+    static Var varX = Var.alloc("x") ;
+    static Var varY = Var.alloc("y") ;
+
+    @Test public void idToNode_01() { test(0, 4) ; }
+    @Test public void idToNode_02() { test(1, 4) ; }
+    @Test public void idToNode_03() { test(10, 1) ; }
+    @Test public void idToNode_04() { test(10, 4) ; }
+    @Test public void idToNode_05() { test(100, 16) ; }
+
+    private static void test(int N, int blockSize)
+    {
+        List<BindingNodeId> rows = new ArrayList<>() ;
+        List<Node> xs = new ArrayList<>() ;
+        for ( int i = 0 ; i < N ; i++ )
+        {
+            BindingNodeId b = new BindingNodeId() ;
+            Node x = NodeFactory.createURI("http://example/x"+(i%7)) ;
+            b.put(varX, nodeTable.getAllocateNodeId(x)) ;
+            // ?y is bound in some rows only and is an inline value.
+            if ( i % 3 == 0 )
+                b.put(varY, nodeTable.getAllocateNodeId(NodeFactory.createLiteral(Integer.toString(i), XSDDatatype.XSDinteger))) ;
+            rows.add(b) ;
+            xs.add(x) ;
+        }
+        Iterator<Binding> iter = new IteratorIdToNodeBlocks(rows.iterator(), nodeTable, blockSize) ;
+        int i = 0 ;
+        for ( ; iter.hasNext() ; i++ )
+        {
+            Binding b = iter.next() ;
+            assertEquals(xs.get(i), b.get(varX)) ;
+            if ( i % 3 == 0 )
+                assertEquals(Integer.toString(i), b.get(varY).getLiteralLexicalForm()) ;
+            else
+                assertNull(b.get(varY)) ;
+            assertEquals(rows.get(i).get(varX), ((BindingTDB)b).getNodeId(varX)) ;
+        }
+        assertEquals(N, i) ;
+        assertFalse(iter.hasNext()) ;
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hp.hpl.jena.tdb.solver;
+
+import java.util.Arrays ;
+
+import org.apache.jena.atlas.junit.BaseTest ;
+import org.junit.Test ;
+
+import com.hp.hpl.jena.graph.Node ;
+import com.hp.hpl.jena.query.* ;
+import com.hp.hpl.jena.sparql.algebra.JoinType ;
+import com.hp.hpl.jena.sparql.core.Var ;
+import com.hp.hpl.jena.sparql.engine.QueryIterator ;
+import com.hp.hpl.jena.sparql.engine.binding.Binding ;
+import com.hp.hpl.jena.sparql.engine.binding.BindingFactory ;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterNullIterator ;
+import com.hp.hpl.jena.sparql.expr.Expr ;
+import com.hp.hpl.jena.sparql.resultset.ResultSetCompare ;
+import com.hp.hpl.jena.sparql.sse.SSE ;
+import com.hp.hpl.jena.tdb.TDBFactory ;
+import com.hp.hpl.jena.tdb.store.DatasetGraphTDB ;
+import com.hp.hpl.jena.tdb.store.NodeId ;
+import com.hp.hpl.jena.tdb.store.nodetable.NodeTable ;
+import com.hp.hpl.jena.tdb.sys.SystemTDB ;
+import com.hp.hpl.jena.tdb.sys.TDBInternal ;
+
+public class TestLateMaterialization extends BaseTest
+{
+    static Dataset dataset          = TDBFactory.createDataset() ;
+    static DatasetGraphTDB dsg      = TDBInternal.getBaseDatasetGraphTDB(dataset.asDatasetGraph()) ;
+    static NodeTable nodeTable      = dsg.getTripleTable().getNodeTupleTable().getNodeTable() ;
+
+    static {
+        for ( int i = 0 ; i < 200 ; i++ )
+        {
+            dsg.getDefaultGraph().add(SSE.parseTriple("(<http://ex/s"+i+"> <http://ex/p"+(i%3)+"> <http://ex/o"+(i%7)+">)")) ;
+            dsg.getDefaultGraph().add(SSE.parseTriple("(<http://ex/s"+i+"> <http://ex/q> \"v"+(i%5)+"\")")) ;
+            dsg.getDefaultGraph().add(SSE.parseTriple("(<http://ex/s"+i+"> <http://ex/n> "+(i%4)+")")) ;
+        }
+        dsg.getDefaultGraph().add(SSE.parseTriple("(<http://ex/x> <http://ex/n> \"01\"^^<http://www.w3.org/2001/XMLSchema#integer>)")) ;
+        dsg.getDefaultGraph().add(SSE.parseTriple("(<http://ex/x> <http://ex/p0> <http://ex/x>)")) ;
+    }
+
+    private static final String PRE = "PREFIX : <http://ex/> " ;
+
+    @Test public void late_distinct_01()    { test("SELECT DISTINCT ?o { ?s ?p ?o }") ; }
+    @Test public void late_distinct_02()    { test("SELECT DISTINCT ?p ?o { ?s ?p ?o }") ; }
+    @Test public void late_distinct_03()    { test("SELECT DISTINCT * { ?s :p1 ?o OPTIONAL { ?o :p2 ?z } }") ; }
+    // Values not from TDB.
+    @Test public void late_distinct_04()    { test("SELECT DISTINCT ?o { { ?s :p1 ?o } UNION { VALUES ?o { :o1 :o2 :other } } }") ; }
+    @Test public void late_distinct_05()    { test("SELECT DISTINCT ?n { { ?s :n ?n } UNION { VALUES ?n { 1 01 \"1\" } } }") ; }
+    @Test public void late_distinct_06()    { test("SELECT DISTINCT ?x { ?s :n ?n BIND(?n+1 AS ?x) }") ; }
+
+    @Test public void late_group_01()       { test("SELECT ?o (count(*) AS ?c) { ?s ?p ?o . ?s :q ?v } GROUP BY ?o") ; }
+    @Test public void late_group_02()       { test("SELECT ?p ?v (count(?s) AS ?c) (sample(?o) AS ?x) { ?s ?p ?o . ?s :q ?v } GROUP BY ?p ?v") ; }
+    @Test public void late_group_03()       { test("SELECT ?z (count(*) AS ?c) { ?s :p1 ?o OPTIONAL { ?o :p2 ?z } } GROUP BY ?z") ; }
+    @Test public void late_group_04()       { test("SELECT ?v (min(?n) AS ?m) (group_concat(?n) AS ?all) { ?s :q ?v ; :n ?n } GROUP BY ?v") ; }
+    @Test public void late_group_05()       { test("SELECT ?v (count(*) AS ?c) { ?s :q ?v ; :unknown ?n } GROUP BY ?v") ; }
+    @Test public void late_group_06()       { test("SELECT (count(*) AS ?c) { ?s :q ?v ; :unknown ?n }") ; }
+    @Test public void late_group_07()       { test("SELECT ?v { ?s :q ?v } GROUP BY ?v") ; }
+
+    @Test public void late_filter_01()      { test("SELECT * { ?s ?p ?o FILTER(sameTerm(?s, ?o)) }") ; }
+    @Test public void late_filter_02()      { test("SELECT * { ?s ?p ?o FILTER(?o = :o3) }") ; }
+    @Test public void late_filter_03()      { test("SELECT * { ?s ?p ?o FILTER(:o3 = ?o) }") ; }
+    @Test public void late_filter_04()      { test("SELECT * { ?s ?p ?o FILTER(sameTerm(?o, \"v1\")) }") ; }
+    @Test public void late_filter_05()      { test("SELECT * { ?s ?p ?o FILTER(sameTerm(?o, :unknown)) }") ; }
+    // Inline literal : not on NodeIds.
+    @Test public void late_filter_06()      { test("SELECT * { ?s ?p ?o FILTER(sameTerm(?o, 01)) }") ; }
+    @Test public void late_filter_07()      { test("SELECT * { ?s ?p ?o FILTER(?o = 1) }") ; }
+    @Test public void late_filter_08()      { test("SELECT * { ?s ?p ?o OPTIONAL { ?o :p2 ?z } FILTER(sameTerm(?z, ?s)) }") ; }
+    @Test public void late_filter_09()      { test("SELECT * { ?s ?p ?o { ?s :q ?v } UNION { VALUES ?o { :o3 } } FILTER(?o = :o3) }") ; }
+
+    // Joins and left joins that are not turned into substitution.
+    @Test public void late_join_01()        { test("SELECT * { ?s :p1 ?o { SELECT ?s (count(*) AS ?c) { ?s ?p ?x } GROUP BY ?s } }") ; }
+    @Test public void late_join_02()        { test("SELECT * { ?s :p1 ?o OPTIONAL { ?s :q ?v FILTER(?v != ?o) } }") ; }
+    @Test public void late_join_03()        { testNoOpt("SELECT * { { ?s :p1 ?o } { ?s :q ?v ; :n ?n } }") ; }
+    @Test public void late_join_04()        { testNoOpt("SELECT * { { ?s :p0 ?o } OPTIONAL { ?o :p0 ?z } }") ; }
+    // Values not from TDB.
+    @Test public void late_join_05()        { testNoOpt("SELECT * { { ?s :n ?n } { VALUES ?n { 0 1 2 01 \"1\" 5 6 7 8 9 } } }") ; }
+    @Test public void late_join_06()        { testNoOpt("SELECT * { { ?s :n ?n } { ?s :q ?v } UNION { VALUES (?s ?v) { (:s1 \"v1\") (:s2 \"x\") } } }") ; }
+
+    @Test public void late_filter_10()      { assertTrue(onNodeIds("(sameTerm ?x ?y)")) ; }
+    @Test public void late_filter_11()      { assertTrue(onNodeIds("(= <http://ex/o3> ?o)")) ; }
+    @Test public void late_filter_12()      { assertTrue(onNodeIds("(sameTerm ?o 'v1')")) ; }
+    @Test public void late_filter_13()      { assertFalse(onNodeIds("(= ?x ?y)")) ; }
+    @Test public void late_filter_14()      { assertFalse(onNodeIds("(= ?o 'v1')")) ; }
+    @Test public void late_filter_15()      { assertFalse(onNodeIds("(sameTerm ?o 01)")) ; }
+    @Test public void late_filter_16()      { assertFalse(onNodeIds("(sameTerm (str ?o) 'v1')")) ; }
+
+    @Test public void nodeid_key_01()
+    {
+        // A NodeId from TDB and a Node of the same term.
+        Node n = SSE.parseNode("<http://ex/o1>") ;
+        BindingNodeId bid = new BindingNodeId() ;
+        bid.put(Var.alloc("o"), nodeTable.getNodeIdForNode(n)) ;
+        Binding b1 = new BindingTDB(bid, nodeTable) ;
+        Binding b2 = BindingFactory.binding(Var.alloc("o"), n) ;
+        assertEquals(NodeIdKey.create(b1, nodeTable), NodeIdKey.create(b2, nodeTable)) ;
+        assertEquals(NodeIdKey.create(b1, nodeTable).hashCode(), NodeIdKey.create(b2, nodeTable).hashCode()) ;
+    }
+
+    @Test public void nodeid_key_02()
+    {
+        // Not the same term as the stored value.
+        Node n1 = SSE.parseNode("1") ;
+        Node n2 = SSE.parseNode("01") ;
+        Binding b1 = BindingFactory.binding(Var.alloc("n"), n1) ;
+        Binding b2 = BindingFactory.binding(Var.alloc("n"), n2) ;
+        assertTrue(NodeId.isInline(nodeTable.getNodeIdForNode(n2))) ;
+        assertFalse(NodeIdKey.create(b1, nodeTable).equals(NodeIdKey.create(b2, nodeTable))) ;
+    }
+
+    @Test public void nodeid_key_03()
+    {
+        Var x = Var.alloc("x") ;
+        Var y = Var.alloc("y") ;
+        Node n1 = SSE.parseNode("<http://ex/o1>") ;
+        Node n2 = SSE.parseNode("<http://ex/o2>") ;
+        Binding b1 = BindingFactory.binding(BindingFactory.binding(x, n1), y, n2) ;
+        Binding b2 = BindingFactory.binding(BindingFactory.binding(y, n2), x, n1) ;
+        Binding b3 = BindingFactory.binding(x, n1) ;
+        assertEquals(NodeIdKey.create(b1, nodeTable), NodeIdKey.create(b2, nodeTable)) ;
+        assertFalse(NodeIdKey.create(b1, nodeTable).equals(NodeIdKey.create(b3, nodeTable))) ;
+    }
+
+    @Test public void late_join_07()
+    {
+        // Joined on NodeIds : the result is still a row of NodeIds.
+        Var s = Var.alloc("s") ;
+        Var o = Var.alloc("o") ;
+        Var v = Var.alloc("v") ;
+        Node nS = SSE.parseNode("<http://ex/s1>") ;
+        Node nO = SSE.parseNode("<http://ex/o1>") ;
+        Node nV = SSE.parseNode("'v1'") ;
+        BindingNodeId bid1 = new BindingNodeId() ;
+        bid1.put(s, nodeTable.getNodeIdForNode(nS)) ;
+        bid1.put(o, nodeTable.getNodeIdForNode(nO)) ;
+        BindingNodeId bid2 = new BindingNodeId() ;
+        bid2.put(s, nodeTable.getNodeIdForNode(nS)) ;
+        bid2.put(v, nodeTable.getNodeIdForNode(nV)) ;
+        QueryIterHashJoinNodeId qIter = new QueryIterHashJoinNodeId(QueryIterNullIterator.create(null), QueryIterNullIterator.create(null),
+                                                                    Arrays.asList(s), JoinType.PLAIN, null, nodeTable, null) ;
+        Binding b1 = new BindingTDB(bid1, nodeTable) ;
+        Binding b = qIter.merge(b1, new BindingTDB(bid2, nodeTable)) ;
+        assertTrue(b instanceof BindingTDB) ;
+        assertEquals(nodeTable.getNodeIdForNode(nV), ((BindingTDB)b).getNodeId(v)) ;
+        assertEquals(nS, b.get(s)) ;
+        assertEquals(nO, b.get(o)) ;
+        assertEquals(nV, b.get(v)) ;
+        assertEquals(qIter.key(b1), qIter.key(BindingFactory.binding(s, nS))) ;
+        // Not compatible.
+        BindingNodeId bid3 = new BindingNodeId() ;
+        bid3.put(s, nodeTable.getNodeIdForNode(nS)) ;
+        bid3.put(o, nodeTable.getNodeIdForNode(nV)) ;
+        assertNull(qIter.merge(b1, new BindingTDB(bid3, nodeTable))) ;
+        qIter.close() ;
+    }
+
+    private static boolean onNodeIds(String exprStr)
+    {
+        Expr expr = SSE.parseExpr(exprStr) ;
+        QueryIterator qIter = QueryIterFilterNodeId.create(QueryIterNullIterator.create(null), expr, nodeTable, null) ;
+        return qIter instanceof QueryIterFilterNodeId ;
+    }
+
+    private static void test(String qs)
+    {
+        test(qs, true) ;
+    }
+
+    // Without the algebra optimizer : joins stay as joins.
+    private static void testNoOpt(String qs)
+    {
+        test(qs, false) ;
+    }
+
+    private static void test(String qs, boolean optimize)
+    {
+        QueryExecution qExec1 = QueryExecutionFactory.create(PRE+qs, dataset) ;
+        qExec1.getContext().set(SystemTDB.symLateMaterialization, false) ;
+        qExec1.getContext().set(ARQ.optimization, optimize) ;
+        ResultSetRewindable rs1 = ResultSetFactory.makeRewindable(qExec1.execSelect()) ;
+        qExec1.close() ;
+
+        QueryExecution qExec2 = QueryExecutionFactory.create(PRE+qs, dataset) ;
+        qExec2.getContext().set(ARQ.optimization, optimize) ;
+        ResultSetRewindable rs2 = ResultSetFactory.makeRewindable(qExec2.execSelect()) ;
+        qExec2.close() ;
+
+        boolean b = ResultSetCompare.equalsByTerm(rs1, rs2) ;
+        if ( ! b )
+        {
+            rs1.reset() ;
+            rs2.reset() ;
+            ResultSetFormatter.out(rs1) ;
+            ResultSetFormatter.out(rs2) ;
+        }
+        assertTrue(b) ;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hp.hpl.jena.tdb.solver;
+
+import java.io.File ;
+import java.io.FileOutputStream ;
+import java.io.IOException ;
+import java.io.OutputStreamWriter ;
+import java.io.Writer ;
+
+import org.apache.jena.atlas.io.IO ;
+import org.apache.jena.atlas.junit.BaseTest ;
+import org.junit.After ;
+import org.junit.Before ;
+import org.junit.Test ;
+
+import com.hp.hpl.jena.query.Dataset ;
+import com.hp.hpl.jena.query.ReadWrite ;
+import com.hp.hpl.jena.sparql.engine.optimizer.reorder.ReorderSelectivity ;
+import com.hp.hpl.jena.sparql.engine.optimizer.reorder.ReorderTransformation ;
+import com.hp.hpl.jena.sparql.engine.optimizer.reorder.ReorderWeighted ;
+import com.hp.hpl.jena.tdb.ConfigTest ;
+import com.hp.hpl.jena.tdb.StoreConnection ;
+import com.hp.hpl.jena.tdb.TDBFactory ;
+import com.hp.hpl.jena.tdb.base.file.Location ;
+import com.hp.hpl.jena.tdb.solver.stats.ReorderStatsFile ;
+import com.hp.hpl.jena.tdb.sys.Names ;
+import com.hp.hpl.jena.tdb.sys.TDBInternal ;
+
+public class TestReorderStatsFile extends BaseTest
+{
+    static final String statsWeighted = "(stats (meta (count 100)) (<p> 100) (<q> 10) (other 0))" ;
+    static final String statsSelectivity = "(stats (meta (count 100)) (<p> 100) (<q> 10) (other 0)"+
+        " (selectivity (pred <p> (count 100) (subjects 100) (objects 2)) (charset 10 <p> <q>)))" ;
+
+    private String dir ;
+    private String filename ;
+
+    @Before public void before()
+    {
+        dir = ConfigTest.getCleanDir() ;
+        filename = Location.create(dir).getPath(Names.optStats) ;
+    }
+
+    @After public void after()
+    {
+        StoreConnection.reset() ;
+        ConfigTest.deleteTestingDir() ;
+    }
+
+    private void writeStats(String contents, long timestamp)
+    {
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(filename), "UTF-8")) {
+            out.write(contents) ;
+        } catch (IOException ex) { IO.exception(ex) ; }
+        new File(filename).setLastModified(timestamp) ;
+    }
+
+    @Test public void reorder_stats_file_01()
+    {
+        writeStats(statsWeighted, 1000000) ;
+        ReorderStatsFile reorder = new ReorderStatsFile(filename) ;
+        assertTrue(reorder.get() instanceof ReorderWeighted) ;
+        assertFalse(reorder.refresh()) ;
+        writeStats(statsSelectivity, 2000000) ;
+        assertTrue(reorder.refresh()) ;
+        assertTrue(reorder.get() instanceof ReorderSelectivity) ;
+        assertFalse(reorder.refresh()) ;
+    }
+
+    // A bad file is not used.
+    @Test public void reorder_stats_file_02()
+    {
+        writeStats(statsSelectivity, 1000000) ;
+        ReorderStatsFile reorder = new ReorderStatsFile(filename) ;
+        ReorderTransformation r = reorder.get() ;
+        writeStats("(stats (<p> ", 2000000) ;
+        assertFalse(reorder.refresh()) ;
+        assertSame(r, reorder.get()) ;
+    }
+
+    // Reloaded on commit.
+    @Test public void reorder_stats_file_03()
+    {
+        writeStats(statsWeighted, 1000000) ;
+        Dataset ds = TDBFactory.createDataset(dir) ;
+        ReorderTransformation r = TDBInternal.getBaseDatasetGraphTDB(ds.asDatasetGraph()).getReorderTransform() ;
+        assertTrue(r instanceof ReorderStatsFile) ;
+        ReorderStatsFile reorder = (ReorderStatsFile)r ;
+        assertTrue(reorder.get() instanceof ReorderWeighted) ;
+        writeStats(statsSelectivity, 2000000) ;
+        ds.begin(ReadWrite.WRITE) ;
+        ds.commit() ;
+        ds.end() ;
+        assertTrue(reorder.get() instanceof ReorderSelectivity) ;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hp.hpl.jena.tdb.solver;
+
+import java.util.Iterator ;
+
+import org.apache.jena.atlas.junit.BaseTest ;
+import org.apache.jena.atlas.lib.Tuple ;
+import org.junit.Test ;
+
+import com.hp.hpl.jena.query.* ;
+import com.hp.hpl.jena.sparql.sse.SSE ;
+import com.hp.hpl.jena.tdb.TDBFactory ;
+import com.hp.hpl.jena.tdb.store.DatasetGraphTDB ;
+import com.hp.hpl.jena.tdb.store.NodeId ;
+import com.hp.hpl.jena.tdb.store.nodetupletable.NodeTupleTable ;
+import com.hp.hpl.jena.tdb.store.tupletable.TupleIndex ;
+import com.hp.hpl.jena.tdb.sys.ScanControl ;
+import com.hp.hpl.jena.tdb.sys.SystemTDB ;
+import com.hp.hpl.jena.tdb.sys.TDBInternal ;
+
+public class TestScanControl extends BaseTest
+{
+    static Dataset dataset          = TDBFactory.createDataset() ;
+    static DatasetGraphTDB dsg      = TDBInternal.getBaseDatasetGraphTDB(dataset.asDatasetGraph()) ;
+    static NodeTupleTable triples   = dsg.getTripleTable().getNodeTupleTable() ;
+
+    static {
+        for ( int i = 0 ; i < 1000 ; i++ )
+            dsg.getDefaultGraph().add(SSE.parseTriple("(<http://ex/s"+i+"> <http://ex/p"+(i%10)+"> "+i+")")) ;
+    }
+
+    private static final String qsAll = "SELECT * { ?s ?p ?o }" ;
+    private static final String qsJoin = "SELECT * { ?s <http://ex/p1> ?o . ?s1 <http://ex/p2> ?o1 }" ;
+
+    @Test public void scan_control_01()
+    {
+        // No limits.
+        QueryExecution qExec = QueryExecutionFactory.create(qsJoin, dataset) ;
+        assertEquals(100*100, count(qExec)) ;
+        ScanControl control = ScanControl.get(qExec.getContext()) ;
+        assertNotNull(control) ;
+        assertTrue(control.getRecordsScanned() >= 200) ;
+        assertEquals(100*100+100, control.getBindingsProduced()) ;
+    }
+
+    @Test(expected=QueryCancelledException.class)
+    public void scan_control_02()
+    {
+        QueryExecution qExec = QueryExecutionFactory.create(qsAll, dataset) ;
+        qExec.getContext().set(SystemTDB.symScanLimit, 100) ;
+        count(qExec) ;
+    }
+
+    @Test(expected=QueryCancelledException.class)
+    public void scan_control_03()
+    {
+        // Few records scanned, many bindings produced.
+        QueryExecution qExec = QueryExecutionFactory.create(qsJoin, dataset) ;
+        qExec.getContext().set(SystemTDB.symScanLimit, 1000) ;
+        qExec.getContext().set(SystemTDB.symBindingLimit, "5000") ;
+        count(qExec) ;
+    }
+
+    @Test public void scan_control_04()
+    {
+        // Inside the budget.
+        QueryExecution qExec = QueryExecutionFactory.create(qsAll, dataset) ;
+        qExec.getContext().set(SystemTDB.symScanLimit, 2000) ;
+        assertEquals(1000, count(qExec)) ;
+    }
+
+    @Test public void scan_control_05()
+    {
+        // Cancellation is noticed part way through a scan, not only between bindings.
+        ScanControl control = new ScanControl(-1, -1, 10) ;
+        Iterator<Tuple<NodeId>> iter = triples.find(Tuple.createTuple(NodeId.NodeIdAny, NodeId.NodeIdAny, NodeId.NodeIdAny), control) ;
+        iter.next() ;
+        control.cancel() ;
+        int n = 0 ;
+        try {
+            while ( iter.hasNext() )
+            {
+                iter.next() ;
+                n++ ;
+            }
+            fail("Not cancelled") ;
+        } catch (QueryCancelledException ex) {}
+        assertTrue(n < 10) ;
+    }
+
+    @Test public void scan_control_06()
+    {
+        // The records read by a scan that filters them all out are counted.
+        TupleIndex spo = triples.getTupleTable().getIndex(0) ;
+        NodeId o = triples.getNodeTable().getNodeIdForNode(SSE.parseNode("5")) ;
+        Tuple<NodeId> pattern = Tuple.createTuple(NodeId.NodeIdAny, o, NodeId.NodeIdAny) ;
+        ScanControl control = new ScanControl(100, -1, 10) ;
+        Iterator<Tuple<NodeId>> iter = spo.find(pattern, control) ;
+        try {
+            iter.hasNext() ;
+            fail("Scan not stopped") ;
+        } catch (QueryCancelledException ex) {}
+        assertTrue(control.isCancelled()) ;
+    }
+
+    @Test public void scan_control_07()
+    {
+        // Cancelled before the scan starts.
+        ScanControl control = new ScanControl(-1, -1, 10) ;
+        control.cancel() ;
+        try {
+            triples.find(Tuple.createTuple(NodeId.NodeIdAny, NodeId.NodeIdAny, NodeId.NodeIdAny), control) ;
+            fail("Not cancelled") ;
+        } catch (QueryCancelledException ex) {}
+    }
+
+    private static long count(QueryExecution qExec)
+    {
+        try {
+            ResultSet rs = qExec.execSelect() ;
+            return ResultSetFormatter.consume(rs) ;
+        } finally { qExec.close() ; }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hp.hpl.jena.tdb.solver;
+
+import java.util.ArrayList ;
+import java.util.Collections ;
+import java.util.Iterator ;
+import java.util.List ;
+
+import org.apache.jena.atlas.junit.BaseTest ;
+import org.apache.jena.atlas.lib.Tuple ;
+import org.junit.Test ;
+
+import com.hp.hpl.jena.graph.Graph ;
+import com.hp.hpl.jena.graph.Node ;
+import com.hp.hpl.jena.graph.Triple ;
+import com.hp.hpl.jena.sparql.core.DatasetGraph ;
+import com.hp.hpl.jena.sparql.core.Var ;
+import com.hp.hpl.jena.sparql.engine.ExecutionContext ;
+import com.hp.hpl.jena.sparql.engine.main.OpExecutorFactory ;
+import com.hp.hpl.jena.sparql.sse.SSE ;
+import com.hp.hpl.jena.sparql.util.Context ;
+import com.hp.hpl.jena.tdb.TDBFactory ;
+import com.hp.hpl.jena.tdb.store.DatasetGraphTDB ;
+import com.hp.hpl.jena.tdb.store.nodetupletable.NodeTupleTable ;
+import com.hp.hpl.jena.tdb.sys.ScanControl ;
+import com.hp.hpl.jena.tdb.sys.TDBInternal ;
+
+public class TestStageMatchMergeJoin extends BaseTest
+{
+    static DatasetGraphTDB dsg      = TDBInternal.getBaseDatasetGraphTDB(TDBFactory.createDatasetGraph()) ;
+    static NodeTupleTable triples   = dsg.getTripleTable().getNodeTupleTable() ;
+
+    static {
+        for ( int i = 0 ; i < 100 ; i++ )
+        {
+            if ( i % 2 == 0 )
+                dsg.getDefaultGraph().add(SSE.parseTriple("(<s"+i+"> <type> <C2>)")) ;
+            if ( i % 3 == 0 )
+                dsg.getDefaultGraph().add(SSE.parseTriple("(<s"+i+"> <type> <C3>)")) ;
+            if ( i % 50 == 0 )
+                dsg.getDefaultGraph().add(SSE.parseTriple("(<s"+i+"> <type> <C50>)")) ;
+            dsg.getDefaultGraph().add(SSE.parseTriple("(<x> <p"+(i%4)+"> <s"+i+">)")) ;
+        }
+    }
+
+    @Test public void mergejoin_applies_01()    { assertTrue(applies("(?s <type> <C2>)", "(?s <type> <C3>)")) ; }
+    // Join on the object: SPO.
+    @Test public void mergejoin_applies_02()    { assertTrue(applies("(<x> <p1> ?o)", "(<x> <p2> ?o)")) ; }
+    // No index gives ?s after the constants.
+    @Test public void mergejoin_applies_03()    { assertFalse(applies("(?s <type> ?c)", "(?s <type> <C3>)")) ; }
+    // No shared variable.
+    @Test public void mergejoin_applies_04()    { assertFalse(applies("(?s <type> <C2>)", "(?z <type> <C3>)")) ; }
+
+    @Test public void mergejoin_01()    { test("(?s <type> <C2>)", "(?s <type> <C3>)", 20) ; }
+    @Test public void mergejoin_02()    { test("(?s <type> <C2>)", "(?s <type> <C3>)", 0) ; }
+    @Test public void mergejoin_03()    { test("(?s <type> <C50>)", "(?s <type> <C2>)", 0) ; }
+    @Test public void mergejoin_04()    { test("(?s <type> <C2>)", "(?s <type> <C50>)", 1) ; }
+    @Test public void mergejoin_05()    { test("(<x> ?p ?o)", "(?o <type> <C3>)", 5) ; }
+    // Constant not in the node table.
+    @Test public void mergejoin_06()    { test("(?s <type> <C2>)", "(?s <type> <Unknown>)", 20) ; }
+    // Falls back to nested loop.
+    @Test public void mergejoin_07()    { test("(?s <type> ?c)", "(?s <type> <C3>)", 20) ; }
+
+    // Closed before the end : the index scans are closed (and then count the records they read).
+    @Test public void mergejoin_close_01()
+    {
+        Context context = new Context() ;
+        ScanControl control = ScanControl.create(context) ;
+        ExecutionContext execCxt = new ExecutionContext(context, (Graph)null, (DatasetGraph)null, (OpExecutorFactory)null) ;
+        StageMatchMergeJoin iter = new StageMatchMergeJoin(triples, root(), tuple("(?s <type> <C2>)"), tuple("(?s <type> <C3>)"),
+                                                           null, execCxt, 20) ;
+        assertTrue(iter.hasNext()) ;
+        iter.next() ;
+        assertEquals(0, control.getRecordsScanned()) ;
+        iter.close() ;
+        assertTrue(control.getRecordsScanned() > 0) ;
+    }
+
+    private static boolean applies(String pattern1, String pattern2)
+    {
+        return StageMatchMergeJoin.applies(triples, tuple(pattern1), tuple(pattern2)) ;
+    }
+
+    private static void test(String pattern1, String pattern2, int seekDistance)
+    {
+        List<String> expected = strings(new StageMatchTuple(triples,
+                                                            new StageMatchTuple(triples, root(), tuple(pattern1), false, null, null),
+                                                            tuple(pattern2), false, null, null)) ;
+        List<String> actual = strings(new StageMatchMergeJoin(triples, root(), tuple(pattern1), tuple(pattern2), null, null, seekDistance)) ;
+        assertEquals(expected, actual) ;
+    }
+
+    private static Iterator<BindingNodeId> root()
+    {
+        List<BindingNodeId> root = new ArrayList<>() ;
+        root.add(new BindingNodeId()) ;
+        return root.iterator() ;
+    }
+
+    private static Tuple<Node> tuple(String pattern)
+    {
+        Triple t = SSE.parseTriple(pattern) ;
+        return Tuple.createTuple(t.getSubject(), t.getPredicate(), t.getObject()) ;
+    }
+
+    // Results, in a canonical order.
+    private static List<String> strings(Iterator<BindingNodeId> iter)
+    {
+        List<String> x = new ArrayList<>() ;
+        while ( iter.hasNext() )
+        {
+            BindingNodeId b = iter.next() ;
+            List<String> row = new ArrayList<>() ;
+            for ( Var v : b )
+                row.add(v+"="+b.get(v)) ;
+            Collections.sort(row) ;
+            x.add(row.toString()) ;
+        }
+        Collections.sort(x) ;
+        return x ;
+    }
+}
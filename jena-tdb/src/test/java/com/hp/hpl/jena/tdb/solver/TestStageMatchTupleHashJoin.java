@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hp.hpl.jena.tdb.solver;
+
+import java.util.ArrayList ;
+import java.util.Collections ;
+import java.util.Iterator ;
+import java.util.List ;
+
+import org.apache.jena.atlas.junit.BaseTest ;
+import org.apache.jena.atlas.lib.Tuple ;
+import org.junit.Test ;
+
+import com.hp.hpl.jena.graph.Node ;
+import com.hp.hpl.jena.graph.Triple ;
+import com.hp.hpl.jena.sparql.core.Var ;
+import com.hp.hpl.jena.sparql.sse.SSE ;
+import com.hp.hpl.jena.tdb.TDBFactory ;
+import com.hp.hpl.jena.tdb.store.DatasetGraphTDB ;
+import com.hp.hpl.jena.tdb.store.nodetable.NodeTable ;
+import com.hp.hpl.jena.tdb.store.nodetupletable.NodeTupleTable ;
+import com.hp.hpl.jena.tdb.sys.TDBInternal ;
+
+public class TestStageMatchTupleHashJoin extends BaseTest
+{
+    static DatasetGraphTDB dsg      = TDBInternal.getBaseDatasetGraphTDB(TDBFactory.createDatasetGraph()) ;
+    static NodeTupleTable triples   = dsg.getTripleTable().getNodeTupleTable() ;
+    static NodeTable nt             = triples.getNodeTable() ;
+
+    static {
+        for ( int i = 0 ; i < 20 ; i++ )
+        {
+            dsg.getDefaultGraph().add(SSE.parseTriple("(<s"+i+"> <p> <o"+(i%5)+">)")) ;
+            dsg.getDefaultGraph().add(SSE.parseTriple("(<o"+(i%5)+"> <q> "+i+")")) ;
+        }
+        dsg.getDefaultGraph().add(SSE.parseTriple("(<o1> <r> <o1>)")) ;
+        dsg.getDefaultGraph().add(SSE.parseTriple("(<o2> <r> <o3>)")) ;
+    }
+
+    @Test public void hashjoin_01()     { test("(?s <p> ?o)", "(?o <q> ?v)", 10, 1000) ; }
+
+    // Batch of one binding - always probes.
+    @Test public void hashjoin_02()     { test("(?s <p> ?o)", "(?o <q> ?v)", 1, 1000) ; }
+
+    // Scan too long - falls back to probes.
+    @Test public void hashjoin_03()     { test("(?s <p> ?o)", "(?o <q> ?v)", 10, 1) ; }
+
+    // Repeated variable in the second pattern.
+    @Test public void hashjoin_04()     { test("(?s <p> ?o)", "(?o <r> ?o)", 10, 1000) ; }
+
+    // Two join variables.
+    @Test public void hashjoin_05()     { test("(?x <r> ?y)", "(?y ?p ?x)", 3, 1000) ; }
+
+    // No shared variables.
+    @Test public void hashjoin_06()     { test("(?s <r> ?o)", "(?x <r> ?y)", 10, 1000) ; }
+
+    // Constant not in the node table.
+    @Test public void hashjoin_07()     { test("(?s <p> ?o)", "(?o <unknown> ?v)", 10, 1000) ; }
+
+    // Join of a variable into the predicate slot.
+    @Test public void hashjoin_08()     { test("(?o1 ?p <o1>)", "(?s ?p ?o)", 10, 1000) ; }
+
+    private static void test(String pattern1, String pattern2, int batchSize, int probeCost)
+    {
+        List<String> expected = strings(new StageMatchTuple(triples, input(pattern1), tuple(pattern2), false, null, null)) ;
+        List<String> actual = strings(new StageMatchTupleHashJoin(triples, input(pattern1), tuple(pattern2), false, null, null,
+                                                                  batchSize, probeCost)) ;
+        assertEquals(expected, actual) ;
+    }
+
+    private static Iterator<BindingNodeId> input(String pattern)
+    {
+        List<BindingNodeId> root = new ArrayList<>() ;
+        root.add(new BindingNodeId()) ;
+        return new StageMatchTuple(triples, root.iterator(), tuple(pattern), false, null, null) ;
+    }
+
+    private static Tuple<Node> tuple(String pattern)
+    {
+        Triple t = SSE.parseTriple(pattern) ;
+        return Tuple.createTuple(t.getSubject(), t.getPredicate(), t.getObject()) ;
+    }
+
+    // Results, in a canonical order.
+    private static List<String> strings(Iterator<BindingNodeId> iter)
+    {
+        List<String> x = new ArrayList<>() ;
+        while ( iter.hasNext() )
+        {
+            BindingNodeId b = iter.next() ;
+            List<String> row = new ArrayList<>() ;
+            for ( Var v : b )
+                row.add(v+"="+b.get(v)) ;
+            Collections.sort(row) ;
+            x.add(row.toString()) ;
+        }
+        Collections.sort(x) ;
+        return x ;
+    }
+}
@@ -18,16 +18,28 @@
 
 package com.hp.hpl.jena.tdb.solver;
 
+import java.util.ArrayList ;
+import java.util.HashSet ;
 import java.util.Iterator ;
+import java.util.List ;
+import java.util.Set ;
 
 import org.apache.jena.atlas.junit.BaseTest ;
 import org.apache.jena.atlas.lib.Tuple ;
 import org.junit.Test ;
 
+import com.hp.hpl.jena.graph.Node ;
 import com.hp.hpl.jena.graph.NodeFactory ;
+import com.hp.hpl.jena.graph.Triple ;
 import com.hp.hpl.jena.sparql.core.Quad ;
+import com.hp.hpl.jena.sparql.engine.optimizer.StatsMatcher ;
+import com.hp.hpl.jena.sparql.engine.optimizer.StatsSelectivity ;
+import com.hp.hpl.jena.sparql.engine.optimizer.StatsSelectivity.PredicateStats ;
+import com.hp.hpl.jena.sparql.sse.Item ;
 import com.hp.hpl.jena.sparql.sse.SSE ;
 import com.hp.hpl.jena.tdb.TDBFactory ;
+import com.hp.hpl.jena.tdb.solver.stats.Stats ;
+import com.hp.hpl.jena.tdb.solver.stats.StatsCollector ;
 import com.hp.hpl.jena.tdb.solver.stats.StatsCollectorNodeId ;
 import com.hp.hpl.jena.tdb.solver.stats.StatsResults ;
 import com.hp.hpl.jena.tdb.store.DatasetGraphTDB ;
@@ -109,6 +121,92 @@ public class TestStats extends BaseTest
         assertEquals(1, r.getPredicates().keySet().size()) ;
     }
 
-}
+    @Test public void stats_05() { 
+        StatsResults r = statsForGraph(null) ;
+        PredicateStats ps = r.getSelectivity().get(NodeFactory.createURI("p")) ;
+        assertEquals(3, ps.getCount()) ;
+        assertEquals(1, ps.getSubjects()) ;
+        assertEquals(3, ps.getObjects()) ;
+        // One subject for each graph, each with only one predicate.
+        assertTrue(r.getCharacteristicSets().isEmpty()) ;
+    }
+
+    // Selectivity statistics.
+    private static StatsResults statsSelectivity()
+    {
+        StatsCollector stats = new StatsCollector() ;
+        for ( int i = 0 ; i < 100 ; i++ )
+        {
+            // Subjects recorded together.
+            record(stats, "(<s"+i+"> <name> 'name"+i+"')") ;
+            if ( i % 10 == 0 )
+                record(stats, "(<s"+i+"> <email> 'email"+i+"')") ;
+            record(stats, "(<s"+i+"> <type> "+(i < 90 ? "<Common>" : "<Rare"+i+">")+")") ;
+        }
+        return stats.results() ;
+    }
+
+    private static void record(StatsCollector stats, String str)
+    {
+        Triple t = SSE.parseTriple(str) ;
+        stats.record(null, t.getSubject(), t.getPredicate(), t.getObject()) ;
+    }
+
+    @Test public void stats_selectivity_01() { 
+        StatsResults r = statsSelectivity() ;
+        PredicateStats ps = r.getSelectivity().get(NodeFactory.createURI("name")) ;
+        assertEquals(100, ps.getCount()) ;
+        assertEquals(100, ps.getSubjects()) ;
+        assertEquals(100, ps.getObjects()) ;
+        assertTrue(ps.getValues().isEmpty()) ;
+    }
 
+    @Test public void stats_selectivity_02() { 
+        StatsResults r = statsSelectivity() ;
+        PredicateStats ps = r.getSelectivity().get(NodeFactory.createURI("type")) ;
+        assertEquals(100, ps.getCount()) ;
+        assertEquals(11, ps.getObjects()) ;
+        assertEquals(1, ps.getValues().size()) ;
+        assertEquals(90L, (long)ps.getValues().get(NodeFactory.createURI("Common"))) ;
+    }
+
+    @Test public void stats_selectivity_03() { 
+        StatsResults r = statsSelectivity() ;
+        assertEquals(2, r.getCharacteristicSets().size()) ;
+        Set<Node> x = new HashSet<>() ;
+        x.add(NodeFactory.createURI("name")) ;
+        x.add(NodeFactory.createURI("type")) ;
+        assertEquals(90L, (long)r.getCharacteristicSets().get(x)) ;
+        x.add(NodeFactory.createURI("email")) ;
+        assertEquals(10L, (long)r.getCharacteristicSets().get(x)) ;
+    }
 
+    // Many distinct values : estimated.
+    @Test public void stats_selectivity_04() { 
+        StatsCollector stats = new StatsCollector() ;
+        int N = 20000 ;
+        for ( int i = 0 ; i < N ; i++ )
+            record(stats, "(<s"+(i%5000)+"> <p> "+i+")") ;
+        PredicateStats ps = stats.results().getSelectivity().get(NodeFactory.createURI("p")) ;
+        assertEquals(N, ps.getCount()) ;
+        assertEquals(5000, ps.getSubjects(), 5000*0.25) ;
+        assertEquals(N, ps.getObjects(), N*0.25) ;
+    }
+
+    // Written stats can be read back.
+    @Test public void stats_format_01() { 
+        Item item = Stats.format(statsSelectivity()) ;
+        StatsSelectivity sel = new StatsSelectivity(item) ;
+        assertFalse(sel.isEmpty()) ;
+        PredicateStats ps = sel.get(NodeFactory.createURI("type")) ;
+        assertEquals(100, ps.getCount()) ;
+        assertEquals(90, ps.perObject(NodeFactory.createURI("Common")), 0) ;
+        List<Node> star = new ArrayList<>() ;
+        star.add(NodeFactory.createURI("email")) ;
+        star.add(NodeFactory.createURI("name")) ;
+        assertEquals(10, sel.starSubjects(star), 0) ;
+        
+        StatsMatcher matcher = new StatsMatcher(item) ;
+        assertEquals(100, matcher.match(SSE.parseTriple("(?x <name> ?v)")), 0) ;
+    }
+}
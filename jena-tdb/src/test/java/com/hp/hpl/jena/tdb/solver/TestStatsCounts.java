@@ -0,0 +1,295 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hp.hpl.jena.tdb.solver;
+
+import java.io.File ;
+import java.io.FileOutputStream ;
+import java.io.IOException ;
+import java.io.OutputStreamWriter ;
+import java.io.Writer ;
+import java.nio.file.Files ;
+
+import org.apache.jena.atlas.io.IO ;
+import org.apache.jena.atlas.lib.FileOps ;
+import org.apache.jena.atlas.junit.BaseTest ;
+import org.junit.After ;
+import org.junit.Before ;
+import org.junit.Test ;
+
+import com.hp.hpl.jena.graph.Node ;
+import com.hp.hpl.jena.query.Dataset ;
+import com.hp.hpl.jena.query.ReadWrite ;
+import com.hp.hpl.jena.sparql.core.DatasetGraph ;
+import com.hp.hpl.jena.sparql.engine.optimizer.reorder.ReorderTransformation ;
+import com.hp.hpl.jena.sparql.graph.NodeConst ;
+import com.hp.hpl.jena.sparql.sse.SSE ;
+import com.hp.hpl.jena.tdb.ConfigTest ;
+import com.hp.hpl.jena.tdb.StoreConnection ;
+import com.hp.hpl.jena.tdb.TDBFactory ;
+import com.hp.hpl.jena.tdb.base.file.Location ;
+import com.hp.hpl.jena.tdb.solver.stats.ReorderStatsFile ;
+import com.hp.hpl.jena.tdb.solver.stats.StatsCounts ;
+import com.hp.hpl.jena.tdb.store.DatasetGraphTDB ;
+import com.hp.hpl.jena.tdb.sys.Names ;
+import com.hp.hpl.jena.tdb.sys.TDBInternal ;
+
+public class TestStatsCounts extends BaseTest
+{
+    static final String statsGenerated = "(stats (meta (count 10)) (<p> 6) (<q> 4) ((VAR rdf:type <T>) 3) (other 0)"+
+        " (selectivity (pred <p> (count 6) (subjects 6) (objects 2))))" ;
+    static final String statsWritten = "(stats (<p> 100) (<q> 10) (other 0))" ;
+
+    static final Node p = SSE.parseNode("<p>") ;
+    static final Node q = SSE.parseNode("<q>") ;
+    static final Node g = SSE.parseNode("<g>") ;
+
+    private String dir ;
+    private String filename ;
+
+    @Before public void before()
+    {
+        dir = ConfigTest.getCleanDir() ;
+        filename = Location.create(dir).getPath(Names.optStats) ;
+    }
+
+    @After public void after()
+    {
+        StoreConnection.reset() ;
+        ConfigTest.deleteTestingDir() ;
+    }
+
+    private void writeStats(String contents)
+    {
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(filename), "UTF-8")) {
+            out.write(contents) ;
+        } catch (IOException ex) { IO.exception(ex) ; }
+    }
+
+    @Test public void stats_counts_01()
+    {
+        writeStats(statsGenerated) ;
+        StatsCounts counts = StatsCounts.read(filename, true) ;
+        assertNotNull(counts) ;
+        assertEquals(10, counts.getCount()) ;
+        assertEquals(6, counts.getCount(p)) ;
+        assertEquals(0, counts.getGraphCount(g)) ;
+        assertFalse(counts.isChanged()) ;
+
+        counts.addTriple(p, SSE.parseNode("<o>")) ;
+        counts.deleteTriple(q, null) ;
+        counts.addQuad(g) ;
+        assertEquals(10, counts.getCount()) ;
+        assertEquals(7, counts.getCount(p)) ;
+        assertEquals(3, counts.getCount(q)) ;
+        assertEquals(1, counts.getGraphCount(g)) ;
+        assertTrue(counts.isChanged()) ;
+    }
+
+    // Hand written stats files are not maintained.
+    @Test public void stats_counts_02()
+    {
+        writeStats(statsWritten) ;
+        assertNull(StatsCounts.read(filename, true)) ;
+    }
+
+    // Named graph counts not known.
+    @Test public void stats_counts_03()
+    {
+        writeStats(statsGenerated) ;
+        StatsCounts counts = StatsCounts.read(filename, false) ;
+        counts.addQuad(g) ;
+        assertEquals(-1, counts.getGraphCount(g)) ;
+    }
+
+    // Changes, merged.
+    @Test public void stats_counts_04()
+    {
+        writeStats(statsGenerated) ;
+        StatsCounts counts = StatsCounts.read(filename, true) ;
+        StatsCounts changes = new StatsCounts() ;
+        changes.deleteTriple(p, null) ;
+        changes.deleteTriple(NodeConst.nodeRDFType, SSE.parseNode("<T>")) ;
+        changes.addQuad(g) ;
+        assertEquals(-2, changes.getCount()) ;
+        counts.merge(changes) ;
+        assertEquals(8, counts.getCount()) ;
+        assertEquals(5, counts.getCount(p)) ;
+        assertEquals(1, counts.getGraphCount(g)) ;
+    }
+
+    @Test public void stats_counts_05()
+    {
+        writeStats(statsGenerated) ;
+        StatsCounts counts = StatsCounts.read(filename, true) ;
+        StatsCounts changes = new StatsCounts() ;
+        changes.addTriple(p, null) ;
+        changes.clearTriples() ;
+        changes.addTriple(q, null) ;
+        counts.merge(changes) ;
+        assertEquals(1, counts.getCount()) ;
+        assertEquals(0, counts.getCount(p)) ;
+        assertEquals(1, counts.getCount(q)) ;
+    }
+
+    // Write and read back.
+    @Test public void stats_counts_06()
+    {
+        writeStats(statsGenerated) ;
+        StatsCounts counts = StatsCounts.read(filename, true) ;
+        assertNull(counts.write()) ;
+        counts.addTriple(p, null) ;
+        counts.addQuad(g) ;
+        assertNotNull(counts.write()) ;
+        assertFalse(counts.isChanged()) ;
+
+        StatsCounts counts2 = StatsCounts.read(filename, false) ;
+        assertNotNull(counts2) ;
+        assertEquals(11, counts2.getCount()) ;
+        assertEquals(7, counts2.getCount(p)) ;
+        assertEquals(1, counts2.getGraphCount(g)) ;
+    }
+
+    // Maintained by transactions; the BGP optimizer is updated on commit.
+    @Test public void stats_counts_07()
+    {
+        writeStats(statsGenerated) ;
+        Dataset ds = TDBFactory.createDataset(dir) ;
+        DatasetGraphTDB dsg = TDBInternal.getBaseDatasetGraphTDB(ds.asDatasetGraph()) ;
+        ReorderTransformation r = dsg.getReorderTransform() ;
+        assertTrue(r instanceof ReorderStatsFile) ;
+        ReorderTransformation before = ((ReorderStatsFile)r).get() ;
+        assertNotNull(dsg.getStatsCounts()) ;
+
+        ds.begin(ReadWrite.WRITE) ;
+        DatasetGraph dsgTxn = ds.asDatasetGraph() ;
+        dsgTxn.add(SSE.parseQuad("(_ <s> <p> <o1>)")) ;
+        dsgTxn.add(SSE.parseQuad("(_ <s> <p> <o2>)")) ;
+        dsgTxn.add(SSE.parseQuad("(<g> <s> <q> <o>)")) ;
+        ds.commit() ;
+        ds.end() ;
+
+        assertEquals(12, dsg.getStatsCounts().getCount()) ;
+        assertEquals(8, dsg.getStatsCounts().getCount(p)) ;
+        assertEquals(1, dsg.getStatsCounts().getGraphCount(g)) ;
+        ReorderTransformation after = ((ReorderStatsFile)r).get() ;
+        assertNotSame(before, after) ;
+
+        // The file is written at write-back.
+        StoreConnection.make(dir).flush() ;
+        StatsCounts counts = StatsCounts.read(filename, false) ;
+        assertEquals(12, counts.getCount()) ;
+        assertEquals(1, counts.getGraphCount(g)) ;
+
+        ds.begin(ReadWrite.WRITE) ;
+        ds.asDatasetGraph().deleteAny(null, SSE.parseNode("<s>"), p, null) ;
+        ds.commit() ;
+        ds.end() ;
+        assertEquals(10, dsg.getStatsCounts().getCount()) ;
+        assertEquals(6, dsg.getStatsCounts().getCount(p)) ;
+        assertNotSame(after, ((ReorderStatsFile)r).get()) ;
+    }
+
+    // Aborted changes are not recorded.
+    @Test public void stats_counts_08()
+    {
+        writeStats(statsGenerated) ;
+        Dataset ds = TDBFactory.createDataset(dir) ;
+        DatasetGraphTDB dsg = TDBInternal.getBaseDatasetGraphTDB(ds.asDatasetGraph()) ;
+        ds.begin(ReadWrite.WRITE) ;
+        ds.asDatasetGraph().add(SSE.parseQuad("(_ <s> <p> <o1>)")) ;
+        ds.abort() ;
+        ds.end() ;
+        assertEquals(10, dsg.getStatsCounts().getCount()) ;
+        assertFalse(dsg.getStatsCounts().isChanged()) ;
+    }
+
+    // The counts are journaled with the commit, and recovered.
+    @Test public void stats_counts_10() throws IOException
+    {
+        writeStats(statsGenerated) ;
+        Dataset ds = TDBFactory.createDataset(dir) ;
+        DatasetGraphTDB dsg = TDBInternal.getBaseDatasetGraphTDB(ds.asDatasetGraph()) ;
+        // A reader holds up write-back.
+        Dataset dsRead = TDBFactory.createDataset(dir) ;
+        dsRead.begin(ReadWrite.READ) ;
+        ds.begin(ReadWrite.WRITE) ;
+        ds.asDatasetGraph().add(SSE.parseQuad("(_ <s> <p> <o1>)")) ;
+        ds.commit() ;
+        ds.end() ;
+        assertEquals(11, dsg.getStatsCounts().getCount()) ;
+        assertEquals(10, StatsCounts.read(filename, true).getCount()) ;
+
+        // Crash: copy the database as it is.
+        File copy = new File(ConfigTest.getTestingDirDB()+"-copy") ;
+        FileOps.clearAll(copy) ;
+        copy.mkdirs() ;
+        for ( File f : new File(dir).listFiles() )
+        {
+            if ( f.getName().equals("tdb.lock") )
+                continue ;
+            Files.copy(f.toPath(), new File(copy, f.getName()).toPath()) ;
+        }
+        dsRead.end() ;
+
+        try {
+            String copyFilename = Location.create(copy.getPath()).getPath(Names.optStats) ;
+            assertEquals(10, StatsCounts.read(copyFilename, true).getCount()) ;
+            StoreConnection sConn = StoreConnection.make(copy.getPath()) ;
+            assertEquals(11, StatsCounts.read(copyFilename, true).getCount()) ;
+            assertEquals(11, sConn.getBaseDataset().getStatsCounts().getCount()) ;
+            StoreConnection.release(sConn.getLocation()) ;
+        } finally {
+            FileOps.clearAll(copy) ;
+            copy.delete() ;
+        }
+    }
+
+    // Not written until write-back.
+    @Test public void stats_counts_11()
+    {
+        writeStats(statsGenerated) ;
+        Dataset ds = TDBFactory.createDataset(dir) ;
+        DatasetGraphTDB dsg = TDBInternal.getBaseDatasetGraphTDB(ds.asDatasetGraph()) ;
+        Dataset dsRead = TDBFactory.createDataset(dir) ;
+        dsRead.begin(ReadWrite.READ) ;
+        ds.begin(ReadWrite.WRITE) ;
+        ds.asDatasetGraph().add(SSE.parseQuad("(_ <s> <p> <o1>)")) ;
+        ds.commit() ;
+        ds.end() ;
+        assertEquals(10, StatsCounts.read(filename, true).getCount()) ;
+        dsRead.end() ;
+        StoreConnection.make(dir).flush() ;
+        assertEquals(11, dsg.getStatsCounts().getCount()) ;
+        assertEquals(11, StatsCounts.read(filename, true).getCount()) ;
+    }
+
+    // Not maintained for a hand written stats file.
+    @Test public void stats_counts_09()
+    {
+        writeStats(statsWritten) ;
+        Dataset ds = TDBFactory.createDataset(dir) ;
+        DatasetGraphTDB dsg = TDBInternal.getBaseDatasetGraphTDB(ds.asDatasetGraph()) ;
+        assertNull(dsg.getStatsCounts()) ;
+        ds.begin(ReadWrite.WRITE) ;
+        ds.asDatasetGraph().add(SSE.parseQuad("(_ <s> <p> <o1>)")) ;
+        ds.commit() ;
+        ds.end() ;
+        assertNull(StatsCounts.read(filename, true)) ;
+    }
+}
@@ -36,6 +36,8 @@ import com.hp.hpl.jena.tdb.sys.TestOps ;
     , TestDatasetTDBPersist.class
     , TestDatasetTDB.class
     , TestLoader.class
+    , TestLoaderParallel.class
+    , TestBulkLoader2.class
     // The script suite
     , TestSuiteGraphTDB.class
     , Test_SPARQL_TDB.class
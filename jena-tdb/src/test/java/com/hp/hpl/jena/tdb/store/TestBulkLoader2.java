@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hp.hpl.jena.tdb.store ;
+
+import java.io.File ;
+import java.io.PrintStream ;
+import java.util.ArrayList ;
+import java.util.Arrays ;
+import java.util.Collections ;
+import java.util.Iterator ;
+import java.util.List ;
+import java.util.Random ;
+
+import org.apache.jena.atlas.io.IO ;
+import org.apache.jena.atlas.iterator.Iter ;
+import org.apache.jena.atlas.junit.BaseTest ;
+import org.apache.jena.atlas.lib.Bytes ;
+import org.apache.jena.atlas.lib.FileOps ;
+import org.apache.jena.atlas.logging.LogCtl ;
+import org.junit.After ;
+import org.junit.AfterClass ;
+import org.junit.BeforeClass ;
+import org.junit.Test ;
+
+import com.hp.hpl.jena.query.ARQ ;
+import com.hp.hpl.jena.sparql.core.Quad ;
+import com.hp.hpl.jena.tdb.ConfigTest ;
+import com.hp.hpl.jena.tdb.StoreConnection ;
+import com.hp.hpl.jena.tdb.TDB ;
+import com.hp.hpl.jena.tdb.TDBLoader ;
+import com.hp.hpl.jena.tdb.base.file.Location ;
+import com.hp.hpl.jena.tdb.base.record.Record ;
+import com.hp.hpl.jena.tdb.base.record.RecordFactory ;
+import com.hp.hpl.jena.tdb.store.bulkloader2.BulkLoader2 ;
+import com.hp.hpl.jena.tdb.store.bulkloader2.ExternalSort ;
+import com.hp.hpl.jena.tdb.store.tupletable.TupleIndex ;
+import com.hp.hpl.jena.tdb.sys.TDBMaker ;
+
+public class TestBulkLoader2 extends BaseTest {
+    private static final RecordFactory factory = new RecordFactory(8, 0) ;
+    private static final int mergeFanIn = ExternalSort.MergeFanIn ;
+    private static final int minRunSize = ExternalSort.MinRunSize ;
+
+    @BeforeClass
+    static public void beforeClass() {
+        LogCtl.disable(ARQ.logExecName) ;
+        LogCtl.disable(TDB.logLoaderName) ;
+    }
+
+    @AfterClass
+    static public void afterClass() {
+        LogCtl.enable(ARQ.logExecName) ;
+        LogCtl.enable(TDB.logLoaderName) ;
+    }
+
+    @After
+    public void after() {
+        ExternalSort.MergeFanIn = mergeFanIn ;
+        ExternalSort.MinRunSize = minRunSize ;
+    }
+
+    // In memory.
+    @Test public void external_sort_01()    { sort(1000, 100, 1000*1000, 1) ; }
+
+    // Runs on disk.
+    @Test public void external_sort_02()    { ExternalSort.MinRunSize = 100 ; sort(1000, 500, 0, 1) ; }
+
+    // Parallel run generation and merge passes.
+    @Test public void external_sort_03()    { ExternalSort.MinRunSize = 10 ; ExternalSort.MergeFanIn = 3 ; sort(1000, 2000, 0, 4) ; }
+
+    @Test public void external_sort_04()    { ExternalSort.MinRunSize = 10 ; sort(0, 10, 0, 2) ; }
+
+    // Same as a load by the standard loader.
+    @Test public void bulkloader2_01() {
+        String dataFile = ConfigTest.getTestingDir()+"/bulkloader2.nq" ;
+        PrintStream out = new PrintStream(IO.openOutputFile(dataFile)) ;
+        for ( int i = 0 ; i < 500 ; i++ ) {
+            out.println("<http://example/s"+(i%17)+"> <http://example/p"+(i%3)+"> \""+(i%101)+"\" .") ;
+            out.println("<http://example/s"+(i%11)+"> <http://example/q> <http://example/s"+(i%7)+"> <http://example/g"+(i%4)+"> .") ;
+        }
+        out.close() ;
+
+        DatasetGraphTDB dsg1 = TDBMaker.createDatasetGraphTDB(Location.mem(), null) ;
+        TDBLoader.load(dsg1, dataFile, false) ;
+
+        ExternalSort.MinRunSize = 10 ;
+        Location location = Location.create(ConfigTest.getCleanDir()) ;
+        BulkLoader2.load(location, Arrays.asList(dataFile), 0, 2) ;
+        DatasetGraphTDB dsg2 = StoreConnection.make(location).getBaseDataset() ;
+        try {
+            assertEquals(quads(dsg1), quads(dsg2)) ;
+            sizes(dsg1.getTripleTable().getNodeTupleTable().getTupleTable().getIndexes(),
+                  dsg2.getTripleTable().getNodeTupleTable().getTupleTable().getIndexes()) ;
+            sizes(dsg1.getQuadTable().getNodeTupleTable().getTupleTable().getIndexes(),
+                  dsg2.getQuadTable().getNodeTupleTable().getTupleTable().getIndexes()) ;
+            assertFalse(new File(location.getPath("triples", "tmp")).exists()) ;
+        } finally {
+            StoreConnection.release(location) ;
+            FileOps.delete(dataFile) ;
+        }
+    }
+
+    private static void sort(int distinct, int count, long memory, int threads) {
+        Random random = new Random(1234) ;
+        List<Long> expected = new ArrayList<>() ;
+        try ( ExternalSort sorter = new ExternalSort(factory, memory, threads, null) ) {
+            for ( int i = 0 ; i < count ; i++ ) {
+                long x = ( distinct == 0 ) ? i : random.nextInt(distinct) ;
+                // Includes negative values : unsigned order.
+                if ( i % 2 == 0 )
+                    x = -x ;
+                if ( ! expected.contains(x) )
+                    expected.add(x) ;
+                Record r = factory.create() ;
+                Bytes.setLong(x, r.getKey()) ;
+                sorter.add(r) ;
+            }
+            Iterator<Record> iter = sorter.sorted() ;
+            List<Long> actual = new ArrayList<>() ;
+            while ( iter.hasNext() )
+                actual.add(Bytes.getLong(iter.next().getKey())) ;
+            Collections.sort(expected, new java.util.Comparator<Long>() {
+                @Override
+                public int compare(Long x1, Long x2) { return compareUnsigned(x1, x2) ; }
+            }) ;
+            assertEquals(expected, actual) ;
+        }
+    }
+
+    private static int compareUnsigned(long x1, long x2) {
+        return Long.compare(x1 + Long.MIN_VALUE, x2 + Long.MIN_VALUE) ;
+    }
+
+    private static List<String> quads(DatasetGraphTDB dsg) {
+        List<String> x = new ArrayList<>() ;
+        for ( Quad q : Iter.toList(dsg.find()) )
+            x.add(q.toString()) ;
+        Collections.sort(x) ;
+        return x ;
+    }
+
+    private static void sizes(TupleIndex[] indexes1, TupleIndex[] indexes2) {
+        assertEquals(indexes1.length, indexes2.length) ;
+        for ( int i = 0 ; i < indexes1.length ; i++ )
+            assertEquals(indexes1[i].getName(), Iter.count(indexes1[i].all()), Iter.count(indexes2[i].all())) ;
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hp.hpl.jena.tdb.store ;
+
+import java.io.ByteArrayInputStream ;
+import java.io.InputStream ;
+import java.nio.charset.StandardCharsets ;
+import java.util.ArrayList ;
+import java.util.Arrays ;
+import java.util.HashSet ;
+import java.util.List ;
+import java.util.Set ;
+
+import org.apache.jena.atlas.iterator.Iter ;
+import org.apache.jena.atlas.junit.BaseTest ;
+import org.apache.jena.atlas.lib.Tuple ;
+import org.apache.jena.atlas.logging.LogCtl ;
+import org.apache.jena.riot.SysRIOT ;
+import org.junit.After ;
+import org.junit.AfterClass ;
+import org.junit.BeforeClass ;
+import org.junit.Test ;
+
+import com.hp.hpl.jena.graph.Node ;
+import com.hp.hpl.jena.graph.NodeFactory ;
+import com.hp.hpl.jena.query.ARQ ;
+import com.hp.hpl.jena.tdb.ConfigTest ;
+import com.hp.hpl.jena.tdb.TDB ;
+import com.hp.hpl.jena.tdb.TDBLoader ;
+import com.hp.hpl.jena.tdb.base.file.Location ;
+import com.hp.hpl.jena.tdb.store.bulkloader.BulkLoaderParallel ;
+import com.hp.hpl.jena.tdb.store.nodetable.NodeTable ;
+import com.hp.hpl.jena.tdb.store.nodetupletable.NodeTupleTable ;
+import com.hp.hpl.jena.tdb.store.tupletable.TupleIndex ;
+import com.hp.hpl.jena.tdb.sys.TDBMaker ;
+
+public class TestLoaderParallel extends BaseTest {
+    private static String DIR = null ;
+    private static final Node   g   = NodeFactory.createURI("g") ;
+    private static final int    batchSize = BulkLoaderParallel.BatchSize ;
+    private static final int    sortChunkSize = BulkLoaderParallel.SortChunkSize ;
+    private static final long   sortMemory = BulkLoaderParallel.SortMemory ;
+
+    @BeforeClass
+    static public void beforeClass() {
+        DIR = ConfigTest.getTestingDataRoot()+"/Loader/" ;
+        LogCtl.disable(ARQ.logExecName) ;
+        LogCtl.disable(TDB.logLoaderName) ;
+    }
+
+    @AfterClass
+    static public void afterClass() {
+        LogCtl.enable(ARQ.logExecName) ;
+        LogCtl.enable(TDB.logLoaderName) ;
+    }
+
+    @After
+    public void after() {
+        BulkLoaderParallel.BatchSize = batchSize ;
+        BulkLoaderParallel.SortChunkSize = sortChunkSize ;
+        BulkLoaderParallel.SortMemory = sortMemory ;
+    }
+
+    static DatasetGraphTDB fresh() {
+        return TDBMaker.createDatasetGraphTDB(Location.mem(), null) ;
+    }
+
+    @Test
+    public void load_parallel_01() {
+        DatasetGraphTDB dsg = fresh() ;
+        BulkLoaderParallel.loadDataset(dsg, Arrays.asList(DIR + "data-1.nq"), false) ;
+        assertTrue(dsg.getDefaultGraph().isEmpty()) ;
+        assertEquals(1, dsg.getGraph(g).size()) ;
+    }
+
+    @Test
+    public void load_parallel_02() {
+        DatasetGraphTDB dsg = fresh() ;
+        BulkLoaderParallel.loadDataset(dsg, Arrays.asList(DIR + "data-3.trig"), false) ;
+        String uri = dsg.getDefaultGraph().getPrefixMapping().getNsPrefixURI("") ;
+        assertEquals("http://example/", uri) ;
+    }
+
+    @Test
+    public void load_parallel_03() {
+        DatasetGraphTDB dsg = fresh() ;
+        BulkLoaderParallel.loadNamedGraph(dsg, g, Arrays.asList(DIR + "data-4.ttl"), false) ;
+        assertEquals(0, dsg.getDefaultGraph().size()) ;
+        assertEquals(1, dsg.getGraph(g).size()) ;
+        assertEquals("http://example/", dsg.getGraph(g).getPrefixMapping().getNsPrefixURI("")) ;
+        assertNull(dsg.getDefaultGraph().getPrefixMapping().getNsPrefixURI("")) ;
+    }
+
+    // Small batches and sort chunks : every index must be the same as from the sequential loader.
+    @Test
+    public void load_parallel_04() {
+        BulkLoaderParallel.BatchSize = 7 ;
+        BulkLoaderParallel.SortChunkSize = 50 ;
+        DatasetGraphTDB dsg1 = fresh() ;
+        TDBLoader.load(dsg1, data(), false) ;
+        DatasetGraphTDB dsg2 = fresh() ;
+        BulkLoaderParallel.loadDataset(dsg2, data(), false) ;
+        sameIndexes(dsg1, dsg2) ;
+        assertEquals(200, dsg2.getDefaultGraph().size()) ;
+    }
+
+    // Loading into a store that is not empty adds to the indexes.
+    @Test
+    public void load_parallel_06() {
+        BulkLoaderParallel.BatchSize = 7 ;
+        BulkLoaderParallel.SortChunkSize = 50 ;
+        DatasetGraphTDB dsg1 = fresh() ;
+        TDBLoader.load(dsg1, data(), false) ;
+        TDBLoader.load(dsg1, data(400), false) ;
+        DatasetGraphTDB dsg2 = fresh() ;
+        BulkLoaderParallel.loadDataset(dsg2, data(), false) ;
+        BulkLoaderParallel.loadDataset(dsg2, data(400), false) ;
+        sameIndexes(dsg1, dsg2) ;
+        assertEquals(400, dsg2.getDefaultGraph().size()) ;
+    }
+
+    // On disk, with the sort of the empty indexes spilling to temporary files.
+    @Test
+    public void load_parallel_07() {
+        BulkLoaderParallel.SortMemory = 1 ;
+        Location location = Location.create(ConfigTest.getCleanDir()) ;
+        try {
+            DatasetGraphTDB dsg1 = fresh() ;
+            TDBLoader.load(dsg1, data(3000), false) ;
+            DatasetGraphTDB dsg2 = TDBMaker.createDatasetGraphTDB(location, null) ;
+            BulkLoaderParallel.loadDataset(dsg2, data(3000), false) ;
+            sameIndexes(dsg1, dsg2) ;
+            dsg2.close() ;
+            TDBMaker.releaseLocation(location) ;
+            DatasetGraphTDB dsg3 = TDBMaker.createDatasetGraphTDB(location, null) ;
+            sameIndexes(dsg1, dsg3) ;
+            assertEquals(3000, dsg3.getDefaultGraph().size()) ;
+            dsg3.close() ;
+        } finally {
+            TDBMaker.releaseLocation(location) ;
+            ConfigTest.deleteTestingDir() ;
+        }
+    }
+
+    // Bad data : the error comes back to the caller.
+    @Test(expected=RuntimeException.class)
+    public void load_parallel_05() {
+        DatasetGraphTDB dsg = fresh() ;
+        InputStream in = new ByteArrayInputStream("<s> <p> <o> .\n<s> <p> .\n".getBytes(StandardCharsets.UTF_8)) ;
+        LogCtl.disable(SysRIOT.riotLoggerName) ;
+        try { BulkLoaderParallel.loadDefaultGraph(dsg, in, false) ; }
+        finally { LogCtl.enable(SysRIOT.riotLoggerName) ; }
+    }
+
+    private static InputStream data() {
+        return data(200) ;
+    }
+
+    private static InputStream data(int N) {
+        StringBuilder sb = new StringBuilder() ;
+        for ( int i = 0 ; i < N ; i++ ) {
+            sb.append("<http://example/s"+(i%13)+"> <http://example/p"+(i%3)+"> \""+i+"\" .\n") ;
+            sb.append("<http://example/s"+(i%11)+"> <http://example/q> <http://example/s"+(i%7)+"> <http://example/g"+(i%4)+"> .\n") ;
+        }
+        return new ByteArrayInputStream(sb.toString().getBytes(StandardCharsets.UTF_8)) ;
+    }
+
+    private static void sameIndexes(DatasetGraphTDB dsg1, DatasetGraphTDB dsg2) {
+        sameIndexes(dsg1.getTripleTable().getNodeTupleTable(), dsg2.getTripleTable().getNodeTupleTable()) ;
+        sameIndexes(dsg1.getQuadTable().getNodeTupleTable(), dsg2.getQuadTable().getNodeTupleTable()) ;
+    }
+
+    // Nodes may be allocated in a different order, so compare the tuples as nodes.
+    private static void sameIndexes(NodeTupleTable table1, NodeTupleTable table2) {
+        TupleIndex[] indexes1 = table1.getTupleTable().getIndexes() ;
+        TupleIndex[] indexes2 = table2.getTupleTable().getIndexes() ;
+        assertEquals(indexes1.length, indexes2.length) ;
+        for ( int i = 0 ; i < indexes1.length ; i++ ) {
+            Set<List<Node>> x1 = nodes(indexes1[i], table1.getNodeTable()) ;
+            Set<List<Node>> x2 = nodes(indexes2[i], table2.getNodeTable()) ;
+            assertEquals(indexes1[i].getName(), x1, x2) ;
+            assertEquals(indexes1[i].getName(), indexes1[i].size(), indexes2[i].size()) ;
+        }
+    }
+
+    private static Set<List<Node>> nodes(TupleIndex index, NodeTable nodeTable) {
+        Set<List<Node>> x = new HashSet<>() ;
+        for ( Tuple<NodeId> t : Iter.toList(index.all()) ) {
+            List<Node> row = new ArrayList<>() ;
+            for ( NodeId id : t )
+                row.add(nodeTable.getNodeForNodeId(id)) ;
+            x.add(row) ;
+        }
+        return x ;
+    }
+}
@@ -225,6 +225,139 @@ public class TestNodeId extends BaseTest
     @Test public void nodeId_boolean_4()
     { test("'0'^^xsd:boolean", NodeFactoryExtra.parseNode("'false'^^xsd:boolean")) ; }
 
+    // Extended inlines : the same node comes back.
+    
+    @Test public void nodeId_ext_int_01()
+    { testExt("'3'^^xsd:int") ; }
+
+    @Test public void nodeId_ext_int_02()
+    { testExt("'-3'^^xsd:byte") ; }
+
+    @Test public void nodeId_ext_int_03()
+    { testExt("'123456789012'^^xsd:unsignedLong") ; }
+
+    // Not the canonical form: falls back to the xsd:integer encoding.
+    @Test public void nodeId_ext_int_04()
+    { testExt("'+3'^^xsd:int", NodeFactoryExtra.parseNode("3")) ; }
+
+    @Test public void nodeId_ext_int_05()
+    { testExt("3", NodeFactoryExtra.parseNode("3")) ; }
+
+    @Test public void nodeId_ext_double_01()
+    { testExt("'1.5e0'^^xsd:double") ; }
+
+    @Test public void nodeId_ext_double_02()
+    { testExt("'-2.0E10'^^xsd:double") ; }
+
+    @Test public void nodeId_ext_double_03()
+    { testExt("'INF'^^xsd:double") ; }
+
+    // Does not fit.
+    @Test public void nodeId_ext_double_04()
+    { testExt("'0.1e0'^^xsd:double", (Node)null) ; }
+
+    // Not the canonical form.
+    @Test public void nodeId_ext_double_05()
+    { testExt("'1.5E0'^^xsd:double", (Node)null) ; }
+
+    @Test public void nodeId_ext_float_01()
+    { testExt("'1.5'^^xsd:float") ; }
+
+    @Test public void nodeId_ext_float_02()
+    { testExt("'0.1'^^xsd:float") ; }
+
+    @Test public void nodeId_ext_lang_01()
+    { testExt("'chat'@fr") ; }
+
+    @Test public void nodeId_ext_lang_02()
+    { testExt("''@en") ; }
+
+    @Test public void nodeId_ext_lang_03()
+    { testExt("'abcdef'@en") ; }
+
+    @Test public void nodeId_ext_lang_04()
+    { testExt("'abcdefg'@en", (Node)null) ; }
+
+    @Test public void nodeId_ext_lang_05()
+    { testExt("'chat'@en-GB", (Node)null) ; }
+
+    @Test public void nodeId_ext_lang_06()
+    { testExt("'chat'@EN", (Node)null) ; }
+
+    @Test public void nodeId_ext_lang_07()
+    { testExt("'caf\u00E9'@fr", (Node)null) ; }
+
+    @Test public void nodeId_ext_gYear_01()
+    { testExt("'2014'^^xsd:gYear") ; }
+
+    @Test public void nodeId_ext_gYear_02()
+    { testExt("'-0044Z'^^xsd:gYear") ; }
+
+    @Test public void nodeId_ext_gYear_03()
+    { testExt("'2014-05+01:00'^^xsd:gYearMonth") ; }
+
+    @Test public void nodeId_ext_gYear_04()
+    { testExt("'--05'^^xsd:gMonth") ; }
+
+    @Test public void nodeId_ext_gYear_05()
+    { testExt("'--05-31-05:30'^^xsd:gMonthDay") ; }
+
+    @Test public void nodeId_ext_gYear_06()
+    { testExt("'---31'^^xsd:gDay") ; }
+
+    // Not reproduced exactly.
+    @Test public void nodeId_ext_gYear_07()
+    { testExt("'02014'^^xsd:gYear", (Node)null) ; }
+
+    @Test public void nodeId_ext_gYear_08()
+    { testExt("'2014-00:00'^^xsd:gYear", (Node)null) ; }
+
+    @Test public void nodeId_ext_duration_01()
+    { testExt("'P1Y2M3DT4H5M6S'^^xsd:duration") ; }
+
+    @Test public void nodeId_ext_duration_02()
+    { testExt("'-PT1M'^^xsd:duration") ; }
+
+    @Test public void nodeId_ext_duration_03()
+    { testExt("'PT0S'^^xsd:duration") ; }
+
+    @Test public void nodeId_ext_duration_04()
+    { testExt("'P12M'^^xsd:duration", (Node)null) ; }
+
+    @Test public void nodeId_ext_duration_05()
+    { testExt("'PT1.5S'^^xsd:duration", (Node)null) ; }
+
+    // Not inlined without the extended encodings.
+    @Test public void nodeId_ext_off_01()
+    { test("'chat'@fr", (Node)null) ; }
+
+    @Test public void nodeId_ext_off_02()
+    { test("'1.5e0'^^xsd:double", (Node)null) ; }
+
+    @Test public void nodeId_ext_off_03()
+    { test("'2014'^^xsd:gYear", (Node)null) ; }
+
+    private void testExt(String x) { testExt(x, NodeFactoryExtra.parseNode(x)) ; }
+    
+    private void testExt(String x, Node correct)
+    {
+        Node n = NodeFactoryExtra.parseNode(x) ;
+        NodeId nodeId = NodeId.inline(n, true) ;
+        if ( nodeId != null )
+        {
+            assertTrue("Converted NodeId but datatype test was false", NodeId.hasInlineDatatype(n, true)) ;
+            assertTrue(NodeId.isInline(nodeId)) ;
+        }
+        if ( correct == null )
+        {
+            assertNull("Expected no encoding: got: "+nodeId, nodeId) ;
+            return ;
+        }
+        assertNotNull("Expected inlining: "+n, nodeId) ;
+        Node n2 = NodeId.extract(nodeId) ;
+        assertEquals("Not same term", correct, n2) ;
+    }
+
     private void test(String x) { test(x, x) ; }
     
     private void test(String x, String expected)
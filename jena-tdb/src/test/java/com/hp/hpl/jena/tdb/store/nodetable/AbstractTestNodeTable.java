@@ -18,6 +18,10 @@
 
 package com.hp.hpl.jena.tdb.store.nodetable;
 
+import java.util.ArrayList ;
+import java.util.Collections ;
+import java.util.List ;
+
 import org.apache.jena.atlas.junit.BaseTest ;
 import org.junit.Test ;
 
@@ -83,6 +87,50 @@ public abstract class AbstractTestNodeTable extends BaseTest
     @Test public void nodetable_06()    { testNode("'x'^^<http://example/dt>") ; }
     @Test public void nodetable_07()    { testNode("'نواف'") ; }
     
+    @Test public void nodetable_batch_01()
+    {
+        NodeTable nt = createEmptyNodeTable() ;
+        String[] strs = { "<http://example/x>", "_:b", "'x'@en", "'abc'", "1", "<http://example/y>" } ;
+        List<Node> nodes = new ArrayList<>() ;
+        List<NodeId> ids = new ArrayList<>() ;
+        for ( String s : strs )
+        {
+            Node n = NodeFactoryExtra.parseNode(s) ;
+            nodes.add(n) ;
+            ids.add(nt.getAllocateNodeId(n)) ;
+        }
+        // Out of order, with repeats and an unknown id.
+        Collections.reverse(nodes) ;
+        Collections.reverse(ids) ;
+        nodes.add(nodes.get(0)) ;
+        ids.add(ids.get(0)) ;
+        nodes.add(null) ;
+        ids.add(NodeId.NodeDoesNotExist) ;
+        assertEquals(nodes, nt.getNodesForNodeIds(ids)) ;
+        assertTrue(nt.getNodesForNodeIds(new ArrayList<NodeId>()).isEmpty()) ;
+    }
+    
+    @Test public void nodetable_batch_02()
+    {
+        NodeTable nt = createEmptyNodeTable() ;
+        Node x = NodeFactoryExtra.parseNode("<http://example/x>") ;
+        NodeId idx = nt.getAllocateNodeId(x) ;
+        String[] strs = { "<http://example/y>", "_:b", "'x'@en", "<http://example/x>", "1", "<http://example/y>" } ;
+        List<Node> nodes = new ArrayList<>() ;
+        for ( String s : strs )
+            nodes.add(NodeFactoryExtra.parseNode(s)) ;
+        List<NodeId> ids = nt.getAllocateNodeIds(nodes) ;
+        assertEquals(nodes.size(), ids.size()) ;
+        assertEquals(idx, ids.get(3)) ;
+        assertEquals(ids.get(0), ids.get(5)) ;
+        for ( int i = 0 ; i < nodes.size() ; i++ )
+        {
+            assertEquals(ids.get(i), nt.getNodeIdForNode(nodes.get(i))) ;
+            assertEquals(nodes.get(i), nt.getNodeForNodeId(ids.get(i))) ;
+        }
+        assertTrue(nt.getAllocateNodeIds(new ArrayList<Node>()).isEmpty()) ;
+    }
+    
     static Node badNode1 = com.hp.hpl.jena.graph.NodeFactory.createLiteral("abc", "99bad") ;
     
     @Test public void nodetable_bad_01()    { testNodeBad(badNode1) ; }
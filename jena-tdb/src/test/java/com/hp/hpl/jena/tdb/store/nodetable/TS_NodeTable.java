@@ -26,6 +26,9 @@ import org.junit.runners.Suite ;
     TestCodec.class
     , TestNodeTableStored.class
     , TestNodeTable.class
+    , TestNodeTableConcurrent.class
+    , TestNodeTableFiltered.class
+    , TestNodeHashFilter.class
 })
 public class TS_NodeTable
 {
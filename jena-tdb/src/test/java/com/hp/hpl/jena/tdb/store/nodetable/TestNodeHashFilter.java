@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hp.hpl.jena.tdb.store.nodetable;
+
+import org.apache.jena.atlas.junit.BaseTest ;
+import org.apache.jena.atlas.lib.FileOps ;
+import org.junit.After ;
+import org.junit.Before ;
+import org.junit.Test ;
+
+import com.hp.hpl.jena.graph.Node ;
+import com.hp.hpl.jena.graph.NodeFactory ;
+import com.hp.hpl.jena.tdb.ConfigTest ;
+import com.hp.hpl.jena.tdb.base.file.Location ;
+import com.hp.hpl.jena.tdb.lib.NodeLib ;
+import com.hp.hpl.jena.tdb.setup.Build ;
+import com.hp.hpl.jena.tdb.setup.StoreParams ;
+import com.hp.hpl.jena.tdb.store.NodeId ;
+import com.hp.hpl.jena.tdb.sys.Names ;
+
+public class TestNodeHashFilter extends BaseTest
+{
+    static final StoreParams filtered = StoreParams.builder().nodeFilterFPR(0.01).build() ;
+    static final StoreParams unfiltered = StoreParams.builder().nodeFilterFPR(0).build() ;
+    
+    String dirname ;
+    Location location ;
+    
+    @Before public void before()
+    {
+        dirname = ConfigTest.getCleanDir() ;
+        location = Location.create(dirname) ;
+    }
+    
+    @After public void after()
+    {
+        FileOps.clearDirectory(dirname) ;
+    }
+    
+    private static byte[] hash(int i)
+    {
+        return NodeLib.hash(node(i)).getBytes() ;
+    }
+    
+    private static Node node(int i)
+    {
+        return NodeFactory.createURI("http://example/n"+i) ;
+    }
+    
+    private static NodeHashFilter filterOf(NodeTable nodeTable)
+    {
+        while ( nodeTable.wrapped() != null )
+            nodeTable = nodeTable.wrapped() ;
+        return ((NodeTableNative)nodeTable).getFilter() ;
+    }
+    
+    // No false negatives, across growth of the filter.
+    @Test public void nodefilter_01()
+    {
+        NodeHashFilter filter = NodeHashFilter.create(0.01) ;
+        int N = (int)(3*NodeHashFilter.MinCapacity) ;
+        for ( int i = 0 ; i < N ; i++ )
+            filter.add(hash(i)) ;
+        assertEquals(N, filter.count()) ;
+        for ( int i = 0 ; i < N ; i++ )
+            assertTrue(filter.mightContain(hash(i))) ;
+    }
+
+    // False positive rate.
+    @Test public void nodefilter_02()
+    {
+        NodeHashFilter filter = NodeHashFilter.create(0.01) ;
+        int N = (int)(2*NodeHashFilter.MinCapacity) ;
+        for ( int i = 0 ; i < N ; i++ )
+            filter.add(hash(i)) ;
+        int falsePositives = 0 ;
+        for ( int i = N ; i < 2*N ; i++ )
+            if ( filter.mightContain(hash(i)) )
+                falsePositives++ ;
+        assertTrue("False positives: "+falsePositives, falsePositives < 0.01*N) ;
+    }
+
+    @Test public void nodefilter_03()
+    {
+        NodeTable nt = Build.makeNodeTable(Location.mem(), filtered) ;
+        NodeId id = nt.getAllocateNodeId(node(1)) ;
+        assertEquals(id, nt.getNodeIdForNode(node(1))) ;
+        assertEquals(NodeId.NodeDoesNotExist, nt.getNodeIdForNode(node(2))) ;
+        assertEquals(1, filterOf(nt).count()) ;
+        assertFalse(filterOf(nt).mightContain(hash(2))) ;
+    }
+
+    // Saved on close, used on reopen.
+    @Test public void nodefilter_04()
+    {
+        NodeTable nt = Build.makeNodeTable(location, filtered) ;
+        for ( int i = 0 ; i < 10 ; i++ )
+            nt.getAllocateNodeId(node(i)) ;
+        nt.close() ;
+        assertTrue(FileOps.exists(location.getPath(Names.indexNode2Id, Names.extNodeFilter))) ;
+        
+        nt = Build.makeNodeTable(location, filtered) ;
+        assertEquals(10, filterOf(nt).count()) ;
+        for ( int i = 0 ; i < 10 ; i++ )
+            assertFalse(NodeId.isDoesNotExist(nt.getNodeIdForNode(node(i)))) ;
+        assertTrue(NodeId.isDoesNotExist(nt.getNodeIdForNode(node(10)))) ;
+        nt.close() ;
+    }
+
+    // Nodes added without the filter : the saved filter is out of date and is rebuilt.
+    @Test public void nodefilter_05()
+    {
+        NodeTable nt = Build.makeNodeTable(location, filtered) ;
+        nt.getAllocateNodeId(node(1)) ;
+        nt.close() ;
+        
+        nt = Build.makeNodeTable(location, unfiltered) ;
+        assertNull(filterOf(nt)) ;
+        nt.getAllocateNodeId(node(2)) ;
+        nt.close() ;
+        
+        nt = Build.makeNodeTable(location, filtered) ;
+        assertEquals(2, filterOf(nt).count()) ;
+        assertFalse(NodeId.isDoesNotExist(nt.getNodeIdForNode(node(1)))) ;
+        assertFalse(NodeId.isDoesNotExist(nt.getNodeIdForNode(node(2)))) ;
+        nt.close() ;
+    }
+
+    // A different false positive rate rebuilds the filter.
+    @Test public void nodefilter_06()
+    {
+        NodeTable nt = Build.makeNodeTable(location, filtered) ;
+        nt.getAllocateNodeId(node(1)) ;
+        nt.close() ;
+        
+        nt = Build.makeNodeTable(location, StoreParams.builder().nodeFilterFPR(0.001).build()) ;
+        assertEquals(0.001, filterOf(nt).getFPR(), 0) ;
+        assertEquals(1, filterOf(nt).count()) ;
+        assertFalse(NodeId.isDoesNotExist(nt.getNodeIdForNode(node(1)))) ;
+        nt.close() ;
+    }
+}
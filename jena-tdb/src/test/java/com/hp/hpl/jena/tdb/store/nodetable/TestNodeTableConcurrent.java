@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hp.hpl.jena.tdb.store.nodetable;
+
+import java.util.ArrayList ;
+import java.util.List ;
+import java.util.concurrent.Callable ;
+import java.util.concurrent.ExecutorService ;
+import java.util.concurrent.Executors ;
+import java.util.concurrent.Future ;
+
+import org.apache.jena.atlas.lib.CacheStats ;
+import org.junit.Test ;
+
+import com.hp.hpl.jena.graph.Node ;
+import com.hp.hpl.jena.graph.NodeFactory ;
+import com.hp.hpl.jena.tdb.base.file.Location ;
+import com.hp.hpl.jena.tdb.setup.Build ;
+import com.hp.hpl.jena.tdb.setup.StoreParams ;
+import com.hp.hpl.jena.tdb.store.NodeId ;
+
+public class TestNodeTableConcurrent extends AbstractTestNodeTable
+{
+    @Override
+    protected NodeTable createEmptyNodeTable()
+    {
+        StoreParams params = StoreParams.builder()
+            .node2NodeIdCacheSize(10)
+            .nodeId2NodeCacheSize(10)
+            .nodeMissCacheSize(10)
+            .nodeCacheConcurrent(true)
+            .build() ;
+        return Build.makeNodeTable(Location.mem(), params) ;
+    }
+
+    @Test public void nodetable_concurrent_01()
+    {
+        NodeTable nt = createEmptyNodeTable() ;
+        NodeTableCache ntc = (NodeTableCache)nt.wrapped() ;
+        Node n = NodeFactory.createURI("http://example/x") ;
+        NodeId id = nt.getAllocateNodeId(n) ;
+        assertEquals(id, nt.getNodeIdForNode(n)) ;
+        CacheStats<Node, NodeId> stats = ntc.getNode2NodeIdCacheStats() ;
+        assertNotNull(stats) ;
+        assertEquals(1, stats.getCacheHits()) ;
+        assertEquals(n, nt.getNodeForNodeId(id)) ;
+        assertEquals(1, ntc.getNodeId2NodeCacheStats().getCacheHits()) ;
+    }
+
+    // Each miss counted once, not by both the lock-free look and the look under the lock.
+    @Test public void nodetable_concurrent_03()
+    {
+        NodeTable nt = createEmptyNodeTable() ;
+        NodeTableCache ntc = (NodeTableCache)nt.wrapped() ;
+        Node n = NodeFactory.createURI("http://example/x") ;
+        NodeId id = nt.getAllocateNodeId(n) ;
+        CacheStats<Node, NodeId> stats = ntc.getNode2NodeIdCacheStats() ;
+        assertEquals(0, stats.getCacheHits()) ;
+        assertEquals(1, stats.getCacheMisses()) ;
+        nt.getAllocateNodeId(n) ;
+        assertEquals(1, stats.getCacheHits()) ;
+        assertEquals(1, stats.getCacheMisses()) ;
+        assertEquals(n, nt.getNodeForNodeId(id)) ;
+        assertEquals(0, ntc.getNodeId2NodeCacheStats().getCacheMisses()) ;
+    }
+
+    // Many threads allocating an overlapping set of nodes, more than the caches hold.
+    @Test public void nodetable_concurrent_02() throws Exception
+    {
+        final NodeTable nt = createEmptyNodeTable() ;
+        int N = 4 ;
+        ExecutorService executor = Executors.newFixedThreadPool(N) ;
+        List<Future<List<NodeId>>> results = new ArrayList<>() ;
+        try {
+            for ( int i = 0 ; i < N ; i++ )
+            {
+                results.add(executor.submit(new Callable<List<NodeId>>() {
+                    @Override
+                    public List<NodeId> call()
+                    {
+                        List<NodeId> ids = new ArrayList<>() ;
+                        for ( int j = 0 ; j < 100 ; j++ )
+                            ids.add(nt.getAllocateNodeId(NodeFactory.createURI("http://example/n"+(j%50)))) ;
+                        return ids ;
+                    }
+                })) ;
+            }
+            List<NodeId> ids = results.get(0).get() ;
+            for ( Future<List<NodeId>> f : results )
+                assertEquals(ids, f.get()) ;
+            for ( int j = 0 ; j < 50 ; j++ )
+                assertEquals(NodeFactory.createURI("http://example/n"+j), nt.getNodeForNodeId(ids.get(j))) ;
+        } finally { executor.shutdown() ; }
+    }
+}
@@ -20,7 +20,9 @@ package com.hp.hpl.jena.tdb.store.tupletable;
 
 import static org.apache.jena.atlas.lib.Tuple.createTuple ;
 
+import java.util.ArrayList ;
 import java.util.Iterator ;
+import java.util.List ;
 import java.util.Set ;
 
 import org.apache.jena.atlas.iterator.Iter ;
@@ -29,6 +31,7 @@ import org.apache.jena.atlas.lib.ColumnMap ;
 import org.apache.jena.atlas.lib.Tuple ;
 import org.junit.Test ;
 
+import com.hp.hpl.jena.query.QueryCancelledException ;
 import com.hp.hpl.jena.tdb.base.file.FileSet ;
 import com.hp.hpl.jena.tdb.base.record.RecordFactory ;
 import com.hp.hpl.jena.tdb.index.IndexFactory ;
@@ -36,6 +39,7 @@ import com.hp.hpl.jena.tdb.index.IndexParams ;
 import com.hp.hpl.jena.tdb.index.RangeIndex ;
 import com.hp.hpl.jena.tdb.setup.StoreParams ;
 import com.hp.hpl.jena.tdb.store.NodeId ;
+import com.hp.hpl.jena.tdb.sys.ScanControl ;
 import com.hp.hpl.jena.tdb.sys.SystemTDB ;
 
 public class TestTupleIndexRecordDirect extends BaseTest
@@ -317,5 +321,144 @@ public class TestTupleIndexRecordDirect extends BaseTest
         assertFalse(iter.hasNext()) ;
    }
 
-    
+    @Test public void TupleIndexRecordFindFrom_1()
+    {
+        TupleIndexRecord index = create("POS") ;
+        add(index, n1, n2, n3) ;
+        add(index, n4, n2, n3) ;
+        add(index, n5, n2, n3) ;
+        add(index, n6, n2, n1) ;
+        
+        Tuple<NodeId> tuple2 = createTuple(null, n2, n3) ;
+        Iterator<Tuple<NodeId>> iter = index.findFrom(tuple2, null) ;
+        assertEquals(3, Iter.count(iter)) ;
+        iter = index.findFrom(tuple2, n4) ;
+        assertEquals(n4, iter.next().get(0)) ;
+        assertEquals(n5, iter.next().get(0)) ;
+        assertFalse(iter.hasNext()) ;
+   }
+
+    @Test public void TupleIndexRecordFindFrom_2()
+    {
+        TupleIndexRecord index = create("POS") ;
+        add(index, n1, n2, n3) ;
+        // No leading slot.
+        Tuple<NodeId> tuple2 = createTuple(n1, null, n3) ;
+        assertNull(index.findFrom(tuple2, null)) ;
+   }
+
+    @Test public void TupleIndexRecordFindFrom_3()
+    {
+        TupleIndexRecord index = create("SPO") ;
+        add(index, n1, n2, n3) ;
+        add(index, n1, n4, n5) ;
+        add(index, n1, n5, n3) ;
+        // Leading slot, then a partial scan.
+        Tuple<NodeId> tuple2 = createTuple(n1, null, n3) ;
+        Iterator<Tuple<NodeId>> iter = index.findFrom(tuple2, n3) ;
+        assertEquals(n5, iter.next().get(1)) ;
+        assertFalse(iter.hasNext()) ;
+   }
+
+    static TupleIndexRecord createLarge(String description)
+    {
+        TupleIndexRecord index = create(description) ;
+        for ( int i = 0 ; i < 10000 ; i++ )
+            add(index, new NodeId(i/10), new NodeId(i%7), new NodeId(i)) ;
+        return index ;
+    }
+
+    static void testFindParts(TupleIndexRecord index, Tuple<NodeId> pattern, int n, boolean split)
+    {
+        List<Tuple<NodeId>> expected = Iter.toList(index.find(pattern)) ;
+        List<Iterator<Tuple<NodeId>>> parts = index.findParts(pattern, n, null) ;
+        assertTrue(parts.size() <= n) ;
+        if ( split )
+            assertEquals(n, parts.size()) ;
+        List<Tuple<NodeId>> x = new ArrayList<>() ;
+        for ( Iterator<Tuple<NodeId>> part : parts )
+            x.addAll(Iter.toList(part)) ;
+        assertEquals(expected, x) ;
+    }
+
+    @Test public void TupleIndexRecordFindParts_1()
+    {
+        testFindParts(createLarge("SPO"), createTuple((NodeId)null, null, null), 4, true) ;
+    }
+
+    @Test public void TupleIndexRecordFindParts_2()
+    {
+        // Partial scan of each part.
+        testFindParts(createLarge("SPO"), createTuple(null, new NodeId(3), null), 8, true) ;
+    }
+
+    @Test public void TupleIndexRecordFindParts_3()
+    {
+        // Leading slot : a small range.
+        testFindParts(createLarge("POS"), createTuple(null, new NodeId(3), null), 3, false) ;
+    }
+
+    @Test public void TupleIndexRecordFindParts_4()
+    {
+        // Existence test.
+        testFindParts(createLarge("SPO"), createTuple(new NodeId(5), new NodeId(52%7), new NodeId(52)), 4, false) ;
+    }
+
+    @Test public void TupleIndexRecordFindParts_5()
+    {
+        testFindParts(create("SPO"), createTuple((NodeId)null, null, null), 4, false) ;
+    }
+
+    @Test public void ParallelScan_1()
+    {
+        TupleIndexRecord index = createLarge("OSP") ;
+        ParallelScan.Task<Long> count = new ParallelScan.Task<Long>() {
+            @Override
+            public Long scan(Iterator<Tuple<NodeId>> tuples)
+            {
+                return Iter.count(tuples) ;
+            }
+        } ;
+        List<Long> counts = ParallelScan.scan(index, createTuple((NodeId)null, null, null), 4, null, count) ;
+        assertEquals(4, counts.size()) ;
+        long total = 0 ;
+        for ( long c : counts )
+            total += c ;
+        assertEquals(10000, total) ;
+        counts = ParallelScan.scan(index, createTuple(null, new NodeId(1), null), 4, null, count) ;
+        total = 0 ;
+        for ( long c : counts )
+            total += c ;
+        assertEquals(10000/7+1, total) ;
+    }
+
+    // The records read by all the parts are counted.
+    @Test public void ParallelScan_2()
+    {
+        TupleIndexRecord index = createLarge("OSP") ;
+        ParallelScan.Task<Long> count = new ParallelScan.Task<Long>() {
+            @Override
+            public Long scan(Iterator<Tuple<NodeId>> tuples)
+            {
+                return Iter.count(tuples) ;
+            }
+        } ;
+        ScanControl control = new ScanControl(-1, -1, 100) ;
+        ParallelScan.scan(index, createTuple((NodeId)null, null, null), 4, control, count) ;
+        assertEquals(10000, control.getRecordsScanned()) ;
+    }
+
+    @Test(expected=QueryCancelledException.class)
+    public void ParallelScan_3()
+    {
+        TupleIndexRecord index = createLarge("OSP") ;
+        ParallelScan.Task<Long> count = new ParallelScan.Task<Long>() {
+            @Override
+            public Long scan(Iterator<Tuple<NodeId>> tuples)
+            {
+                return Iter.count(tuples) ;
+            }
+        } ;
+        ParallelScan.scan(index, createTuple((NodeId)null, null, null), 4, new ScanControl(1000, -1, 100), count) ;
+    }
 }
@@ -18,6 +18,9 @@
 
 package com.hp.hpl.jena.tdb.transaction;
 
+import java.util.Arrays ;
+import java.util.List ;
+
 import org.apache.jena.atlas.junit.BaseTest ;
 import org.junit.Test ;
 
@@ -231,4 +234,18 @@ public abstract class AbstractTestNodeTableTrans extends BaseTest
         ntt.commitClearup(txn) ;
     }
 
+    @Test 
+    public void nodetrans_08()
+    { 
+        // Batch lookup across the base and the journal.
+        Transaction txn = createTxn(14) ;
+        NodeTableTrans ntt = create(txn, node1) ;
+        NodeId nodeId1 = ntt.getBaseNodeTable().getNodeIdForNode(node1) ;
+        ntt.begin(txn) ;
+        NodeId nodeId2 = ntt.getAllocateNodeId(node2) ;
+        NodeId nodeId3 = ntt.getAllocateNodeId(node3) ;
+        List<Node> nodes = ntt.getNodesForNodeIds(Arrays.asList(nodeId3, nodeId1, nodeId2, nodeId1)) ;
+        assertEquals(Arrays.asList(node3, node1, node2, node1), nodes) ;
+        ntt.abort(txn) ;
+    }
 }
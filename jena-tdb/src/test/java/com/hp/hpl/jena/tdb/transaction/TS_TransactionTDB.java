@@ -37,6 +37,9 @@ import org.junit.runners.Suite ;
     , TestTransDiskDirect.class
     , TestTransDiskMapped.class
     , TestTransRestart.class
+    , TestTransGroupCommit.class
+    , TestTransWriteBack.class
+    , TestBackupControl.class
     , TestTransactionTDB.class
     , TestTransactionUnionGraph.class
 })
@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hp.hpl.jena.tdb.transaction;
+
+import java.io.ByteArrayInputStream ;
+import java.io.File ;
+import java.io.IOException ;
+import java.nio.file.Files ;
+import java.util.Arrays ;
+
+import org.apache.jena.atlas.junit.BaseTest ;
+import org.apache.jena.atlas.lib.FileOps ;
+import org.apache.jena.atlas.lib.StrUtils ;
+import org.junit.After ;
+import org.junit.Before ;
+import org.junit.Test ;
+
+import com.hp.hpl.jena.graph.Node ;
+import com.hp.hpl.jena.graph.NodeFactory ;
+import com.hp.hpl.jena.query.ReadWrite ;
+import com.hp.hpl.jena.sparql.core.Quad ;
+import com.hp.hpl.jena.sparql.sse.SSE ;
+import com.hp.hpl.jena.tdb.ConfigTest ;
+import com.hp.hpl.jena.tdb.StoreConnection ;
+import com.hp.hpl.jena.tdb.TDBBackup ;
+import com.hp.hpl.jena.tdb.TDBException ;
+import com.hp.hpl.jena.tdb.base.file.Location ;
+import com.hp.hpl.jena.tdb.store.DatasetGraphTDB ;
+import com.hp.hpl.jena.tdb.store.bulkloader.BulkLoader ;
+import com.hp.hpl.jena.tdb.sys.Names ;
+
+public class TestBackupControl extends BaseTest
+{
+    private static final int queueBatchSize = TransactionManager.QueueBatchSize ;
+    private Location location ;
+    private String backupDir ;
+    private Location restoreLocation ;
+
+    @Before public void before()
+    {
+        // Write back on commit unless there are readers.
+        TransactionManager.QueueBatchSize = 0 ;
+        location = Location.create(ConfigTest.getCleanDir()) ;
+        backupDir = clean(ConfigTest.getTestingDir()+"/Backup") ;
+        restoreLocation = Location.create(clean(ConfigTest.getTestingDir()+"/Restore")) ;
+    }
+
+    @After public void after()
+    {
+        StoreConnection.release(location) ;
+        StoreConnection.release(restoreLocation) ;
+        FileOps.clearDirectory(backupDir) ;
+        FileOps.clearDirectory(restoreLocation.getDirectoryPath()) ;
+        TransactionManager.QueueBatchSize = queueBatchSize ;
+    }
+
+    private static String clean(String dir)
+    {
+        FileOps.ensureDir(dir) ;
+        FileOps.clearDirectory(dir) ;
+        return dir ;
+    }
+
+    @Test public void backup_01()
+    {
+        StoreConnection sConn = StoreConnection.make(location) ;
+        write(sConn, 0, 10) ;
+        TDBBackup.backupFiles(location, backupDir) ;
+        assertTrue(new File(backupDir, Names.backupToken).exists()) ;
+        assertFalse(new File(backupDir, Names.lockFile).exists()) ;
+        TDBBackup.restoreFiles(backupDir, restoreLocation) ;
+        assertFalse(new File(restoreLocation.getDirectoryPath(), Names.backupToken).exists()) ;
+        check(StoreConnection.make(restoreLocation), 0, 10) ;
+    }
+
+    // Incremental
+    @Test public void backup_02() throws IOException
+    {
+        StoreConnection sConn = StoreConnection.make(location) ;
+        write(sConn, 0, 10) ;
+        sConn.backup(backupDir) ;
+        write(sConn, 10, 20) ;
+        BlockTracker tracker = BlockTracker.open(location) ;
+        assertNotNull(tracker) ;
+        assertFalse(tracker.getBlocks("SPO.dat").isEmpty()) ;
+        assertTrue(tracker.getBlocks("GSPO.dat").isEmpty()) ;
+        sConn.backup(backupDir) ;
+        assertFalse(tracker.getToken().equals(BlockTracker.open(location).getToken())) ;
+        // Same files.
+        for ( File f : new File(location.getDirectoryPath()).listFiles() )
+        {
+            String name = f.getName() ;
+            if ( name.equals(Names.lockFile) || name.equals(Names.backupBlocks) )
+                continue ;
+            File b = new File(backupDir, name) ;
+            assertTrue(name, b.exists()) ;
+            assertTrue(name, Arrays.equals(Files.readAllBytes(f.toPath()), Files.readAllBytes(b.toPath()))) ;
+        }
+        TDBBackup.restoreFiles(backupDir, restoreLocation) ;
+        check(StoreConnection.make(restoreLocation), 0, 20) ;
+    }
+
+    // Committed transactions that are only in the journal.
+    @Test public void backup_03()
+    {
+        StoreConnection sConn = StoreConnection.make(location) ;
+        write(sConn, 0, 10) ;
+        DatasetGraphTxn reader = sConn.begin(ReadWrite.READ) ;
+        write(sConn, 10, 15) ;
+        assertTrue(sConn.getTransMgrState().queuedCommits > 0) ;
+        sConn.backup(backupDir) ;
+        // The reader continues.
+        assertTrue(reader.contains(quad(0))) ;
+        assertFalse(reader.contains(quad(10))) ;
+        reader.end() ;
+        TDBBackup.restoreFiles(backupDir, restoreLocation) ;
+        check(StoreConnection.make(restoreLocation), 0, 15) ;
+    }
+
+    @Test(expected=TDBException.class)
+    public void backup_04()
+    {
+        // Not a backup.
+        TDBBackup.restoreFiles(restoreLocation.getDirectoryPath(), location) ;
+    }
+
+    @Test(expected=TDBException.class)
+    public void backup_05()
+    {
+        StoreConnection sConn = StoreConnection.make(location) ;
+        write(sConn, 0, 1) ;
+        sConn.backup(backupDir) ;
+        StoreConnection.release(location) ;
+        // Not empty.
+        TDBBackup.restoreFiles(backupDir, location) ;
+    }
+
+    // Changes not made by transactions: the next backup is a full copy.
+    @Test public void backup_06()
+    {
+        StoreConnection sConn = StoreConnection.make(location) ;
+        write(sConn, 0, 10) ;
+        sConn.backup(backupDir) ;
+        assertNotNull(BlockTracker.open(location)) ;
+        StringBuilder data = new StringBuilder() ;
+        for ( int i = 0 ; i < 100 ; i++ )
+            data.append("<http://example/s> <http://example/p> \"bulk "+i+"\" .\n") ;
+        DatasetGraphTDB base = sConn.getBaseDataset() ;
+        BulkLoader.loadDefaultGraph(base, new ByteArrayInputStream(StrUtils.asUTF8bytes(data.toString())), false) ;
+        base.sync() ;
+        assertNull(BlockTracker.open(location)) ;
+        write(sConn, 10, 15) ;
+        sConn.backup(backupDir) ;
+        assertNotNull(BlockTracker.open(location)) ;
+        TDBBackup.restoreFiles(backupDir, restoreLocation) ;
+        StoreConnection sConn2 = StoreConnection.make(restoreLocation) ;
+        check(sConn2, 0, 15) ;
+        DatasetGraphTxn dsg = sConn2.begin(ReadWrite.READ) ;
+        Node s = NodeFactory.createURI("http://example/s") ;
+        for ( int i = 0 ; i < 100 ; i++ )
+            assertTrue(dsg.contains(Quad.defaultGraphIRI, s, NodeFactory.createURI("http://example/p"), NodeFactory.createLiteral("bulk "+i))) ;
+        dsg.end() ;
+    }
+
+    @Test public void block_tracker_01()
+    {
+        assertNull(BlockTracker.open(location)) ;
+        BlockTracker tracker = BlockTracker.create(location, "token") ;
+        tracker.record("SPO.dat", 8192, 3) ;
+        tracker.record("SPO.dat", 8192, 1) ;
+        tracker.record("SPO.dat", 8192, 3) ;
+        tracker.sync() ;
+        BlockTracker tracker2 = BlockTracker.open(location) ;
+        assertEquals("token", tracker2.getToken()) ;
+        assertEquals(2, tracker2.getBlocks("SPO.dat").size()) ;
+        assertEquals(8192, tracker2.getBlockSize("SPO.dat")) ;
+        assertEquals(-1, tracker2.getBlockSize("POS.dat")) ;
+        assertTrue(tracker2.isValid()) ;
+        BlockTracker.delete(location) ;
+        assertFalse(tracker2.isValid()) ;
+        // Not recreated.
+        tracker2.record("SPO.dat", 8192, 4) ;
+        tracker2.sync() ;
+        assertNull(BlockTracker.open(location)) ;
+    }
+
+    private static Quad quad(int i)
+    {
+        return SSE.parseQuad("(_ <s> <p> "+i+")") ;
+    }
+
+    private static void write(StoreConnection sConn, int start, int finish)
+    {
+        for ( int i = start ; i < finish ; i++ )
+        {
+            DatasetGraphTxn dsg = sConn.begin(ReadWrite.WRITE) ;
+            dsg.add(quad(i)) ;
+            dsg.add(SSE.parseQuad("(_ <s> <q> \"node "+i+"\")")) ;
+            dsg.commit() ;
+            dsg.end() ;
+        }
+    }
+
+    private static void check(StoreConnection sConn, int start, int finish)
+    {
+        DatasetGraphTxn dsg = sConn.begin(ReadWrite.READ) ;
+        for ( int i = start ; i < finish ; i++ )
+            assertTrue(dsg.contains(quad(i))) ;
+        assertFalse(dsg.contains(quad(finish))) ;
+        dsg.end() ;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hp.hpl.jena.tdb.transaction;
+
+import java.util.ArrayList ;
+import java.util.List ;
+import java.util.concurrent.* ;
+
+import org.apache.jena.atlas.junit.BaseTest ;
+import org.junit.After ;
+import org.junit.Before ;
+import org.junit.Test ;
+
+import com.hp.hpl.jena.query.ReadWrite ;
+import com.hp.hpl.jena.sparql.core.Quad ;
+import com.hp.hpl.jena.sparql.sse.SSE ;
+import com.hp.hpl.jena.tdb.ConfigTest ;
+import com.hp.hpl.jena.tdb.StoreConnection ;
+import com.hp.hpl.jena.tdb.base.file.BufferChannelMem ;
+import com.hp.hpl.jena.tdb.base.file.Location ;
+import com.hp.hpl.jena.tdb.sys.SystemTDB ;
+
+public class TestTransGroupCommit extends BaseTest
+{
+    private static final int window = SystemTDB.JournalGroupCommitWindow ;
+    private static final int groupSize = SystemTDB.JournalGroupCommitSize ;
+    private Location location ;
+
+    @Before public void before()
+    {
+        location = Location.create(ConfigTest.getCleanDir()) ;
+    }
+
+    @After public void after()
+    {
+        SystemTDB.JournalGroupCommitWindow = window ;
+        SystemTDB.JournalGroupCommitSize = groupSize ;
+        StoreConnection.release(location) ;
+    }
+
+    @Test public void groupcommit_journal_01()
+    {
+        Journal journal = new Journal(BufferChannelMem.create("journal")) ;
+        long c1 = journal.writeCommit() ;
+        long c2 = journal.writeCommit() ;
+        journal.syncCommit(c1, 0, 1) ;
+        assertEquals(1, journal.getCommitSyncCount()) ;
+        // Already synced by the first.
+        journal.syncCommit(c2, 0, 1) ;
+        assertEquals(1, journal.getCommitSyncCount()) ;
+        journal.syncCommits() ;
+        assertEquals(1, journal.getCommitSyncCount()) ;
+    }
+
+    // The leader waits for the group to fill.
+    @Test public void groupcommit_journal_02() throws Exception
+    {
+        final Journal journal = new Journal(BufferChannelMem.create("journal")) ;
+        final int N = 4 ;
+        ExecutorService executor = Executors.newFixedThreadPool(N) ;
+        try {
+            List<Future<?>> results = new ArrayList<>() ;
+            for ( int i = 0 ; i < N ; i++ )
+                results.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() { journal.syncCommit(journal.writeCommit(), 60*1000, N) ; }
+                })) ;
+            for ( Future<?> f : results )
+                f.get(30, TimeUnit.SECONDS) ;
+        } finally { executor.shutdownNow() ; }
+        assertTrue(journal.getCommitSyncCount() < N) ;
+    }
+
+    @Test public void groupcommit_01()
+    {
+        SystemTDB.JournalGroupCommitWindow = 10 ;
+        StoreConnection sConn = StoreConnection.make(location) ;
+        Quad q = SSE.parseQuad("(_ <s> <p> 1)") ;
+        DatasetGraphTxn dsg = sConn.begin(ReadWrite.WRITE) ;
+        dsg.add(q) ;
+        dsg.commit() ;
+        dsg.end() ;
+        dsg = sConn.begin(ReadWrite.READ) ;
+        assertTrue(dsg.contains(q)) ;
+        dsg.end() ;
+    }
+
+    // Concurrent writers : all commit and, with a long window, share journal syncs.
+    @Test public void groupcommit_02() throws Exception
+    {
+        final int N = 8 ;
+        SystemTDB.JournalGroupCommitWindow = 60*1000 ;
+        SystemTDB.JournalGroupCommitSize = N ;
+        final StoreConnection sConn = StoreConnection.make(location) ;
+        ExecutorService executor = Executors.newFixedThreadPool(N) ;
+        try {
+            List<Future<?>> results = new ArrayList<>() ;
+            for ( int i = 0 ; i < N ; i++ )
+            {
+                final Quad q = SSE.parseQuad("(_ <s> <p> "+i+")") ;
+                results.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        DatasetGraphTxn dsg = sConn.begin(ReadWrite.WRITE) ;
+                        dsg.add(q) ;
+                        dsg.commit() ;
+                        dsg.end() ;
+                    }
+                })) ;
+            }
+            for ( Future<?> f : results )
+                f.get(30, TimeUnit.SECONDS) ;
+        } finally { executor.shutdownNow() ; }
+
+        DatasetGraphTxn dsg = sConn.begin(ReadWrite.READ) ;
+        for ( int i = 0 ; i < N ; i++ )
+            assertTrue(dsg.contains(SSE.parseQuad("(_ <s> <p> "+i+")"))) ;
+        Journal journal = dsg.getTransaction().getJournal() ;
+        dsg.end() ;
+        assertTrue(journal.getCommitSyncCount() < N) ;
+    }
+
+    // A commit is not visible to new readers until its journal sync; the next writer sees it.
+    @Test public void groupcommit_03() throws Exception
+    {
+        SystemTDB.JournalGroupCommitWindow = 60*1000 ;
+        SystemTDB.JournalGroupCommitSize = 2 ;
+        final StoreConnection sConn = StoreConnection.make(location) ;
+        final Quad q1 = SSE.parseQuad("(_ <s> <p> 1)") ;
+        Quad q2 = SSE.parseQuad("(_ <s> <p> 2)") ;
+        final CountDownLatch started = new CountDownLatch(1) ;
+        ExecutorService executor = Executors.newSingleThreadExecutor() ;
+        try {
+            // Waits in the journal sync for a second commit.
+            Future<?> f = executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    DatasetGraphTxn dsg = sConn.begin(ReadWrite.WRITE) ;
+                    started.countDown() ;
+                    dsg.add(q1) ;
+                    dsg.commit() ;
+                    dsg.end() ;
+                }
+            }) ;
+            started.await() ;
+            // Starts when the first writer has written its commit record.
+            DatasetGraphTxn dsgW = sConn.begin(ReadWrite.WRITE) ;
+            assertTrue(dsgW.contains(q1)) ;
+
+            DatasetGraphTxn dsgR = sConn.begin(ReadWrite.READ) ;
+            assertFalse(dsgR.contains(q1)) ;
+            dsgR.end() ;
+            assertFalse(f.isDone()) ;
+
+            dsgW.add(q2) ;
+            dsgW.commit() ;
+            dsgW.end() ;
+            f.get(30, TimeUnit.SECONDS) ;
+        } finally { executor.shutdownNow() ; }
+
+        DatasetGraphTxn dsg = sConn.begin(ReadWrite.READ) ;
+        assertTrue(dsg.contains(q1)) ;
+        assertTrue(dsg.contains(q2)) ;
+        Journal journal = dsg.getTransaction().getJournal() ;
+        dsg.end() ;
+        assertEquals(1, journal.getCommitSyncCount()) ;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hp.hpl.jena.tdb.transaction;
+
+import org.apache.jena.atlas.junit.BaseTest ;
+import org.apache.jena.atlas.lib.Lib ;
+import org.junit.After ;
+import org.junit.Before ;
+import org.junit.Test ;
+
+import com.hp.hpl.jena.query.ReadWrite ;
+import com.hp.hpl.jena.sparql.core.Quad ;
+import com.hp.hpl.jena.sparql.sse.SSE ;
+import com.hp.hpl.jena.tdb.ConfigTest ;
+import com.hp.hpl.jena.tdb.StoreConnection ;
+import com.hp.hpl.jena.tdb.base.file.Location ;
+
+public class TestTransWriteBack extends BaseTest
+{
+    private static final boolean background = TransactionManager.BackgroundWriteBack ;
+    private static final int queueBatchSize = TransactionManager.QueueBatchSize ;
+    private Location location ;
+
+    @Before public void before()
+    {
+        location = Location.create(ConfigTest.getCleanDir()) ;
+    }
+
+    @After public void after()
+    {
+        StoreConnection.release(location) ;
+        TransactionManager.BackgroundWriteBack = background ;
+        TransactionManager.QueueBatchSize = queueBatchSize ;
+    }
+
+    @Test public void writeback_background_01()
+    {
+        TransactionManager.BackgroundWriteBack = true ;
+        TransactionManager.QueueBatchSize = 3 ;
+        StoreConnection sConn = StoreConnection.make(location) ;
+        for ( int i = 0 ; i < 3 ; i++ )
+            write(sConn, i) ;
+        // The background thread writes back.
+        for ( int i = 0 ; i < 100 && sConn.getTransMgrState().queuedCommits > 0 ; i++ )
+            Lib.sleep(50) ;
+        SysTxnState state = sConn.getTransMgrState() ;
+        assertEquals(0, state.queuedCommits) ;
+        assertEquals(0, state.journalSize) ;
+        assertTrue(state.writeBacks > 0) ;
+        DatasetGraphTxn dsg = sConn.begin(ReadWrite.READ) ;
+        for ( int i = 0 ; i < 3 ; i++ )
+            assertTrue(dsg.contains(quad(i))) ;
+        dsg.end() ;
+    }
+
+    // A reader delays the write back; writers do not wait for it.
+    @Test public void writeback_background_02() throws Exception
+    {
+        TransactionManager.BackgroundWriteBack = true ;
+        TransactionManager.QueueBatchSize = 2 ;
+        final StoreConnection sConn = StoreConnection.make(location) ;
+        DatasetGraphTxn reader = sConn.begin(ReadWrite.READ) ;
+        for ( int i = 0 ; i < 3 ; i++ )
+            write(sConn, i) ;
+        assertEquals(3, sConn.getTransMgrState().queuedCommits) ;
+        assertFalse(reader.contains(quad(0))) ;
+        reader.end() ;
+        for ( int i = 0 ; i < 100 && sConn.getTransMgrState().queuedCommits > 0 ; i++ )
+            Lib.sleep(50) ;
+        assertEquals(0, sConn.getTransMgrState().queuedCommits) ;
+        DatasetGraphTxn dsg = sConn.begin(ReadWrite.READ) ;
+        for ( int i = 0 ; i < 3 ; i++ )
+            assertTrue(dsg.contains(quad(i))) ;
+        dsg.end() ;
+    }
+
+    private static Quad quad(int i)
+    {
+        return SSE.parseQuad("(_ <s> <p> "+i+")") ;
+    }
+
+    private static void write(StoreConnection sConn, int i)
+    {
+        DatasetGraphTxn dsg = sConn.begin(ReadWrite.WRITE) ;
+        dsg.add(quad(i)) ;
+        dsg.commit() ;
+        dsg.end() ;
+    }
+}